@@ -23,6 +23,9 @@
 package org.mobicents.protocols.api;
 
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.List;
 
 /**
  * <p>
@@ -159,10 +162,61 @@ public interface Association {
 	 * Send the {@link PayloadData} to the peer
 	 * 
 	 * @param payloadData
+	 * @throws QueueFullException
+	 *             if the outbound queue has no room for the message
 	 * @throws Exception
 	 */
 	public void send(PayloadData payloadData) throws Exception;
 
+    /**
+     * Send the {@link PayloadData} to the peer without throwing. When the
+     * outbound queue is full the configured {@link OverflowPolicy} applies
+     *
+     * @param payloadData
+     * @return whether the message was queued, and if not why
+     */
+    public SendStatus trySend(PayloadData payloadData);
+
+    /**
+     * Queue the {@link PayloadData} for sending without flushing it to the
+     * peer, a following {@link #flush()} sends all the written messages at once
+     *
+     * @param payloadData
+     * @throws QueueFullException
+     *             if the outbound queue has no room for the message
+     * @throws Exception
+     */
+    public void write(PayloadData payloadData) throws Exception;
+
+    /**
+     * Send all the messages queued by {@link #write(PayloadData)} to the peer
+     *
+     * @throws Exception
+     */
+    public void flush() throws Exception;
+
+    /**
+     * Send the messages to the peer in their order with a single flush
+     *
+     * @param payloadData
+     * @throws QueueFullException
+     *             if the outbound queue has no room for a message, the
+     *             messages before it are sent
+     * @throws Exception
+     */
+    public void sendBatch(PayloadData[] payloadData) throws Exception;
+
+    /**
+     * Send the messages to the peer in their order with a single flush
+     *
+     * @param payloadData
+     * @throws QueueFullException
+     *             if the outbound queue has no room for a message, the
+     *             messages before it are sent
+     * @throws Exception
+     */
+    public void sendBatch(List<PayloadData> payloadData) throws Exception;
+
     /**
      * Return ByteBufAllocator if the underlying Channel is netty or null if not
      *
@@ -170,6 +224,26 @@ public interface Association {
      */
     public ByteBufAllocator getByteBufAllocator() throws Exception;
 
+    /**
+     * Return the event loop of the underlying Channel if it is netty or null
+     * if not or if the Association is not connected. A producer that runs its
+     * own processing on this event loop sends without crossing threads
+     *
+     * @return
+     */
+    public EventExecutor getEventExecutor();
+
+    /**
+     * Queue the {@link PayloadData} in the outbound ring of this Association.
+     * The ring is drained with a single flush once per event loop cycle, so a
+     * burst costs one task instead of one per message. Messages passed to
+     * {@link #send(PayloadData)} meanwhile may overtake the queued ones
+     *
+     * @param payloadData
+     * @return whether the message was queued, and if not why
+     */
+    public SendStatus offerOutbound(PayloadData payloadData);
+
     /**
      * Return the last measured Congestion Level at the sending direction
      *
@@ -177,6 +251,59 @@ public interface Association {
      */
     public int getCongestionLevel();
 
+    /**
+     * Return false once more bytes than the write buffer high water mark of
+     * this Association are pending for sending, true again once they drop
+     * below its low water mark. Senders should stop sending while the
+     * Association is not writable, see
+     * {@link AssociationListener#onWritabilityChanged(Association, boolean)}
+     *
+     * @return
+     */
+    public boolean isWritable();
+
+    /**
+     * Return the number of bytes queued for sending and not yet written to the
+     * socket
+     *
+     * @return
+     */
+    public long pendingOutboundBytes();
+
+    /**
+     * Return the number of messages queued for sending and not yet written to
+     * the socket
+     *
+     * @return
+     */
+    public int pendingOutboundMessages();
+
+    /**
+     * Return a snapshot of the traffic counters of this Association, they
+     * are counted since the Association was created
+     *
+     * @return
+     */
+    public AssociationStatistics getStatistics();
+
+    /**
+     * Return the latencies between {@link #send(PayloadData)} (or any other
+     * send method) and the write of the message to the socket, recorded while
+     * {@link Management#isLatencyRecordingEnabled()}
+     *
+     * @return
+     */
+    public LatencyHistogram getTxLatency();
+
+    /**
+     * Return the latencies between the read of a message from the socket and
+     * the return of {@link AssociationListener#onPayload(Association, PayloadData)},
+     * recorded while {@link Management#isLatencyRecordingEnabled()}
+     *
+     * @return
+     */
+    public LatencyHistogram getRxLatency();
+
 	/**
 	 * Use this method only for accepting anonymous connections
 	 * from the ServerListener.onNewRemoteConnection() invoking
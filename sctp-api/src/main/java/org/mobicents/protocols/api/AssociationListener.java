@@ -135,4 +135,17 @@ public interface AssociationListener {
         // Default implementation does nothing - can be overridden by users
     }
 
+    /**
+     * Invoked when the bytes pending for sending cross the write buffer high
+     * water mark of the Association (writable=false) and when they drop back
+     * below its low water mark (writable=true). A sender pulling messages from
+     * its own queue should pause while the Association is not writable.
+     * 
+     * @param association
+     * @param writable The new value of {@link Association#isWritable()}
+     */
+    public default void onWritabilityChanged(Association association, boolean writable) {
+        // Default implementation does nothing - can be overridden by users
+    }
+
 }
@@ -0,0 +1,135 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of the traffic counters of an {@link Association}, see
+ * {@link Association#getStatistics()}. The counters are read one after the
+ * other while the Association may be sending and receiving, so they are not
+ * guaranteed to be consistent with each other
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class AssociationStatistics {
+
+    private final String name;
+    private final long rxMessages;
+    private final long rxBytes;
+    private final long txMessages;
+    private final long txBytes;
+    private final long txFailures;
+    private final long invalidStreamIds;
+    private final long txDropped;
+    private final List<StreamStatistics> streams;
+
+    public AssociationStatistics(String name, long rxMessages, long rxBytes, long txMessages, long txBytes, long txFailures,
+            long invalidStreamIds, long txDropped, List<StreamStatistics> streams) {
+        this.name = name;
+        this.rxMessages = rxMessages;
+        this.rxBytes = rxBytes;
+        this.txMessages = txMessages;
+        this.txBytes = txBytes;
+        this.txFailures = txFailures;
+        this.invalidStreamIds = invalidStreamIds;
+        this.txDropped = txDropped;
+        this.streams = Collections.unmodifiableList(streams);
+    }
+
+    /**
+     * @return name of the Association
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return number of messages received
+     */
+    public long getRxMessages() {
+        return rxMessages;
+    }
+
+    /**
+     * @return number of payload bytes received
+     */
+    public long getRxBytes() {
+        return rxBytes;
+    }
+
+    /**
+     * @return number of messages sent
+     */
+    public long getTxMessages() {
+        return txMessages;
+    }
+
+    /**
+     * @return number of payload bytes sent
+     */
+    public long getTxBytes() {
+        return txBytes;
+    }
+
+    /**
+     * @return number of messages that could not be sent because the
+     *         Association was down or the write to the socket failed
+     */
+    public long getTxFailures() {
+        return txFailures;
+    }
+
+    /**
+     * @return number of messages not sent because their stream number is not
+     *         valid for the Association
+     */
+    public long getInvalidStreamIds() {
+        return invalidStreamIds;
+    }
+
+    /**
+     * @return number of messages rejected or dropped by the outbound queue
+     *         because it was full
+     */
+    public long getTxDropped() {
+        return txDropped;
+    }
+
+    /**
+     * @return counters of the streams that carried traffic, ordered by stream
+     *         number
+     */
+    public List<StreamStatistics> getStreams() {
+        return streams;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "AssociationStatistics[name=%s, rxMessages=%d, rxBytes=%d, txMessages=%d, txBytes=%d, txFailures=%d, invalidStreamIds=%d, txDropped=%d, streams=%s]",
+                name, rxMessages, rxBytes, txMessages, txBytes, txFailures, invalidStreamIds, txDropped, streams);
+    }
+}
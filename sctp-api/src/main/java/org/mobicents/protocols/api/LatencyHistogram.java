@@ -0,0 +1,186 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+/**
+ * <p>
+ * Snapshot of latencies recorded in nanoseconds, see
+ * {@link Association#getTxLatency()} and {@link Association#getRxLatency()}.
+ * </p>
+ * <p>
+ * The latencies are counted in log-linear buckets: below 16ns a bucket per
+ * nanosecond, above each power of 2 is split into 16 buckets, so a reported
+ * value is at most 1/16 above the recorded one. Latencies above
+ * {@link #MAX_VALUE} are counted in the last bucket.
+ * </p>
+ * <p>
+ * A snapshot counts everything recorded since the Association was created, the
+ * latencies of an interval are the difference of two snapshots, see
+ * {@link #minus(LatencyHistogram)}.
+ * </p>
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+
+    /**
+     * Highest latency in nanoseconds that is counted in its own bucket, about
+     * 68 seconds
+     */
+    public static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+
+    public static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private static final LatencyHistogram EMPTY = new LatencyHistogram(new long[BUCKET_COUNT], 0);
+
+    private final long[] counts;
+    private final long totalCount;
+    private final long totalNanos;
+
+    /**
+     * @param counts
+     *            number of latencies per bucket, see {@link #bucketIndex(long)}
+     * @param totalNanos
+     *            sum of the recorded latencies
+     */
+    public LatencyHistogram(long[] counts, long totalNanos) {
+        if (counts.length != BUCKET_COUNT) {
+            throw new IllegalArgumentException(String.format("Expected %d buckets, got %d", BUCKET_COUNT, counts.length));
+        }
+        this.counts = counts;
+        this.totalNanos = totalNanos;
+
+        long totalCount = 0;
+        for (int i = 0; i < counts.length; i++) {
+            totalCount += counts[i];
+        }
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * @return a histogram without any latency
+     */
+    public static LatencyHistogram empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return the index of the bucket counting the passed latency
+     */
+    public static int bucketIndex(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        if (nanos > MAX_VALUE) {
+            return BUCKET_COUNT - 1;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    /**
+     * @return the highest latency counted by the bucket
+     */
+    public static long bucketHighestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * @return number of recorded latencies
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return mean latency in nanoseconds, 0 if nothing was recorded
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0.0 : (double) totalNanos / totalCount;
+    }
+
+    /**
+     * @return highest recorded latency in nanoseconds, 0 if nothing was
+     *         recorded
+     */
+    public long getMax() {
+        for (int i = counts.length - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return bucketHighestValue(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param percentile
+     *            between 0 and 100
+     * @return latency in nanoseconds that the passed percentile of the recorded
+     *         latencies does not exceed, 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= target) {
+                return bucketHighestValue(i);
+            }
+        }
+        return bucketHighestValue(counts.length - 1);
+    }
+
+    /**
+     * @param previous
+     *            an earlier snapshot of the same latencies
+     * @return the latencies recorded after the passed snapshot
+     */
+    public LatencyHistogram minus(LatencyHistogram previous) {
+        long[] interval = new long[BUCKET_COUNT];
+        for (int i = 0; i < interval.length; i++) {
+            interval[i] = Math.max(0, counts[i] - previous.counts[i]);
+        }
+        return new LatencyHistogram(interval, Math.max(0, totalNanos - previous.totalNanos));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyHistogram[count=%d, mean=%.1fus, p50=%.1fus, p99=%.1fus, p99.9=%.1fus, max=%.1fus]",
+                totalCount, getMean() / 1000.0, getValueAtPercentile(50) / 1000.0, getValueAtPercentile(99) / 1000.0,
+                getValueAtPercentile(99.9) / 1000.0, getMax() / 1000.0);
+    }
+}
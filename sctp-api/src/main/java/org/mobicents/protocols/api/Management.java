@@ -380,6 +380,48 @@ public interface Management {
 	 */
 	public Map<String, Association> getAssociations();
 
+	/**
+	 * Get a snapshot of the traffic counters of each configured Association
+	 * with name as key
+	 * 
+	 * @return
+	 */
+	public Map<String, AssociationStatistics> getStatistics();
+
+	/**
+	 * If the send and receive latencies of the Associations are recorded, see
+	 * {@link Association#getTxLatency()} and {@link Association#getRxLatency()}
+	 * 
+	 * @return
+	 */
+	public boolean isLatencyRecordingEnabled();
+
+	/**
+	 * Start or stop recording the send and receive latencies of the
+	 * Associations. Disabled by default, the latencies recorded so far are
+	 * kept
+	 * 
+	 * @param latencyRecordingEnabled
+	 */
+	public void setLatencyRecordingEnabled(boolean latencyRecordingEnabled);
+
+	/**
+	 * If the Management, its Servers and its Associations are registered as
+	 * MBeans in the platform MBeanServer while the Management is started
+	 * 
+	 * @return
+	 */
+	public boolean isJmxEnabled();
+
+	/**
+	 * Register or unregister the MBeans of the Management, of its Servers and
+	 * of its Associations. Enabled by default, takes effect at once if the
+	 * Management is started
+	 * 
+	 * @param jmxEnabled
+	 */
+	public void setJmxEnabled(boolean jmxEnabled);
+
 	/**
 	 * Start the existing Association
 	 * 
@@ -440,6 +482,24 @@ public interface Management {
 	 */
 	public void setSingleThread(boolean singleThread) throws Exception;
 
+	/**
+	 * Get the number of I/O threads the {@link Association}s are spread over.
+	 * For the NIO stack this is the number of SelectorThreads (servers are
+	 * accepted by a separate acceptor thread), for the netty stack the size of
+	 * the worker event loop group.
+	 * 
+	 * @return
+	 */
+	public int getSelectorThreads();
+
+	/**
+	 * Set the number of I/O threads the {@link Association}s are spread over.
+	 * Can be updated only when the stack is not running.
+	 * 
+	 * @param selectorThreads
+	 */
+	public void setSelectorThreads(int selectorThreads) throws Exception;
+
     /**
      * For outgoing messages congestion control we need to have 3 thresholds - delays of outgoing messages before it will be
      * sent to IP channel (3 levels - 1, 2, 3). If a delay time in seconds becomes more then value 0, 1 or 2 of the array
@@ -799,6 +859,21 @@ public interface Management {
 	public void modifyAssociation(String hostAddress, Integer hostPort, String peerAddress, Integer peerPort, String associationName, IpChannelType ipChannelType,
 			String[] extraHostAddresses) throws Exception;
 
+	/**
+	 * Modify the write buffer water marks of an Association. The Association
+	 * turns unwritable once more than writeBufferHighWaterMark bytes are
+	 * pending for sending and writable again once they drop below
+	 * writeBufferLowWaterMark. The new values apply at once, also to a
+	 * connected Association
+	 * 
+	 * @param associationName
+	 * @param writeBufferLowWaterMark
+	 * @param writeBufferHighWaterMark
+	 * @throws Exception
+	 */
+	public void modifyAssociationWriteBufferWaterMark(String associationName, int writeBufferLowWaterMark,
+			int writeBufferHighWaterMark) throws Exception;
+
 	// =============== PayloadDataPool Configuration (v2.0.5) ===============
 	// High-performance object pooling for reduced GC pressure
 
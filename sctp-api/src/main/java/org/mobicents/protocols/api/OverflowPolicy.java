@@ -0,0 +1,47 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+/**
+ * What {@link Association#send(PayloadData)} and
+ * {@link Association#trySend(PayloadData)} do when the outbound queue of an
+ * Association is full (message or byte capacity reached)
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public enum OverflowPolicy {
+    /**
+     * The new message is not queued, send() throws a {@link QueueFullException}
+     */
+    REJECT,
+    /**
+     * The oldest queued messages are dropped to make room for the new message
+     */
+    DROP_OLDEST,
+    /**
+     * The sender waits for room up to the configured block timeout, then the
+     * new message is rejected
+     */
+    BLOCK;
+}
@@ -43,6 +43,7 @@ public class PayloadData {
     private int payloadProtocolId;
     private int streamNumber;
     private int retryCount = 0;
+    private long timestamp;
     
     // Pooling support
     private boolean pooled = false;
@@ -111,6 +112,7 @@ public class PayloadData {
         this.payloadProtocolId = payloadProtocolId;
         this.streamNumber = streamNumber;
         this.retryCount = 0;
+        this.timestamp = 0;
         this.available = false;
     }
     
@@ -129,6 +131,7 @@ public class PayloadData {
         this.payloadProtocolId = 0;
         this.streamNumber = 0;
         this.retryCount = 0;
+        this.timestamp = 0;
         this.available = true;
     }
     
@@ -241,6 +244,20 @@ public class PayloadData {
         return this;
     }
 
+    /**
+     * @return System.nanoTime() when this message was received or queued for
+     *         sending while latency recording was enabled, see
+     *         {@link Management#setLatencyRecordingEnabled(boolean)}, 0
+     *         otherwise
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -21,16 +21,28 @@
 package org.mobicents.protocols.api;
 
 import io.netty.buffer.ByteBuf;
-import org.jctools.queues.MpscArrayQueue;
+import org.jctools.queues.MpmcArrayQueue;
 
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * High-performance object pool for PayloadData optimized for telecom workloads.
  * 
  * Designed for high-throughput scenarios (500K+ msg/s) with large memory (32GB+).
- * Uses adaptive sizing and JCTools MpscArrayQueue for minimal GC pressure.
+ * Uses adaptive sizing for minimal GC pressure.
+ * 
+ * The pool is safe for any number of acquiring and releasing threads (Netty
+ * event loops acquire, Worker executors release). Every thread owns a small
+ * magazine (array stack) so the common acquire/release is a plain array
+ * push/pop; magazines exchange half of their content in batches with a shared
+ * JCTools MpmcArrayQueue depot when they run empty or full. Statistics are
+ * kept per magazine and aggregated on read. The magazine of a terminated
+ * thread is reclaimed when the next thread starts using the pool or at
+ * clear(): its objects go back to the depot and its statistics are kept.
  * 
  * Memory calculation for 32GB RAM, 500K msg/s:
  * - Object lifetime: ~10-50ms (processing + network latency)
@@ -63,17 +75,38 @@ public final class PayloadDataPool {
     private static final double LOW_HIT_RATE_THRESHOLD = 0.70;
     private static final int ADAPTIVE_CHECK_INTERVAL = 10_000; // Check every 10K operations
     
-    private final MpscArrayQueue<PayloadData> pool;
+    // Per-thread magazine capacity, refilled/spilled by half
+    private static final int MAGAZINE_SIZE = 64;
+    private static final int MAGAZINE_BATCH = MAGAZINE_SIZE / 2;
+    
+    private final MpmcArrayQueue<PayloadData> depot;
     private volatile int maxPoolSize;
     private final boolean enabled;
     private final boolean adaptive;
     
-    // Statistics - using atomic for thread safety
-    private final AtomicLong acquiredCount = new AtomicLong(0);
-    private final AtomicLong releasedCount = new AtomicLong(0);
-    private final AtomicLong createdCount = new AtomicLong(0);
-    private final AtomicLong missedCount = new AtomicLong(0);
-    private final AtomicInteger currentPoolSize = new AtomicInteger(0);
+    private static final AtomicIntegerFieldUpdater<PayloadDataPool> GENERATION = AtomicIntegerFieldUpdater.newUpdater(
+            PayloadDataPool.class, "generation");
+    
+    // Bumped by clear() so that magazines of other threads drop their content lazily
+    private volatile int generation;
+    
+    // Statistics - per-thread striped cells, aggregated on read
+    private final CopyOnWriteArrayList<Magazine> magazines = new CopyOnWriteArrayList<Magazine>();
+    private final ThreadLocal<Magazine> localMagazine = new ThreadLocal<Magazine>() {
+        @Override
+        protected Magazine initialValue() {
+            reclaimMagazines();
+            Magazine magazine = new Magazine(generation, Thread.currentThread());
+            magazines.add(magazine);
+            return magazine;
+        }
+    };
+    // Statistics of the reclaimed magazines of terminated threads
+    private final AtomicLong retiredAcquired = new AtomicLong(0);
+    private final AtomicLong retiredReleased = new AtomicLong(0);
+    private final AtomicLong retiredMissed = new AtomicLong(0);
+    // Cold path counters (preallocation and adaptive check only)
+    private final AtomicLong preallocatedCount = new AtomicLong(0);
     private final AtomicLong lastAdaptiveCheck = new AtomicLong(0);
     
     /**
@@ -104,8 +137,8 @@ public final class PayloadDataPool {
         this.enabled = enabled;
         this.adaptive = adaptive;
         // Round up to power of 2 for JCTools efficiency
-        int capacity = roundUpToPowerOf2(Math.min(maxPoolSize, 100_000));
-        this.pool = new MpscArrayQueue<>(capacity);
+        int capacity = roundUpToPowerOf2(Math.max(2, Math.min(maxPoolSize, 100_000)));
+        this.depot = new MpmcArrayQueue<PayloadData>(capacity);
         
         if (enabled) {
             // Pre-allocate pool with initial capacity
@@ -115,7 +148,7 @@ public final class PayloadDataPool {
     }
     
     /**
-     * Round up to the next power of 2 for JCTools MpscArrayQueue efficiency.
+     * Round up to the next power of 2 for JCTools queue efficiency.
      */
     private static int roundUpToPowerOf2(int size) {
         int capacity = 1;
@@ -141,17 +174,34 @@ public final class PayloadDataPool {
     }
     
     /**
-     * Pre-allocate objects in pool.
+     * Pre-allocate objects in the shared depot.
      */
     private void preallocate(int count) {
+        int added = 0;
         for (int i = 0; i < count; i++) {
             PayloadData data = new PayloadData();
             data.setPooled(true);
             data.clear();
-            pool.relaxedOffer(data);
+            if (!depot.relaxedOffer(data)) {
+                break;
+            }
+            added++;
         }
-        createdCount.addAndGet(count);
-        currentPoolSize.addAndGet(count);
+        preallocatedCount.addAndGet(added);
+    }
+    
+    /**
+     * Returns the magazine of the calling thread, dropping its content if the
+     * pool was cleared since the magazine was last used.
+     */
+    private Magazine magazine() {
+        Magazine magazine = localMagazine.get();
+        int gen = generation;
+        if (magazine.generation != gen) {
+            magazine.discard();
+            magazine.generation = gen;
+        }
+        return magazine;
     }
     
     /**
@@ -167,15 +217,19 @@ public final class PayloadDataPool {
      */
     public PayloadData acquire(int dataLength, ByteBuf byteBuf, boolean complete, 
                                boolean unordered, int payloadProtocolId, int streamNumber) {
-        PayloadData data = pool.relaxedPoll();
+        Magazine magazine = magazine();
+        PayloadData data = magazine.pop();
+        if (data == null && magazine.refill(depot) > 0) {
+            data = magazine.pop();
+        }
         
         if (data != null) {
-            currentPoolSize.decrementAndGet();
             data.reset(dataLength, byteBuf, complete, unordered, payloadProtocolId, streamNumber);
-            acquiredCount.incrementAndGet();
+            Magazine.ACQUIRED.lazySet(magazine, magazine.acquired + 1);
             
             // Adaptive sizing check
-            if (adaptive) {
+            if (adaptive && ++magazine.opsSinceCheck >= ADAPTIVE_CHECK_INTERVAL) {
+                magazine.opsSinceCheck = 0;
                 checkAndAdjustSize();
             }
             
@@ -183,10 +237,13 @@ public final class PayloadDataPool {
         }
         
         // Pool empty, create new but mark as pooled so it can be returned to pool
-        missedCount.incrementAndGet();
-        createdCount.incrementAndGet();
+        Magazine.MISSED.lazySet(magazine, magazine.missed + 1);
         data = new PayloadData(dataLength, byteBuf, complete, unordered, payloadProtocolId, streamNumber);
         data.setPooled(true); // Mark as pooled so it CAN be returned to pool
+        if (adaptive && ++magazine.opsSinceCheck >= ADAPTIVE_CHECK_INTERVAL) {
+            magazine.opsSinceCheck = 0;
+            checkAndAdjustSize();
+        }
         return data;
     }
     
@@ -217,46 +274,74 @@ public final class PayloadDataPool {
             return;
         }
         
+        data.clear();
+        
         // Only return pooled objects to pool
         if (!data.isPooled()) {
-            data.clear();
             return;
         }
         
-        int currentSize = currentPoolSize.get();
-        if (currentSize < maxPoolSize) {
-            data.clear();
-            pool.relaxedOffer(data);
-            currentPoolSize.incrementAndGet();
-            releasedCount.incrementAndGet();
-        } else {
-            // Pool full, just clear
-            data.clear();
+        Magazine magazine = magazine();
+        if (magazine.count == MAGAZINE_SIZE && magazine.spill(depot, maxPoolSize, MAGAZINE_BATCH) == 0) {
+            // Depot full, drop the object
+            return;
+        }
+        magazine.push(data);
+        Magazine.RELEASED.lazySet(magazine, magazine.released + 1);
+    }
+    
+    /**
+     * Moves the objects of the magazines whose thread has terminated to the
+     * depot and keeps their statistics, so that short-lived threads do not
+     * leave their magazine behind.
+     */
+    private void reclaimMagazines() {
+        for (Magazine magazine : magazines) {
+            if (magazine.isOwnerAlive() || !magazines.remove(magazine)) {
+                // in use, or reclaimed by another thread
+                continue;
+            }
+            retiredAcquired.addAndGet(magazine.acquired);
+            retiredReleased.addAndGet(magazine.released);
+            retiredMissed.addAndGet(magazine.missed);
+            if (magazine.generation == generation) {
+                magazine.spill(depot, maxPoolSize, MAGAZINE_SIZE);
+            }
+            magazine.discard();
         }
     }
     
+    /**
+     * @return the number of thread magazines, terminated threads included
+     *         until their magazine is reclaimed
+     */
+    int getMagazineCount() {
+        return magazines.size();
+    }
+    
     /**
      * Check hit rate and adjust pool size if needed.
-     * Called periodically based on operation count.
+     * Called by each thread every ADAPTIVE_CHECK_INTERVAL of its own operations.
      */
     private void checkAndAdjustSize() {
-        long currentOps = acquiredCount.get() + missedCount.get();
+        long now = System.currentTimeMillis();
         long lastCheck = lastAdaptiveCheck.get();
         
-        if (currentOps - lastCheck < ADAPTIVE_CHECK_INTERVAL) {
+        // at most one global check per second whatever the number of threads
+        if (now - lastCheck < 1000) {
             return;
         }
         
-        if (!lastAdaptiveCheck.compareAndSet(lastCheck, currentOps)) {
+        if (!lastAdaptiveCheck.compareAndSet(lastCheck, now)) {
             return; // Another thread is adjusting
         }
         
         double hitRate = getHitRate();
-        int currentSize = currentPoolSize.get();
+        int currentSize = getPoolSize();
         
         // If hit rate is too low, increase pool size
         if (hitRate < LOW_HIT_RATE_THRESHOLD && currentSize < maxPoolSize) {
-            int newSize = Math.min(currentSize + (currentSize / 4), maxPoolSize); // Increase by 25%
+            int newSize = Math.min(currentSize + Math.max(currentSize / 4, MAGAZINE_SIZE), maxPoolSize); // Increase by 25%
             int toAdd = newSize - currentSize;
             preallocate(toAdd);
         }
@@ -266,10 +351,15 @@ public final class PayloadDataPool {
     }
     
     /**
-     * Get current pool size.
+     * Get current pool size (objects in the depot plus all thread magazines).
+     * The value is an approximation while other threads are active.
      */
     public int getPoolSize() {
-        return currentPoolSize.get();
+        int size = depot.size();
+        for (Magazine magazine : magazines) {
+            size += magazine.count;
+        }
+        return size;
     }
     
     /**
@@ -304,8 +394,12 @@ public final class PayloadDataPool {
      * Get current hit rate (0.0 - 1.0).
      */
     public double getHitRate() {
-        long acquired = acquiredCount.get();
-        long missed = missedCount.get();
+        long acquired = retiredAcquired.get();
+        long missed = retiredMissed.get();
+        for (Magazine magazine : magazines) {
+            acquired += magazine.acquired;
+            missed += magazine.missed;
+        }
         long total = acquired + missed;
         return total == 0 ? 1.0 : (double) acquired / total;
     }
@@ -314,14 +408,25 @@ public final class PayloadDataPool {
      * Get pool statistics.
      */
     public PoolStatistics getStatistics() {
+        long acquired = retiredAcquired.get();
+        long released = retiredReleased.get();
+        long missed = retiredMissed.get();
+        int currentSize = depot.size();
+        for (Magazine magazine : magazines) {
+            acquired += magazine.acquired;
+            released += magazine.released;
+            missed += magazine.missed;
+            currentSize += magazine.count;
+        }
+        long total = acquired + missed;
         return new PoolStatistics(
-            acquiredCount.get(),
-            releasedCount.get(), 
-            createdCount.get(),
-            missedCount.get(),
-            currentPoolSize.get(),
+            acquired,
+            released, 
+            preallocatedCount.get() + missed,
+            missed,
+            currentSize,
             maxPoolSize,
-            getHitRate()
+            total == 0 ? 1.0 : (double) acquired / total
         );
     }
     
@@ -330,19 +435,122 @@ public final class PayloadDataPool {
      */
     public long estimateMemoryUsage() {
         // Rough estimate: each PayloadData ~200 bytes (object header + fields)
-        // Pool overhead: MpscArrayQueue internal array
-        return currentPoolSize.get() * 200L + pool.capacity() * 8L; // 8 bytes per reference
+        // Pool overhead: depot internal array and one array per magazine
+        return getPoolSize() * 200L + depot.capacity() * 8L + magazines.size() * MAGAZINE_SIZE * 8L; // 8 bytes per reference
     }
     
     /**
-     * Clear the pool.
+     * Clear the pool. The depot is drained immediately, thread magazines are
+     * dropped the next time their owning thread uses the pool and those of
+     * terminated threads are reclaimed.
      */
     public void clear() {
+        GENERATION.incrementAndGet(this);
+        reclaimMagazines();
         // Drain all elements from the queue
-        while (pool.relaxedPoll() != null) {
+        while (depot.poll() != null) {
             // Just drain
         }
-        currentPoolSize.set(0);
+    }
+    
+    /**
+     * Per-thread stack of pooled objects together with the statistics of the
+     * owning thread. Only the owner writes, until it terminates and the
+     * magazine is reclaimed; the count and the counters are published with
+     * lazySet so that readers aggregating statistics see them without a full
+     * fence. Padded so that magazines of different threads never share a cache
+     * line.
+     */
+    private static final class Magazine {
+        static final AtomicIntegerFieldUpdater<Magazine> COUNT = AtomicIntegerFieldUpdater.newUpdater(Magazine.class, "count");
+        static final AtomicLongFieldUpdater<Magazine> ACQUIRED = AtomicLongFieldUpdater.newUpdater(Magazine.class, "acquired");
+        static final AtomicLongFieldUpdater<Magazine> RELEASED = AtomicLongFieldUpdater.newUpdater(Magazine.class, "released");
+        static final AtomicLongFieldUpdater<Magazine> MISSED = AtomicLongFieldUpdater.newUpdater(Magazine.class, "missed");
+
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+
+        final PayloadData[] items = new PayloadData[MAGAZINE_SIZE];
+        // weak so that the magazine does not keep a terminated thread
+        final WeakReference<Thread> owner;
+        volatile int count;
+        int generation;
+        int opsSinceCheck;
+
+        volatile long acquired;
+        volatile long released;
+        volatile long missed;
+
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+
+        Magazine(int generation, Thread owner) {
+            this.generation = generation;
+            this.owner = new WeakReference<Thread>(owner);
+        }
+
+        boolean isOwnerAlive() {
+            Thread thread = owner.get();
+            return thread != null && thread.isAlive();
+        }
+
+        PayloadData pop() {
+            int n = count;
+            if (n == 0) {
+                return null;
+            }
+            PayloadData data = items[--n];
+            items[n] = null;
+            COUNT.lazySet(this, n);
+            return data;
+        }
+
+        void push(PayloadData data) {
+            int n = count;
+            items[n] = data;
+            COUNT.lazySet(this, n + 1);
+        }
+
+        int refill(MpmcArrayQueue<PayloadData> depot) {
+            int n = count;
+            int moved = 0;
+            while (moved < MAGAZINE_BATCH) {
+                PayloadData data = depot.relaxedPoll();
+                if (data == null) {
+                    break;
+                }
+                items[n++] = data;
+                moved++;
+            }
+            COUNT.lazySet(this, n);
+            return moved;
+        }
+
+        /**
+         * Moves up to batch objects to the depot
+         */
+        int spill(MpmcArrayQueue<PayloadData> depot, int maxPoolSize, int batch) {
+            int moved = 0;
+            if (depot.size() >= maxPoolSize) {
+                return moved;
+            }
+            int n = count;
+            while (moved < batch && n > 0) {
+                if (!depot.relaxedOffer(items[n - 1])) {
+                    break;
+                }
+                items[--n] = null;
+                moved++;
+            }
+            COUNT.lazySet(this, n);
+            return moved;
+        }
+
+        void discard() {
+            int n = count;
+            for (int i = 0; i < n; i++) {
+                items[i] = null;
+            }
+            COUNT.lazySet(this, 0);
+        }
     }
     
     /**
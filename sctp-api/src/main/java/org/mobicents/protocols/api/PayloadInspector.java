@@ -0,0 +1,51 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+/**
+ * Optional tracing hook invoked by the stack after a PayloadData has been
+ * written to the underlying socket. It is only called when an inspector is
+ * registered, so the transmit path costs nothing when tracing is off.
+ * 
+ * Implementations must not allocate on this path nor change the reader/writer
+ * indexes of the payload: fields have to be read in place with the absolute
+ * getters of {@link PayloadData#getByteBuf()} (getInt(index),
+ * getUnsignedInt(index)...). They are called from the I/O thread and must
+ * return quickly.
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public interface PayloadInspector {
+
+    /**
+     * Invoked once the whole payload has been sent over the association
+     * 
+     * @param association
+     * @param payloadData
+     *            the transmitted data, its ByteBuf still holds the sent bytes
+     *            from readerIndex to writerIndex
+     */
+    public void onPayloadSent(Association association, PayloadData payloadData);
+
+}
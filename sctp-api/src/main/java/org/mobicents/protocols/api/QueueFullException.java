@@ -0,0 +1,51 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+/**
+ * Thrown by {@link Association#send(PayloadData)} when the outbound queue of
+ * the Association has no room for the message. It extends
+ * IllegalStateException, which send() used to throw on a full queue
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class QueueFullException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final SendStatus sendStatus;
+
+    public QueueFullException(String message, SendStatus sendStatus) {
+        super(message);
+        this.sendStatus = sendStatus;
+    }
+
+    /**
+     * @return {@link SendStatus#QUEUE_FULL} or {@link SendStatus#TIMEOUT} if
+     *         the sender was blocked for the whole block timeout
+     */
+    public SendStatus getSendStatus() {
+        return sendStatus;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+/**
+ * Result of {@link Association#trySend(PayloadData)}
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public enum SendStatus {
+    /**
+     * The message is queued for sending
+     */
+    QUEUED,
+    /**
+     * The message is queued for sending, older queued messages were dropped to
+     * make room for it
+     */
+    DROPPED_OLDEST,
+    /**
+     * The outbound queue is full, the message is not queued
+     */
+    QUEUE_FULL,
+    /**
+     * The outbound queue stayed full for the whole block timeout, the message
+     * is not queued
+     */
+    TIMEOUT,
+    /**
+     * The Association is not started or its channel is down, the message is
+     * not queued
+     */
+    NOT_CONNECTED;
+
+    /**
+     * @return true if the message was accepted for sending
+     */
+    public boolean isQueued() {
+        return this == QUEUED || this == DROPPED_OLDEST;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+/**
+ * Traffic counters of a single stream of an {@link Association}, see
+ * {@link AssociationStatistics#getStreams()}
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class StreamStatistics {
+
+    private final int streamNumber;
+    private final long rxMessages;
+    private final long rxBytes;
+    private final long txMessages;
+    private final long txBytes;
+
+    public StreamStatistics(int streamNumber, long rxMessages, long rxBytes, long txMessages, long txBytes) {
+        this.streamNumber = streamNumber;
+        this.rxMessages = rxMessages;
+        this.rxBytes = rxBytes;
+        this.txMessages = txMessages;
+        this.txBytes = txBytes;
+    }
+
+    public int getStreamNumber() {
+        return streamNumber;
+    }
+
+    /**
+     * @return number of messages received on this stream
+     */
+    public long getRxMessages() {
+        return rxMessages;
+    }
+
+    /**
+     * @return number of payload bytes received on this stream
+     */
+    public long getRxBytes() {
+        return rxBytes;
+    }
+
+    /**
+     * @return number of messages sent on this stream
+     */
+    public long getTxMessages() {
+        return txMessages;
+    }
+
+    /**
+     * @return number of payload bytes sent on this stream
+     */
+    public long getTxBytes() {
+        return txBytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("StreamStatistics[stream=%d, rxMessages=%d, rxBytes=%d, txMessages=%d, txBytes=%d]", streamNumber,
+                rxMessages, rxBytes, txMessages, txBytes);
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mobicents.protocols.api.PayloadDataPool.PoolStatistics;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link PayloadDataPool}: concurrent and cross-thread acquire/release,
+ * clear() and the reclaim of the magazines of terminated threads
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class PayloadDataPoolTest {
+
+    private static final int POOL_SIZE = 1024;
+
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 10000;
+    private static final int HELD = 16;
+
+    @Test(groups = { "functional" })
+    public void testConcurrentAcquireRelease() throws Exception {
+        final PayloadDataPool pool = new PayloadDataPool(POOL_SIZE, true, false);
+        final AtomicInteger duplicates = new AtomicInteger(0);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    PayloadData[] held = new PayloadData[HELD];
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        // the stream number marks the holder: an object handed
+                        // out twice would be overwritten by the other thread
+                        int n = i % HELD + 1;
+                        for (int j = 0; j < n; j++) {
+                            held[j] = pool.acquire(0, null, true, false, 0, thread * HELD + j);
+                        }
+                        Thread.yield();
+                        for (int j = 0; j < n; j++) {
+                            if (held[j].getStreamNumber() != thread * HELD + j) {
+                                duplicates.incrementAndGet();
+                            }
+                            pool.release(held[j]);
+                            held[j] = null;
+                        }
+                    }
+                }
+            }, "pool-" + t);
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(30000);
+        }
+
+        assertEquals(0, duplicates.get());
+        long total = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            total += i % HELD + 1;
+        }
+        total *= THREADS;
+        PoolStatistics statistics = pool.getStatistics();
+        assertEquals(total, statistics.acquired + statistics.missed);
+        assertEquals(total, statistics.released);
+    }
+
+    @Test(groups = { "functional" })
+    public void testCrossThreadRelease() throws Exception {
+        final PayloadDataPool pool = new PayloadDataPool(POOL_SIZE, true, false);
+        final BlockingQueue<PayloadData> queue = new ArrayBlockingQueue<PayloadData>(POOL_SIZE / 4);
+        final int messages = 100 * POOL_SIZE;
+
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < messages; i++) {
+                        queue.put(pool.acquireTcp(0, null));
+                    }
+                } catch (InterruptedException e) {
+                }
+            }
+        }, "producer");
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < messages; i++) {
+                        pool.release(queue.take());
+                    }
+                } catch (InterruptedException e) {
+                }
+            }
+        }, "consumer");
+        producer.start();
+        consumer.start();
+        producer.join(30000);
+        consumer.join(30000);
+
+        // the objects released by the consumer flow back to the producer
+        // through the depot
+        PoolStatistics statistics = pool.getStatistics();
+        assertEquals(messages, statistics.acquired);
+        assertEquals(0, statistics.missed);
+        assertEquals(messages, statistics.released);
+        assertEquals(POOL_SIZE, pool.getPoolSize());
+    }
+
+    @Test(groups = { "functional" })
+    public void testClear() throws Exception {
+        final PayloadDataPool pool = new PayloadDataPool(POOL_SIZE, true, false);
+
+        // another thread keeps objects in its magazine across the clear()
+        final CountDownLatch filled = new CountDownLatch(1);
+        final CountDownLatch cleared = new CountDownLatch(1);
+        final long[] missed = new long[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                pool.release(pool.acquireTcp(0, null));
+                filled.countDown();
+                try {
+                    cleared.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long before = pool.getStatistics().missed;
+                pool.release(pool.acquireTcp(0, null));
+                missed[0] = pool.getStatistics().missed - before;
+            }
+        }, "magazine-owner");
+        thread.start();
+        assertTrue(filled.await(5, TimeUnit.SECONDS));
+
+        pool.release(pool.acquireTcp(0, null));
+        assertEquals(0, pool.getStatistics().missed);
+        pool.clear();
+
+        // the magazine of the calling thread is dropped with the depot
+        pool.acquireTcp(0, null);
+        assertEquals(1, pool.getStatistics().missed);
+
+        // and so is the one of the other thread at its next use
+        cleared.countDown();
+        thread.join(5000);
+        assertEquals(1, missed[0]);
+        assertEquals(2, pool.getStatistics().missed);
+    }
+
+    @Test(groups = { "functional" })
+    public void testTerminatedThreadReclaim() throws Exception {
+        final PayloadDataPool pool = new PayloadDataPool(POOL_SIZE, true, false);
+        final int threads = 20;
+        final int held = 10;
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                PayloadData[] data = new PayloadData[held];
+                for (int i = 0; i < held; i++) {
+                    data[i] = pool.acquireTcp(0, null);
+                }
+                for (int i = 0; i < held; i++) {
+                    pool.release(data[i]);
+                }
+            }
+        };
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(task, "short-lived-" + i);
+            thread.start();
+            thread.join(5000);
+        }
+
+        // each new thread reclaims the magazines of the terminated ones: only
+        // the one of the last thread is left, with its objects and the
+        // statistics of all the threads
+        assertEquals(1, pool.getMagazineCount());
+        assertEquals(POOL_SIZE, pool.getPoolSize());
+        PoolStatistics statistics = pool.getStatistics();
+        assertEquals(threads * held, statistics.acquired);
+        assertEquals(threads * held, statistics.released);
+        assertEquals(0, statistics.missed);
+
+        pool.clear();
+        assertEquals(0, pool.getMagazineCount());
+        assertEquals(0, pool.getPoolSize());
+        assertEquals(threads * held, pool.getStatistics().acquired);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link PayloadData#reset(int, ByteBuf, boolean, boolean, int, int)} and
+ * {@link PayloadData#clear()}, the per message work of a pooled PayloadData,
+ * against the allocation of a new one
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PayloadDataBenchmark {
+
+    private static final int DATA_LENGTH = 256;
+
+    // clear() releases the ByteBuf of a PayloadData, this one survives it
+    private final ByteBuf byteBuf = Unpooled.unreleasableBuffer(Unpooled.directBuffer(DATA_LENGTH).writeZero(DATA_LENGTH));
+
+    private final PayloadData payloadData = new PayloadData();
+
+    @Benchmark
+    public PayloadData reset() {
+        this.payloadData.reset(DATA_LENGTH, this.byteBuf, true, false, 3, 1);
+        return this.payloadData;
+    }
+
+    @Benchmark
+    public PayloadData resetClear() {
+        this.payloadData.reset(DATA_LENGTH, this.byteBuf, true, false, 3, 1);
+        this.payloadData.clear();
+        return this.payloadData;
+    }
+
+    @Benchmark
+    public PayloadData allocate() {
+        return new PayloadData(DATA_LENGTH, this.byteBuf, true, false, 3, 1);
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.api;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * {@link PayloadDataPool#acquire(int, ByteBuf, boolean, boolean, int, int)} /
+ * {@link PayloadDataPool#release(PayloadData)} with 1, 4 and as many threads
+ * as there are CPUs. A disabled pool allocates a new PayloadData per acquire
+ * and is the baseline of the pooled figures.
+ * </p>
+ * <p>
+ * The burst benchmarks hold more PayloadData than a thread magazine takes,
+ * so the magazines are spilled to and refilled from the shared depot.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadDataPoolBenchmark {
+
+    private static final int DATA_LENGTH = 256;
+
+    // more than a magazine holds
+    private static final int BURST = 256;
+
+    @Param({ "true", "false" })
+    public boolean enabled;
+
+    private PayloadDataPool pool;
+
+    // release() releases the ByteBuf of a PayloadData, this one survives it
+    private ByteBuf byteBuf;
+
+    @State(Scope.Thread)
+    public static class Burst {
+        private final PayloadData[] payloadData = new PayloadData[BURST];
+    }
+
+    @Setup
+    public void setUp() {
+        this.pool = new PayloadDataPool(PayloadDataPool.DEFAULT_POOL_SIZE_500K, this.enabled, false);
+        this.byteBuf = Unpooled.unreleasableBuffer(Unpooled.directBuffer(DATA_LENGTH).writeZero(DATA_LENGTH));
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.pool.clear();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public PayloadData acquireRelease1Thread() {
+        return this.acquireRelease();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PayloadData acquireRelease4Threads() {
+        return this.acquireRelease();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public PayloadData acquireReleaseMaxThreads() {
+        return this.acquireRelease();
+    }
+
+    @Benchmark
+    @Threads(1)
+    @OperationsPerInvocation(BURST)
+    public PayloadData[] burst1Thread(Burst burst) {
+        return this.burst(burst.payloadData);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    @OperationsPerInvocation(BURST)
+    public PayloadData[] burstMaxThreads(Burst burst) {
+        return this.burst(burst.payloadData);
+    }
+
+    private PayloadData acquireRelease() {
+        PayloadData payloadData = this.pool.acquireSctp(DATA_LENGTH, this.byteBuf, true, false, 1);
+        this.pool.release(payloadData);
+        return payloadData;
+    }
+
+    private PayloadData[] burst(PayloadData[] payloadData) {
+        for (int i = 0; i < payloadData.length; i++) {
+            payloadData[i] = this.pool.acquireSctp(DATA_LENGTH, this.byteBuf, true, false, 1);
+        }
+        for (int i = 0; i < payloadData.length; i++) {
+            this.pool.release(payloadData[i]);
+        }
+        return payloadData;
+    }
+}
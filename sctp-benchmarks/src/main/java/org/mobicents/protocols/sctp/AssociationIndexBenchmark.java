@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.IpChannelType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Cost of matching an incoming connection with its provisioned SERVER
+ * Association versus the number of provisioned Associations.
+ * </p>
+ * <p>
+ * {@link #lookup()} goes through the {@link AssociationIndex} the NIO and the
+ * netty Management use, {@link #scan()} compares the remote peer with each
+ * provisioned Association in turn as the accept handling did before the
+ * index and is the baseline.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AssociationIndexBenchmark {
+
+    private static final String SERVER_NAME = "server";
+    private static final int PEER_PORT = 2905;
+
+    // remote peers connecting in turn
+    private static final int PEERS = 1024;
+
+    @Param({ "10", "100", "1000", "10000" })
+    public int associations;
+
+    private final AssociationIndex associationIndex = new AssociationIndex();
+    private final List<Association> provisioned = new ArrayList<Association>();
+
+    private InetAddress[] peerAddresses;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        for (int i = 0; i < this.associations; i++) {
+            AssociationImpl association = new AssociationImpl(peerAddress(i), PEER_PORT, SERVER_NAME, "association" + i,
+                    IpChannelType.SCTP);
+            this.associationIndex.add(association, association.getPeerAddressKeys());
+            this.provisioned.add(association);
+        }
+
+        Random random = new Random(0);
+        this.peerAddresses = new InetAddress[PEERS];
+        for (int i = 0; i < PEERS; i++) {
+            this.peerAddresses[i] = InetAddress.getByName(peerAddress(random.nextInt(this.associations)));
+        }
+    }
+
+    private static String peerAddress(int i) {
+        return String.format("10.%d.%d.%d", (i >>> 16) & 0xFF, (i >>> 8) & 0xFF, i & 0xFF);
+    }
+
+    private InetAddress nextPeerAddress() {
+        this.next = (this.next + 1) & (PEERS - 1);
+        return this.peerAddresses[this.next];
+    }
+
+    @Benchmark
+    public Association lookup() {
+        return this.associationIndex.lookup(SERVER_NAME, this.nextPeerAddress(), PEER_PORT);
+    }
+
+    @Benchmark
+    public Association scan() {
+        InetAddress peerAddress = this.nextPeerAddress();
+        for (Association association : this.provisioned) {
+            if (SERVER_NAME.equals(association.getServerName())) {
+                if (PEER_PORT == association.getPeerPort() && peerAddress.getHostAddress().equals(association.getPeerAddress())) {
+                    return association;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Buffer handling of {@link PooledNioSctpChannel#doWriteMessage(Object,
+ * io.netty.channel.ChannelOutboundBuffer)} for each kind of message content:
+ * a direct buffer is sent from its own memory, heap and composite buffers are
+ * copied into the ThreadLocal output buffer first. The send() itself needs an
+ * SCTP socket and is left out.
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OutgoingBufferBenchmark {
+
+    @Param({ "DIRECT", "HEAP", "COMPOSITE" })
+    public String bufferType;
+
+    @Param({ "64", "512", "4096", "16384" })
+    public int dataLength;
+
+    private ByteBuf data;
+
+    @Setup
+    public void setUp() {
+        PooledByteBufAllocator allocator = PooledByteBufAllocator.DEFAULT;
+        if ("DIRECT".equals(this.bufferType)) {
+            this.data = allocator.directBuffer(this.dataLength).writeZero(this.dataLength);
+        } else if ("HEAP".equals(this.bufferType)) {
+            this.data = allocator.heapBuffer(this.dataLength).writeZero(this.dataLength);
+        } else {
+            // e.g. a header and a payload written as one message
+            int headerLength = Math.min(16, this.dataLength / 2);
+            CompositeByteBuf composite = allocator.compositeDirectBuffer(2);
+            composite.addComponent(true, allocator.directBuffer(headerLength).writeZero(headerLength));
+            composite.addComponent(true, allocator.directBuffer(this.dataLength - headerLength).writeZero(this.dataLength - headerLength));
+            this.data = composite;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.data.release();
+    }
+
+    @Benchmark
+    public ByteBuffer outgoingNioBuffer() {
+        return PooledNioSctpChannel.outgoingNioBuffer(this.data, this.dataLength);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+
+/**
+ * XML persistence of large configurations: the write of the
+ * {@link SctpPersistData} done by {@link NettySctpManagementImpl#store()} and
+ * its read done by {@link NettySctpManagementImpl#load()}. The configuration
+ * is built directly, a Management would store it again at each added
+ * Association.
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class XmlPersistenceBenchmark {
+
+    private static final int SERVERS = 16;
+
+    @Param({ "100", "1000", "10000" })
+    public int associations;
+
+    private final XmlMapper xmlMapper = NettySctpXMLBinding.getXmlMapper();
+
+    private SctpPersistData persistData;
+    private File storeFile;
+    private File loadFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<NettyServerImpl> servers = new ArrayList<NettyServerImpl>();
+        for (int i = 0; i < SERVERS; i++) {
+            servers.add(new NettyServerImpl("server" + i, "127.0.0.1", 2905 + i, IpChannelType.SCTP, false, 0,
+                    new String[] { "127.0.0.2" }));
+        }
+
+        // half of the Associations are bound to a server, half are clients
+        List<NettyAssociationImpl> associationList = new ArrayList<NettyAssociationImpl>();
+        for (int i = 0; i < this.associations; i++) {
+            String peerAddress = String.format("10.%d.%d.%d", (i >>> 16) & 0xFF, (i >>> 8) & 0xFF, i & 0xFF);
+            String name = "association" + i;
+            if (i % 2 == 0) {
+                NettyServerImpl server = servers.get(i % SERVERS);
+                associationList.add(new NettyAssociationImpl(peerAddress, 2905, server.getName(), name, IpChannelType.SCTP));
+                server.associations.add(name);
+            } else {
+                associationList.add(new NettyAssociationImpl("127.0.0.1", 10000 + i, peerAddress, 2905, name, IpChannelType.SCTP,
+                        null));
+            }
+        }
+
+        this.persistData = new SctpPersistData();
+        this.persistData.setConnectDelay(30000);
+        this.persistData.setSelectorThreads(4);
+        this.persistData.setServers(new CopyOnWriteArrayList<Server>(servers));
+        this.persistData.setAssociations(associationList);
+
+        this.storeFile = File.createTempFile("benchmark_store_", "_sctp.xml");
+        this.loadFile = File.createTempFile("benchmark_load_", "_sctp.xml");
+        this.xmlMapper.writeValue(this.loadFile, this.persistData);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.storeFile.delete();
+        this.loadFile.delete();
+    }
+
+    @Benchmark
+    public File store() throws Exception {
+        this.xmlMapper.writeValue(this.storeFile, this.persistData);
+        return this.storeFile;
+    }
+
+    @Benchmark
+    public SctpPersistData load() throws Exception {
+        return this.xmlMapper.readValue(this.loadFile, SctpPersistData.class);
+    }
+}
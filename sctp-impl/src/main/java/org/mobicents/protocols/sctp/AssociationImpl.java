@@ -29,9 +29,8 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -41,24 +40,35 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
-import org.jctools.queues.MpscArrayQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.RejectedExecutionException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+import org.jctools.queues.MessagePassingQueue;
+import org.jctools.queues.MpmcArrayQueue;
 import org.jctools.queues.MpscArrayQueue;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 
+import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.Association;
 import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.AssociationStatistics;
 import org.mobicents.protocols.api.AssociationType;
+import org.mobicents.protocols.api.CongestionListener;
 import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.LatencyHistogram;
 import org.mobicents.protocols.api.ManagementEventListener;
+import org.mobicents.protocols.api.OverflowPolicy;
 import org.mobicents.protocols.api.PayloadData;
 import org.mobicents.protocols.api.PayloadDataPool;
+import org.mobicents.protocols.api.PayloadInspector;
+import org.mobicents.protocols.api.QueueFullException;
+import org.mobicents.protocols.api.SendStatus;
 
 import com.sun.nio.sctp.MessageInfo;
 import com.sun.nio.sctp.SctpChannel;
@@ -72,6 +82,15 @@ public class AssociationImpl implements Association {
 
     protected static final Logger logger = Logger.getLogger(AssociationImpl.class.getName());
 
+    // Min nanoseconds between two txQueue delay samples
+    private static final long CONG_PROBE_INTERVAL = 500000000L;
+
+    public static final int DEFAULT_TX_QUEUE_CAPACITY = 8192;
+
+    // Nanoseconds a sender blocked on a full txQueue (OverflowPolicy.BLOCK)
+    // parks before checking again
+    private static final long TX_BLOCK_PARK = 100000L;
+
     @JacksonXmlProperty(isAttribute = true)
     private String hostAddress;
     
@@ -92,9 +111,34 @@ public class AssociationImpl implements Association {
     
     @JacksonXmlProperty(isAttribute = true)
     private IpChannelType ipChannelType;
+
+    // Outbound capacity and what send() does once it is reached
+    @JacksonXmlProperty(isAttribute = true)
+    private int txQueueCapacity = DEFAULT_TX_QUEUE_CAPACITY;
+
+    @JacksonXmlProperty(isAttribute = true)
+    private long txQueueMaxBytes = 0;
+
+    @JacksonXmlProperty(isAttribute = true)
+    private OverflowPolicy txOverflowPolicy = OverflowPolicy.REJECT;
+
+    @JacksonXmlProperty(isAttribute = true)
+    private long txBlockTimeout = 0;
+
+    // Queued bytes at which the Association turns unwritable and writable
+    // again
+    @JacksonXmlProperty(isAttribute = true)
+    private volatile int writeBufferLowWaterMark = CongestionControl.DEFAULT_WRITE_BUFFER_LOW_WATER_MARK;
+
+    @JacksonXmlProperty(isAttribute = true)
+    private volatile int writeBufferHighWaterMark = CongestionControl.DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK;
     
     private String[] extraHostAddresses;
     private String[] extraPeerHostAddresses;
+
+    // binary form of peerAddress + extraPeerHostAddresses, see getPeerAddressKeys()
+    @JsonIgnore
+    private volatile PeerAddressKey[] peerAddressKeys;
     
     @JsonIgnore
     private ServerImpl server; // this is filled only for anonymous Associations
@@ -125,11 +169,48 @@ public class AssociationImpl implements Association {
     @JsonIgnore
     protected volatile boolean up = false;
 
+    // Stream to WorkerThread mapping in multi-thread mode, replaced at each
+    // COMM_UP
+    @JsonIgnore
+    private volatile StreamWorkerMap streamWorkerMap = null;
+
+    // Set while received messages wait in the StreamWorkerMap for a worker
+    // and the Association is in the dispatch backlog of its SelectorThread.
+    // Selector thread only
+    @JsonIgnore
+    private boolean dispatchBacklogged;
+
+    // Set while OP_READ is cleared as too many received messages wait for a
+    // worker. Selector thread only
+    @JsonIgnore
+    private boolean readSuspended;
+
+    // Single consumer (the SelectorThread) unless OverflowPolicy.DROP_OLDEST
+    // lets senders poll the oldest messages too, see createTxQueue()
+    @JsonIgnore
+    private MessagePassingQueue<PayloadData> txQueue = new MpscArrayQueue<>(DEFAULT_TX_QUEUE_CAPACITY);
+
+    // Bytes queued in txQueue
+    @JsonIgnore
+    private final AtomicLong txQueueBytes = new AtomicLong();
+
+    // Cleared once txQueueBytes exceeds writeBufferHighWaterMark, set again
+    // once it drops below writeBufferLowWaterMark
+    @JsonIgnore
+    private final AtomicBoolean writable = new AtomicBoolean(true);
+
+    // Messages dropped by OverflowPolicy.DROP_OLDEST
+    @JsonIgnore
+    private final AtomicLong txDropped = new AtomicLong();
+
     @JsonIgnore
-    private int workerThreadTable[] = null;
+    private final TrafficCounters trafficCounters = new TrafficCounters();
 
     @JsonIgnore
-    private MpscArrayQueue<PayloadData> txQueue = new MpscArrayQueue<>(8192);
+    private final LatencyRecorder txLatency = new LatencyRecorder();
+
+    @JsonIgnore
+    private final LatencyRecorder rxLatency = new LatencyRecorder();
 
     @JsonIgnore
     private ManagementImpl management;
@@ -140,12 +221,47 @@ public class AssociationImpl implements Association {
     @JsonIgnore
     private SocketChannel socketChannelTcp;
 
-    // The buffer into which we'll read data when it's available
+    // The buffer into which we'll read data when it's available (copy receive
+    // mode only)
     @JsonIgnore
     private ByteBuffer rxBuffer;
 
+    // Size of the next pooled receive ByteBuf (zero-copy receive mode only)
+    @JsonIgnore
+    private ReceiveBufferSizePredictor rxSizePredictor;
+
+    // Messages polled from txQueue but not fully written yet, only touched by
+    // the selector thread. SCTP keeps a single message, TCP a gathering batch
+    @JsonIgnore
+    private PayloadData txPending;
+
+    @JsonIgnore
+    private PayloadData[] txBatch;
+
+    @JsonIgnore
+    private ByteBuffer[] txBatchBuffers;
+
+    @JsonIgnore
+    private int txBatchHead;
+
+    @JsonIgnore
+    private int txBatchTail;
+
+    // Outgoing MessageInfo cached per stream (SCTP only)
+    @JsonIgnore
+    private MessageInfo[] txMessageInfos;
+
     @JsonIgnore
-    private volatile MessageInfo msgInfo;
+    private SocketAddress txMessageInfoAddress;
+
+    @JsonIgnore
+    private long txWriteCalls;
+
+    // Set by the first send() after the txQueue has been drained: only this one
+    // queues a CHANGEOPS request and wakes up the selector. Cleared by the
+    // selector thread once it switches back to OP_READ
+    @JsonIgnore
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
 
     /**
      * Count of number of IO Errors occurred. If this exceeds the maxIOErrors set
@@ -155,11 +271,51 @@ public class AssociationImpl implements Association {
     @JsonIgnore
     private volatile int ioErrors = 0;
 
+    // The last CONNECT request queued by scheduleConnect(), older ones are
+    // ignored by the SelectorThread
+    @JsonIgnore
+    private volatile ChangeRequest scheduledConnect;
+
+    // Outgoing congestion: the level is the highest of the txQueue occupancy
+    // level and of the txQueue delay level
+    @JsonIgnore
+    private volatile int congLevel = 0;
+
+    @JsonIgnore
+    private volatile int queueCongLevel = 0;
+
+    @JsonIgnore
+    private volatile int delayCongLevel = 0;
+
+    @JsonIgnore
+    private final Object congLock = new Object();
+
+    // At most one queued message is sampled at a time to measure how long
+    // messages wait in the txQueue
+    @JsonIgnore
+    private volatile PayloadData congProbe;
+
+    @JsonIgnore
+    private volatile long congProbeTime;
+
+    @JsonIgnore
+    private volatile long lastCongProbeTime;
+
+    // SelectorThread doing connect, read and write for this Association while
+    // it is started
+    @JsonIgnore
+    private volatile SelectorThread selectorThread;
+
     public AssociationImpl() {
         super();
     }
 
     protected void initChannels() {
+        if (management.isZeroCopyReceive()) {
+            rxSizePredictor = new ReceiveBufferSizePredictor(management.getBufferSize());
+            return;
+        }
+
         rxBuffer = ByteBuffer.allocateDirect(management.getBufferSize());
         // clean receiver buffer
         ((Buffer) rxBuffer).clear();
@@ -238,6 +394,8 @@ public class AssociationImpl implements Association {
             throw new NullPointerException(String.format("AssociationListener is null for Association=%s", getAssociationName()));
         }
 
+        this.selectorThread = this.management.assignSelectorThread(this);
+
         if (this.type == AssociationType.CLIENT) {
             this.scheduleConnect();
         }
@@ -273,17 +431,30 @@ public class AssociationImpl implements Association {
             }
         }
 
+        SelectorThread selectorThread = this.selectorThread;
+        if (selectorThread == null) {
+            return;
+        }
+        this.selectorThread = null;
+
         if (this.getSocketChannel() != null && this.getSocketChannel().isOpen()) {
-            MpscArrayQueue<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-            synchronized (pendingChanges) {
-                // Indicate we want the interest ops set changed
-                pendingChanges.add(new ChangeRequest(getSocketChannel(), this, ChangeRequest.CLOSE, -1));
-            }
+            // Indicate we want the interest ops set changed
+            selectorThread.addChangeRequest(new ChangeRequest(getSocketChannel(), this, ChangeRequest.CLOSE, -1));
 
             // Finally, wake up our selecting thread so it can make the required
             // changes
-            this.management.getSocketSelector().wakeup();
+            selectorThread.wakeup();
         }
+
+        this.management.releaseSelectorThread(selectorThread);
+    }
+
+    /**
+     * @return the SelectorThread this Association is assigned to, null if
+     *         the Association is not started
+     */
+    protected SelectorThread getSelectorThread() {
+        return this.selectorThread;
     }
 
     public void acceptAnonymousAssociation(AssociationListener associationListener) throws Exception {
@@ -451,6 +622,7 @@ public class AssociationImpl implements Association {
      */
     public void setPeerAddress(String peerAddress) {
         this.peerAddress = peerAddress;
+        this.peerAddressKeys = null;
     }
 
     /**
@@ -497,6 +669,158 @@ public class AssociationImpl implements Association {
 
     public void setExtraPeerHostAddresses(String[] extraPeerHostAddresses) {
         this.extraPeerHostAddresses = extraPeerHostAddresses;
+        this.peerAddressKeys = null;
+
+        // a multihomed peer may connect from any of its addresses
+        if (this.management != null && this.management.associations.get(this.name) == this) {
+            this.management.associationIndex.add(this, this.getPeerAddressKeys());
+        }
+    }
+
+    /**
+     * @return the pre-parsed primary and extra peer addresses used to match
+     *         incoming connections, the primary peer address comes first
+     */
+    @JsonIgnore
+    public PeerAddressKey[] getPeerAddressKeys() {
+        PeerAddressKey[] keys = this.peerAddressKeys;
+        if (keys == null) {
+            keys = PeerAddressKey.valueOf(this.peerAddress, this.extraPeerHostAddresses);
+            this.peerAddressKeys = keys;
+        }
+        return keys;
+    }
+
+    /**
+     * @return the max number of messages waiting in the txQueue
+     */
+    public int getTxQueueCapacity() {
+        return txQueueCapacity;
+    }
+
+    /**
+     * @param txQueueCapacity
+     *            the max number of messages waiting in the txQueue, rounded up
+     *            to a power of 2. Can only be changed while the Association is
+     *            stopped
+     */
+    public void setTxQueueCapacity(int txQueueCapacity) throws Exception {
+        this.checkTxQueueModifiable();
+        if (txQueueCapacity <= 0) {
+            throw new Exception(String.format("txQueueCapacity must be positive, passed value=%d", txQueueCapacity));
+        }
+        this.txQueueCapacity = txQueueCapacity;
+        this.txQueue = this.createTxQueue();
+    }
+
+    /**
+     * @return the max number of bytes waiting in the txQueue, 0 if only the
+     *         number of messages is limited
+     */
+    public long getTxQueueMaxBytes() {
+        return txQueueMaxBytes;
+    }
+
+    /**
+     * @param txQueueMaxBytes
+     *            the max number of bytes waiting in the txQueue, 0 for no limit.
+     *            Can only be changed while the Association is stopped
+     */
+    public void setTxQueueMaxBytes(long txQueueMaxBytes) throws Exception {
+        this.checkTxQueueModifiable();
+        if (txQueueMaxBytes < 0) {
+            throw new Exception(String.format("txQueueMaxBytes must not be negative, passed value=%d", txQueueMaxBytes));
+        }
+        this.txQueueMaxBytes = txQueueMaxBytes;
+    }
+
+    /**
+     * @return what send() and trySend() do when the txQueue is full
+     */
+    public OverflowPolicy getTxOverflowPolicy() {
+        return txOverflowPolicy;
+    }
+
+    /**
+     * @param txOverflowPolicy
+     *            what send() and trySend() do when the txQueue is full. Can
+     *            only be changed while the Association is stopped
+     */
+    public void setTxOverflowPolicy(OverflowPolicy txOverflowPolicy) throws Exception {
+        this.checkTxQueueModifiable();
+        if (txOverflowPolicy == null) {
+            throw new Exception("txOverflowPolicy must not be null");
+        }
+        this.txOverflowPolicy = txOverflowPolicy;
+        this.txQueue = this.createTxQueue();
+    }
+
+    /**
+     * @return milliseconds a sender waits for room in a full txQueue with
+     *         {@link OverflowPolicy#BLOCK}
+     */
+    public long getTxBlockTimeout() {
+        return txBlockTimeout;
+    }
+
+    /**
+     * @param txBlockTimeout
+     *            milliseconds a sender waits for room in a full txQueue with
+     *            {@link OverflowPolicy#BLOCK}. Can only be changed while the
+     *            Association is stopped
+     */
+    public void setTxBlockTimeout(long txBlockTimeout) throws Exception {
+        this.checkTxQueueModifiable();
+        if (txBlockTimeout < 0) {
+            throw new Exception(String.format("txBlockTimeout must not be negative, passed value=%d", txBlockTimeout));
+        }
+        this.txBlockTimeout = txBlockTimeout;
+    }
+
+    /**
+     * @return the queued bytes above which the Association turns unwritable
+     */
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    /**
+     * @return the queued bytes below which an unwritable Association turns
+     *         writable again
+     */
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
+
+    /**
+     * @return the number of messages dropped by {@link OverflowPolicy#DROP_OLDEST}
+     */
+    @JsonIgnore
+    public long getTxDropped() {
+        return this.txDropped.get();
+    }
+
+    private void checkTxQueueModifiable() throws Exception {
+        if (this.started) {
+            throw new Exception(String.format("txQueue parameters of Association=%s can not be changed while it is started",
+                getAssociationName()));
+        }
+    }
+
+    private MessagePassingQueue<PayloadData> createTxQueue() {
+        // with DROP_OLDEST senders poll too
+        if (this.txOverflowPolicy == OverflowPolicy.DROP_OLDEST)
+            return new MpmcArrayQueue<PayloadData>(Math.max(this.txQueueCapacity, 2));
+        else
+            return new MpscArrayQueue<PayloadData>(this.txQueueCapacity);
     }
 
     /**
@@ -525,37 +849,271 @@ public class AssociationImpl implements Association {
     }
 
     public void send(PayloadData payloadData) throws Exception {
+        this.checkSocketIsOpen(1);
+
+        this.enqueueOrThrow(payloadData);
+        this.scheduleWrite();
+    }
+
+    @Override
+    public SendStatus trySend(PayloadData payloadData) {
+        if (!this.isSocketOpen()) {
+            this.trafficCounters.onTxFailure(1);
+            return SendStatus.NOT_CONNECTED;
+        }
+
+        SendStatus sendStatus = this.enqueue(payloadData);
+        if (sendStatus.isQueued()) {
+            this.scheduleWrite();
+        }
+        return sendStatus;
+    }
+
+    /**
+     * Queues the message without waking up the SelectorThread, a write that is
+     * already scheduled may still pick it up
+     */
+    @Override
+    public void write(PayloadData payloadData) throws Exception {
+        this.checkSocketIsOpen(1);
+
+        this.enqueueOrThrow(payloadData);
+    }
+
+    @Override
+    public void flush() throws Exception {
         this.checkSocketIsOpen();
 
-        MpscArrayQueue<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-        synchronized (pendingChanges) {
+        if (!this.txQueue.isEmpty()) {
+            this.scheduleWrite();
+        }
+    }
+
+    @Override
+    public void sendBatch(PayloadData[] payloadData) throws Exception {
+        this.checkSocketIsOpen(payloadData.length);
+
+        try {
+            for (int i = 0; i < payloadData.length; i++) {
+                this.enqueueOrThrow(payloadData[i]);
+            }
+        } finally {
+            this.scheduleWrite();
+        }
+    }
+
+    @Override
+    public void sendBatch(List<PayloadData> payloadData) throws Exception {
+        this.checkSocketIsOpen(payloadData.size());
+
+        try {
+            for (int i = 0; i < payloadData.size(); i++) {
+                this.enqueueOrThrow(payloadData.get(i));
+            }
+        } finally {
+            this.scheduleWrite();
+        }
+    }
 
-			// Indicate we want the interest ops set changed
-			pendingChanges.relaxedOffer(new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.CHANGEOPS,
-				SelectionKey.OP_WRITE));
+    private void enqueueOrThrow(PayloadData payloadData) throws QueueFullException {
+        SendStatus sendStatus = this.enqueue(payloadData);
+        if (!sendStatus.isQueued()) {
+            throw new QueueFullException(String.format(
+                "txQueue is full for Association=%s, %d messages and %d bytes queued, message is rejected (%s)",
+                getAssociationName(), this.txQueue.size(), this.txQueueBytes.get(), sendStatus), sendStatus);
+        }
+    }
 
-            // And queue the data we want written
-            // TODO Do we need to synchronize ConcurrentLinkedQueue ?
-            // synchronized (this.txQueue) {
-            this.txQueue.add(payloadData);
+    /**
+     * Queues the message applying the txOverflowPolicy if the txQueue is full
+     */
+    private SendStatus enqueue(PayloadData payloadData) {
+        if (this.management.isLatencyRecordingEnabled()) {
+            payloadData.setTimestamp(System.nanoTime());
         }
 
+        // The probe must be set before the message is visible to the selector
+        // thread
+        boolean probe = this.sampleTxQueueDelay(payloadData);
+
+        SendStatus sendStatus = SendStatus.QUEUED;
+        long deadline = 0;
+        while (!this.offerTxQueue(payloadData)) {
+            if (this.txOverflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                if (this.dropOldest()) {
+                    sendStatus = SendStatus.DROPPED_OLDEST;
+                    continue;
+                }
+                // the message alone exceeds txQueueMaxBytes
+                sendStatus = SendStatus.QUEUE_FULL;
+            } else if (this.txOverflowPolicy == OverflowPolicy.BLOCK && !this.isSelectorThread()) {
+                long now = System.nanoTime();
+                if (deadline == 0) {
+                    deadline = now + this.txBlockTimeout * 1000000L;
+                }
+                if (now - deadline < 0) {
+                    LockSupport.parkNanos(TX_BLOCK_PARK);
+                    continue;
+                }
+                sendStatus = SendStatus.TIMEOUT;
+            } else {
+                // a blocked SelectorThread would never drain the txQueue
+                sendStatus = SendStatus.QUEUE_FULL;
+            }
+
+            if (probe)
+                this.congProbe = null;
+            this.trafficCounters.onTxDropped();
+            this.updateQueueCongestionLevel();
+            return sendStatus;
+        }
+
+        this.updateQueueCongestionLevel();
+        return sendStatus;
+    }
+
+    private boolean offerTxQueue(PayloadData payloadData) {
+        // a message bigger than txQueueMaxBytes is still accepted by an empty
+        // txQueue
+        long maxBytes = this.txQueueMaxBytes;
+        int length = payloadData.getDataLength();
+        long bytes = this.txQueueBytes.addAndGet(length);
+        if ((maxBytes > 0 && bytes > maxBytes && bytes != length) || !this.txQueue.offer(payloadData)) {
+            this.onTxQueueBytesRemoved(length);
+            return false;
+        }
+
+        if (bytes > this.writeBufferHighWaterMark && this.writable.compareAndSet(true, false)) {
+            this.fireWritabilityChanged(false);
+            // the SelectorThread may have drained the txQueue meanwhile
+            this.onTxQueueBytesRemoved(0);
+        }
+        return true;
+    }
+
+    /**
+     * Updates the queued bytes and turns the Association writable again once
+     * they drop below writeBufferLowWaterMark
+     */
+    private void onTxQueueBytesRemoved(int length) {
+        long bytes = this.txQueueBytes.addAndGet(-length);
+        if (!this.writable.get() && bytes < this.writeBufferLowWaterMark && this.writable.compareAndSet(false, true)) {
+            this.fireWritabilityChanged(true);
+        }
+    }
+
+    private void fireWritabilityChanged(boolean writable) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Association=%s writable=%s, %d bytes queued", getAssociationName(), writable,
+                this.txQueueBytes.get()));
+        }
+
+        AssociationListener associationListener = this.associationListener;
+        if (associationListener != null) {
+            try {
+                associationListener.onWritabilityChanged(this, writable);
+            } catch (Exception e) {
+                logger.error(String.format("Exception while invoking onWritabilityChanged for Association=%s",
+                    getAssociationName()), e);
+            }
+        }
+    }
+
+    /**
+     * @return false if the txQueue is empty
+     */
+    private boolean dropOldest() {
+        PayloadData payloadData = this.txQueue.poll();
+        if (payloadData == null) {
+            return false;
+        }
+        if (payloadData == this.congProbe) {
+            this.congProbe = null;
+        }
+        this.onTxQueueBytesRemoved(payloadData.getDataLength());
+        this.trafficCounters.onTxDropped();
+        if (this.txDropped.getAndIncrement() % 1000 == 0 && logger.isEnabledFor(Level.WARN)) {
+            logger.warn(String.format("txQueue is full for Association=%s, dropped the oldest message %s, %d dropped so far",
+                getAssociationName(), payloadData, this.txDropped.get()));
+        }
+        return true;
+    }
+
+    /**
+     * Polls the next message to write, only called by the SelectorThread
+     */
+    private PayloadData pollTxQueue() {
+        PayloadData payloadData = this.txQueue.poll();
+        if (payloadData != null) {
+            if (payloadData == this.congProbe) {
+                this.onCongProbeDequeued();
+            }
+            this.onTxQueueBytesRemoved(payloadData.getDataLength());
+        }
+        return payloadData;
+    }
+
+    private boolean isSelectorThread() {
+        SelectorThread selectorThread = this.selectorThread;
+        return selectorThread != null && selectorThread.isCurrentThread();
+    }
+
+    private void scheduleWrite() {
+        // OP_WRITE is already armed (or about to be) and a drain is pending:
+        // the selector thread will pick this message up as well
+        if (this.writeScheduled.get() || !this.writeScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        SelectorThread selectorThread = this.selectorThread;
+        if (selectorThread == null) {
+            // stopped concurrently, close() drops the queue
+            this.writeScheduled.set(false);
+            return;
+        }
+
+        // Indicate we want the interest ops set changed
+        selectorThread.addChangeRequest(
+            new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.CHANGEOPS, SelectionKey.OP_WRITE));
+
         // Finally, wake up our selecting thread so it can make the required
         // changes
-        this.management.getSocketSelector().wakeup();
+        selectorThread.wakeup();
+    }
+
+    /**
+     * Counts the passed messages as failed if the socket is not open
+     */
+    private void checkSocketIsOpen(int messages) throws Exception {
+        if (!this.isSocketOpen()) {
+            this.trafficCounters.onTxFailure(messages);
+        }
+        this.checkSocketIsOpen();
     }
 
     private void checkSocketIsOpen() throws Exception {
+        if (this.isSocketOpen())
+            return;
+        if (this.ipChannelType == IpChannelType.SCTP)
+            throw new Exception(String.format(
+                "Underlying SCTP channel doesn't open or doesn't have an association for Association=%s",
+                getAssociationName()));
+        else
+            throw new Exception(String.format("Underlying TCP channel doesn't open for Association=%s", getAssociationName()));
+    }
+
+    private boolean isSocketOpen() {
         if (this.ipChannelType == IpChannelType.SCTP) {
-            if (!this.started || this.socketChannelSctp == null || !this.socketChannelSctp.isOpen()
-                || this.socketChannelSctp.association() == null)
-                throw new Exception(String.format(
-                    "Underlying SCTP channel doesn't open or doesn't have an association for Association=%s",
-                    getAssociationName()));
+            SctpChannel socketChannelSctp = this.socketChannelSctp;
+            try {
+                return this.started && socketChannelSctp != null && socketChannelSctp.isOpen()
+                    && socketChannelSctp.association() != null;
+            } catch (IOException e) {
+                return false;
+            }
         } else {
-            if (!this.started || this.socketChannelTcp == null || !this.socketChannelTcp.isOpen()
-                || !this.socketChannelTcp.isConnected())
-                throw new Exception(String.format("Underlying TCP channel doesn't open for Association=%s", getAssociationName()));
+            SocketChannel socketChannelTcp = this.socketChannelTcp;
+            return this.started && socketChannelTcp != null && socketChannelTcp.isOpen() && socketChannelTcp.isConnected();
         }
     }
 
@@ -570,6 +1128,10 @@ public class AssociationImpl implements Association {
             if (payload == null)
                 return;
 
+            this.trafficCounters.onRx(payload.getStreamNumber(), payload.getDataLength());
+            if (this.management.isLatencyRecordingEnabled()) {
+                payload.setTimestamp(System.nanoTime());
+            }
             if (logger.isDebugEnabled()) {
                 logger.debug(String.format("Rx : Ass=%s %s", getAssociationName(), payload));
             }
@@ -583,6 +1145,7 @@ public class AssociationImpl implements Association {
 					logger.error(String.format("Error while calling Listener for Association=%s.Payload=%s",
                             getAssociationName(), payload), e);
 				} finally {
+					this.onPayloadDelivered(payload);
 					// Release PayloadData back to pool for reuse
 					PayloadDataPool pool = this.management.getPayloadDataPool();
 					if (pool != null && payload != null) {
@@ -590,23 +1153,7 @@ public class AssociationImpl implements Association {
 					}
 				}
 			} else {
-				Worker worker = new Worker(this, this.associationListener, payload, this.management.getPayloadDataPool());
-
-	//				System.out.println("payload.getStreamNumber()=" + payload.getStreamNumber()
-	//						+ " this.workerThreadTable[payload.getStreamNumber()]"
-	//						+ this.workerThreadTable[payload.getStreamNumber()]);
-
-                ExecutorService executorService = this.management.getExecutorService(this.workerThreadTable[payload
-                    .getStreamNumber()]);
-                try {
-                    executorService.execute(worker);
-                } catch (RejectedExecutionException e) {
-                    logger.error(String.format("Rejected %s as Executor is shutdown", payload), e);
-                } catch (NullPointerException e) {
-                    logger.error(String.format("NullPointerException while submitting %s", payload), e);
-                } catch (Exception e) {
-                    logger.error(String.format("Exception while submitting %s", payload), e);
-                }
+                this.dispatch(payload);
             }
         } catch (IOException e) {
             this.ioErrors++;
@@ -625,6 +1172,8 @@ public class AssociationImpl implements Association {
     }
 
     private PayloadData doReadSctp() throws IOException {
+        if (this.rxSizePredictor != null)
+            return this.doReadSctpZeroCopy();
 
         ((Buffer) rxBuffer).clear();
         MessageInfo messageInfo = this.socketChannelSctp.receive(rxBuffer, this, this.associationHandler);
@@ -660,7 +1209,73 @@ public class AssociationImpl implements Association {
         return payload;
     }
 
+    /**
+     * Receives the next SCTP message directly into a pooled direct ByteBuf. If
+     * the predicted size was too small for the message, the buffer is grown up
+     * to the management buffer size and the rest of the message is received
+     * into it.
+     */
+    private PayloadData doReadSctpZeroCopy() throws IOException {
+        ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT.directBuffer(this.rxSizePredictor.nextSize(),
+            this.rxSizePredictor.maximum());
+        try {
+            MessageInfo messageInfo = this.receiveSctp(byteBuf);
+
+            if (messageInfo == null) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format(" messageInfo is null for Association=%s", getAssociationName()));
+                }
+                byteBuf.release();
+                return null;
+            }
+
+            if (messageInfo.bytes() == -1) {
+                byteBuf.release();
+                logger.error(String.format("Rx -1 while trying to read from underlying socket for Association=%s ",
+                    getAssociationName()));
+                this.close();
+                this.scheduleConnect();
+                return null;
+            }
+
+            // the message did not fit: continue receiving the rest of it
+            while (!messageInfo.isComplete() && !byteBuf.isWritable() && byteBuf.capacity() < byteBuf.maxCapacity()) {
+                byteBuf.ensureWritable(byteBuf.capacity());
+                MessageInfo next = this.receiveSctp(byteBuf);
+                if (next == null || next.bytes() <= 0)
+                    break;
+                messageInfo = next;
+            }
+
+            int len = byteBuf.readableBytes();
+            this.rxSizePredictor.record(len);
+
+            // Use PayloadDataPool for object reuse
+            PayloadDataPool pool = this.management.getPayloadDataPool();
+            return pool.acquire(len, byteBuf, messageInfo.isComplete(), messageInfo.isUnordered(),
+                messageInfo.payloadProtocolID(), messageInfo.streamNumber());
+        } catch (IOException e) {
+            byteBuf.release();
+            throw e;
+        } catch (RuntimeException e) {
+            byteBuf.release();
+            throw e;
+        }
+    }
+
+    private MessageInfo receiveSctp(ByteBuf byteBuf) throws IOException {
+        int writerIndex = byteBuf.writerIndex();
+        ByteBuffer nioBuffer = byteBuf.internalNioBuffer(writerIndex, byteBuf.writableBytes());
+        MessageInfo messageInfo = this.socketChannelSctp.receive(nioBuffer, this, this.associationHandler);
+        if (messageInfo != null && messageInfo.bytes() > 0) {
+            byteBuf.writerIndex(writerIndex + messageInfo.bytes());
+        }
+        return messageInfo;
+    }
+
     private PayloadData doReadTcp() throws IOException {
+        if (this.rxSizePredictor != null)
+            return this.doReadTcpZeroCopy();
 
         ((Buffer) rxBuffer).clear();
         int len = this.socketChannelTcp.read(rxBuffer);
@@ -685,68 +1300,72 @@ public class AssociationImpl implements Association {
         return payload;
     }
 
+    /**
+     * Reads the available TCP bytes directly into a pooled direct ByteBuf sized
+     * by the receive size predictor.
+     */
+    private PayloadData doReadTcpZeroCopy() throws IOException {
+        ByteBuf byteBuf = PooledByteBufAllocator.DEFAULT.directBuffer(this.rxSizePredictor.nextSize());
+        int len;
+        try {
+            len = byteBuf.writeBytes(this.socketChannelTcp, byteBuf.writableBytes());
+        } catch (IOException e) {
+            byteBuf.release();
+            throw e;
+        }
+
+        if (len == -1) {
+            byteBuf.release();
+            logger.warn(String.format("Rx -1 while trying to read from underlying socket for Association=%s ",
+                getAssociationName()));
+            this.close();
+            this.scheduleConnect();
+            return null;
+        }
+
+        if (len == 0) {
+            byteBuf.release();
+            return null;
+        }
+
+        this.rxSizePredictor.record(len);
+
+        // Use PayloadDataPool for object reuse
+        PayloadDataPool pool = this.management.getPayloadDataPool();
+        return pool.acquireTcp(len, byteBuf);
+    }
+
     protected void write(SelectionKey key) {
 
         try {
-            // TODO Do we need to synchronize ConcurrentLinkedQueue?
-            // synchronized (this.txQueue) {
-            if (!txQueue.isEmpty()) {
-                while (!txQueue.isEmpty()) {
-                    // Lets read all the messages in txQueue and send
-                    PayloadData payloadData = txQueue.poll();
-                    logger.debug(String.format("Tx : Ass=%s %s", getAssociationName(), payloadData));
-
-                    if (this.ipChannelType == IpChannelType.SCTP) {
-                        int seqControl = payloadData.getStreamNumber();
-                        if (seqControl < 0 || seqControl >= this.associationHandler.getMaxOutboundStreams()) {
-                            try {
-                                // TODO : calling in same Thread. Is this ok? or
-                                // dangerous?
-                                this.associationListener.inValidStreamId(payloadData);
-                            } catch (Exception e) {
-                            }
-                            logger.error(String.format(
-                                "Cannot send through stream '%d' over association '%s', message will be lost!",
-                                seqControl, getAssociationName()));
-                            continue;
-                        }
-                        msgInfo = MessageInfo.createOutgoing(this.peerSocketAddress, seqControl);
-                        msgInfo.payloadProtocolID(payloadData.getPayloadProtocolId());
-                        msgInfo.complete(payloadData.isComplete());
-                        msgInfo.unordered(payloadData.isUnordered());
-                    }
+            boolean drained;
+            if (this.ipChannelType == IpChannelType.SCTP)
+                drained = this.writeSctp();
+            else
+                drained = this.writeTcp();
 
-                    int bytesSent = this.doSend(payloadData.getByteBuf());
-                    if (bytesSent == 0) {
-                        logger.warn(String.format(
-                            "Unable to send '%d' bytes over association '%s', retried '%d' times, will retry again.",
-                            payloadData.getDataLength(), getAssociationName(), payloadData.getRetryCount()));
-                        // txQueue.add(payloadData.retry());
-                        send(payloadData.retry());
-                    } else if (bytesSent != payloadData.getDataLength()) {
-                        logger.error(String.format(
-                            "Sent '%d' bytes out of '%d', giving up for this packet on association '%s'",
-                            bytesSent, payloadData.getDataLength(), getAssociationName()));
-                    } else {
-                        // dissect diameter header (e2e & hbh)
-                        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payloadData.getData()));
-                        in.readInt(); in.readInt(); in.readInt();
-                        long hopByHopId = ((long) in.readInt() << 32) >>> 32;
-                        long endToEndId = ((long) in.readInt() << 32) >>> 32;
-
-                        logger.debug(String.format(
-                            "Sent '%d' bytes, association '%s', retry count '%d', hbh 0x%x, e2e 0x%x.",
-                            payloadData.getDataLength(), getAssociationName(), payloadData.getRetryCount(),
-                            hopByHopId, endToEndId));
-                    }
+            if (drained && txQueue.isEmpty()) {
+                // nothing waits in the txQueue anymore
+                this.updateDelayCongestionLevel(0, false);
 
-                }
-            }
-            if (txQueue.isEmpty()) {
                 // We wrote away all data, so we're no longer interested
                 // in writing on this socket. Switch back to waiting for
-                // data.fi
-                key.interestOps(SelectionKey.OP_READ);
+                // data. Otherwise OP_WRITE stays armed and we continue on
+                // the next selector tick
+                key.interestOps(this.readSuspended ? 0 : SelectionKey.OP_READ);
+                this.writeScheduled.set(false);
+
+                // A sender may have queued a message after the isEmpty() check
+                // while the flag was still set: re-arm ourself, no need for a
+                // ChangeRequest as we are the selector thread
+                if (!txQueue.isEmpty() && this.writeScheduled.compareAndSet(false, true)) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+            }
+
+            // send() does not run while nobody sends, lower the level here
+            if (this.queueCongLevel > 0) {
+                this.updateQueueCongestionLevel();
             }
         } catch (Exception e) {
             this.ioErrors++;
@@ -763,19 +1382,194 @@ public class AssociationImpl implements Association {
         }// try-catch
     }
 
-    private int doSend(ByteBuf buffer) throws IOException {
-        if (this.ipChannelType == IpChannelType.SCTP)
-            return this.doSendSctp(buffer);
-        else
-            return this.doSendTcp(buffer);
+    /**
+     * Sends queued messages one by one until the txQueue is empty, the socket
+     * send buffer is full or the per tick byte budget is consumed.
+     * 
+     * @return true if nothing is left pending for this Association
+     */
+    private boolean writeSctp() throws IOException {
+        int byteBudget = this.management.getTxByteBudget();
+        while (byteBudget > 0) {
+            PayloadData payloadData = this.txPending;
+            this.txPending = null;
+            if (payloadData == null) {
+                payloadData = this.pollTxQueue();
+                if (payloadData == null) {
+                    return true;
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug(String.format("Tx : Ass=%s %s", getAssociationName(), payloadData));
+                }
+
+                int seqControl = payloadData.getStreamNumber();
+                if (seqControl < 0 || seqControl >= this.associationHandler.getMaxOutboundStreams()) {
+                    this.trafficCounters.onInvalidStreamId();
+                    try {
+                        // TODO : calling in same Thread. Is this ok? or
+                        // dangerous?
+                        this.associationListener.inValidStreamId(payloadData);
+                    } catch (Exception e) {
+                    }
+                    logger.error(String.format(
+                        "Cannot send through stream '%d' over association '%s', message will be lost!", seqControl,
+                        getAssociationName()));
+                    continue;
+                }
+            }
+
+            int bytesSent = this.socketChannelSctp.send(payloadData.getByteBuf().nioBuffer(),
+                this.getOutgoingMessageInfo(payloadData));
+            this.txWriteCalls++;
+            if (bytesSent == 0) {
+                logger.warn(String.format(
+                    "Unable to send '%d' bytes over association '%s', retried '%d' times, will retry again.",
+                    payloadData.getDataLength(), getAssociationName(), payloadData.getRetryCount()));
+                // keep it first in line and wait for the next OP_WRITE
+                this.txPending = payloadData.retry();
+                return false;
+            } else if (bytesSent != payloadData.getDataLength()) {
+                logger.error(String.format("Sent '%d' bytes out of '%d', giving up for this packet on association '%s'",
+                    bytesSent, payloadData.getDataLength(), getAssociationName()));
+                this.trafficCounters.onTxFailure(1);
+            } else {
+                this.onPayloadSent(payloadData);
+            }
+            byteBudget -= bytesSent;
+        }
+        return this.txQueue.isEmpty();
+    }
+
+    /**
+     * Returns the MessageInfo cached for the stream of the passed payload,
+     * updated with its protocol id and flags. The cache is dropped when the peer
+     * address changes (multihoming) or the number of outbound streams changes.
+     */
+    private MessageInfo getOutgoingMessageInfo(PayloadData payloadData) {
+        int streamNumber = payloadData.getStreamNumber();
+        if (this.txMessageInfos == null || this.txMessageInfos.length != this.associationHandler.getMaxOutboundStreams()
+            || this.txMessageInfoAddress != this.peerSocketAddress) {
+            this.txMessageInfos = new MessageInfo[this.associationHandler.getMaxOutboundStreams()];
+            this.txMessageInfoAddress = this.peerSocketAddress;
+        }
+
+        MessageInfo messageInfo = this.txMessageInfos[streamNumber];
+        if (messageInfo == null) {
+            messageInfo = MessageInfo.createOutgoing(this.peerSocketAddress, streamNumber);
+            this.txMessageInfos[streamNumber] = messageInfo;
+        }
+        messageInfo.payloadProtocolID(payloadData.getPayloadProtocolId());
+        messageInfo.complete(payloadData.isComplete());
+        messageInfo.unordered(payloadData.isUnordered());
+        return messageInfo;
+    }
+
+    /**
+     * Writes queued messages with gathering writes of up to
+     * {@link ManagementImpl#getTxBatchSize()} buffers. A partially written batch
+     * is kept and completed on the next OP_WRITE, so the TCP stream is never
+     * corrupted.
+     * 
+     * @return true if nothing is left pending for this Association
+     */
+    private boolean writeTcp() throws IOException {
+        int byteBudget = this.management.getTxByteBudget();
+        while (byteBudget > 0) {
+            if (this.txBatchHead == this.txBatchTail) {
+                if (!this.fillTxBatch()) {
+                    return true;
+                }
+            }
+
+            long bytesSent = this.socketChannelTcp.write(this.txBatchBuffers, this.txBatchHead, this.txBatchTail
+                - this.txBatchHead);
+            this.txWriteCalls++;
+
+            while (this.txBatchHead < this.txBatchTail && !this.txBatchBuffers[this.txBatchHead].hasRemaining()) {
+                PayloadData payloadData = this.txBatch[this.txBatchHead];
+                this.txBatch[this.txBatchHead] = null;
+                this.txBatchBuffers[this.txBatchHead] = null;
+                this.txBatchHead++;
+                this.onPayloadSent(payloadData);
+            }
+
+            if (this.txBatchHead < this.txBatchTail) {
+                // socket send buffer is full, wait for the next OP_WRITE
+                return false;
+            }
+            byteBudget -= bytesSent;
+        }
+        return this.txQueue.isEmpty();
+    }
+
+    private boolean fillTxBatch() {
+        int batchSize = this.management.getTxBatchSize();
+        if (this.txBatch == null || this.txBatch.length != batchSize) {
+            this.txBatch = new PayloadData[batchSize];
+            this.txBatchBuffers = new ByteBuffer[batchSize];
+        }
+
+        this.txBatchHead = 0;
+        this.txBatchTail = 0;
+        while (this.txBatchTail < batchSize) {
+            PayloadData payloadData = this.pollTxQueue();
+            if (payloadData == null) {
+                break;
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Tx : Ass=%s %s", getAssociationName(), payloadData));
+            }
+            this.txBatch[this.txBatchTail] = payloadData;
+            this.txBatchBuffers[this.txBatchTail] = payloadData.getByteBuf().nioBuffer();
+            this.txBatchTail++;
+        }
+        return this.txBatchTail > 0;
     }
 
-    private int doSendSctp(ByteBuf buffer) throws IOException {
-        return this.socketChannelSctp.send(buffer.nioBuffer(), msgInfo);
+    protected void resetWriteScheduled() {
+        this.writeScheduled.set(false);
     }
 
-    private int doSendTcp(ByteBuf buffer) throws IOException {
-        return this.socketChannelTcp.write(buffer.nioBuffer());
+    private void clearTxPending() {
+        this.txPending = null;
+        if (this.txBatch != null) {
+            for (int i = this.txBatchHead; i < this.txBatchTail; i++) {
+                this.txBatch[i] = null;
+                this.txBatchBuffers[i] = null;
+            }
+        }
+        this.txBatchHead = 0;
+        this.txBatchTail = 0;
+        this.txMessageInfos = null;
+    }
+
+    private void onPayloadSent(PayloadData payloadData) {
+        this.trafficCounters.onTx(payloadData.getStreamNumber(), payloadData.getDataLength());
+        if (payloadData.getTimestamp() != 0) {
+            this.txLatency.recordSince(payloadData.getTimestamp());
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Sent '%d' bytes, association '%s', retry count '%d'.",
+                payloadData.getDataLength(), getAssociationName(), payloadData.getRetryCount()));
+        }
+
+        // Tracing hook (e.g. DiameterHeaderInspector), reads the ByteBuf in place
+        PayloadInspector payloadInspector = this.management.getPayloadInspector();
+        if (payloadInspector != null) {
+            try {
+                payloadInspector.onPayloadSent(this, payloadData);
+            } catch (Exception e) {
+                logger.error(String.format("Exception in PayloadInspector for Association=%s", getAssociationName()), e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of send()/write() calls issued on the socket of this
+     *         Association so far
+     */
+    protected long getTxWriteCalls() {
+        return txWriteCalls;
     }
 
 	@Override
@@ -783,11 +1577,161 @@ public class AssociationImpl implements Association {
 		return null;
 	}
 
+	@Override
+	@JsonIgnore
+	public EventExecutor getEventExecutor() {
+		return null;
+	}
+
+	/**
+	 * The txQueue already is the outbound ring of this Association, it is
+	 * drained by the SelectorThread
+	 */
+	@Override
+	public SendStatus offerOutbound(PayloadData payloadData) {
+		return this.trySend(payloadData);
+	}
+
 	@Override
 	public int getCongestionLevel() {
-		return 0;
+		return this.congLevel;
 	}
 
+    @Override
+    @JsonIgnore
+    public boolean isWritable() {
+        return this.up && this.writable.get();
+    }
+
+    @Override
+    public long pendingOutboundBytes() {
+        return this.txQueueBytes.get();
+    }
+
+    @Override
+    public int pendingOutboundMessages() {
+        return this.txQueue.size();
+    }
+
+    @Override
+    @JsonIgnore
+    public AssociationStatistics getStatistics() {
+        return this.trafficCounters.snapshot(this.name);
+    }
+
+    protected TrafficCounters getTrafficCounters() {
+        return this.trafficCounters;
+    }
+
+    @Override
+    @JsonIgnore
+    public LatencyHistogram getTxLatency() {
+        return this.txLatency.snapshot();
+    }
+
+    @Override
+    @JsonIgnore
+    public LatencyHistogram getRxLatency() {
+        return this.rxLatency.snapshot();
+    }
+
+    /**
+     * Called once the AssociationListener returned from onPayload(), by the
+     * SelectorThread or by a Worker
+     */
+    protected void onPayloadDelivered(PayloadData payloadData) {
+        if (payloadData.getTimestamp() != 0) {
+            this.rxLatency.recordSince(payloadData.getTimestamp());
+        }
+    }
+
+    /**
+     * Samples the passed message to measure the txQueue delay if no other
+     * message is sampled and the last sample is older than
+     * CONG_PROBE_INTERVAL. While a sampled message is still queued, its age is
+     * a lower bound of the txQueue delay and may only raise the level.
+     * 
+     * @return true if the passed message is the new sample
+     */
+    private boolean sampleTxQueueDelay(PayloadData payloadData) {
+        long now = System.nanoTime();
+        if (this.congProbe != null) {
+            this.updateDelayCongestionLevel(now - this.congProbeTime, true);
+            return false;
+        }
+        if (now - this.lastCongProbeTime < CONG_PROBE_INTERVAL) {
+            return false;
+        }
+        this.lastCongProbeTime = now;
+        this.congProbeTime = now;
+        this.congProbe = payloadData;
+        return true;
+    }
+
+    private void onCongProbeDequeued() {
+        long delay = System.nanoTime() - this.congProbeTime;
+        this.congProbe = null;
+        this.updateDelayCongestionLevel(delay, false);
+    }
+
+    /**
+     * @param delay
+     *            nanoseconds a message waited in the txQueue
+     * @param raiseOnly
+     *            the delay is a lower bound, do not lower the level
+     */
+    private void updateDelayCongestionLevel(long delay, boolean raiseOnly) {
+        int level = this.delayCongLevel;
+        int newLevel = CongestionControl.getCongestionLevel(level, delay / 1000000000.0,
+            this.management.congControl_DelayThreshold, this.management.congControl_BackToNormalDelayThreshold);
+        if (newLevel != level && (newLevel > level || !raiseOnly)) {
+            synchronized (this.congLock) {
+                this.delayCongLevel = newLevel;
+                this.setCongestionLevel(Math.max(newLevel, this.queueCongLevel));
+            }
+        }
+    }
+
+    private void updateQueueCongestionLevel() {
+        int level = this.queueCongLevel;
+        double occupancy = (double) this.txQueue.size() / this.txQueue.capacity();
+        if (this.txQueueMaxBytes > 0) {
+            occupancy = Math.max(occupancy, (double) this.txQueueBytes.get() / this.txQueueMaxBytes);
+        }
+        int newLevel = CongestionControl.getCongestionLevel(level, occupancy, this.management.congControl_QueueThreshold,
+            this.management.congControl_BackToNormalQueueThreshold);
+        if (newLevel != level) {
+            synchronized (this.congLock) {
+                this.queueCongLevel = newLevel;
+                this.setCongestionLevel(Math.max(newLevel, this.delayCongLevel));
+            }
+        }
+    }
+
+    /**
+     * Must be called holding congLock
+     */
+    private void setCongestionLevel(int val) {
+        int oldLevel = this.congLevel;
+        if (oldLevel == val) {
+            return;
+        }
+
+        if (logger.isEnabledFor(Level.WARN)) {
+            logger.warn(String.format("Outgoing congestion control: SCTP: Changing of congestion level for Association=%s %d->%d",
+                getAssociationName(), oldLevel, val));
+        }
+
+        this.congLevel = val;
+        for (CongestionListener lstr : this.management.getCongestionListeners()) {
+            try {
+                lstr.onCongLevelChanged(this, oldLevel, val);
+            } catch (Throwable ee) {
+                logger.error("Exception while invoking onCongLevelChanged", ee);
+            }
+        }
+    }
+
     protected void close() {
         if (this.getSocketChannel() != null) {
             try {
@@ -811,21 +1755,45 @@ public class AssociationImpl implements Association {
         if (this.txQueue.size() > 0) {
             logger.warn(String.format("Clearing txQueue for Association=%s. %d messages still pending will be cleared",
                 getAssociationName(), this.txQueue.size()));
+            this.trafficCounters.onTxFailure(this.txQueue.size());
         }
         this.txQueue.clear();
+        this.txQueueBytes.set(0);
+        // a new connection starts writable, senders get onCommunicationUp()
+        this.writable.set(true);
+        this.clearTxPending();
+        this.writeScheduled.set(false);
+        this.releaseDispatchPending();
+        this.readSuspended = false;
+
+        // the dropped messages do not congest anymore
+        this.congProbe = null;
+        synchronized (this.congLock) {
+            this.queueCongLevel = 0;
+            this.delayCongLevel = 0;
+            this.setCongestionLevel(0);
+        }
     }
 
     protected void scheduleConnect() {
-        if (this.getAssociationType() == AssociationType.CLIENT) {
+        SelectorThread selectorThread = this.selectorThread;
+        if (this.getAssociationType() == AssociationType.CLIENT && selectorThread != null) {
             // If Association is of Client type, restart the connection procedure
-            MpscArrayQueue<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-            synchronized (pendingChanges) {
-                pendingChanges.add(new ChangeRequest(this, ChangeRequest.CONNECT, System.currentTimeMillis()
-                    + this.management.getConnectDelay()));
-            }
+            ChangeRequest connectRequest = new ChangeRequest(this, ChangeRequest.CONNECT, System.currentTimeMillis()
+                + this.management.getConnectDelay());
+            this.scheduledConnect = connectRequest;
+            selectorThread.addChangeRequest(connectRequest);
         }
     }
 
+    /**
+     * @return true if the passed CONNECT request is the last one scheduled for
+     *         this Association
+     */
+    protected boolean isScheduledConnect(ChangeRequest connectRequest) {
+        return this.scheduledConnect == connectRequest;
+    }
+
     protected void initiateConnection() throws IOException {
 
         // If Association is stopped, don't try to initiate connect
@@ -862,15 +1830,16 @@ public class AssociationImpl implements Association {
         // selecting thread. As part of the registration we'll register
         // an interest in connection events. These are raised when a channel
         // is ready to complete connection establishment.
-        MpscArrayQueue<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-        synchronized (pendingChanges) {
-            pendingChanges.relaxedOffer(new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.REGISTER,
-                SelectionKey.OP_CONNECT));
+        SelectorThread selectorThread = this.selectorThread;
+        if (selectorThread == null) {
+            return;
         }
+        selectorThread.addChangeRequest(
+            new ChangeRequest(this.getSocketChannel(), this, ChangeRequest.REGISTER, SelectionKey.OP_CONNECT));
 
         // Finally, wake up our selecting thread so it can make the required
         // changes
-        this.management.getSocketSelector().wakeup();
+        selectorThread.wakeup();
 
     }
 
@@ -924,9 +1893,187 @@ public class AssociationImpl implements Association {
         this.socketChannelTcp.connect(new InetSocketAddress(this.peerAddress, this.peerPort));
     }
 
+    /**
+     * Hands a received message to the worker thread of its stream. A message
+     * the worker can not take yet, as its ring is full or the stream is
+     * moving, waits in the pending list of its stream and the selector thread
+     * retries on its next loop, see {@link #dispatchPending()}. So messages
+     * are neither reordered nor lost and the selector thread never waits for
+     * a worker. Once a worker ring worth of messages waits, reading stops
+     * until half of them are handed over
+     */
+    private void dispatch(PayloadData payload) {
+        StreamWorkerMap map = this.streamWorkerMap;
+        int stream = payload.getStreamNumber();
+        if (!map.hasPending(stream) && this.offerToWorker(map, stream, payload)) {
+            return;
+        }
+
+        SelectorThread selectorThread = this.selectorThread;
+        if (selectorThread == null) {
+            // stopped concurrently, close() drops the pending messages
+            this.management.getPayloadDataPool().release(payload);
+            return;
+        }
+        map.addPending(stream, payload);
+        if (!this.dispatchBacklogged) {
+            this.dispatchBacklogged = true;
+            selectorThread.addDispatchBacklog(this);
+        }
+        if (!this.readSuspended && map.getPendingMessages() >= this.management.getWorkerQueueSize()) {
+            this.setReadSuspended(selectorThread, true);
+        }
+    }
+
+    /**
+     * Hands the messages held back by {@link #dispatch(PayloadData)} to their
+     * workers, in order per stream. Called by the selector thread on each loop
+     * while messages are held back
+     * 
+     * @return true if messages are still held back
+     */
+    protected boolean dispatchPending() {
+        StreamWorkerMap map = this.streamWorkerMap;
+        if (map != null) {
+            for (int stream = 0; map.getPendingMessages() > 0 && stream < map.size(); stream++) {
+                PayloadData payload;
+                while ((payload = map.peekPending(stream)) != null && this.offerToWorker(map, stream, payload)) {
+                    map.removePending(stream);
+                }
+            }
+        }
+        this.dispatchBacklogged = map != null && map.getPendingMessages() > 0;
+        if (this.readSuspended && (map == null || map.getPendingMessages() <= this.management.getWorkerQueueSize() / 2)) {
+            this.setReadSuspended(this.selectorThread, false);
+        }
+        return this.dispatchBacklogged;
+    }
+
+    /**
+     * Clears or sets OP_READ. While OP_WRITE is armed write() sets OP_READ
+     * again once the txQueue is drained
+     */
+    private void setReadSuspended(SelectorThread selectorThread, boolean readSuspended) {
+        this.readSuspended = readSuspended;
+        AbstractSelectableChannel socketChannel = this.getSocketChannel();
+        if (selectorThread == null || socketChannel == null) {
+            return;
+        }
+        SelectionKey key = socketChannel.keyFor(selectorThread.selector);
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        if (readSuspended) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        } else if ((key.interestOps() & SelectionKey.OP_WRITE) == 0) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Association=%s %s reading", getAssociationName(), readSuspended ? "suspended"
+                : "resumed"));
+        }
+    }
+
+    /**
+     * @return false if the message has to wait as the ring of the worker is
+     *         full or its stream is moving to another worker, true if it has
+     *         been handed to a worker or dropped
+     */
+    private boolean offerToWorker(StreamWorkerMap map, int stream, PayloadData payload) {
+        PayloadDataPool pool = this.management.getPayloadDataPool();
+        WorkerThread workerThread;
+        try {
+            int worker = map.workers.get(stream);
+            int targetWorker = map.migrations.get(stream);
+            if (targetWorker != StreamWorkerMap.NO_MIGRATION) {
+                if (!this.migrateStream(map, stream, worker, targetWorker)) {
+                    return false;
+                }
+                worker = targetWorker;
+            }
+            workerThread = this.management.getWorkerThread(worker);
+        } catch (Exception e) {
+            logger.error(String.format("Exception while submitting %s", payload), e);
+            pool.release(payload);
+            return true;
+        }
+
+        if (!workerThread.isStarted()) {
+            logger.error(String.format("Rejected %s as WorkerThread is stopped", payload));
+            pool.release(payload);
+            return true;
+        }
+        long position = workerThread.offer(this, this.associationListener, payload, pool);
+        if (position < 0) {
+            // the ring of the worker is full
+            return false;
+        }
+        map.onDispatched(stream, position);
+        return true;
+    }
+
+    /**
+     * Moves a stream to the worker requested by the WorkerRebalancer once the
+     * old worker has delivered the last message of the stream (drain
+     * barrier), so that no later message can overtake it
+     * 
+     * @return false if the old worker still has messages of the stream
+     */
+    private boolean migrateStream(StreamWorkerMap map, int stream, int worker, int targetWorker) {
+        WorkerThread oldWorkerThread = this.management.getWorkerThread(worker);
+        if (oldWorkerThread.getProcessed() <= map.lastPositions.get(stream) && oldWorkerThread.isStarted()) {
+            return false;
+        }
+
+        map.onMigrated(stream, targetWorker);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Association=%s moved stream=%d from WorkerThread-%d to WorkerThread-%d",
+                getAssociationName(), stream, worker, targetWorker));
+        }
+        return true;
+    }
+
     protected void createworkerThreadTable(int maximumBoundStream) {
-        this.workerThreadTable = new int[maximumBoundStream];
-        this.management.populateWorkerThread(this.workerThreadTable);
+        int[] workers = new int[maximumBoundStream];
+        this.management.populateWorkerThread(workers);
+        this.releaseDispatchPending();
+        this.streamWorkerMap = new StreamWorkerMap(workers);
+    }
+
+    /**
+     * Drops the received messages not yet handed to a worker
+     */
+    private void releaseDispatchPending() {
+        StreamWorkerMap map = this.streamWorkerMap;
+        if (map == null || map.getPendingMessages() == 0) {
+            return;
+        }
+        int released = map.releasePending(this.management.getPayloadDataPool());
+        logger.warn(String.format("Dropped %d received messages of Association=%s not yet handed to a WorkerThread",
+            released, getAssociationName()));
+    }
+
+    protected StreamWorkerMap getStreamWorkerMap() {
+        return this.streamWorkerMap;
+    }
+
+    /**
+     * @return the WorkerThread index each inbound stream is delivered by,
+     *         null in single thread mode or before the Association is up
+     */
+    @JsonIgnore
+    public int[] getWorkerThreadMapping() {
+        StreamWorkerMap map = this.streamWorkerMap;
+        if (map == null) {
+            return null;
+        }
+        int[] workers = new int[map.size()];
+        for (int stream = 0; stream < workers.length; stream++) {
+            workers[stream] = map.workers.get(stream);
+        }
+        return workers;
     }
 
     /*
@@ -0,0 +1,187 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.net.InetAddress;
+
+import org.jctools.maps.NonBlockingHashMap;
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationType;
+
+/**
+ * <p>
+ * Index of provisioned SERVER type {@link Association} keyed by (serverName,
+ * peer address, peer port). An incoming connection is matched in O(1) instead
+ * of scanning every provisioned Association. An Association provisioned with
+ * peer port 0 accepts any remote port and is used as fallback when there is no
+ * exact port match.
+ * </p>
+ * <p>
+ * Peer addresses are indexed in their binary {@link PeerAddressKey} form, the
+ * primary peer address as well as every extra peer address of a multihomed
+ * peer. A lookup fills a per thread probe key and does not allocate for IPv4
+ * peers.
+ * </p>
+ * <p>
+ * The owning Management must call {@link #remove(Association)} before and
+ * {@link #add(Association, PeerAddressKey[])} after changing serverName / peer
+ * addresses / peer port of an Association. Lookups are lock free.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public final class AssociationIndex {
+
+    /**
+     * Peer port that matches any remote port
+     */
+    public static final int WILDCARD_PORT = 0;
+
+    private final NonBlockingHashMap<Key, Association> index = new NonBlockingHashMap<Key, Association>();
+    // keys an Association is currently indexed with
+    private final NonBlockingHashMap<Association, Key[]> indexed = new NonBlockingHashMap<Association, Key[]>();
+
+    private final ThreadLocal<Key> probe = new ThreadLocal<Key>() {
+        @Override
+        protected Key initialValue() {
+            return new Key();
+        }
+    };
+
+    /**
+     * Indexes the passed Association under each of its peer addresses.
+     * Associations which are not of type SERVER or have no serverName are
+     * ignored.
+     *
+     * @param association
+     * @param peerAddressKeys
+     *            primary and extra peer addresses of the Association
+     */
+    public void add(Association association, PeerAddressKey[] peerAddressKeys) {
+        this.remove(association);
+
+        String serverName = association.getServerName();
+        if (association.getAssociationType() != AssociationType.SERVER || serverName == null || peerAddressKeys.length == 0) {
+            return;
+        }
+
+        Key[] keys = new Key[peerAddressKeys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new Key();
+            keys[i].set(serverName, peerAddressKeys[i].getHigh(), peerAddressKeys[i].getLow(), association.getPeerPort());
+            this.index.put(keys[i], association);
+        }
+        this.indexed.put(association, keys);
+    }
+
+    /**
+     * Removes the passed Association from index. An entry is only removed if it
+     * is still mapped to this Association.
+     */
+    public void remove(Association association) {
+        Key[] keys = this.indexed.remove(association);
+        if (keys != null) {
+            for (Key key : keys) {
+                this.index.remove(key, association);
+            }
+        }
+    }
+
+    public void clear() {
+        this.index.clear();
+        this.indexed.clear();
+    }
+
+    /**
+     * @return the number of indexed (serverName, peer address, peer port)
+     *         entries
+     */
+    public int size() {
+        return this.index.size();
+    }
+
+    /**
+     * Returns the Association provisioned for the passed server and remote
+     * peer. An exact port match is preferred over an Association provisioned
+     * with {@link #WILDCARD_PORT}.
+     *
+     * @param serverName
+     * @param peerAddress
+     * @param peerPort
+     * @return matching Association or null
+     */
+    public Association lookup(String serverName, InetAddress peerAddress, int peerPort) {
+        Key key = this.probe.get();
+        long high = PeerAddressKey.high(peerAddress);
+        long low = PeerAddressKey.low(peerAddress);
+
+        key.set(serverName, high, low, peerPort);
+        Association association = this.index.get(key);
+        if (association == null && peerPort != WILDCARD_PORT) {
+            key.set(serverName, high, low, WILDCARD_PORT);
+            association = this.index.get(key);
+        }
+        // do not keep the server name reachable from the probe
+        key.serverName = null;
+        return association;
+    }
+
+    /**
+     * Index key. Keys stored in the index are never modified, only the per
+     * thread probe is re-used for lookups
+     */
+    private static final class Key {
+        private String serverName;
+        private long high;
+        private long low;
+        private int peerPort;
+        private int hash;
+
+        void set(String serverName, long high, long low, int peerPort) {
+            this.serverName = serverName;
+            this.high = high;
+            this.low = low;
+            this.peerPort = peerPort;
+
+            long h = high ^ low;
+            this.hash = (31 * serverName.hashCode() + (int) (h ^ (h >>> 32))) * 31 + peerPort;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return this.peerPort == other.peerPort && this.low == other.low && this.high == other.high
+                    && this.serverName.equals(other.serverName);
+        }
+    }
+}
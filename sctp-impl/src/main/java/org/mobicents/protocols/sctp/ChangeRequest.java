@@ -32,6 +32,7 @@ public final class ChangeRequest {
 	public static final int CHANGEOPS = 2;
 	public static final int CONNECT = 3;
 	public static final int CLOSE = 4;
+	public static final int ACCEPTED = 5;
 
 	private int type;
 	private int ops;
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+/**
+ * <p>
+ * Outgoing congestion level computation shared by the NIO and netty stacks.
+ * </p>
+ * <p>
+ * A congestion level is in 0..3. A measured value raises the level when it
+ * reaches the threshold of a higher level and lowers it only once it drops to
+ * the (lower) back to normal threshold of a lower level, so a measure
+ * oscillating around a single threshold does not flip the level.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public final class CongestionControl {
+
+    public static final int MAX_CONGESTION_LEVEL = 3;
+
+    // Pending outbound bytes at which an Association turns writable again and
+    // unwritable
+    public static final int DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 8 * 1024 * 1024;
+    public static final int DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 16 * 1024 * 1024;
+
+    private CongestionControl() {
+    }
+
+    /**
+     * @param congLevel
+     *            the current congestion level
+     * @param value
+     *            the measured value (delay, queue occupancy ...)
+     * @param threshold
+     *            value at which level 1, 2, 3 are reached
+     * @param backToNormalThreshold
+     *            value at which level 0, 1, 2 are back
+     * @return the new congestion level
+     */
+    public static int getCongestionLevel(int congLevel, double value, double[] threshold, double[] backToNormalThreshold) {
+        int newCongLevel = congLevel;
+        for (int i1 = congLevel - 1; i1 >= 0; i1--) {
+            if (value <= backToNormalThreshold[i1]) {
+                newCongLevel = i1;
+            }
+        }
+        for (int i1 = congLevel; i1 < MAX_CONGESTION_LEVEL; i1++) {
+            if (value >= threshold[i1]) {
+                newCongLevel = i1 + 1;
+            }
+        }
+        return newCongLevel;
+    }
+
+    /**
+     * Checks that thresholds are ascending and each back to normal threshold is
+     * lower than the threshold of the same level
+     *
+     * @throws Exception
+     */
+    public static void validate(double[] threshold, double[] backToNormalThreshold) throws Exception {
+        if (threshold == null || backToNormalThreshold == null || threshold.length != MAX_CONGESTION_LEVEL
+                || backToNormalThreshold.length != MAX_CONGESTION_LEVEL) {
+            throw new Exception(String.format("Exactly %d thresholds and %d back to normal thresholds are expected",
+                    MAX_CONGESTION_LEVEL, MAX_CONGESTION_LEVEL));
+        }
+        for (int i1 = 0; i1 < MAX_CONGESTION_LEVEL; i1++) {
+            if (backToNormalThreshold[i1] >= threshold[i1]) {
+                throw new Exception(String.format("Back to normal threshold=%s of level %d must be lower than threshold=%s",
+                        backToNormalThreshold[i1], i1 + 1, threshold[i1]));
+            }
+            if (i1 > 0 && (threshold[i1] <= threshold[i1 - 1] || backToNormalThreshold[i1] <= backToNormalThreshold[i1 - 1])) {
+                throw new Exception(String.format("Thresholds of level %d must be higher than thresholds of level %d", i1 + 1, i1));
+            }
+        }
+    }
+
+    /**
+     * Checks that 0 <= writeBufferLowWaterMark <= writeBufferHighWaterMark
+     *
+     * @throws Exception
+     */
+    public static void validateWriteBufferWaterMark(int writeBufferLowWaterMark, int writeBufferHighWaterMark) throws Exception {
+        if (writeBufferLowWaterMark < 0 || writeBufferHighWaterMark < writeBufferLowWaterMark) {
+            throw new Exception(String.format(
+                    "Write buffer water marks must satisfy 0 <= low <= high, passed low=%d high=%d", writeBufferLowWaterMark,
+                    writeBufferHighWaterMark));
+        }
+    }
+}
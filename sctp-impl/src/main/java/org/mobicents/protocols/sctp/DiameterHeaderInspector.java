@@ -0,0 +1,70 @@
+/*
+ * TeleStax, Open Source Cloud Communications  Copyright 2012. 
+ * and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import io.netty.buffer.ByteBuf;
+
+import org.apache.log4j.Logger;
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.api.PayloadInspector;
+
+/**
+ * {@link PayloadInspector} that logs the hop-by-hop and end-to-end identifiers
+ * of transmitted Diameter messages at DEBUG level. The header fields are read
+ * in place with absolute getters, nothing is copied.
+ * 
+ * Register with {@link ManagementImpl#setPayloadInspector(PayloadInspector)}
+ * to get back the Diameter tracing of the transmit path.
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class DiameterHeaderInspector implements PayloadInspector {
+
+    private static final Logger logger = Logger.getLogger(DiameterHeaderInspector.class);
+
+    // version+length, flags+command code, application id, hop-by-hop, end-to-end
+    private static final int HOP_BY_HOP_OFFSET = 12;
+    private static final int END_TO_END_OFFSET = 16;
+    private static final int HEADER_LENGTH = 20;
+
+    @Override
+    public void onPayloadSent(Association association, PayloadData payloadData) {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+
+        ByteBuf byteBuf = payloadData.getByteBuf();
+        if (byteBuf == null || byteBuf.readableBytes() < HEADER_LENGTH) {
+            return;
+        }
+
+        int readerIndex = byteBuf.readerIndex();
+        long hopByHopId = byteBuf.getUnsignedInt(readerIndex + HOP_BY_HOP_OFFSET);
+        long endToEndId = byteBuf.getUnsignedInt(readerIndex + END_TO_END_OFFSET);
+
+        logger.debug(String.format("Sent '%d' bytes, association '%s', retry count '%d', hbh 0x%x, e2e 0x%x.",
+            payloadData.getDataLength(), association.getName(), payloadData.getRetryCount(), hopByHopId, endToEndId));
+    }
+}
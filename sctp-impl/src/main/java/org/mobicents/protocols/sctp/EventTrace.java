@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.log4j.Logger;
+
+/**
+ * <p>
+ * Ring buffer of connection and association events for diagnostics, dumped on
+ * demand with {@link #dump()}.
+ * </p>
+ * <p>
+ * Nothing is recorded unless the trace is enabled or its logger is at DEBUG
+ * level, and at most maxEventsPerSecond events are recorded per second so that
+ * a reconnect storm does not turn into a logging storm. The detail of an event
+ * is kept as a String so that the trace does not hold on to notifications,
+ * listeners or channels after they are gone.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public final class EventTrace {
+
+    private static final Logger logger = Logger.getLogger(EventTrace.class);
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_EVENTS_PER_SECOND = 1000;
+
+    public enum Event {
+        INCOMING_CONNECTION, CHANNEL_ACTIVE, CHANNEL_UNREGISTERED, COMM_UP, ASSOCIATION_UP, LISTENER_SET
+    }
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final int mask;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile boolean enabled = false;
+    private volatile int maxEventsPerSecond;
+
+    // events recorded in the current second and events dropped by the rate
+    // limit
+    private volatile long windowStart;
+    private final AtomicInteger windowCount = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * @param capacity
+     *            number of the last events kept, rounded up to a power of 2
+     * @param maxEventsPerSecond
+     */
+    public EventTrace(int capacity, int maxEventsPerSecond) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.entries = new AtomicReferenceArray<Entry>(size);
+        this.mask = size - 1;
+        this.maxEventsPerSecond = maxEventsPerSecond;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled || logger.isDebugEnabled();
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMaxEventsPerSecond() {
+        return maxEventsPerSecond;
+    }
+
+    public void setMaxEventsPerSecond(int maxEventsPerSecond) {
+        this.maxEventsPerSecond = maxEventsPerSecond;
+    }
+
+    /**
+     * @return the number of events not recorded because of the rate limit
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @param event
+     * @param name
+     *            name of the Association or of the Server
+     * @param detail
+     *            converted with String.valueOf() when the event is recorded,
+     *            may be null
+     */
+    public void record(Event event, String name, Object detail) {
+        if (!this.isEnabled())
+            return;
+
+        long now = System.currentTimeMillis();
+        if (now - this.windowStart >= 1000) {
+            // racing threads may both reset the window, the limit is approximate
+            this.windowStart = now;
+            this.windowCount.set(0);
+        }
+        if (this.windowCount.incrementAndGet() > this.maxEventsPerSecond) {
+            this.dropped.incrementAndGet();
+            return;
+        }
+
+        Entry entry = new Entry(now, Thread.currentThread().getName(), event, name,
+                detail != null ? String.valueOf(detail) : null);
+        this.entries.lazySet((int) (this.sequence.getAndIncrement() & this.mask), entry);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(entry.toString());
+        }
+    }
+
+    /**
+     * @return the recorded events, oldest first. Events recorded while dumping
+     *         may be missed
+     */
+    public List<String> dump() {
+        long end = this.sequence.get();
+        long start = Math.max(0, end - this.entries.length());
+        List<String> lines = new ArrayList<String>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            Entry entry = this.entries.get((int) (i & this.mask));
+            if (entry != null) {
+                lines.add(entry.toString());
+            }
+        }
+        return lines;
+    }
+
+    public void clear() {
+        for (int i = 0; i < this.entries.length(); i++) {
+            this.entries.set(i, null);
+        }
+        this.sequence.set(0);
+        this.dropped.set(0);
+    }
+
+    private static final class Entry {
+        private final long time;
+        private final String thread;
+        private final Event event;
+        private final String name;
+        private final String detail;
+
+        private Entry(long time, String thread, Event event, String name, String detail) {
+            this.time = time;
+            this.thread = thread;
+            this.event = event;
+            this.name = name;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%tF %<tT.%<tL [%s] %s name=%s %s", this.time, this.thread, this.event, this.name,
+                    this.detail != null ? this.detail : "");
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.mobicents.protocols.api.LatencyHistogram;
+
+/**
+ * <p>
+ * Records latencies into {@link LatencyHistogram} buckets, read with
+ * {@link #snapshot()}.
+ * </p>
+ * <p>
+ * Each recording thread counts into the stripe picked by its thread id, so
+ * the I/O thread and the few application threads sending on an Association
+ * in practice have a stripe of their own. A stripe is allocated at its first
+ * record, an Association never recorded on costs no buckets.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public final class LatencyRecorder {
+
+    private static final int STRIPES = stripes();
+    // the sum of the recorded latencies follows the buckets
+    private static final int SUM = LatencyHistogram.BUCKET_COUNT;
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<AtomicLongArray>(STRIPES);
+
+    private static int stripes() {
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        return Integer.highestOneBit(processors * 2 - 1);
+    }
+
+    /**
+     * Records the time elapsed since the passed System.nanoTime()
+     */
+    public void recordSince(long startTime) {
+        this.record(System.nanoTime() - startTime);
+    }
+
+    public void record(long nanos) {
+        int index = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        AtomicLongArray stripe = this.stripes.get(index);
+        if (stripe == null) {
+            AtomicLongArray newStripe = new AtomicLongArray(SUM + 1);
+            if (this.stripes.compareAndSet(index, null, newStripe)) {
+                stripe = newStripe;
+            } else {
+                stripe = this.stripes.get(index);
+            }
+        }
+
+        stripe.incrementAndGet(LatencyHistogram.bucketIndex(nanos));
+        stripe.addAndGet(SUM, nanos < 0 ? 0 : nanos);
+    }
+
+    public LatencyHistogram snapshot() {
+        long[] counts = null;
+        long sum = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            AtomicLongArray stripe = this.stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            if (counts == null) {
+                counts = new long[LatencyHistogram.BUCKET_COUNT];
+            }
+            for (int j = 0; j < counts.length; j++) {
+                counts[j] += stripe.get(j);
+            }
+            sum += stripe.get(SUM);
+        }
+        return counts == null ? LatencyHistogram.empty() : new LatencyHistogram(counts, sum);
+    }
+}
@@ -29,30 +29,34 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
-import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import org.jctools.maps.NonBlockingHashMap;
-import org.jctools.queues.MpscArrayQueue;
 
 import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationStatistics;
 import org.mobicents.protocols.api.AssociationType;
 import org.mobicents.protocols.api.CongestionListener;
 import org.mobicents.protocols.api.IpChannelType;
 import org.mobicents.protocols.api.Management;
 import org.mobicents.protocols.api.ManagementEventListener;
+import org.mobicents.protocols.api.OverflowPolicy;
 import org.mobicents.protocols.api.PayloadData;
 import org.mobicents.protocols.api.PayloadDataPool;
+import org.mobicents.protocols.api.PayloadInspector;
 import org.mobicents.protocols.api.Server;
 import org.mobicents.protocols.api.ServerListener;
+import org.mobicents.protocols.sctp.jmx.SctpMBeanRegistry;
 import org.mobicents.protocols.sctp.netty.NettySctpManagementImpl;
 
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
@@ -88,20 +92,32 @@ public class ManagementImpl implements Management {
 
 	protected final CopyOnWriteArrayList<Server> servers = new CopyOnWriteArrayList<>();
 	protected final AssociationMap<String, Association> associations = new AssociationMap<>();
-
-	private final MpscArrayQueue<ChangeRequest> pendingChanges = new MpscArrayQueue<>(1024);
+	// (serverName, peer address, peer port) -> SERVER Association for accept matching
+	protected final AssociationIndex associationIndex = new AssociationIndex();
 
 	// PayloadDataPool for high-performance object pooling (v2.0.5)
 	private PayloadDataPool payloadDataPool;
 	private int targetThroughput = 100_000;
 
-	// Create a new selector
-	private Selector socketSelector = null;
+	// Optional tracing hook called after each successfully transmitted payload
+	private volatile PayloadInspector payloadInspector = null;
+
+	// Stamps the payloads to record their send and receive latencies
+	private volatile boolean latencyRecordingEnabled = false;
+
+	// SelectorThread owning the Server channels, hands accepted channels over
+	// to the Association's SelectorThread
+	private SelectorThread acceptorThread = null;
 
-	private SelectorThread selectorThread = null;
+	// SelectorThreads doing connect, read and write for the Associations
+	private SelectorThread[] selectorThreadTable = null;
 
 	static final int DEFAULT_IO_THREADS = Runtime.getRuntime().availableProcessors() * 2;
 
+	static final int DEFAULT_SELECTOR_THREADS = 1;
+
+	private int selectorThreads = DEFAULT_SELECTOR_THREADS;
+
 	private int workerThreads = DEFAULT_IO_THREADS;
 
 	private boolean singleThread = true;
@@ -116,17 +132,61 @@ public class ManagementImpl implements Management {
 
     private int bufferSize = 65535;// 8192;
 
-    private ExecutorService[] executorServices = null;
+    // Receive straight into pooled ByteBufs instead of copying from a per-association buffer
+    private boolean zeroCopyReceive = true;
+
+    // Max number of messages written by a single gathering write (TCP)
+    private volatile int txBatchSize = 64;
+
+    // Max number of bytes written for one Association per selector tick
+    private volatile int txByteBudget = 1024 * 1024;
+
+    // Number of pre-allocated message slots of each WorkerThread ring
+    private int workerQueueSize = 4096;
+
+    private WorkerWaitStrategy workerWaitStrategy = WorkerWaitStrategy.PARK;
+
+    private volatile WorkerThread[] workerThreadTable = null;
+
+    // Period of the stream to WorkerThread rebalancing in milliseconds, 0
+    // keeps the initial round-robin mapping
+    private int workerRebalanceInterval = 1000;
+
+    private ScheduledExecutorService workerRebalancerExecutor = null;
+
+    // Outgoing congestion thresholds: delay in seconds a message waits in the
+    // txQueue and txQueue occupancy as a fraction of its capacity
+    protected double[] congControl_DelayThreshold = new double[] { 2.5, 8, 14 };
+    protected double[] congControl_BackToNormalDelayThreshold = new double[] { 1.5, 5.5, 10 };
+    protected double[] congControl_QueueThreshold = new double[] { 0.5, 0.75, 0.9 };
+    protected double[] congControl_BackToNormalQueueThreshold = new double[] { 0.4, 0.65, 0.8 };
 
     private final List<ManagementEventListener> managementEventListeners = new CopyOnWriteArrayList<>();
 
+    private final CopyOnWriteArrayList<CongestionListener> congestionListeners = new CopyOnWriteArrayList<>();
+
     private ServerListener serverListener = null;
 
 	private volatile boolean started = false;
 
+    private final LoopTimer loopTimer = new LoopTimer();
+
+    // registers the MBeans, notified next to the ManagementEventListeners
+    private final SctpMBeanRegistry mBeanRegistry;
+
 	public ManagementImpl(String name) throws IOException {
 		this.name = name;
-		this.socketSelector = SelectorProvider.provider().openSelector();
+        this.mBeanRegistry = new SctpMBeanRegistry(this, this.loopTimer) {
+            @Override
+            protected TrafficCounters getTrafficCounters(Association association) {
+                return ((AssociationImpl) association).getTrafficCounters();
+            }
+
+            @Override
+            protected List<SelectorThreadStatistics> getSelectorThreadStatistics() {
+                return ManagementImpl.this.getSelectorThreadStatistics();
+            }
+        };
 	}
 
 	/**
@@ -187,6 +247,93 @@ public class ManagementImpl implements Management {
 //		this.store();
 	}
 
+	/**
+	 * @return the number of SelectorThreads the Associations are spread over
+	 */
+	public int getSelectorThreads() {
+		return selectorThreads;
+	}
+
+	/**
+	 * @param selectorThreads
+	 *            the number of SelectorThreads the Associations are spread
+	 *            over. Server channels are always handled by a separate
+	 *            acceptor SelectorThread
+	 */
+	public void setSelectorThreads(int selectorThreads) throws Exception {
+        if (this.started)
+            throw new Exception("SelectorThreads parameter can be updated only when SCTP stack is NOT running");
+        if (selectorThreads < 1 || selectorThreads > 256)
+            throw new Exception("SelectorThreads must be between 1 and 256");
+
+		this.selectorThreads = selectorThreads;
+	}
+
+	/**
+	 * @return the number of pre-allocated message slots of each worker thread
+	 */
+	public int getWorkerQueueSize() {
+		return workerQueueSize;
+	}
+
+	/**
+	 * @param workerQueueSize
+	 *            the number of pre-allocated message slots of each worker
+	 *            thread, rounded up to a power of 2. A selector thread waits
+	 *            for a free slot when the ring of a worker thread is full
+	 */
+	public void setWorkerQueueSize(int workerQueueSize) throws Exception {
+        if (this.started)
+            throw new Exception("WorkerQueueSize parameter can be updated only when SCTP stack is NOT running");
+        if (workerQueueSize < 16 || workerQueueSize > 1048576)
+            throw new Exception("WorkerQueueSize must be between 16 and 1048576");
+
+		this.workerQueueSize = workerQueueSize;
+	}
+
+	/**
+	 * @return the period in milliseconds of the stream to worker thread
+	 *         rebalancing, 0 if disabled
+	 */
+	public int getWorkerRebalanceInterval() {
+		return workerRebalanceInterval;
+	}
+
+	/**
+	 * @param workerRebalanceInterval
+	 *            the period in milliseconds at which streams are moved from
+	 *            busy to idle worker threads, 0 keeps the initial round-robin
+	 *            mapping
+	 */
+	public void setWorkerRebalanceInterval(int workerRebalanceInterval) throws Exception {
+        if (this.started)
+            throw new Exception("WorkerRebalanceInterval parameter can be updated only when SCTP stack is NOT running");
+        if (workerRebalanceInterval < 0)
+            throw new Exception("WorkerRebalanceInterval must not be negative");
+
+		this.workerRebalanceInterval = workerRebalanceInterval;
+	}
+
+	/**
+	 * @return how an idle worker thread waits for the next message
+	 */
+	public WorkerWaitStrategy getWorkerWaitStrategy() {
+		return workerWaitStrategy;
+	}
+
+	/**
+	 * @param workerWaitStrategy
+	 *            how an idle worker thread waits for the next message
+	 */
+	public void setWorkerWaitStrategy(WorkerWaitStrategy workerWaitStrategy) throws Exception {
+        if (this.started)
+            throw new Exception("WorkerWaitStrategy parameter can be updated only when SCTP stack is NOT running");
+        if (workerWaitStrategy == null)
+            throw new Exception("WorkerWaitStrategy must not be null");
+
+		this.workerWaitStrategy = workerWaitStrategy;
+	}
+
 	/**
 	 * @return the maxIOErrors
 	 */
@@ -240,6 +387,67 @@ public class ManagementImpl implements Management {
         this.bufferSize = bufferSize;
     }
 
+    /**
+     * @return true if Associations receive directly into pooled ByteBufs sized
+     *         by a per-association adaptive predictor, false if data is first
+     *         received into a per-association buffer of getBufferSize() bytes
+     *         and then copied
+     */
+    public boolean isZeroCopyReceive() {
+        return zeroCopyReceive;
+    }
+
+    /**
+     * @param zeroCopyReceive
+     *            the zeroCopyReceive to set
+     */
+    public void setZeroCopyReceive(boolean zeroCopyReceive) throws Exception {
+        if (this.started)
+            throw new Exception("ZeroCopyReceive parameter can be updated only when SCTP stack is NOT running");
+
+        this.zeroCopyReceive = zeroCopyReceive;
+    }
+
+    /**
+     * @return the max number of queued messages a TCP Association writes with
+     *         one gathering write
+     */
+    public int getTxBatchSize() {
+        return txBatchSize;
+    }
+
+    /**
+     * @param txBatchSize
+     *            the max number of queued messages a TCP Association writes
+     *            with one gathering write, 1 writes messages one by one
+     */
+    public void setTxBatchSize(int txBatchSize) throws Exception {
+        if (txBatchSize < 1 || txBatchSize > 1024)
+            throw new Exception("TxBatchSize must be between 1 and 1024");
+
+        this.txBatchSize = txBatchSize;
+    }
+
+    /**
+     * @return the max number of bytes an Association writes per selector tick
+     *         before giving the other Associations a turn
+     */
+    public int getTxByteBudget() {
+        return txByteBudget;
+    }
+
+    /**
+     * @param txByteBudget
+     *            the max number of bytes an Association writes per selector
+     *            tick
+     */
+    public void setTxByteBudget(int txByteBudget) throws Exception {
+        if (txByteBudget < 1000)
+            throw new Exception("TxByteBudget must be at least 1000 bytes");
+
+        this.txByteBudget = txByteBudget;
+    }
+
     public ServerListener getServerListener() {
         return serverListener;
     }
@@ -248,6 +456,14 @@ public class ManagementImpl implements Management {
         return managementEventListeners;
     }
 
+    /**
+     * @return the time the selector thread spends per loop on handling the
+     *         ready keys
+     */
+    protected LoopTimer getLoopTimer() {
+        return loopTimer;
+    }
+
     public void setServerListener(ServerListener serverListener) {
         this.serverListener = serverListener;
     }
@@ -281,6 +497,11 @@ public class ManagementImpl implements Management {
 
             logger.info(String.format("SCTP configuration file path '%s'", persistFile.toString()));
 
+            // Servers started by load() register with the acceptor
+            this.acceptorThread = new SelectorThread(SelectorProvider.provider().openSelector(), this, -1);
+            this.acceptorThread.setStarted(true);
+            (new Thread(this.acceptorThread, "SctpAcceptor-" + this.name)).start();
+
             try {
                 this.load();
             } catch (FileNotFoundException e) {
@@ -289,23 +510,40 @@ public class ManagementImpl implements Management {
 
             if (!this.singleThread) {
                 // If not single thread model we create worker threads
-                this.executorServices = new ExecutorService[this.workerThreads];
+                this.workerThreadTable = new WorkerThread[this.workerThreads];
                 for (int i = 0; i < this.workerThreads; i++) {
-                    this.executorServices[i] = Executors.newSingleThreadExecutor();
+                    this.workerThreadTable[i] = new WorkerThread(i, this.workerQueueSize, this.workerWaitStrategy);
+                    this.workerThreadTable[i].start("SctpWorker-" + this.name + "-" + i);
                 }
-            }
-            this.selectorThread = new SelectorThread(this.socketSelector, this);
-            this.selectorThread.setStarted(true);
 
-            (new Thread(this.selectorThread)).start();
+                if (this.workerRebalanceInterval > 0 && this.workerThreads > 1) {
+                    this.workerRebalancerExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r, "SctpWorkerRebalancer-" + name);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+                    this.workerRebalancerExecutor.scheduleWithFixedDelay(new WorkerRebalancer(this),
+                        this.workerRebalanceInterval, this.workerRebalanceInterval, TimeUnit.MILLISECONDS);
+                }
+            }
+            this.selectorThreadTable = new SelectorThread[this.selectorThreads];
+            for (int i = 0; i < this.selectorThreads; i++) {
+                this.selectorThreadTable[i] = new SelectorThread(SelectorProvider.provider().openSelector(), this, i);
+                this.selectorThreadTable[i].setStarted(true);
+                (new Thread(this.selectorThreadTable[i], "SctpSelector-" + this.name + "-" + i)).start();
+            }
 
             this.started = true;
 
             if (logger.isInfoEnabled()) {
-                logger.info(String.format("Started SCTP Management=%s WorkerThreads=%d SingleThread=%s", this.name,
-                    (this.singleThread ? 0 : this.workerThreads), this.singleThread));
+                logger.info(String.format("Started SCTP Management=%s SelectorThreads=%d WorkerThreads=%d SingleThread=%s", this.name,
+                    this.selectorThreads, (this.singleThread ? 0 : this.workerThreads), this.singleThread));
             }
 
+            this.mBeanRegistry.onServiceStarted();
             for (ManagementEventListener lstr : managementEventListeners) {
                 try {
                     lstr.onServiceStarted();
@@ -323,6 +561,7 @@ public class ManagementImpl implements Management {
             return;
         }
 
+        this.mBeanRegistry.onServiceStopped();
         for (ManagementEventListener lstr : managementEventListeners) {
             try {
                 lstr.onServiceStopped();
@@ -351,14 +590,24 @@ public class ManagementImpl implements Management {
             }
         }
 
-        if (this.executorServices != null) {
-            for (int i = 0; i < this.executorServices.length; i++) {
-                this.executorServices[i].shutdown();
+        if (this.workerRebalancerExecutor != null) {
+            this.workerRebalancerExecutor.shutdownNow();
+            this.workerRebalancerExecutor = null;
+        }
+
+        if (this.workerThreadTable != null) {
+            for (int i = 0; i < this.workerThreadTable.length; i++) {
+                this.workerThreadTable[i].stop();
             }
         }
 
-        this.selectorThread.setStarted(false);
-        this.socketSelector.wakeup(); // Wakeup selector so SelectorThread dies
+        // Wakeup selectors so SelectorThreads die
+        this.acceptorThread.setStarted(false);
+        this.acceptorThread.wakeup();
+        for (SelectorThread selectorThread : this.selectorThreadTable) {
+            selectorThread.setStarted(false);
+            selectorThread.wakeup();
+        }
 
         // waiting till stopping associations
         for (int i1 = 0; i1 < 20; i1++) {
@@ -374,20 +623,21 @@ public class ManagementImpl implements Management {
             Thread.sleep(100);
         }
 
-        // Graceful shutdown for each of Executors
-        if (this.executorServices != null) {
-            for (int i = 0; i < this.executorServices.length; i++) {
-                if (!this.executorServices[i].isTerminated()) {
+        // Graceful shutdown for each of WorkerThreads
+        if (this.workerThreadTable != null) {
+            for (int i = 0; i < this.workerThreadTable.length; i++) {
+                if (!this.workerThreadTable[i].isTerminated()) {
                     if (logger.isInfoEnabled()) {
                         logger.info("Waiting for worker thread to die gracefully ....");
                     }
                     try {
-                        this.executorServices[i].awaitTermination(5000, TimeUnit.MILLISECONDS);
+                        this.workerThreadTable[i].join(5000);
                     } catch (InterruptedException e) {
                         // Do we care?
                     }
                 }
             }
+            this.workerThreadTable = null;
         }
 
         this.started = false;
@@ -432,6 +682,44 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
     return null;
 }
 
+    /**
+     * @return the PayloadInspector invoked after every transmitted payload or
+     *         null if none is registered
+     */
+    public PayloadInspector getPayloadInspector() {
+        return payloadInspector;
+    }
+
+    /**
+     * Registers a tracing hook called by the selector thread after every
+     * PayloadData fully written to a socket. Set null to disable; nothing is
+     * done on the transmit path when no inspector is registered.
+     * 
+     * @param payloadInspector
+     */
+    public void setPayloadInspector(PayloadInspector payloadInspector) {
+        this.payloadInspector = payloadInspector;
+    }
+
+    @Override
+    public boolean isLatencyRecordingEnabled() {
+        return latencyRecordingEnabled;
+    }
+
+    @Override
+    public void setLatencyRecordingEnabled(boolean latencyRecordingEnabled) {
+        this.latencyRecordingEnabled = latencyRecordingEnabled;
+    }
+
+    @Override
+    public boolean isJmxEnabled() {
+        return this.mBeanRegistry.isEnabled();
+    }
+
+    @Override
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.mBeanRegistry.setEnabled(jmxEnabled);
+    }
 
     public boolean isStarted(){
         return this.started;
@@ -448,6 +736,20 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
                     Integer vali = persistData.getConnectDelay();
                     if (vali != null)
                         this.connectDelay = vali;
+                    vali = persistData.getSelectorThreads();
+                    if (vali != null && vali >= 1)
+                        this.selectorThreads = vali;
+
+                    Double valTH1 = persistData.getCongControlDelayThreshold1();
+                    Double valTH2 = persistData.getCongControlDelayThreshold2();
+                    Double valTH3 = persistData.getCongControlDelayThreshold3();
+                    Double valTB1 = persistData.getCongControlBackToNormalDelayThreshold1();
+                    Double valTB2 = persistData.getCongControlBackToNormalDelayThreshold2();
+                    Double valTB3 = persistData.getCongControlBackToNormalDelayThreshold3();
+                    if (valTH1 != null && valTH2 != null && valTH3 != null && valTB1 != null && valTB2 != null && valTB3 != null) {
+                        this.congControl_DelayThreshold = new double[] { valTH1, valTH2, valTH3 };
+                        this.congControl_BackToNormalDelayThreshold = new double[] { valTB1, valTB2, valTB3 };
+                    }
                 } catch (java.lang.NullPointerException npe) {
                     // ignore.
                     // For backward compatibility we can ignore if these values are not defined
@@ -475,6 +777,7 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
                 }
                 for (Association associationTemp : this.associations.values()) {
                     ((AssociationImpl) associationTemp).setManagement(this);
+                    this.associationIndex.add(associationTemp, ((AssociationImpl) associationTemp).getPeerAddressKeys());
                 }
             }
         } catch (FileNotFoundException e) {
@@ -491,6 +794,13 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
             SctpPersistenceData persistData = new SctpPersistenceData();
             
             persistData.setConnectDelay(this.connectDelay);
+            persistData.setSelectorThreads(this.selectorThreads);
+            persistData.setCongControlDelayThreshold1(this.congControl_DelayThreshold[0]);
+            persistData.setCongControlDelayThreshold2(this.congControl_DelayThreshold[1]);
+            persistData.setCongControlDelayThreshold3(this.congControl_DelayThreshold[2]);
+            persistData.setCongControlBackToNormalDelayThreshold1(this.congControl_BackToNormalDelayThreshold[0]);
+            persistData.setCongControlBackToNormalDelayThreshold2(this.congControl_BackToNormalDelayThreshold[1]);
+            persistData.setCongControlBackToNormalDelayThreshold3(this.congControl_BackToNormalDelayThreshold[2]);
             persistData.setServers(new CopyOnWriteArrayList<>(this.servers));
             persistData.setAssociations(this.associations);
             
@@ -599,6 +909,7 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
 
             this.store();
 
+            this.mBeanRegistry.onServerAdded(server);
             for (ManagementEventListener managementEventListener : managementEventListeners) {
                 try {
                     managementEventListener.onServerAdded(server);
@@ -651,6 +962,7 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
 
             this.store();
 
+            this.mBeanRegistry.onServerRemoved(removeServer);
             for (ManagementEventListener managementEventListener : managementEventListeners) {
                 try {
                     managementEventListener.onServerRemoved(removeServer);
@@ -767,11 +1079,13 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
             association.setManagement(this);
 
             this.associations.put(assocName, association);
+            this.associationIndex.add(association, association.getPeerAddressKeys());
             ((ServerImpl) server).associations.add(assocName);
             // ((ServerImpl) server).associations.add(assocName);
 
             this.store();
 
+            this.mBeanRegistry.onAssociationAdded(association);
             for (ManagementEventListener managementEventListener : managementEventListeners) {
                 try {
                     managementEventListener.onAssociationAdded(association);
@@ -846,6 +1160,7 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
 
             this.store();
 
+            this.mBeanRegistry.onAssociationAdded(association);
             for (ManagementEventListener lstr : managementEventListeners) {
                 try {
                     lstr.onAssociationAdded(association);
@@ -883,6 +1198,15 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
         return result;
     }
 
+    @Override
+    public Map<String, AssociationStatistics> getStatistics() {
+        Map<String, AssociationStatistics> result = new HashMap<String, AssociationStatistics>();
+        for (Association association : this.associations.values()) {
+            result.put(association.getName(), association.getStatistics());
+        }
+        return result;
+    }
+
     public void startAssociation(String assocName) throws Exception {
         if (!this.started) {
             throw new Exception(String.format("Management=%s not started", this.name));
@@ -946,6 +1270,7 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
             }
 
             this.associations.remove(assocName);
+            this.associationIndex.remove(association);
             // this.associations.remove(assocName);
 
             if (((AssociationImpl) association).getAssociationType() == AssociationType.SERVER) {
@@ -959,6 +1284,7 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
 
             this.store();
 
+            this.mBeanRegistry.onAssociationRemoved(association);
             for (ManagementEventListener managementEventListener : managementEventListeners) {
                 try {
                     managementEventListener.onAssociationRemoved(association);
@@ -977,17 +1303,49 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
     }
 
     /**
-     * @return the pendingChanges
+     * @return the SelectorThread owning the Server channels
+     */
+    protected SelectorThread getAcceptorThread() {
+        return acceptorThread;
+    }
+
+    /**
+     * Assigns a starting Association to the least loaded SelectorThread. The
+     * search starts at the shard given by the hash of the Association name so
+     * that equally loaded shards are filled in a stable, spread out order
      */
-    protected MpscArrayQueue<ChangeRequest> getPendingChanges() {
-        return pendingChanges;
+    protected SelectorThread assignSelectorThread(AssociationImpl association) {
+        SelectorThread[] table = this.selectorThreadTable;
+        int start = (association.getName() == null ? 0 : association.getName().hashCode() & Integer.MAX_VALUE) % table.length;
+        SelectorThread selected = table[start];
+        for (int i = 1; i < table.length; i++) {
+            SelectorThread candidate = table[(start + i) % table.length];
+            if (candidate.getAssociationCount() < selected.getAssociationCount()) {
+                selected = candidate;
+            }
+        }
+        selected.onAssociationAssigned();
+        return selected;
+    }
+
+    protected void releaseSelectorThread(SelectorThread selectorThread) {
+        selectorThread.onAssociationReleased();
     }
 
     /**
-     * @return the socketSelector
+     * @return the load of the acceptor (index -1) and of each SelectorThread,
+     *         empty if the Management is not started
      */
-    protected Selector getSocketSelector() {
-        return socketSelector;
+    public List<SelectorThreadStatistics> getSelectorThreadStatistics() {
+        List<SelectorThreadStatistics> res = new ArrayList<>();
+        if (!this.started) {
+            return res;
+        }
+        res.add(this.acceptorThread.getStatistics());
+        for (SelectorThread selectorThread : this.selectorThreadTable) {
+            res.add(selectorThread.getStatistics());
+        }
+        return res;
     }
 
     protected void populateWorkerThread(int workerThreadTable[]) {
@@ -1001,80 +1359,157 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
         }
     }
 
-    protected ExecutorService getExecutorService(int index) {
-        return this.executorServices[index];
+    protected WorkerThread getWorkerThread(int index) {
+        return this.workerThreadTable[index];
+    }
+
+    /**
+     * @return the number of running WorkerThreads, 0 in single thread mode
+     */
+    protected int getWorkerThreadCount() {
+        WorkerThread[] table = this.workerThreadTable;
+        return table == null ? 0 : table.length;
+    }
+
+    /**
+     * @return the queue depth and load of each WorkerThread, empty in single
+     *         thread mode
+     */
+    public List<WorkerThreadStatistics> getWorkerThreadStatistics() {
+        List<WorkerThreadStatistics> res = new ArrayList<>();
+        WorkerThread[] table = this.workerThreadTable;
+        if (table != null) {
+            for (WorkerThread workerThread : table) {
+                res.add(workerThread.getStatistics());
+            }
+        }
+        return res;
     }
 
     @Override
     public double getCongControl_DelayThreshold_1() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_DelayThreshold[0];
     }
 
     @Override
     public double getCongControl_DelayThreshold_2() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_DelayThreshold[1];
     }
 
     @Override
     public double getCongControl_DelayThreshold_3() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_DelayThreshold[2];
     }
 
     @Override
     public void setCongControl_DelayThreshold_1(double delayThreshold) throws Exception {
-        // TODO Auto-generated method stub
+        if (!this.started)
+            throw new Exception("CongControl_DelayThreshold parameter can be updated only when SCTP stack is running");
 
+        congControl_DelayThreshold[0] = delayThreshold;
+
+        this.store();
     }
 
     @Override
     public void setCongControl_DelayThreshold_2(double delayThreshold) throws Exception {
-        // TODO Auto-generated method stub
+        if (!this.started)
+            throw new Exception("CongControl_DelayThreshold parameter can be updated only when SCTP stack is running");
+
+        congControl_DelayThreshold[1] = delayThreshold;
 
+        this.store();
     }
 
     @Override
     public void setCongControl_DelayThreshold_3(double delayThreshold) throws Exception {
-        // TODO Auto-generated method stub
+        if (!this.started)
+            throw new Exception("CongControl_DelayThreshold parameter can be updated only when SCTP stack is running");
 
+        congControl_DelayThreshold[2] = delayThreshold;
+
+        this.store();
     }
 
     @Override
     public double getCongControl_BackToNormalDelayThreshold_1() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_BackToNormalDelayThreshold[0];
     }
 
     @Override
     public double getCongControl_BackToNormalDelayThreshold_2() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_BackToNormalDelayThreshold[1];
     }
 
     @Override
     public double getCongControl_BackToNormalDelayThreshold_3() {
-        // TODO Auto-generated method stub
-        return 0;
+        return congControl_BackToNormalDelayThreshold[2];
     }
 
     @Override
     public void setCongControl_BackToNormalDelayThreshold_1(double backToNormalDelayThreshold) throws Exception {
-        // TODO Auto-generated method stub
+        if (!this.started)
+            throw new Exception(
+                    "CongControl_BackToNormalDelayThreshold parameter can be updated only when SCTP stack is running");
+
+        congControl_BackToNormalDelayThreshold[0] = backToNormalDelayThreshold;
 
+        this.store();
     }
 
     @Override
     public void setCongControl_BackToNormalDelayThreshold_2(double backToNormalDelayThreshold) throws Exception {
-        // TODO Auto-generated method stub
+        if (!this.started)
+            throw new Exception(
+                    "CongControl_BackToNormalDelayThreshold parameter can be updated only when SCTP stack is running");
 
+        congControl_BackToNormalDelayThreshold[1] = backToNormalDelayThreshold;
+
+        this.store();
     }
 
     @Override
     public void setCongControl_BackToNormalDelayThreshold_3(double backToNormalDelayThreshold) throws Exception {
-        // TODO Auto-generated method stub
+        if (!this.started)
+            throw new Exception(
+                    "CongControl_BackToNormalDelayThreshold parameter can be updated only when SCTP stack is running");
 
+        congControl_BackToNormalDelayThreshold[2] = backToNormalDelayThreshold;
+
+        this.store();
+    }
+
+    /**
+     * @return the txQueue occupancy (fraction of its capacity) at which an
+     *         Association reaches congestion level 1, 2, 3
+     */
+    public double[] getCongControl_QueueThreshold() {
+        return congControl_QueueThreshold.clone();
+    }
+
+    /**
+     * @return the txQueue occupancy (fraction of its capacity) at which an
+     *         Association gets back to congestion level 0, 1, 2
+     */
+    public double[] getCongControl_BackToNormalQueueThreshold() {
+        return congControl_BackToNormalQueueThreshold.clone();
+    }
+
+    /**
+     * @param queueThreshold
+     *            txQueue occupancy in ]0, 1] reaching congestion level 1, 2, 3
+     * @param backToNormalQueueThreshold
+     *            txQueue occupancy in [0, 1[ getting back to congestion level
+     *            0, 1, 2
+     * @throws Exception
+     */
+    public void setCongControl_QueueThreshold(double[] queueThreshold, double[] backToNormalQueueThreshold) throws Exception {
+        CongestionControl.validate(queueThreshold, backToNormalQueueThreshold);
+        if (queueThreshold[CongestionControl.MAX_CONGESTION_LEVEL - 1] > 1 || backToNormalQueueThreshold[0] < 0)
+            throw new Exception("CongControl_QueueThreshold values must be between 0 and 1");
+
+        this.congControl_QueueThreshold = queueThreshold.clone();
+        this.congControl_BackToNormalQueueThreshold = backToNormalQueueThreshold.clone();
     }
 
     @Override
@@ -1175,14 +1610,26 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
 
     @Override
     public void addCongestionListener(CongestionListener listener) {
-        // TODO Auto-generated method stub
+        synchronized (this) {
+            if (this.congestionListeners.contains(listener))
+                return;
 
+            this.congestionListeners.add(listener);
+        }
     }
 
     @Override
     public void removeCongestionListener(CongestionListener listener) {
-        // TODO Auto-generated method stub
+        synchronized (this) {
+            if (!this.congestionListeners.contains(listener))
+                return;
 
+            this.congestionListeners.remove(listener);
+        }
+    }
+
+    protected CopyOnWriteArrayList<CongestionListener> getCongestionListeners() {
+        return congestionListeners;
     }
 
     @Override
@@ -1275,55 +1722,61 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
                 }
             }
 
-            if(peerAddress!=null)
-                association.setPeerAddress(peerAddress);
-            if(peerPort!= null)
-                association.setPeerPort(peerPort);
+            // re-indexed in finally once serverName / peer address / peer port are updated
+            this.associationIndex.remove(association);
+            try {
+                if(peerAddress!=null)
+                    association.setPeerAddress(peerAddress);
+                if(peerPort!= null)
+                    association.setPeerPort(peerPort);
 
-            if(serverName!=null && !serverName.equals(association.getServerName()))
-            {
-                Server newServer = null;
+                if(serverName!=null && !serverName.equals(association.getServerName()))
+                {
+                    Server newServer = null;
 
-                for (Server serverTemp : this.servers) {
-                    if (serverTemp.getName().equals(serverName)) {
-                        newServer = serverTemp;
+                    for (Server serverTemp : this.servers) {
+                        if (serverTemp.getName().equals(serverName)) {
+                            newServer = serverTemp;
+                        }
                     }
-                }
 
-                if (newServer == null) {
-                    throw new Exception(String.format("No Server found for name=%s", serverName));
-                }
-
-                if ((ipChannelType!=null && newServer.getIpChannelType() != ipChannelType)||(ipChannelType==null && newServer.getIpChannelType() != association.getIpChannelType()))
-                    throw new Exception(String.format("Server and Association have different IP channel types"));
-
-                //remove association from current server
-                for (Server serverTemp : this.servers) {
-                    if (serverTemp.getName().equals(association.getServerName())) {
-                        ((ServerImpl) serverTemp).associations.remove(associationName);
-                        break;
+                    if (newServer == null) {
+                        throw new Exception(String.format("No Server found for name=%s", serverName));
                     }
-                }
 
-                //add association name to server
-                ((ServerImpl) newServer).associations.add(associationName);
+                    if ((ipChannelType!=null && newServer.getIpChannelType() != ipChannelType)||(ipChannelType==null && newServer.getIpChannelType() != association.getIpChannelType()))
+                        throw new Exception(String.format("Server and Association have different IP channel types"));
 
-                association.setServerName(serverName);
-            }
-            else
-            {
-                if(ipChannelType!=null)
-                {
+                    //remove association from current server
                     for (Server serverTemp : this.servers) {
                         if (serverTemp.getName().equals(association.getServerName())) {
-                            if (serverTemp.getIpChannelType() != ipChannelType)
-                                throw new Exception(String.format("Server and Association have different IP channel types"));
+                            ((ServerImpl) serverTemp).associations.remove(associationName);
+                            break;
                         }
                     }
 
-                    association.setIpChannelType(ipChannelType);
+                    //add association name to server
+                    ((ServerImpl) newServer).associations.add(associationName);
+
+                    association.setServerName(serverName);
                 }
+                else
+                {
+                    if(ipChannelType!=null)
+                    {
+                        for (Server serverTemp : this.servers) {
+                            if (serverTemp.getName().equals(association.getServerName())) {
+                                if (serverTemp.getIpChannelType() != ipChannelType)
+                                    throw new Exception(String.format("Server and Association have different IP channel types"));
+                            }
+                        }
 
+                        association.setIpChannelType(ipChannelType);
+                    }
+
+                }
+            } finally {
+                this.associationIndex.add(association, association.getPeerAddressKeys());
             }
 
             this.store();
@@ -1374,6 +1827,8 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
 
             AssociationImpl association = (AssociationImpl) this.associations.get(assocName);
 
+            this.associationIndex.remove(association);
+
             if(hostAddress!=null)
             {
                 association.setHostAddress(hostAddress);
@@ -1410,6 +1865,8 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
                 isModified = true;
             }
 
+            this.associationIndex.add(association, association.getPeerAddressKeys());
+
             if(association.isConnected() && isModified)
             {
                 association.stop();
@@ -1429,6 +1886,101 @@ public PayloadDataPool.PoolStatistics getPoolStatistics() {
         }
 
     }
+
+    @Override
+    public void modifyAssociationWriteBufferWaterMark(String assocName, int writeBufferLowWaterMark,
+            int writeBufferHighWaterMark) throws Exception {
+        if (!this.started) {
+            throw new Exception(String.format("Management=%s not started", this.name));
+        }
+
+        if (assocName == null) {
+            throw new Exception("Association name cannot be null");
+        }
+
+        CongestionControl.validateWriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark);
+
+        synchronized (this) {
+            AssociationImpl association = (AssociationImpl) this.associations.get(assocName);
+            if (association == null) {
+                throw new Exception(String.format("No Association found for name=%s", assocName));
+            }
+
+            // applies from the next queued or written message on
+            association.setWriteBufferLowWaterMark(writeBufferLowWaterMark);
+            association.setWriteBufferHighWaterMark(writeBufferHighWaterMark);
+
+            this.store();
+
+            for (ManagementEventListener lstr : managementEventListeners) {
+                try {
+                    lstr.onAssociationModified((Association) association);
+                } catch (Throwable ee) {
+                    logger.error("Exception while invoking onAssociationModified", ee);
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes the outbound capacity of a stopped Association and the policy
+     * applied once it is reached. Null parameters are left unchanged
+     * 
+     * @param assocName
+     * @param txQueueCapacity
+     *            max number of queued messages
+     * @param txQueueMaxBytes
+     *            max number of queued bytes, 0 for no limit
+     * @param txOverflowPolicy
+     * @param txBlockTimeout
+     *            milliseconds a sender waits for room with
+     *            {@link OverflowPolicy#BLOCK}
+     * @throws Exception
+     */
+    public void modifyAssociationTxQueue(String assocName, Integer txQueueCapacity, Long txQueueMaxBytes,
+            OverflowPolicy txOverflowPolicy, Long txBlockTimeout) throws Exception {
+        if (!this.started) {
+            throw new Exception(String.format("Management=%s not started", this.name));
+        }
+
+        if (assocName == null) {
+            throw new Exception("Association name cannot be null");
+        }
+
+        synchronized (this) {
+            AssociationImpl association = (AssociationImpl) this.associations.get(assocName);
+            if (association == null) {
+                throw new Exception(String.format("No Association found for name=%s", assocName));
+            }
+
+            if (association.isStarted()) {
+                throw new Exception(String.format("Association=%s is started. Stop it before changing its txQueue", assocName));
+            }
+
+            if (txQueueCapacity != null) {
+                association.setTxQueueCapacity(txQueueCapacity);
+            }
+            if (txQueueMaxBytes != null) {
+                association.setTxQueueMaxBytes(txQueueMaxBytes);
+            }
+            if (txOverflowPolicy != null) {
+                association.setTxOverflowPolicy(txOverflowPolicy);
+            }
+            if (txBlockTimeout != null) {
+                association.setTxBlockTimeout(txBlockTimeout);
+            }
+
+            this.store();
+
+            for (ManagementEventListener lstr : managementEventListeners) {
+                try {
+                    lstr.onAssociationModified((Association) association);
+                } catch (Throwable ee) {
+                    logger.error("Exception while invoking onAssociationModified", ee);
+                }
+            }
+        }
+    }
 }
 
 
@@ -0,0 +1,194 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * <p>
+ * Pre-parsed binary form of a provisioned peer IP address. An IPv6 address is
+ * stored as a pair of longs, an IPv4 address is stored in its IPv4-mapped IPv6
+ * form (::ffff:a.b.c.d) so both families compare the same way.
+ * </p>
+ * <p>
+ * Only IP literals are parsed, a host name is never resolved. Incoming
+ * connections are matched by comparing primitives, no String is created for
+ * the remote address.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public final class PeerAddressKey {
+
+    private static final long IPV4_MAPPED_PREFIX = 0xFFFF00000000L;
+
+    private static final PeerAddressKey[] EMPTY = new PeerAddressKey[0];
+
+    private final long high;
+    private final long low;
+
+    private PeerAddressKey(long high, long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * Parses an IPv4 or IPv6 literal
+     *
+     * @param address
+     * @return the key or null if address is null or not an IP literal
+     */
+    public static PeerAddressKey valueOf(String address) {
+        if (address == null || address.isEmpty()) {
+            return null;
+        }
+
+        if (address.indexOf(':') < 0) {
+            long ipv4 = parseIpv4(address);
+            return ipv4 < 0 ? null : new PeerAddressKey(0L, IPV4_MAPPED_PREFIX | ipv4);
+        }
+
+        try {
+            // a literal containing ':' is never looked up by the name service
+            InetAddress inetAddress = InetAddress.getByName(address);
+            return new PeerAddressKey(high(inetAddress), low(inetAddress));
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses the primary and extra peer addresses of an Association. The
+     * primary address is the first element. Addresses which are not IP literals
+     * are skipped.
+     */
+    public static PeerAddressKey[] valueOf(String peerAddress, String[] extraPeerAddresses) {
+        int count = 1 + (extraPeerAddresses == null ? 0 : extraPeerAddresses.length);
+        PeerAddressKey[] keys = new PeerAddressKey[count];
+        int size = 0;
+
+        PeerAddressKey key = valueOf(peerAddress);
+        if (key != null) {
+            keys[size++] = key;
+        }
+        if (extraPeerAddresses != null) {
+            for (String extraPeerAddress : extraPeerAddresses) {
+                key = valueOf(extraPeerAddress);
+                if (key != null) {
+                    keys[size++] = key;
+                }
+            }
+        }
+
+        if (size == 0) {
+            return EMPTY;
+        }
+        if (size < count) {
+            PeerAddressKey[] trimmed = new PeerAddressKey[size];
+            System.arraycopy(keys, 0, trimmed, 0, size);
+            return trimmed;
+        }
+        return keys;
+    }
+
+    static long high(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            return 0L;
+        }
+        return toLong(address.getAddress(), 0);
+    }
+
+    static long low(InetAddress address) {
+        if (address instanceof Inet4Address) {
+            // Inet4Address.hashCode() is the address itself, avoids the copy
+            // made by getAddress()
+            return IPV4_MAPPED_PREFIX | (address.hashCode() & 0xFFFFFFFFL);
+        }
+        return toLong(address.getAddress(), 8);
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0L;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long parseIpv4(String address) {
+        long value = 0L;
+        int octet = -1;
+        int octets = 0;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && octets < 3) {
+                value = (value << 8) | octet;
+                octet = -1;
+                octets++;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || octets != 3) {
+            return -1;
+        }
+        return (value << 8) | octet;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = this.high ^ this.low;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof PeerAddressKey))
+            return false;
+        PeerAddressKey other = (PeerAddressKey) obj;
+        return this.high == other.high && this.low == other.low;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PeerAddressKey [high=%016x, low=%016x]", this.high, this.low);
+    }
+}
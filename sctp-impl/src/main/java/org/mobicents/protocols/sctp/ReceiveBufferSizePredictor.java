@@ -0,0 +1,90 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+package org.mobicents.protocols.sctp;
+
+/**
+ * Predicts the size of the next receive buffer for an Association from the
+ * size of the previous reads, so that the kernel can write straight into a
+ * pooled buffer of about the right size. Grows immediately when a read fills
+ * the buffer, shrinks only after two consecutive reads that would have fitted
+ * into half of it (same policy as Netty's AdaptiveRecvByteBufAllocator).
+ * 
+ * Not thread safe, used only by the selector thread owning the Association.
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+class ReceiveBufferSizePredictor {
+
+	static final int MINIMUM = 64;
+	static final int INITIAL = 2048;
+
+	private final int maximum;
+	private int nextSize;
+	private boolean decreaseNow;
+
+	/**
+	 * @param maximum
+	 *            the largest buffer ever predicted, usually
+	 *            {@link ManagementImpl#getBufferSize()}
+	 */
+	ReceiveBufferSizePredictor(int maximum) {
+		this.maximum = Math.max(MINIMUM, maximum);
+		this.nextSize = Math.min(INITIAL, this.maximum);
+	}
+
+	/**
+	 * @return the size of the buffer to allocate for the next read
+	 */
+	int nextSize() {
+		return nextSize;
+	}
+
+	/**
+	 * @return the largest buffer this predictor may return
+	 */
+	int maximum() {
+		return maximum;
+	}
+
+	/**
+	 * Records the number of bytes actually read into a buffer of
+	 * {@link #nextSize()} bytes.
+	 * 
+	 * @param actualBytes
+	 */
+	void record(int actualBytes) {
+		if (actualBytes >= nextSize) {
+			nextSize = Math.min(nextSize << 1, maximum);
+			decreaseNow = false;
+		} else if (actualBytes <= (nextSize >>> 1) && nextSize > MINIMUM) {
+			if (decreaseNow) {
+				nextSize = Math.max(nextSize >>> 1, MINIMUM);
+				decreaseNow = false;
+			} else {
+				decreaseNow = true;
+			}
+		} else {
+			decreaseNow = false;
+		}
+	}
+}
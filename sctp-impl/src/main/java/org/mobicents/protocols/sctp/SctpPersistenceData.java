@@ -36,6 +36,13 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public class SctpPersistenceData {
     
     private Integer connectDelay;
+    private Integer selectorThreads;
+    private Double congControlDelayThreshold1;
+    private Double congControlDelayThreshold2;
+    private Double congControlDelayThreshold3;
+    private Double congControlBackToNormalDelayThreshold1;
+    private Double congControlBackToNormalDelayThreshold2;
+    private Double congControlBackToNormalDelayThreshold3;
     private CopyOnWriteArrayList<Server> servers;
     private AssociationMap<String, org.mobicents.protocols.api.Association> associations;
     
@@ -50,6 +57,62 @@ public class SctpPersistenceData {
         this.connectDelay = connectDelay;
     }
     
+    public Integer getSelectorThreads() {
+        return selectorThreads;
+    }
+    
+    public void setSelectorThreads(Integer selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+    
+    public Double getCongControlDelayThreshold1() {
+        return congControlDelayThreshold1;
+    }
+    
+    public void setCongControlDelayThreshold1(Double congControlDelayThreshold1) {
+        this.congControlDelayThreshold1 = congControlDelayThreshold1;
+    }
+    
+    public Double getCongControlDelayThreshold2() {
+        return congControlDelayThreshold2;
+    }
+    
+    public void setCongControlDelayThreshold2(Double congControlDelayThreshold2) {
+        this.congControlDelayThreshold2 = congControlDelayThreshold2;
+    }
+    
+    public Double getCongControlDelayThreshold3() {
+        return congControlDelayThreshold3;
+    }
+    
+    public void setCongControlDelayThreshold3(Double congControlDelayThreshold3) {
+        this.congControlDelayThreshold3 = congControlDelayThreshold3;
+    }
+    
+    public Double getCongControlBackToNormalDelayThreshold1() {
+        return congControlBackToNormalDelayThreshold1;
+    }
+    
+    public void setCongControlBackToNormalDelayThreshold1(Double congControlBackToNormalDelayThreshold1) {
+        this.congControlBackToNormalDelayThreshold1 = congControlBackToNormalDelayThreshold1;
+    }
+    
+    public Double getCongControlBackToNormalDelayThreshold2() {
+        return congControlBackToNormalDelayThreshold2;
+    }
+    
+    public void setCongControlBackToNormalDelayThreshold2(Double congControlBackToNormalDelayThreshold2) {
+        this.congControlBackToNormalDelayThreshold2 = congControlBackToNormalDelayThreshold2;
+    }
+    
+    public Double getCongControlBackToNormalDelayThreshold3() {
+        return congControlBackToNormalDelayThreshold3;
+    }
+    
+    public void setCongControlBackToNormalDelayThreshold3(Double congControlBackToNormalDelayThreshold3) {
+        this.congControlBackToNormalDelayThreshold3 = congControlBackToNormalDelayThreshold3;
+    }
+    
     public CopyOnWriteArrayList<Server> getServers() {
         return servers;
     }
@@ -26,22 +26,26 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.channels.spi.AbstractSelectableChannel;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.sun.nio.sctp.SctpStandardSocketOptions;
 
 import org.apache.log4j.Logger;
-import org.jctools.queues.MpscArrayQueue;
-import org.mobicents.protocols.api.Association;
+import org.jctools.queues.MpscUnboundedArrayQueue;
 import org.mobicents.protocols.api.IpChannelType;
 import org.mobicents.protocols.api.Server;
 
@@ -66,14 +70,112 @@ public class SelectorThread implements Runnable {
 
 	protected volatile boolean started = true;
 
+	private static final long MAX_SELECT_TIMEOUT = 500;
+
+	// select() timeout while received messages wait for a WorkerThread
+	private static final long DISPATCH_BACKLOG_SELECT_TIMEOUT = 1;
+
+	// -1 for the acceptor, else the index of this shard
+	private final int index;
+
+	// Control requests for this SelectorThread: many producers, this thread
+	// is the only consumer. Unbounded so that producers never block or lose a
+	// request
+	private final MpscUnboundedArrayQueue<ChangeRequest> pendingChanges = new MpscUnboundedArrayQueue<ChangeRequest>(1024);
+
+	// Number of started Associations assigned to this SelectorThread
+	private final AtomicInteger associationCount = new AtomicInteger();
+
+	// The thread running this SelectorThread, set once run() starts
+	private volatile Thread thread;
+
+	// Load counters, written by this thread only
+	private volatile long selectCount;
+	private volatile long selectedKeyCount;
+
+	// Associations holding back received messages that a WorkerThread could
+	// not take yet, retried on each loop. Only accessed by the selector thread
+	private final List<AssociationImpl> dispatchBacklog = new ArrayList<AssociationImpl>();
+
+	// Delayed CONNECT requests ordered by execution time. Only accessed by the
+	// selector thread
+	private final PriorityQueue<ChangeRequest> pendingConnects = new PriorityQueue<ChangeRequest>(16,
+			new Comparator<ChangeRequest>() {
+				@Override
+				public int compare(ChangeRequest o1, ChangeRequest o2) {
+					return Long.compare(o1.getExecutionTime(), o2.getExecutionTime());
+				}
+			});
+
 	/**
 	 * @param selector
 	 * @param management
+	 * @param index
+	 *            the shard index, -1 for the acceptor SelectorThread
 	 */
-	protected SelectorThread(Selector selector, ManagementImpl management) {
+	protected SelectorThread(Selector selector, ManagementImpl management, int index) {
 		super();
 		this.selector = selector;
 		this.management = management;
+		this.index = index;
+	}
+
+	/**
+	 * @return the shard index, -1 for the acceptor SelectorThread
+	 */
+	protected int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Queues a ChangeRequest for this SelectorThread. The caller must wake up
+	 * the selector afterwards
+	 */
+	protected void addChangeRequest(ChangeRequest changeRequest) {
+		this.pendingChanges.offer(changeRequest);
+	}
+
+	/**
+	 * Retries the held back messages of the Association on each loop until
+	 * all are handed to a WorkerThread. Called by this thread only
+	 */
+	protected void addDispatchBacklog(AssociationImpl association) {
+		this.dispatchBacklog.add(association);
+	}
+
+	protected void wakeup() {
+		this.selector.wakeup();
+	}
+
+	/**
+	 * @return true if called by the thread running this SelectorThread
+	 */
+	protected boolean isCurrentThread() {
+		return Thread.currentThread() == this.thread;
+	}
+
+	protected int getAssociationCount() {
+		return this.associationCount.get();
+	}
+
+	protected void onAssociationAssigned() {
+		this.associationCount.incrementAndGet();
+	}
+
+	protected void onAssociationReleased() {
+		this.associationCount.decrementAndGet();
+	}
+
+	/**
+	 * @return a snapshot of the load of this SelectorThread
+	 */
+	protected SelectorThreadStatistics getStatistics() {
+		return new SelectorThreadStatistics(this.index, this.associationCount.get(), this.pendingChanges.size(),
+				this.selectCount, this.selectedKeyCount);
+	}
+
+	private String getThreadName() {
+		return this.index < 0 ? "Acceptor" : "SelectorThread-" + this.index;
 	}
 
 	/**
@@ -91,53 +193,38 @@ public class SelectorThread implements Runnable {
 	 */
 	@Override
 	public void run() {
+		this.thread = Thread.currentThread();
 		if (logger.isInfoEnabled()) {
-			logger.info(String.format("SelectorThread for Management=%s started.", this.management.getName()));
+			logger.info(String.format("%s for Management=%s started.", this.getThreadName(), this.management.getName()));
 		}
 		while (this.started) {
 			try {
-				MpscArrayQueue<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-
-				// Process any pending changes
-				synchronized (pendingChanges) {
-					Iterator<ChangeRequest> changes = pendingChanges.iterator();
-					while (changes.hasNext()) {
-						ChangeRequest change = changes.next();
-						switch (change.getType()) {
-						case ChangeRequest.CHANGEOPS:
-							pendingChanges.remove(change);
-							SelectionKey key = change.getSocketChannel().keyFor(this.selector);
-							key.interestOps(change.getOps());
-							break;
-						case ChangeRequest.REGISTER:
-							pendingChanges.remove(change);
-							SelectionKey key1 = change.getSocketChannel().register(this.selector, change.getOps());
-							key1.attach(change.getAssociation());
-							break;
-						case ChangeRequest.CONNECT:
-							if (!change.getAssociation().isStarted()) {
-								// if Association is stopped - remove pending connection requests  
-								pendingChanges.remove(change);
-							} else {
-								if (change.getExecutionTime() <= currentTimeMillis()) {
-									pendingChanges.remove(change);
-									change.getAssociation().initiateConnection();
-								}
-							}
-							break;
-						case ChangeRequest.CLOSE:
-							pendingChanges.remove(change);
-							change.getAssociation().close();
-						}
-					}// end of while
+				// Process any pending changes. This thread is the only consumer
+				// of the queue, producers never wait on it
+				this.processPendingChanges();
+
+				// Initiate due connections
+				long selectTimeout = this.processPendingConnects();
+
+				// Hand the held back messages to the WorkerThreads, select()
+				// does not sleep while some are left
+				if (!this.dispatchBacklog.isEmpty() && this.processDispatchBacklog()) {
+					selectTimeout = DISPATCH_BACKLOG_SELECT_TIMEOUT;
 				}
 
 				// Wait for an event one of the registered channels
-				this.selector.select(500);
+				int readyKeys = this.selector.select(selectTimeout);
+				this.selectCount++;
+				this.selectedKeyCount += readyKeys;
 
 				// System.out.println("Done selecting " +
 				// this.selector.selectedKeys().size());
 
+				if (readyKeys == 0) {
+					continue;
+				}
+				long loopStart = System.nanoTime();
+
 				// Iterate over the set of keys for which events are available
 				Iterator<SelectionKey> selectedKeys = this.selector.selectedKeys().iterator();
 
@@ -154,12 +241,17 @@ public class SelectorThread implements Runnable {
 						this.finishConnection(key);
 					} else if (key.isAcceptable()) {
 						this.accept(key);
-					} else if (key.isReadable()) {
-						this.read(key);
-					} else if (key.isWritable()) {
-						this.write(key);
+					} else {
+						if (key.isReadable()) {
+							this.read(key);
+						}
+						// a busy reader must not starve pending writes
+						if (key.isValid() && key.isWritable()) {
+							this.write(key);
+						}
 					}
 				}
+				this.management.getLoopTimer().record(System.nanoTime() - loopStart);
 
 			} catch (Exception e) {
 				logger.error("Error while selecting the ready keys", e);
@@ -173,10 +265,80 @@ public class SelectorThread implements Runnable {
 		}
 
 		if (logger.isInfoEnabled()) {
-			logger.info(String.format("SelectorThread for Management=%s stopped.", this.management.getName()));
+			logger.info(String.format("%s for Management=%s stopped.", this.getThreadName(), this.management.getName()));
 		}
 	}
 
+	private void processPendingChanges() {
+		ChangeRequest change;
+		while ((change = this.pendingChanges.poll()) != null) {
+			try {
+				switch (change.getType()) {
+				case ChangeRequest.CHANGEOPS:
+					SelectionKey key = change.getSocketChannel().keyFor(this.selector);
+					if (key != null && key.isValid()) {
+						key.interestOps(change.getOps());
+					} else if (change.getAssociation() != null) {
+						// nothing is armed, let the next send() retry
+						change.getAssociation().resetWriteScheduled();
+					}
+					break;
+				case ChangeRequest.REGISTER:
+					SelectionKey key1 = change.getSocketChannel().register(this.selector, change.getOps());
+					key1.attach(change.getAssociation());
+					break;
+				case ChangeRequest.ACCEPTED:
+					this.registerAccepted(change.getSocketChannel(), change.getAssociation());
+					break;
+				case ChangeRequest.CONNECT:
+					this.pendingConnects.add(change);
+					break;
+				case ChangeRequest.CLOSE:
+					change.getAssociation().close();
+				}
+			} catch (Exception e) {
+				logger.error(String.format("Error while processing ChangeRequest type=%d for Association=%s",
+						change.getType(), change.getAssociation()), e);
+			}
+		}// end of while
+	}
+
+	/**
+	 * @return true if messages are still held back
+	 */
+	private boolean processDispatchBacklog() {
+		for (int i = this.dispatchBacklog.size() - 1; i >= 0; i--) {
+			if (!this.dispatchBacklog.get(i).dispatchPending()) {
+				this.dispatchBacklog.remove(i);
+			}
+		}
+		return !this.dispatchBacklog.isEmpty();
+	}
+
+	/**
+	 * Initiates the connections whose delay is over.
+	 * 
+	 * @return the time to wait in select() before the next connection is due
+	 */
+	private long processPendingConnects() throws IOException {
+		long now = currentTimeMillis();
+		ChangeRequest change;
+		while ((change = this.pendingConnects.peek()) != null && change.getExecutionTime() <= now) {
+			this.pendingConnects.poll();
+			AssociationImpl association = change.getAssociation();
+			// if Association is stopped or has been rescheduled since - drop
+			// this connection request
+			if (association.isStarted() && association.isScheduledConnect(change)) {
+				association.initiateConnection();
+			}
+		}
+
+		if (change == null) {
+			return MAX_SELECT_TIMEOUT;
+		}
+		return Math.max(1, Math.min(MAX_SELECT_TIMEOUT, change.getExecutionTime() - now));
+	}
+
 	private void accept(SelectionKey key) throws IOException {
 		if (key.channel() instanceof ServerSocketChannel)
 			this.acceptTcp(key);
@@ -214,6 +376,27 @@ public class SelectorThread implements Runnable {
 		this.doAccept(serverSocketChannel, socketChannel, peerAddresses);
 	}
 
+	/**
+	 * Sets SO_SNDBUF / SO_RCVBUF of an accepted SCTP or TCP channel to the
+	 * Management buffer size
+	 */
+	private void setBufferSizes(AbstractSelectableChannel socketChannel) throws IOException {
+		Integer bufferSize = Integer.valueOf(this.management.getBufferSize());
+		if (socketChannel instanceof SctpChannel) {
+			SctpChannel sctpChannel = (SctpChannel) socketChannel;
+			logger.info(String.format("Initial receive buffer SO_RCVBUF: %s and initial send buffer SO_SNDBUF: %s",
+					sctpChannel.getOption(SctpStandardSocketOptions.SO_RCVBUF), sctpChannel.getOption(SctpStandardSocketOptions.SO_SNDBUF)));
+			sctpChannel.setOption(SctpStandardSocketOptions.SO_SNDBUF, bufferSize);
+			sctpChannel.setOption(SctpStandardSocketOptions.SO_RCVBUF, bufferSize);
+			logger.info(String.format("Configured receive buffer SO_RCVBUF: %s and setting send buffer SO_SNDBUF: %s",
+					sctpChannel.getOption(SctpStandardSocketOptions.SO_RCVBUF), sctpChannel.getOption(SctpStandardSocketOptions.SO_SNDBUF)));
+		} else {
+			SocketChannel tcpChannel = (SocketChannel) socketChannel;
+			tcpChannel.setOption(StandardSocketOptions.SO_SNDBUF, bufferSize);
+			tcpChannel.setOption(StandardSocketOptions.SO_RCVBUF, bufferSize);
+		}
+	}
+
 	private void doAccept(AbstractSelectableChannel serverSocketChannel, AbstractSelectableChannel socketChannel, Set<SocketAddress> peerAddresses)
 			throws IOException, ClosedChannelException {
 
@@ -236,60 +419,28 @@ public class SelectorThread implements Runnable {
 						firstPort = port;
 					}
 
-					// Iterate through all corresponding associate to
 					// check if incoming connection request matches with any provisioned
-					// ip:port
-					for (Map.Entry<String, Association> entry : this.management.associations.entrySet()) {
-						if (provisioned) break;
-						AssociationImpl association = (AssociationImpl)entry.getValue();
-						
-						// check if an association binds to the found server
-						if (srv.getName().equals(association.getServerName())) {
-
-							// compare port and ip of remote with provisioned
-							if ((port == association.getPeerPort()) && (inetAddress.getHostAddress().equals(association.getPeerAddress()))) {
-								provisioned = true;
-
-								if (!association.isStarted()) {
-									logger.error(String.format("Received connect request for Association=%s but not started yet. Dropping the connection! ",
-											association.getName()));
-									socketChannel.close();
-									break;
-								}
-
-								((AssociationImpl) association).setSocketChannel(socketChannel);
-
-								// Accept the connection and make it non-blocking
-								socketChannel.configureBlocking(false);
-
-								logger.info(String.format("Initial receive buffer SO_RCVBUF: %s and initial send buffer SO_SNDBUF: %s",
-									((SctpChannel)socketChannel).getOption(SctpStandardSocketOptions.SO_RCVBUF),
-									((SctpChannel)socketChannel).getOption(SctpStandardSocketOptions.SO_SNDBUF)));
-								((SctpChannel)socketChannel).setOption(SctpStandardSocketOptions.SO_SNDBUF, new Integer(management.getBufferSize()));
-								((SctpChannel)socketChannel).setOption(SctpStandardSocketOptions.SO_RCVBUF, new Integer(management.getBufferSize()));
-								logger.info(String.format("Configured receive buffer SO_RCVBUF: %s and setting send buffer SO_SNDBUF: %s",
-									((SctpChannel)socketChannel).getOption(SctpStandardSocketOptions.SO_RCVBUF),
-									((SctpChannel)socketChannel).getOption(SctpStandardSocketOptions.SO_SNDBUF)));
-
-								// Register the new SocketChannel with our Selector,
-								// indicating we'd like to be notified when there's data
-								// waiting to be read
-								SelectionKey key1 = socketChannel.register(this.selector, SelectionKey.OP_READ);
-								key1.attach(association);
-
-								if (logger.isInfoEnabled()) {
-									logger.info(String.format("Connected %s", association));
-								}
-
-								if (association.getIpChannelType() == IpChannelType.TCP) {
-									AssocChangeEvent ace = AssocChangeEvent.COMM_UP;
-									AssociationChangeNotification2 acn = new AssociationChangeNotification2(ace);
-									association.associationHandler.handleNotification(acn, association);
-								}
-
-								break;
-							}
+					// ip:port of an association bound to the found server
+					AssociationImpl association = (AssociationImpl) this.management.associationIndex.lookup(srv.getName(),
+							inetAddress, port);
+					if (association != null) {
+						provisioned = true;
+
+						if (!association.isStarted()) {
+							logger.error(String.format("Received connect request for Association=%s but not started yet. Dropping the connection! ",
+									association.getName()));
+							socketChannel.close();
+							break;
 						}
+
+						association.setSocketChannel(socketChannel);
+
+						// Accept the connection and make it non-blocking
+						socketChannel.configureBlocking(false);
+
+						this.setBufferSizes(socketChannel);
+
+						this.handOver(socketChannel, association);
 					}
 
 					if (provisioned)
@@ -320,14 +471,7 @@ public class SelectorThread implements Runnable {
 					// non-blocking
 					socketChannel.configureBlocking(false);
 
-					logger.info(String.format("Initial receive buffer SO_RCVBUF: %s and initial send buffer SO_SNDBUF: %s",
-						((SctpChannel)socketChannel).getOption(SctpStandardSocketOptions.SO_RCVBUF),
-						((SctpChannel)socketChannel).getOption(SctpStandardSocketOptions.SO_SNDBUF)));
-					((SctpChannel)socketChannel).setOption(SctpStandardSocketOptions.SO_SNDBUF, new Integer(management.getBufferSize()));
-					((SctpChannel)socketChannel).setOption(SctpStandardSocketOptions.SO_RCVBUF, new Integer(management.getBufferSize()));
-					logger.info(String.format("Setting receive buffer SO_RCVBUF: %s and setting send buffer SO_SNDBUF: %s",
-						((SctpChannel)socketChannel).getOption(SctpStandardSocketOptions.SO_RCVBUF),
-						((SctpChannel)socketChannel).getOption(SctpStandardSocketOptions.SO_SNDBUF)));
+					this.setBufferSizes(socketChannel);
 
 					try {
 						this.management.getServerListener().onNewRemoteConnection(srv, anonymAssociation);
@@ -350,21 +494,11 @@ public class SelectorThread implements Runnable {
 						return;
 					}
 
-					// Register the new SocketChannel with our Selector,
-					// indicating we'd like to be notified when there's data
-					// waiting to be read
-					SelectionKey key1 = socketChannel.register(this.selector, SelectionKey.OP_READ);
-					key1.attach(anonymAssociation);
-
 					if (logger.isInfoEnabled()) {
 						logger.info(String.format("Accepted anonymous %s", anonymAssociation));
 					}
 
-					if (anonymAssociation.getIpChannelType() == IpChannelType.TCP) {
-						AssocChangeEvent ace = AssocChangeEvent.COMM_UP;
-						AssociationChangeNotification2 acn = new AssociationChangeNotification2(ace);
-						anonymAssociation.associationHandler.handleNotification(acn, anonymAssociation);
-					}
+					this.handOver(socketChannel, anonymAssociation);
 				}
 			}
 
@@ -381,6 +515,49 @@ public class SelectorThread implements Runnable {
 		}
 	}
 
+	/**
+	 * Passes an accepted channel to the SelectorThread the Association is
+	 * assigned to. The acceptor never reads or writes itself
+	 */
+	private void handOver(AbstractSelectableChannel socketChannel, AssociationImpl association) throws IOException {
+		SelectorThread selectorThread = association.getSelectorThread();
+		if (selectorThread == null) {
+			// stopped in the meantime
+			logger.warn(String.format("Association=%s was stopped while accepting the connection. Closing Channel",
+					association.getName()));
+			socketChannel.close();
+			return;
+		}
+
+		selectorThread.addChangeRequest(new ChangeRequest(socketChannel, association, ChangeRequest.ACCEPTED,
+				SelectionKey.OP_READ));
+		selectorThread.wakeup();
+	}
+
+	/**
+	 * Registers a channel accepted by the acceptor with this SelectorThread,
+	 * indicating we'd like to be notified when there's data waiting to be read
+	 */
+	private void registerAccepted(AbstractSelectableChannel socketChannel, AssociationImpl association) throws IOException {
+		if (!association.isStarted()) {
+			socketChannel.close();
+			return;
+		}
+
+		SelectionKey key1 = socketChannel.register(this.selector, SelectionKey.OP_READ);
+		key1.attach(association);
+
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("Connected %s on %s", association, this.getThreadName()));
+		}
+
+		if (association.getIpChannelType() == IpChannelType.TCP) {
+			AssocChangeEvent ace = AssocChangeEvent.COMM_UP;
+			AssociationChangeNotification2 acn = new AssociationChangeNotification2(ace);
+			association.associationHandler.handleNotification(acn, association);
+		}
+	}
+
 	private void finishConnection(SelectionKey key) throws IOException{
 		AssociationImpl association = (AssociationImpl) key.attachment();
 		if (association.getIpChannelType() == IpChannelType.SCTP)
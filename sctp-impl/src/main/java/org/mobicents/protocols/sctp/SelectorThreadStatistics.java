@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+/**
+ * Snapshot of the load of one NIO SelectorThread. Index -1 is the acceptor
+ * SelectorThread that only owns the Server channels.
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public final class SelectorThreadStatistics {
+
+	private final int index;
+	private final int associations;
+	private final int pendingChanges;
+	private final long selects;
+	private final long selectedKeys;
+
+	protected SelectorThreadStatistics(int index, int associations, int pendingChanges,
+			long selects, long selectedKeys) {
+		this.index = index;
+		this.associations = associations;
+		this.pendingChanges = pendingChanges;
+		this.selects = selects;
+		this.selectedKeys = selectedKeys;
+	}
+
+	/**
+	 * @return the shard index, -1 for the acceptor
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the number of started Associations assigned to the
+	 *         SelectorThread
+	 */
+	public int getAssociations() {
+		return associations;
+	}
+
+	/**
+	 * @return the number of ChangeRequests not yet processed
+	 */
+	public int getPendingChanges() {
+		return pendingChanges;
+	}
+
+	/**
+	 * @return the number of select() calls since start
+	 */
+	public long getSelects() {
+		return selects;
+	}
+
+	/**
+	 * @return the number of ready keys processed since start
+	 */
+	public long getSelectedKeys() {
+		return selectedKeys;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"SelectorThreadStatistics [index=%d, associations=%d, pendingChanges=%d, selects=%d, selectedKeys=%d]",
+				index, associations, pendingChanges, selects, selectedKeys);
+	}
+}
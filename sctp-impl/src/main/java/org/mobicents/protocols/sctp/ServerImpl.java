@@ -40,7 +40,6 @@ import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 
 import org.apache.log4j.Logger;
-import org.jctools.queues.MpscArrayQueue;
 import org.mobicents.protocols.api.Association;
 import org.mobicents.protocols.api.IpChannelType;
 import org.mobicents.protocols.api.Server;
@@ -186,15 +185,12 @@ public class ServerImpl implements Server {
         // accepting new connections
         // this.serverChannel.register(socketSelector, SelectionKey.OP_ACCEPT);
 
-        MpscArrayQueue<ChangeRequest> pendingChanges = this.management.getPendingChanges();
-        synchronized (pendingChanges) {
+        // Indicate we want the interest ops set changed
+        SelectorThread acceptorThread = this.management.getAcceptorThread();
+        acceptorThread.addChangeRequest(
+            new ChangeRequest(this.getIpChannel(), null, ChangeRequest.REGISTER, SelectionKey.OP_ACCEPT));
 
-            // Indicate we want the interest ops set changed
-            pendingChanges.add(new ChangeRequest(this.getIpChannel(), null, ChangeRequest.REGISTER,
-                SelectionKey.OP_ACCEPT));
-        }
-
-        this.management.getSocketSelector().wakeup();
+        acceptorThread.wakeup();
     }
 
     private void doInitSocketSctp() throws IOException {
@@ -0,0 +1,181 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.api.PayloadDataPool;
+
+/**
+ * Stream to {@link WorkerThread} mapping of an Association in multi-thread
+ * mode.
+ * 
+ * The mapping and the per stream counters are written only by the selector
+ * thread that reads the Association, with ordered writes as the
+ * {@link WorkerRebalancer} reads them from its own thread. The rebalancer
+ * samples the counters and requests a stream migration by setting its target
+ * worker. Until the old worker has delivered all the messages of the stream
+ * queued to it, the messages of the stream received meanwhile wait in the
+ * pending list of the stream, the selector thread then switches the stream
+ * and hands them to the new worker, so the order of the stream is kept.
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+final class StreamWorkerMap {
+
+	static final int NO_MIGRATION = -1;
+
+	// worker index per stream
+	final AtomicIntegerArray workers;
+
+	// messages dispatched per stream
+	final AtomicLongArray messages;
+
+	// ring position of the last message of the stream in its worker
+	final AtomicLongArray lastPositions;
+
+	// value of messages at the last rebalancer sample, rebalancer only
+	final long[] sampledMessages;
+
+	// requested target worker per stream or NO_MIGRATION
+	final AtomicIntegerArray migrations;
+
+	// messages not yet handed to a worker per stream, created at the first
+	// use. Selector thread only
+	private final ArrayDeque<PayloadData>[] pending;
+	private int pendingMessages;
+
+	/**
+	 * @param workers
+	 *            the initial worker index per stream
+	 */
+	@SuppressWarnings("unchecked")
+	StreamWorkerMap(int[] workers) {
+		int streams = workers.length;
+		this.workers = new AtomicIntegerArray(workers);
+		this.messages = new AtomicLongArray(streams);
+		this.lastPositions = new AtomicLongArray(streams);
+		for (int i = 0; i < streams; i++) {
+			this.lastPositions.set(i, -1L);
+		}
+		this.sampledMessages = new long[streams];
+		this.migrations = new AtomicIntegerArray(streams);
+		for (int i = 0; i < streams; i++) {
+			this.migrations.set(i, NO_MIGRATION);
+		}
+		this.pending = (ArrayDeque<PayloadData>[]) new ArrayDeque<?>[streams];
+	}
+
+	int size() {
+		return this.workers.length();
+	}
+
+	/**
+	 * Requests to move a stream to another worker
+	 * 
+	 * @return false if a migration of the stream is already pending
+	 */
+	boolean requestMigration(int stream, int targetWorker) {
+		return this.migrations.compareAndSet(stream, NO_MIGRATION, targetWorker);
+	}
+
+	/**
+	 * Counts a message handed to the worker of the stream at the given ring
+	 * position
+	 */
+	void onDispatched(int stream, long position) {
+		this.lastPositions.lazySet(stream, position);
+		this.messages.lazySet(stream, this.messages.get(stream) + 1);
+	}
+
+	/**
+	 * Maps a stream to the worker it has been moved to
+	 */
+	void onMigrated(int stream, int targetWorker) {
+		this.workers.lazySet(stream, targetWorker);
+		this.lastPositions.lazySet(stream, -1L);
+		this.migrations.set(stream, NO_MIGRATION);
+	}
+
+	/**
+	 * @return true if messages of the stream wait to be handed to a worker,
+	 *         later messages of the stream must queue behind them
+	 */
+	boolean hasPending(int stream) {
+		if (this.pendingMessages == 0 || stream < 0 || stream >= this.pending.length) {
+			return false;
+		}
+		ArrayDeque<PayloadData> queue = this.pending[stream];
+		return queue != null && !queue.isEmpty();
+	}
+
+	void addPending(int stream, PayloadData payloadData) {
+		ArrayDeque<PayloadData> queue = this.pending[stream];
+		if (queue == null) {
+			queue = new ArrayDeque<PayloadData>();
+			this.pending[stream] = queue;
+		}
+		queue.add(payloadData);
+		this.pendingMessages++;
+	}
+
+	PayloadData peekPending(int stream) {
+		ArrayDeque<PayloadData> queue = this.pending[stream];
+		return queue == null ? null : queue.peek();
+	}
+
+	void removePending(int stream) {
+		this.pending[stream].poll();
+		this.pendingMessages--;
+	}
+
+	/**
+	 * @return the number of messages of all streams not yet handed to a
+	 *         worker
+	 */
+	int getPendingMessages() {
+		return this.pendingMessages;
+	}
+
+	/**
+	 * Drops the messages not yet handed to a worker
+	 * 
+	 * @return the number of dropped messages
+	 */
+	int releasePending(PayloadDataPool payloadDataPool) {
+		int released = this.pendingMessages;
+		for (int stream = 0; this.pendingMessages > 0 && stream < this.pending.length; stream++) {
+			ArrayDeque<PayloadData> queue = this.pending[stream];
+			PayloadData payloadData;
+			while (queue != null && (payloadData = queue.poll()) != null) {
+				payloadDataPool.release(payloadData);
+				this.pendingMessages--;
+			}
+		}
+		return released;
+	}
+}
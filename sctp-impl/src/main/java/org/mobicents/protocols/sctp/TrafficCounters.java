@@ -0,0 +1,174 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mobicents.protocols.api.AssociationStatistics;
+import org.mobicents.protocols.api.StreamStatistics;
+
+/**
+ * <p>
+ * Traffic counters of an Association, read with {@link #snapshot(String)} or
+ * without allocating with the getters of the totals.
+ * </p>
+ * <p>
+ * The totals are {@link LongAdder}s so that application threads sending at the
+ * same time as the I/O thread receives do not contend on a single cell. The
+ * per-stream counters are allocated 64 streams at a time on first use, in
+ * separate tables for received and sent messages so that the I/O thread
+ * receiving and the threads sending never write the same cache line. Within a
+ * table the two counters of a stream sit in the middle of a 128 byte slot:
+ * whatever the alignment of the array data, two streams are at least 64
+ * bytes apart and never share a cache line. Senders on the same stream still
+ * update the same counters.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public final class TrafficCounters {
+
+    private static final int MAX_STREAMS = 65536;
+    private static final int CHUNK_SHIFT = 6;
+    private static final int STREAMS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    // 16 longs per stream, the 2 counters in the middle of 128 bytes
+    private static final int STRIDE = 16;
+
+    private static final int MESSAGES = 8;
+    private static final int BYTES = 9;
+
+    private final LongAdder rxMessages = new LongAdder();
+    private final LongAdder rxBytes = new LongAdder();
+    private final LongAdder txMessages = new LongAdder();
+    private final LongAdder txBytes = new LongAdder();
+    private final LongAdder txFailures = new LongAdder();
+    private final LongAdder invalidStreamIds = new LongAdder();
+    private final LongAdder txDropped = new LongAdder();
+
+    private final AtomicReferenceArray<AtomicLongArray> rxStreams = new AtomicReferenceArray<AtomicLongArray>(MAX_STREAMS
+            / STREAMS_PER_CHUNK);
+    private final AtomicReferenceArray<AtomicLongArray> txStreams = new AtomicReferenceArray<AtomicLongArray>(MAX_STREAMS
+            / STREAMS_PER_CHUNK);
+
+    public void onRx(int streamNumber, int bytes) {
+        this.rxMessages.increment();
+        this.rxBytes.add(bytes);
+        addStream(this.rxStreams, streamNumber, bytes);
+    }
+
+    public void onTx(int streamNumber, int bytes) {
+        this.txMessages.increment();
+        this.txBytes.add(bytes);
+        addStream(this.txStreams, streamNumber, bytes);
+    }
+
+    public void onTxFailure(int messages) {
+        this.txFailures.add(messages);
+    }
+
+    public void onInvalidStreamId() {
+        this.invalidStreamIds.increment();
+    }
+
+    public void onTxDropped() {
+        this.txDropped.increment();
+    }
+
+    public long getRxMessages() {
+        return this.rxMessages.sum();
+    }
+
+    public long getRxBytes() {
+        return this.rxBytes.sum();
+    }
+
+    public long getTxMessages() {
+        return this.txMessages.sum();
+    }
+
+    public long getTxBytes() {
+        return this.txBytes.sum();
+    }
+
+    public long getTxFailures() {
+        return this.txFailures.sum();
+    }
+
+    public long getInvalidStreamIds() {
+        return this.invalidStreamIds.sum();
+    }
+
+    public long getTxDropped() {
+        return this.txDropped.sum();
+    }
+
+    public AssociationStatistics snapshot(String name) {
+        List<StreamStatistics> streamStatistics = new ArrayList<StreamStatistics>();
+        for (int i = 0; i < this.rxStreams.length(); i++) {
+            AtomicLongArray rxChunk = this.rxStreams.get(i);
+            AtomicLongArray txChunk = this.txStreams.get(i);
+            if (rxChunk == null && txChunk == null) {
+                continue;
+            }
+            for (int j = 0; j < STREAMS_PER_CHUNK; j++) {
+                int index = j * STRIDE;
+                long rxMsgs = rxChunk != null ? rxChunk.get(index + MESSAGES) : 0;
+                long txMsgs = txChunk != null ? txChunk.get(index + MESSAGES) : 0;
+                if (rxMsgs != 0 || txMsgs != 0) {
+                    long rxBytes = rxChunk != null ? rxChunk.get(index + BYTES) : 0;
+                    long txBytes = txChunk != null ? txChunk.get(index + BYTES) : 0;
+                    streamStatistics.add(new StreamStatistics((i << CHUNK_SHIFT) + j, rxMsgs, rxBytes, txMsgs, txBytes));
+                }
+            }
+        }
+
+        return new AssociationStatistics(name, this.rxMessages.sum(), this.rxBytes.sum(), this.txMessages.sum(),
+                this.txBytes.sum(), this.txFailures.sum(), this.invalidStreamIds.sum(), this.txDropped.sum(), streamStatistics);
+    }
+
+    private static void addStream(AtomicReferenceArray<AtomicLongArray> streams, int streamNumber, int bytes) {
+        if (streamNumber < 0 || streamNumber >= MAX_STREAMS) {
+            return;
+        }
+
+        int chunkIndex = streamNumber >>> CHUNK_SHIFT;
+        AtomicLongArray chunk = streams.get(chunkIndex);
+        if (chunk == null) {
+            AtomicLongArray newChunk = new AtomicLongArray(STREAMS_PER_CHUNK * STRIDE);
+            if (streams.compareAndSet(chunkIndex, null, newChunk)) {
+                chunk = newChunk;
+            } else {
+                chunk = streams.get(chunkIndex);
+            }
+        }
+
+        int index = (streamNumber & (STREAMS_PER_CHUNK - 1)) * STRIDE;
+        chunk.incrementAndGet(index + MESSAGES);
+        chunk.addAndGet(index + BYTES, bytes);
+    }
+}
@@ -21,31 +21,50 @@
  */
 package org.mobicents.protocols.sctp;
 
+import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.AssociationListener;
 import org.mobicents.protocols.api.PayloadData;
 import org.mobicents.protocols.api.PayloadDataPool;
 
 /**
+ * One pre-allocated task slot of a {@link WorkerThread} ring. A slot is
+ * filled by the selector thread that read the message, run by the worker
+ * thread and then cleared for reuse, so no object is allocated per message.
+ * 
  * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
  * @author jenny (added PayloadDataPool support for object reuse)
  * 
  */
 public class Worker implements Runnable {
 
+	private static final Logger logger = Logger.getLogger(Worker.class);
+
+	// Ring sequence of this slot: equals the producer position when the slot
+	// is free and position + 1 once the task is published
+	protected volatile long sequence;
+
 	private AssociationImpl association;
 	private AssociationListener associationListener;
 	private PayloadData payloadData;
 	private PayloadDataPool payloadDataPool;
 
+	/**
+	 * @param sequence
+	 *            the initial sequence, the index of the slot in the ring
+	 */
+	protected Worker(long sequence) {
+		super();
+		this.sequence = sequence;
+	}
+
 	/**
 	 * @param association
 	 * @param associationListener
 	 * @param payloadData
 	 * @param payloadDataPool Pool for releasing PayloadData after processing (can be null)
 	 */
-	protected Worker(AssociationImpl association, AssociationListener associationListener, 
-			PayloadData payloadData, PayloadDataPool payloadDataPool) {
-		super();
+	protected void set(AssociationImpl association, AssociationListener associationListener, PayloadData payloadData,
+			PayloadDataPool payloadDataPool) {
 		this.association = association;
 		this.associationListener = associationListener;
 		this.payloadData = payloadData;
@@ -62,12 +81,19 @@ public class Worker implements Runnable {
 		try {
 			this.associationListener.onPayload(this.association, this.payloadData);
 		} catch (Exception e) {
-			e.printStackTrace();
+			logger.error(String.format("Error while calling Listener for Association=%s.Payload=%s",
+					this.association.getName(), this.payloadData), e);
 		} finally {
+			this.association.onPayloadDelivered(this.payloadData);
 			// Release PayloadData back to pool for reuse
 			if (this.payloadDataPool != null && this.payloadData != null) {
 				this.payloadDataPool.release(this.payloadData);
 			}
+			// do not retain the Association or the message while idle
+			this.association = null;
+			this.associationListener = null;
+			this.payloadData = null;
+			this.payloadDataPool = null;
 		}
 	}
 
@@ -0,0 +1,177 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.mobicents.protocols.api.Association;
+
+/**
+ * Periodically samples the per stream message rates of all Associations and
+ * moves streams from the most loaded {@link WorkerThread} to the least loaded
+ * one.
+ * 
+ * The initial round-robin mapping ignores that a few streams (M3UA management
+ * on stream 0, a handful of SLS mapped streams) usually carry most of the
+ * traffic. In each round the stream whose rate is closest to half of the gap
+ * between the busiest and the idlest worker is moved, up to one move per
+ * worker and round. A stream is moved only when this narrows the gap, so the cold
+ * streams sharing a worker with a hot stream are moved away while a single
+ * hot stream never bounces between workers. The move itself is done by the
+ * selector thread of the Association behind a drain barrier, see
+ * {@link StreamWorkerMap}.
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class WorkerRebalancer implements Runnable {
+
+	private static final Logger logger = Logger.getLogger(WorkerRebalancer.class);
+
+	// gaps below this number of messages per interval are not worth a move
+	private static final long MIN_IMBALANCE = 64;
+
+	private final ManagementImpl management;
+
+	protected WorkerRebalancer(ManagementImpl management) {
+		this.management = management;
+	}
+
+	private static final class StreamLoad {
+		private final AssociationImpl association;
+		private final StreamWorkerMap map;
+		private final int stream;
+		private final long rate;
+		private int worker;
+
+		private StreamLoad(AssociationImpl association, StreamWorkerMap map, int stream, long rate, int worker) {
+			this.association = association;
+			this.map = map;
+			this.stream = stream;
+			this.rate = rate;
+			this.worker = worker;
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			this.rebalance();
+		} catch (Throwable e) {
+			logger.error("Error while rebalancing streams over WorkerThreads", e);
+		}
+	}
+
+	/**
+	 * @return the number of stream migrations requested
+	 */
+	protected int rebalance() {
+		int workerCount = this.management.getWorkerThreadCount();
+		if (workerCount == 0) {
+			return 0;
+		}
+
+		long[] loads = new long[workerCount];
+		List<StreamLoad> streams = new ArrayList<StreamLoad>();
+
+		for (Association association : this.management.associations.values()) {
+			AssociationImpl associationImpl = (AssociationImpl) association;
+			StreamWorkerMap map = associationImpl.getStreamWorkerMap();
+			if (map == null) {
+				continue;
+			}
+			for (int stream = 0; stream < map.size(); stream++) {
+				long count = map.messages.get(stream);
+				long rate = count - map.sampledMessages[stream];
+				map.sampledMessages[stream] = count;
+
+				int worker = map.migrations.get(stream);
+				if (worker == StreamWorkerMap.NO_MIGRATION) {
+					worker = map.workers.get(stream);
+				}
+				if (worker < 0 || worker >= workerCount) {
+					continue;
+				}
+				loads[worker] += rate;
+				if (rate > 0) {
+					streams.add(new StreamLoad(associationImpl, map, stream, rate, worker));
+				}
+			}
+		}
+
+		for (int i = 0; i < workerCount; i++) {
+			this.management.getWorkerThread(i).setSampledLoad(loads[i]);
+		}
+
+		// workers without a stream that can be moved, e.g. carrying a single
+		// hot stream
+		boolean[] settled = new boolean[workerCount];
+		int moves = 0;
+		while (moves < workerCount) {
+			int busiest = -1;
+			int idlest = 0;
+			for (int i = 0; i < workerCount; i++) {
+				if (!settled[i] && (busiest < 0 || loads[i] > loads[busiest]))
+					busiest = i;
+				if (loads[i] < loads[idlest])
+					idlest = i;
+			}
+			if (busiest < 0) {
+				break;
+			}
+			long gap = loads[busiest] - loads[idlest];
+			if (gap < MIN_IMBALANCE) {
+				break;
+			}
+
+			// the stream closest to gap / 2 gives the most even result, any
+			// stream below gap narrows it
+			StreamLoad candidate = null;
+			for (StreamLoad streamLoad : streams) {
+				if (streamLoad.worker != busiest || streamLoad.rate >= gap) {
+					continue;
+				}
+				if (candidate == null || Math.abs(gap - 2 * streamLoad.rate) < Math.abs(gap - 2 * candidate.rate)) {
+					candidate = streamLoad;
+				}
+			}
+			if (candidate == null || !candidate.map.requestMigration(candidate.stream, idlest)) {
+				settled[busiest] = true;
+				continue;
+			}
+
+			if (logger.isDebugEnabled()) {
+				logger.debug(String.format("Moving stream=%d of Association=%s (%d messages) from WorkerThread-%d to WorkerThread-%d",
+						candidate.stream, candidate.association.getName(), candidate.rate, busiest, idlest));
+			}
+
+			loads[busiest] -= candidate.rate;
+			loads[idlest] += candidate.rate;
+			candidate.worker = idlest;
+			moves++;
+		}
+		return moves;
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.log4j.Logger;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.api.PayloadDataPool;
+
+/**
+ * Delivers inbound messages to the AssociationListener in multi-thread mode.
+ * Each WorkerThread owns a bounded ring of pre-allocated {@link Worker}
+ * slots. Selector threads (many producers) claim a slot, fill it and publish
+ * it, the WorkerThread (single consumer) runs the slots in order. A stream is
+ * always mapped to the same WorkerThread, so the order of the messages of a
+ * stream is kept.
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class WorkerThread implements Runnable {
+
+	private static final Logger logger = Logger.getLogger(WorkerThread.class);
+
+	// polls of an empty ring before a PARK worker parks
+	private static final int SPIN_TRIES = 100;
+
+	// upper bound of one park, a missed unpark only delays delivery
+	private static final long PARK_NANOS = 1000000L;
+
+	private static final AtomicLongFieldUpdater<WorkerThread> HEAD_UPDATER = AtomicLongFieldUpdater.newUpdater(
+			WorkerThread.class, "head");
+
+	private final int index;
+	private final Worker[] slots;
+	private final int mask;
+	private final WorkerWaitStrategy waitStrategy;
+
+	// producer position
+	private final AtomicLong tail = new AtomicLong();
+
+	// keep the consumer position off the cache line of the producer position
+	long p01, p02, p03, p04, p05, p06, p07;
+
+	// consumer position, written by the worker thread only
+	private volatile long head;
+
+	long p11, p12, p13, p14, p15, p16, p17;
+
+	// messages per rebalance interval, set by the WorkerRebalancer
+	private volatile long sampledLoad;
+
+	private volatile boolean started = true;
+	private volatile boolean parked = false;
+	private Thread thread;
+
+	/**
+	 * @param index
+	 * @param capacity
+	 *            the number of slots, rounded up to a power of 2
+	 * @param waitStrategy
+	 */
+	protected WorkerThread(int index, int capacity, WorkerWaitStrategy waitStrategy) {
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.index = index;
+		this.slots = new Worker[size];
+		for (int i = 0; i < size; i++) {
+			this.slots[i] = new Worker(i);
+		}
+		this.mask = size - 1;
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Queues a message for delivery. Called by the selector threads.
+	 * 
+	 * @return the ring position of the message, -1 if the ring is full
+	 */
+	protected long offer(AssociationImpl association, AssociationListener associationListener,
+			PayloadData payloadData, PayloadDataPool payloadDataPool) {
+		long position;
+		Worker slot;
+		while (true) {
+			position = this.tail.get();
+			slot = this.slots[(int) position & this.mask];
+			long diff = slot.sequence - position;
+			if (diff == 0) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+			} else if (diff < 0) {
+				// the consumer has not yet freed this slot
+				return -1;
+			}
+			// else another producer has claimed this position, retry
+		}
+
+		slot.set(association, associationListener, payloadData, payloadDataPool);
+		slot.sequence = position + 1;
+
+		if (this.parked) {
+			LockSupport.unpark(this.thread);
+		}
+		return position;
+	}
+
+	/**
+	 * @return the number of messages waiting in the ring
+	 */
+	protected int getQueueSize() {
+		return (int) Math.max(0, this.tail.get() - this.head);
+	}
+
+	/**
+	 * @return the number of messages delivered so far, the message at ring
+	 *         position p is delivered once this is greater than p
+	 */
+	protected long getProcessed() {
+		return this.head;
+	}
+
+	protected long getSampledLoad() {
+		return this.sampledLoad;
+	}
+
+	protected void setSampledLoad(long sampledLoad) {
+		this.sampledLoad = sampledLoad;
+	}
+
+	protected WorkerThreadStatistics getStatistics() {
+		return new WorkerThreadStatistics(this.index, this.getQueueSize(), this.slots.length, this.head, this.sampledLoad);
+	}
+
+	protected int getCapacity() {
+		return this.slots.length;
+	}
+
+	protected int getIndex() {
+		return this.index;
+	}
+
+	protected boolean isStarted() {
+		return this.started;
+	}
+
+	/**
+	 * Starts the worker thread draining this ring
+	 */
+	protected void start(String threadName) {
+		this.thread = new Thread(this, threadName);
+		this.thread.start();
+	}
+
+	/**
+	 * Stops the worker thread once the messages already queued are delivered
+	 */
+	protected void stop() {
+		this.started = false;
+		LockSupport.unpark(this.thread);
+	}
+
+	/**
+	 * Waits for the worker thread to terminate
+	 */
+	protected void join(long millis) throws InterruptedException {
+		this.thread.join(millis);
+	}
+
+	protected boolean isTerminated() {
+		return !this.thread.isAlive();
+	}
+
+	/**
+	 * Runs the next published slot
+	 * 
+	 * @return false if the ring is empty
+	 */
+	private boolean runNext() {
+		long position = this.head;
+		Worker slot = this.slots[(int) position & this.mask];
+		if (slot.sequence != position + 1) {
+			return false;
+		}
+
+		slot.run();
+
+		slot.sequence = position + this.slots.length;
+		HEAD_UPDATER.lazySet(this, position + 1);
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("WorkerThread-%d started with %d slots and %s wait strategy", this.index,
+					this.slots.length, this.waitStrategy));
+		}
+
+		int idle = 0;
+		while (true) {
+			if (this.runNext()) {
+				idle = 0;
+				continue;
+			}
+
+			if (!this.started) {
+				// ring drained
+				break;
+			}
+
+			switch (this.waitStrategy) {
+			case BUSY_SPIN:
+				break;
+			case YIELD:
+				Thread.yield();
+				break;
+			default:
+				if (++idle < SPIN_TRIES) {
+					break;
+				}
+				this.parked = true;
+				// recheck after announcing, a producer may have published
+				// before it could see the flag
+				if (this.slots[(int) this.head & this.mask].sequence != this.head + 1 && this.started) {
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+				this.parked = false;
+				idle = 0;
+			}
+		}
+
+		if (logger.isInfoEnabled()) {
+			logger.info(String.format("WorkerThread-%d stopped", this.index));
+		}
+	}
+}
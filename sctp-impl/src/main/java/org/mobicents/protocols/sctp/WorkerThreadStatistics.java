@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+/**
+ * Snapshot of the load of one {@link WorkerThread}.
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public final class WorkerThreadStatistics {
+
+	private final int index;
+	private final int queueSize;
+	private final int capacity;
+	private final long processed;
+	private final long sampledLoad;
+
+	protected WorkerThreadStatistics(int index, int queueSize, int capacity, long processed, long sampledLoad) {
+		this.index = index;
+		this.queueSize = queueSize;
+		this.capacity = capacity;
+		this.processed = processed;
+		this.sampledLoad = sampledLoad;
+	}
+
+	/**
+	 * @return the worker index, streams are mapped to this index
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the number of messages waiting in the ring
+	 */
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * @return the number of slots of the ring
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of messages delivered since start
+	 */
+	public long getProcessed() {
+		return processed;
+	}
+
+	/**
+	 * @return the number of messages dispatched to the worker during the last
+	 *         rebalance interval
+	 */
+	public long getSampledLoad() {
+		return sampledLoad;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("WorkerThreadStatistics [index=%d, queueSize=%d, capacity=%d, processed=%d, sampledLoad=%d]",
+				index, queueSize, capacity, processed, sampledLoad);
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp.jmx;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.sctp.TrafficCounters;
+
+/**
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class SctpAssociation implements SctpAssociationMBean {
+
+    private final Association association;
+    private final TrafficCounters trafficCounters;
+
+    protected SctpAssociation(Association association, TrafficCounters trafficCounters) {
+        this.association = association;
+        this.trafficCounters = trafficCounters;
+    }
+
+    @Override
+    public String getName() {
+        return this.association.getName();
+    }
+
+    @Override
+    public String getAssociationType() {
+        return this.association.getAssociationType().name();
+    }
+
+    @Override
+    public String getIpChannelType() {
+        return this.association.getIpChannelType().name();
+    }
+
+    @Override
+    public String getServerName() {
+        return this.association.getServerName();
+    }
+
+    @Override
+    public String getHostAddress() {
+        return this.association.getHostAddress();
+    }
+
+    @Override
+    public int getHostPort() {
+        return this.association.getHostPort();
+    }
+
+    @Override
+    public String getPeerAddress() {
+        return this.association.getPeerAddress();
+    }
+
+    @Override
+    public int getPeerPort() {
+        return this.association.getPeerPort();
+    }
+
+    @Override
+    public boolean isStarted() {
+        return this.association.isStarted();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return this.association.isConnected();
+    }
+
+    @Override
+    public boolean isUp() {
+        return this.association.isUp();
+    }
+
+    @Override
+    public boolean isWritable() {
+        return this.association.isWritable();
+    }
+
+    @Override
+    public int getCongestionLevel() {
+        return this.association.getCongestionLevel();
+    }
+
+    @Override
+    public long getPendingOutboundBytes() {
+        return this.association.pendingOutboundBytes();
+    }
+
+    @Override
+    public int getPendingOutboundMessages() {
+        return this.association.pendingOutboundMessages();
+    }
+
+    @Override
+    public long getRxMessages() {
+        return this.trafficCounters.getRxMessages();
+    }
+
+    @Override
+    public long getRxBytes() {
+        return this.trafficCounters.getRxBytes();
+    }
+
+    @Override
+    public long getTxMessages() {
+        return this.trafficCounters.getTxMessages();
+    }
+
+    @Override
+    public long getTxBytes() {
+        return this.trafficCounters.getTxBytes();
+    }
+
+    @Override
+    public long getTxFailures() {
+        return this.trafficCounters.getTxFailures();
+    }
+
+    @Override
+    public long getInvalidStreamIds() {
+        return this.trafficCounters.getInvalidStreamIds();
+    }
+
+    @Override
+    public long getTxDropped() {
+        return this.trafficCounters.getTxDropped();
+    }
+}
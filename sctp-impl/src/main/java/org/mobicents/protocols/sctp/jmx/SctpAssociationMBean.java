@@ -0,0 +1,85 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp.jmx;
+
+/**
+ * Monitoring attributes of an Association, registered as
+ * org.mobicents.protocols.sctp:type=Association,management=&lt;management&gt;,name=&lt;association&gt;
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public interface SctpAssociationMBean {
+
+    String getName();
+
+    String getAssociationType();
+
+    String getIpChannelType();
+
+    String getServerName();
+
+    String getHostAddress();
+
+    int getHostPort();
+
+    String getPeerAddress();
+
+    int getPeerPort();
+
+    boolean isStarted();
+
+    boolean isConnected();
+
+    boolean isUp();
+
+    boolean isWritable();
+
+    int getCongestionLevel();
+
+    /**
+     * @return number of bytes queued for sending and not yet written to the
+     *         socket
+     */
+    long getPendingOutboundBytes();
+
+    /**
+     * @return number of messages queued for sending and not yet written to
+     *         the socket
+     */
+    int getPendingOutboundMessages();
+
+    long getRxMessages();
+
+    long getRxBytes();
+
+    long getTxMessages();
+
+    long getTxBytes();
+
+    long getTxFailures();
+
+    long getInvalidStreamIds();
+
+    long getTxDropped();
+}
@@ -0,0 +1,236 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.Management;
+import org.mobicents.protocols.api.Server;
+import org.mobicents.protocols.sctp.LoopTimer;
+import org.mobicents.protocols.sctp.SelectorThreadStatistics;
+import org.mobicents.protocols.sctp.TrafficCounters;
+
+/**
+ * <p>
+ * Registers the MBeans of a Management, of its Servers and of its provisioned
+ * Associations in the platform MBeanServer while the Management is started.
+ * </p>
+ * <p>
+ * The MBean attributes read counters and state maintained by the I/O threads
+ * anyway, a poll neither allocates snapshots nor takes locks shared with them.
+ * A failed registration, e.g. of a second Management with the same name, is
+ * logged and otherwise ignored.
+ * </p>
+ * <p>
+ * The Management notifies the registry itself, next to its
+ * ManagementEventListeners, so that the registry does not show up among them.
+ * </p>
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public abstract class SctpMBeanRegistry {
+
+    private static final Logger logger = Logger.getLogger(SctpMBeanRegistry.class);
+
+    public static final String DOMAIN = "org.mobicents.protocols.sctp";
+
+    private final Management management;
+    private final LoopTimer loopTimer;
+    private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+    private boolean enabled = true;
+
+    private ObjectName managementObjectName;
+    private final ConcurrentHashMap<String, ObjectName> serverObjectNames = new ConcurrentHashMap<String, ObjectName>();
+    private final ConcurrentHashMap<String, ObjectName> associationObjectNames = new ConcurrentHashMap<String, ObjectName>();
+
+    protected SctpMBeanRegistry(Management management, LoopTimer loopTimer) {
+        this.management = management;
+        this.loopTimer = loopTimer;
+    }
+
+    /**
+     * @return the counters of a provisioned Association of the Management
+     */
+    protected abstract TrafficCounters getTrafficCounters(Association association);
+
+    /**
+     * @return the load of the acceptor and of each NIO SelectorThread of the
+     *         started Management, empty if the Management has none
+     */
+    protected List<SelectorThreadStatistics> getSelectorThreadStatistics() {
+        return Collections.emptyList();
+    }
+
+    public static ObjectName getManagementObjectName(String managementName) throws MalformedObjectNameException {
+        return new ObjectName(String.format("%s:type=Management,name=%s", DOMAIN, ObjectName.quote(managementName)));
+    }
+
+    public static ObjectName getServerObjectName(String managementName, String serverName) throws MalformedObjectNameException {
+        return new ObjectName(String.format("%s:type=Server,management=%s,name=%s", DOMAIN, ObjectName.quote(managementName),
+                ObjectName.quote(serverName)));
+    }
+
+    public static ObjectName getAssociationObjectName(String managementName, String associationName)
+            throws MalformedObjectNameException {
+        return new ObjectName(String.format("%s:type=Association,management=%s,name=%s", DOMAIN,
+                ObjectName.quote(managementName), ObjectName.quote(associationName)));
+    }
+
+    protected int getServerCount() {
+        return this.serverObjectNames.size();
+    }
+
+    protected int getAssociationCount() {
+        return this.associationObjectNames.size();
+    }
+
+    public synchronized boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Registers or unregisters the MBeans at once if the Management is started
+     */
+    public synchronized void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        if (!enabled) {
+            this.onServiceStopped();
+        } else if (this.management.isStarted()) {
+            this.onServiceStarted();
+        }
+    }
+
+    public synchronized void onServiceStarted() {
+        if (!this.enabled) {
+            return;
+        }
+        if (this.managementObjectName == null) {
+            try {
+                ObjectName objectName = getManagementObjectName(this.management.getName());
+                if (this.register(new SctpManagement(this.management, this.loopTimer, this), objectName)) {
+                    this.managementObjectName = objectName;
+                }
+            } catch (MalformedObjectNameException e) {
+                logger.warn(String.format("Cannot register MBean of Management=%s", this.management.getName()), e);
+            }
+        }
+
+        for (Server server : this.management.getServers()) {
+            this.onServerAdded(server);
+        }
+        for (Association association : this.management.getAssociations().values()) {
+            this.onAssociationAdded(association);
+        }
+    }
+
+    public synchronized void onServiceStopped() {
+        for (ObjectName objectName : this.associationObjectNames.values()) {
+            this.unregister(objectName);
+        }
+        this.associationObjectNames.clear();
+
+        for (ObjectName objectName : this.serverObjectNames.values()) {
+            this.unregister(objectName);
+        }
+        this.serverObjectNames.clear();
+
+        if (this.managementObjectName != null) {
+            this.unregister(this.managementObjectName);
+            this.managementObjectName = null;
+        }
+    }
+
+    public synchronized void onServerAdded(Server server) {
+        if (!this.enabled || this.serverObjectNames.containsKey(server.getName())) {
+            return;
+        }
+        try {
+            ObjectName objectName = getServerObjectName(this.management.getName(), server.getName());
+            if (this.register(new SctpServer(server), objectName)) {
+                this.serverObjectNames.put(server.getName(), objectName);
+            }
+        } catch (MalformedObjectNameException e) {
+            logger.warn(String.format("Cannot register MBean of Server=%s", server.getName()), e);
+        }
+    }
+
+    public synchronized void onServerRemoved(Server server) {
+        ObjectName objectName = this.serverObjectNames.remove(server.getName());
+        if (objectName != null) {
+            this.unregister(objectName);
+        }
+    }
+
+    public synchronized void onAssociationAdded(Association association) {
+        if (!this.enabled || this.associationObjectNames.containsKey(association.getName())) {
+            return;
+        }
+        try {
+            ObjectName objectName = getAssociationObjectName(this.management.getName(), association.getName());
+            if (this.register(new SctpAssociation(association, this.getTrafficCounters(association)), objectName)) {
+                this.associationObjectNames.put(association.getName(), objectName);
+            }
+        } catch (MalformedObjectNameException e) {
+            logger.warn(String.format("Cannot register MBean of Association=%s", association.getName()), e);
+        }
+    }
+
+    public synchronized void onAssociationRemoved(Association association) {
+        ObjectName objectName = this.associationObjectNames.remove(association.getName());
+        if (objectName != null) {
+            this.unregister(objectName);
+        }
+    }
+
+    private boolean register(Object mbean, ObjectName objectName) {
+        try {
+            this.mBeanServer.registerMBean(mbean, objectName);
+            return true;
+        } catch (Exception e) {
+            logger.warn(String.format("Cannot register MBean %s", objectName), e);
+            return false;
+        }
+    }
+
+    private void unregister(ObjectName objectName) {
+        try {
+            this.mBeanServer.unregisterMBean(objectName);
+        } catch (Exception e) {
+            logger.warn(String.format("Cannot unregister MBean %s", objectName), e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp.jmx;
+
+import java.util.List;
+
+import org.mobicents.protocols.api.Management;
+import org.mobicents.protocols.api.PayloadDataPool;
+import org.mobicents.protocols.sctp.LoopTimer;
+import org.mobicents.protocols.sctp.SelectorThreadStatistics;
+
+/**
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class SctpManagement implements SctpManagementMBean {
+
+    private final Management management;
+    private final LoopTimer loopTimer;
+    private final SctpMBeanRegistry registry;
+
+    protected SctpManagement(Management management, LoopTimer loopTimer, SctpMBeanRegistry registry) {
+        this.management = management;
+        this.loopTimer = loopTimer;
+        this.registry = registry;
+    }
+
+    @Override
+    public String getName() {
+        return this.management.getName();
+    }
+
+    @Override
+    public boolean isStarted() {
+        return this.management.isStarted();
+    }
+
+    @Override
+    public int getServerCount() {
+        return this.registry.getServerCount();
+    }
+
+    @Override
+    public int getAssociationCount() {
+        return this.registry.getAssociationCount();
+    }
+
+    @Override
+    public boolean isLatencyRecordingEnabled() {
+        return this.management.isLatencyRecordingEnabled();
+    }
+
+    @Override
+    public void setLatencyRecordingEnabled(boolean latencyRecordingEnabled) {
+        this.management.setLatencyRecordingEnabled(latencyRecordingEnabled);
+    }
+
+    @Override
+    public double getPoolHitRate() {
+        PayloadDataPool pool = this.management.getPayloadDataPool();
+        return pool != null ? pool.getHitRate() : 1.0;
+    }
+
+    @Override
+    public int getPoolSize() {
+        PayloadDataPool pool = this.management.getPayloadDataPool();
+        return pool != null ? pool.getPoolSize() : 0;
+    }
+
+    @Override
+    public int getPoolMaxSize() {
+        PayloadDataPool pool = this.management.getPayloadDataPool();
+        return pool != null ? pool.getMaxPoolSize() : 0;
+    }
+
+    @Override
+    public long getLoopCount() {
+        return this.loopTimer.getCount();
+    }
+
+    @Override
+    public double getLoopMeanNanos() {
+        return this.loopTimer.getMeanNanos();
+    }
+
+    @Override
+    public long getLoopMaxNanos() {
+        return this.loopTimer.getMaxNanos();
+    }
+
+    @Override
+    public void resetLoopTimings() {
+        this.loopTimer.reset();
+    }
+
+    @Override
+    public int[] getSelectorThreadAssociations() {
+        List<SelectorThreadStatistics> statistics = this.registry.getSelectorThreadStatistics();
+        int[] res = new int[statistics.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = statistics.get(i).getAssociations();
+        }
+        return res;
+    }
+
+    @Override
+    public int[] getSelectorThreadPendingChanges() {
+        List<SelectorThreadStatistics> statistics = this.registry.getSelectorThreadStatistics();
+        int[] res = new int[statistics.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = statistics.get(i).getPendingChanges();
+        }
+        return res;
+    }
+
+    @Override
+    public long[] getSelectorThreadSelects() {
+        List<SelectorThreadStatistics> statistics = this.registry.getSelectorThreadStatistics();
+        long[] res = new long[statistics.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = statistics.get(i).getSelects();
+        }
+        return res;
+    }
+
+    @Override
+    public long[] getSelectorThreadSelectedKeys() {
+        List<SelectorThreadStatistics> statistics = this.registry.getSelectorThreadStatistics();
+        long[] res = new long[statistics.size()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = statistics.get(i).getSelectedKeys();
+        }
+        return res;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp.jmx;
+
+/**
+ * Monitoring attributes of a Management, registered as
+ * org.mobicents.protocols.sctp:type=Management,name=&lt;management&gt;
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public interface SctpManagementMBean {
+
+    String getName();
+
+    boolean isStarted();
+
+    /**
+     * @return number of Servers registered as MBean
+     */
+    int getServerCount();
+
+    /**
+     * @return number of Associations registered as MBean
+     */
+    int getAssociationCount();
+
+    boolean isLatencyRecordingEnabled();
+
+    void setLatencyRecordingEnabled(boolean latencyRecordingEnabled);
+
+    /**
+     * @return ratio of PayloadData acquired from the pool without allocating,
+     *         1.0 while nothing was acquired or without pool
+     */
+    double getPoolHitRate();
+
+    int getPoolSize();
+
+    int getPoolMaxSize();
+
+    /**
+     * @return number of recorded loops, see
+     *         {@link org.mobicents.protocols.sctp.LoopTimer}
+     */
+    long getLoopCount();
+
+    double getLoopMeanNanos();
+
+    long getLoopMaxNanos();
+
+    void resetLoopTimings();
+
+    /**
+     * @return number of started Associations of each NIO SelectorThread: the
+     *         acceptor first, then the SelectorThreads by index. Empty for a
+     *         netty Management or a stopped one
+     */
+    int[] getSelectorThreadAssociations();
+
+    /**
+     * @return number of pending ChangeRequests of each NIO SelectorThread,
+     *         ordered as {@link #getSelectorThreadAssociations()}
+     */
+    int[] getSelectorThreadPendingChanges();
+
+    /**
+     * @return number of select() calls of each NIO SelectorThread, ordered as
+     *         {@link #getSelectorThreadAssociations()}
+     */
+    long[] getSelectorThreadSelects();
+
+    /**
+     * @return number of processed ready keys of each NIO SelectorThread,
+     *         ordered as {@link #getSelectorThreadAssociations()}
+     */
+    long[] getSelectorThreadSelectedKeys();
+}
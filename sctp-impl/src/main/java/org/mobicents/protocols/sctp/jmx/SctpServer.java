@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp.jmx;
+
+import org.mobicents.protocols.api.Server;
+
+/**
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class SctpServer implements SctpServerMBean {
+
+    private final Server server;
+
+    protected SctpServer(Server server) {
+        this.server = server;
+    }
+
+    @Override
+    public String getName() {
+        return this.server.getName();
+    }
+
+    @Override
+    public String getIpChannelType() {
+        return this.server.getIpChannelType().name();
+    }
+
+    @Override
+    public String getHostAddress() {
+        return this.server.getHostAddress();
+    }
+
+    @Override
+    public int getHostPort() {
+        return this.server.getHostport();
+    }
+
+    @Override
+    public boolean isStarted() {
+        return this.server.isStarted();
+    }
+
+    @Override
+    public boolean isAcceptAnonymousConnections() {
+        return this.server.isAcceptAnonymousConnections();
+    }
+
+    @Override
+    public int getMaxConcurrentConnectionsCount() {
+        return this.server.getMaxConcurrentConnectionsCount();
+    }
+
+    @Override
+    public int getAssociationCount() {
+        return this.server.getAssociations().size();
+    }
+
+    @Override
+    public int getAnonymousAssociationCount() {
+        return this.server.getAnonymAssociations().size();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp.jmx;
+
+/**
+ * Monitoring attributes of a Server, registered as
+ * org.mobicents.protocols.sctp:type=Server,management=&lt;management&gt;,name=&lt;server&gt;
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public interface SctpServerMBean {
+
+    String getName();
+
+    String getIpChannelType();
+
+    String getHostAddress();
+
+    int getHostPort();
+
+    boolean isStarted();
+
+    boolean isAcceptAnonymousConnections();
+
+    int getMaxConcurrentConnectionsCount();
+
+    /**
+     * @return number of provisioned Associations of this Server
+     */
+    int getAssociationCount();
+
+    /**
+     * @return number of connected anonymous Associations of this Server
+     */
+    int getAnonymousAssociationCount();
+}
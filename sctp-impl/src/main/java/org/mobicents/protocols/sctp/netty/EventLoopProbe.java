@@ -0,0 +1,79 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.protocols.sctp.LoopTimer;
+
+/**
+ * Task that reschedules itself on an event loop once per second and records
+ * how late it runs compared to its deadline. The lateness is the time the
+ * event loop was busy with I/O and other tasks before it got to the probe
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+class EventLoopProbe implements Runnable {
+
+    static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final EventExecutor executor;
+    private final LoopTimer loopTimer;
+    private long deadline;
+
+    private EventLoopProbe(EventExecutor executor, LoopTimer loopTimer) {
+        this.executor = executor;
+        this.loopTimer = loopTimer;
+    }
+
+    /**
+     * Starts a probe on each event loop of the group, the probes stop with the
+     * group
+     */
+    static void start(EventLoopGroup group, LoopTimer loopTimer) {
+        for (EventExecutor executor : group) {
+            new EventLoopProbe(executor, loopTimer).schedule();
+        }
+    }
+
+    private void schedule() {
+        if (this.executor.isShuttingDown()) {
+            return;
+        }
+        this.deadline = System.nanoTime() + INTERVAL_NANOS;
+        try {
+            this.executor.schedule(this, INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the event loop is shutting down
+        }
+    }
+
+    @Override
+    public void run() {
+        this.loopTimer.record(Math.max(0, System.nanoTime() - this.deadline));
+        this.schedule();
+    }
+}
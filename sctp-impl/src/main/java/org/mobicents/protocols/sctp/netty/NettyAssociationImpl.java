@@ -26,12 +26,18 @@ import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelOutboundBuffer;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollSocketChannel;
 import io.netty.channel.sctp.SctpChannel;
 import io.netty.channel.sctp.SctpChannelOption;
 import io.netty.channel.sctp.SctpMessage;
 import org.mobicents.protocols.sctp.netty.PooledNioSctpChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.EventExecutor;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -41,6 +47,10 @@ import java.util.concurrent.TimeUnit;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jctools.queues.MpscArrayQueue;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -50,12 +60,20 @@ import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.Association;
 import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.AssociationStatistics;
 import org.mobicents.protocols.api.AssociationType;
 import org.mobicents.protocols.api.CongestionListener;
 import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.LatencyHistogram;
 import org.mobicents.protocols.api.ManagementEventListener;
 import org.mobicents.protocols.api.PayloadData;
 import org.mobicents.protocols.api.PayloadDataPool;
+import org.mobicents.protocols.api.SendStatus;
+import org.mobicents.protocols.sctp.CongestionControl;
+import org.mobicents.protocols.sctp.EventTrace;
+import org.mobicents.protocols.sctp.LatencyRecorder;
+import org.mobicents.protocols.sctp.PeerAddressKey;
+import org.mobicents.protocols.sctp.TrafficCounters;
 
 /**
  * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
@@ -66,6 +84,9 @@ public class NettyAssociationImpl implements Association {
 
     protected static final Logger logger = Logger.getLogger(NettyAssociationImpl.class.getName());
 
+    // Messages the outbound ring holds, and drains at most per event loop task
+    private static final int OUTBOUND_RING_CAPACITY = 4096;
+
     @JacksonXmlProperty(isAttribute = true)
     private String hostAddress;
     
@@ -89,6 +110,15 @@ public class NettyAssociationImpl implements Association {
     
     private String[] extraHostAddresses;
     private String[] extraPeerHostAddresses;  // For peer multihoming support
+
+    // Pending outbound bytes at which the channel turns unwritable and
+    // writable again
+    private volatile int writeBufferLowWaterMark = CongestionControl.DEFAULT_WRITE_BUFFER_LOW_WATER_MARK;
+    private volatile int writeBufferHighWaterMark = CongestionControl.DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK;
+
+    // binary form of peerAddress + extraPeerHostAddresses, see getPeerAddressKeys()
+    @JsonIgnore
+    private volatile PeerAddressKey[] peerAddressKeys;
     
     @JsonIgnore
     private NettyServerImpl server; // this is filled only for anonymous Associations
@@ -126,6 +156,31 @@ public class NettyAssociationImpl implements Association {
     @JsonIgnore
     protected int congLevel;
 
+    // Messages of offerOutbound(), created at the first use
+    @JsonIgnore
+    private volatile MpscArrayQueue<PayloadData> outboundRing;
+
+    // Set while a drain of the outbound ring is pending in the event loop
+    @JsonIgnore
+    private final AtomicBoolean outboundDrainScheduled = new AtomicBoolean(false);
+
+    @JsonIgnore
+    private final Runnable outboundDrainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainOutbound();
+        }
+    };
+
+    @JsonIgnore
+    private final TrafficCounters trafficCounters = new TrafficCounters();
+
+    @JsonIgnore
+    private final LatencyRecorder txLatency = new LatencyRecorder();
+
+    @JsonIgnore
+    private final LatencyRecorder rxLatency = new LatencyRecorder();
+
     public NettyAssociationImpl() {
         super();
     }
@@ -302,7 +357,8 @@ public class NettyAssociationImpl implements Association {
     public void setAssociationListener(AssociationListener associationListener) {
         this.associationListener = associationListener;
         if (this.up && this.associationListener != null) {
-            logger.warn(String.format("JENNY-LISTENER-SET: Association=%s already UP, notifying listener immediately", this.name));
+            // already UP, the listener is notified at once
+            this.trace(EventTrace.Event.LISTENER_SET, associationListener);
             this.associationListener.onCommunicationUp(this, this.lastMaxInboundStreams, this.lastMaxOutboundStreams);
         }
     }
@@ -347,6 +403,7 @@ public class NettyAssociationImpl implements Association {
 
     public void setPeerAddress(String peerAddress) {
         this.peerAddress = peerAddress;
+        this.peerAddressKeys = null;
     }
 
     /*
@@ -403,6 +460,26 @@ public class NettyAssociationImpl implements Association {
 
     public void setExtraPeerHostAddresses(String[] extraPeerHostAddresses) {
         this.extraPeerHostAddresses = extraPeerHostAddresses;
+        this.peerAddressKeys = null;
+
+        // a multihomed peer may connect from any of its addresses
+        if (this.management != null && this.management.associations.get(this.name) == this) {
+            this.management.associationIndex.add(this, this.getPeerAddressKeys());
+        }
+    }
+
+    /**
+     * @return the pre-parsed primary and extra peer addresses used to match
+     *         incoming connections, the primary peer address comes first
+     */
+    @JsonIgnore
+    public PeerAddressKey[] getPeerAddressKeys() {
+        PeerAddressKey[] keys = this.peerAddressKeys;
+        if (keys == null) {
+            keys = PeerAddressKey.valueOf(this.peerAddress, this.extraPeerHostAddresses);
+            this.peerAddressKeys = keys;
+        }
+        return keys;
     }
 
     /**
@@ -411,6 +488,7 @@ public class NettyAssociationImpl implements Association {
     protected void modifyAssociation(String peerAddress, Integer peerPort, String[] extraHostAddresses) {
         if (peerAddress != null) {
             this.peerAddress = peerAddress;
+            this.peerAddressKeys = null;
         }
         if (peerPort != null) {
             this.peerPort = peerPort;
@@ -431,16 +509,100 @@ public class NettyAssociationImpl implements Association {
             logger.debug(String.format("Tx : Ass=%s %s", this.getName(), payloadData));
         }
 
+        NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen(1);
+
+        handler.writeAndFlush(this.toMessage(payloadData), this.sendTimestamp());
+    }
+
+    @Override
+    public void write(PayloadData payloadData) throws Exception {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Tx : Ass=%s %s", this.getName(), payloadData));
+        }
+
+        NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen(1);
+
+        handler.write(this.toMessage(payloadData), this.sendTimestamp());
+    }
+
+    @Override
+    public void flush() throws Exception {
         NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen();
 
+        handler.flush();
+    }
+
+    @Override
+    public void sendBatch(PayloadData[] payloadData) throws Exception {
+        NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen(payloadData.length);
+        long timestamp = this.sendTimestamp();
+
+        Object[] messages = new Object[payloadData.length];
+        for (int i = 0; i < payloadData.length; i++) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Tx : Ass=%s %s", this.getName(), payloadData[i]));
+            }
+            messages[i] = this.toMessage(payloadData[i]);
+        }
+        handler.writeBatch(messages, timestamp);
+    }
+
+    @Override
+    public void sendBatch(List<PayloadData> payloadData) throws Exception {
+        NettySctpChannelInboundHandlerAdapter handler = checkSocketIsOpen(payloadData.size());
+        long timestamp = this.sendTimestamp();
+
+        Object[] messages = new Object[payloadData.size()];
+        for (int i = 0; i < messages.length; i++) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Tx : Ass=%s %s", this.getName(), payloadData.get(i)));
+            }
+            messages[i] = this.toMessage(payloadData.get(i));
+        }
+        handler.writeBatch(messages, timestamp);
+    }
+
+    /**
+     * @return System.nanoTime() if latency recording is enabled, 0 otherwise
+     */
+    private long sendTimestamp() {
+        return this.management.isLatencyRecordingEnabled() ? System.nanoTime() : 0;
+    }
+
+    private Object toMessage(PayloadData payloadData) {
         final ByteBuf byteBuf = payloadData.getByteBuf();
         if (this.ipChannelType == IpChannelType.SCTP) {
-            SctpMessage sctpMessage = new SctpMessage(payloadData.getPayloadProtocolId(), payloadData.getStreamNumber(),
+            return new SctpMessage(payloadData.getPayloadProtocolId(), payloadData.getStreamNumber(),
                     payloadData.isUnordered(), byteBuf);
-            handler.writeAndFlush(sctpMessage);
         } else {
-            handler.writeAndFlush(byteBuf);
+            return byteBuf;
+        }
+    }
+
+    /**
+     * The netty channel queues any written message in its outbound buffer, so
+     * a message is only refused if the channel is down
+     */
+    @Override
+    public SendStatus trySend(PayloadData payloadData) {
+        if (!this.started || this.channelHandler == null) {
+            this.trafficCounters.onTxFailure(1);
+            return SendStatus.NOT_CONNECTED;
+        }
+        try {
+            this.send(payloadData);
+        } catch (Exception e) {
+            return SendStatus.NOT_CONNECTED;
+        }
+        return SendStatus.QUEUED;
+    }
+
+    private NettySctpChannelInboundHandlerAdapter checkSocketIsOpen(int messages) throws Exception {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        if (!this.started || handler == null) {
+            this.trafficCounters.onTxFailure(messages);
         }
+        return this.checkSocketIsOpen();
     }
 
     private NettySctpChannelInboundHandlerAdapter checkSocketIsOpen() throws Exception {
@@ -460,27 +622,192 @@ public class NettyAssociationImpl implements Association {
             return null;
     }
 
+    @Override
+    @JsonIgnore
+    public EventExecutor getEventExecutor() {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        if (handler != null && handler.channel != null)
+            return handler.channel.eventLoop();
+        else
+            return null;
+    }
+
+    @Override
+    public SendStatus offerOutbound(PayloadData payloadData) {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        if (!this.started || handler == null || handler.channel == null) {
+            this.trafficCounters.onTxFailure(1);
+            return SendStatus.NOT_CONNECTED;
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Tx : Ass=%s %s", this.getName(), payloadData));
+        }
+
+        if (this.management.isLatencyRecordingEnabled()) {
+            payloadData.setTimestamp(System.nanoTime());
+        }
+        if (!this.getOutboundRing().offer(payloadData)) {
+            this.trafficCounters.onTxDropped();
+            return SendStatus.QUEUE_FULL;
+        }
+        this.scheduleOutboundDrain(handler.channel);
+        return SendStatus.QUEUED;
+    }
+
+    private MpscArrayQueue<PayloadData> getOutboundRing() {
+        MpscArrayQueue<PayloadData> ring = this.outboundRing;
+        if (ring == null) {
+            synchronized (this.outboundDrainScheduled) {
+                ring = this.outboundRing;
+                if (ring == null) {
+                    ring = new MpscArrayQueue<PayloadData>(OUTBOUND_RING_CAPACITY);
+                    this.outboundRing = ring;
+                }
+            }
+        }
+        return ring;
+    }
+
+    private void scheduleOutboundDrain(Channel channel) {
+        // a drain already pending picks this message up as well, in the event
+        // loop execute() does not wake up the selector
+        if (this.outboundDrainScheduled.get() || !this.outboundDrainScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            channel.eventLoop().execute(this.outboundDrainTask);
+        } catch (RejectedExecutionException e) {
+            // the event loop is shutting down
+            this.outboundDrainScheduled.set(false);
+            this.releaseOutbound();
+        }
+    }
+
+    /**
+     * Writes the messages of the outbound ring with a single flush, runs in
+     * the event loop
+     */
+    private void drainOutbound() {
+        // cleared first, a message offered meanwhile schedules the next drain
+        this.outboundDrainScheduled.set(false);
+
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        if (handler == null) {
+            this.releaseOutbound();
+            return;
+        }
+
+        // bounded so that producers can not starve the other channels of the
+        // event loop
+        MpscArrayQueue<PayloadData> ring = this.outboundRing;
+        int count = 0;
+        PayloadData payloadData;
+        while (count < OUTBOUND_RING_CAPACITY && (payloadData = ring.relaxedPoll()) != null) {
+            handler.write(this.toMessage(payloadData), payloadData.getTimestamp());
+            count++;
+        }
+        if (count > 0) {
+            handler.flush();
+        }
+
+        if (!ring.isEmpty() && handler.channel != null) {
+            this.scheduleOutboundDrain(handler.channel);
+        }
+    }
+
+    private void releaseOutbound() {
+        MpscArrayQueue<PayloadData> ring = this.outboundRing;
+        PayloadData payloadData;
+        while ((payloadData = ring.relaxedPoll()) != null) {
+            ReferenceCountUtil.release(payloadData.getByteBuf());
+            this.trafficCounters.onTxFailure(1);
+        }
+    }
+
     @Override
     @JsonIgnore
     public int getCongestionLevel() {
         return this.congLevel;
     }
 
+    @Override
+    @JsonIgnore
+    public boolean isWritable() {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        return handler != null && handler.channel != null && handler.channel.isWritable();
+    }
+
+    @Override
+    @JsonIgnore
+    public AssociationStatistics getStatistics() {
+        return this.trafficCounters.snapshot(this.name);
+    }
+
+    protected TrafficCounters getTrafficCounters() {
+        return this.trafficCounters;
+    }
+
+    @Override
+    @JsonIgnore
+    public LatencyHistogram getTxLatency() {
+        return this.txLatency.snapshot();
+    }
+
+    @Override
+    @JsonIgnore
+    public LatencyHistogram getRxLatency() {
+        return this.rxLatency.snapshot();
+    }
+
+    protected LatencyRecorder getTxLatencyRecorder() {
+        return this.txLatency;
+    }
+
+    protected NettySctpChannelInboundHandlerAdapter getChannelHandler() {
+        return this.channelHandler;
+    }
+
+    @Override
+    public long pendingOutboundBytes() {
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        if (handler == null || handler.channel == null)
+            return 0;
+        ChannelOutboundBuffer outboundBuffer = handler.channel.unsafe().outboundBuffer();
+        return outboundBuffer != null ? outboundBuffer.totalPendingWriteBytes() : 0;
+    }
+
+    @Override
+    public int pendingOutboundMessages() {
+        // messages offered to the outbound ring and not yet drained, then
+        // written messages the channel did not send yet
+        MpscArrayQueue<PayloadData> ring = this.outboundRing;
+        int messages = ring != null ? ring.size() : 0;
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        if (handler == null || handler.channel == null)
+            return messages;
+        ChannelOutboundBuffer outboundBuffer = handler.channel.unsafe().outboundBuffer();
+        return outboundBuffer != null ? messages + outboundBuffer.size() : messages;
+    }
+
     protected void setCongestionLevel(int val) {
-        if (this.congLevel != val) {
-            logger.warn("Outgoing congestion control: SCTP: Changing of congestion level for Association=" + this.name + " "
-                    + this.congLevel + "->" + val);
+        int oldLevel = this.congLevel;
+        if (oldLevel == val) {
+            return;
         }
 
+        logger.warn("Outgoing congestion control: SCTP: Changing of congestion level for Association=" + this.name + " "
+                + oldLevel + "->" + val);
+
+        this.congLevel = val;
         for (CongestionListener lstr : this.management.getCongestionListeners()) {
             try {
-                lstr.onCongLevelChanged(this, this.congLevel, val);
+                lstr.onCongLevelChanged(this, oldLevel, val);
             } catch (Throwable ee) {
-                logger.error("Exception while invoking onAssociationAdded", ee);
+                logger.error("Exception while invoking onCongLevelChanged", ee);
             }
         }
-
-        this.congLevel = val;
     }
 
     /*
@@ -617,6 +944,8 @@ public class NettyAssociationImpl implements Association {
     }
 
     protected void read(PayloadData payload) {
+        this.trafficCounters.onRx(payload.getStreamNumber(), payload.getDataLength());
+        long timestamp = this.management.isLatencyRecordingEnabled() ? System.nanoTime() : 0;
         try {
             if (this.associationListener != null) {
                 this.associationListener.onPayload(this, payload);
@@ -626,6 +955,9 @@ public class NettyAssociationImpl implements Association {
         } catch (Exception e) {
             logger.error(String.format("Error while calling Listener for Association=%s.Payload=%s", this.name, payload), e);
         } finally {
+            if (timestamp != 0) {
+                this.rxLatency.recordSince(timestamp);
+            }
             // Release PayloadData back to pool for reuse
             PayloadDataPool pool = this.management.getPayloadDataPool();
             if (pool != null && payload != null) {
@@ -634,10 +966,21 @@ public class NettyAssociationImpl implements Association {
         }
     }
 
+    /**
+     * Records a connection or association event for diagnostics, see
+     * {@link NettySctpManagementImpl#getEventTrace()}
+     */
+    protected void trace(EventTrace.Event event, Object detail) {
+        NettySctpManagementImpl management = this.management;
+        if (management != null) {
+            management.getEventTrace().record(event, this.name, detail);
+        }
+    }
+
     protected void markAssociationUp(int maxInboundStreams, int maxOutboundStreams) {
         this.lastMaxInboundStreams = maxInboundStreams;
         this.lastMaxOutboundStreams = maxOutboundStreams;
-        logger.warn(String.format("JENNY-MARK-UP: Association=%s type=%s listener=%s", this.name, this.type, this.getAssociationListener()));
+        this.trace(EventTrace.Event.ASSOCIATION_UP, this.getAssociationListener());
         if (this.server != null) {
             synchronized (this.server.anonymAssociations) {
                 this.server.anonymAssociations.add(this);
@@ -646,10 +989,7 @@ public class NettyAssociationImpl implements Association {
 
         this.up = true;
         if (this.getAssociationListener() != null) {
-            logger.warn(String.format("JENNY-MARK-UP: Calling onCommunicationUp for Association=%s", this.name));
             this.getAssociationListener().onCommunicationUp(this, maxInboundStreams, maxOutboundStreams);
-        } else {
-            logger.warn(String.format("JENNY-MARK-UP: AssociationListener is NULL for Association=%s", this.name));
         }
 
         for (ManagementEventListener lstr : this.management.getManagementEventListeners()) {
@@ -705,6 +1045,52 @@ public class NettyAssociationImpl implements Association {
 
     protected void setChannelHandler(NettySctpChannelInboundHandlerAdapter channelHandler) {
         this.channelHandler = channelHandler;
+        if (channelHandler != null) {
+            this.applyWriteBufferWaterMark(channelHandler.channel);
+        }
+    }
+
+    private void applyWriteBufferWaterMark(Channel channel) {
+        if (channel != null) {
+            channel.config().setWriteBufferWaterMark(
+                    new WriteBufferWaterMark(this.writeBufferLowWaterMark, this.writeBufferHighWaterMark));
+        }
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    /**
+     * Sets the water marks, a connected channel gets them at once
+     */
+    public void setWriteBufferWaterMark(int writeBufferLowWaterMark, int writeBufferHighWaterMark) {
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+
+        NettySctpChannelInboundHandlerAdapter handler = this.channelHandler;
+        if (handler != null) {
+            this.applyWriteBufferWaterMark(handler.channel);
+        }
+    }
+
+    protected void onWritabilityChanged(boolean writable) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(String.format("Association=%s writable=%s", this.name, writable));
+        }
+
+        AssociationListener associationListener = this.associationListener;
+        if (associationListener != null) {
+            try {
+                associationListener.onWritabilityChanged(this, writable);
+            } catch (Exception e) {
+                logger.error(String.format("Exception while invoking onWritabilityChanged for Association=%s", this.name), e);
+            }
+        }
     }
 
     protected void connect() {
@@ -720,7 +1106,8 @@ public class NettyAssociationImpl implements Association {
         Bootstrap b;
         InetSocketAddress localAddress;
         try {
-            EventLoopGroup group = this.management.getBossGroup();
+            EventLoopGroup group = this.ipChannelType == IpChannelType.SCTP ? this.management.getBossGroup() : this.management
+                    .getTcpBossGroup();
             b = new Bootstrap();
 
             b.group(group);
@@ -739,7 +1126,12 @@ public class NettyAssociationImpl implements Association {
 
                 b.handler(new NettySctpClientChannelInitializer(this));
             } else {
-                b.channel(NioSocketChannel.class);
+                if (this.management.isTcpEpoll()) {
+                    b.channel(EpollSocketChannel.class);
+                    this.applyEpollOptions(b);
+                } else {
+                    b.channel(NioSocketChannel.class);
+                }
                 b.option(ChannelOption.TCP_NODELAY, true);
                 b.handler(new NettyTcpClientChannelInitializer(this));
             }
@@ -787,6 +1179,13 @@ public class NettyAssociationImpl implements Association {
         }
     }
 
+    private void applyEpollOptions(Bootstrap b) {
+        if (this.management.getOptionTcpQuickAck() != null)
+            b.option(EpollChannelOption.TCP_QUICKACK, this.management.getOptionTcpQuickAck());
+        if (this.management.getOptionSoBusyPoll() != null)
+            b.option(EpollChannelOption.SO_BUSY_POLL, this.management.getOptionSoBusyPoll());
+    }
+
     private void applySctpOptions(Bootstrap b) {
         b.option(SctpChannelOption.SCTP_NODELAY, this.management.getOptionSctpNodelay());
         b.option(SctpChannelOption.SCTP_DISABLE_FRAGMENTS, this.management.getOptionSctpDisableFragments());
@@ -145,6 +145,13 @@ public class NettyAssociationMapDeserializer extends JsonDeserializer<Map<String
                 assoc.setStarted(startedNode.asBoolean());
             }
             
+            JsonNode writeBufferLowWaterMarkNode = node.get("writeBufferLowWaterMark");
+            JsonNode writeBufferHighWaterMarkNode = node.get("writeBufferHighWaterMark");
+            if (writeBufferLowWaterMarkNode != null && !writeBufferLowWaterMarkNode.isNull()
+                    && writeBufferHighWaterMarkNode != null && !writeBufferHighWaterMarkNode.isNull()) {
+                assoc.setWriteBufferWaterMark(writeBufferLowWaterMarkNode.asInt(), writeBufferHighWaterMarkNode.asInt());
+            }
+            
             // Extract extra host addresses if present
             JsonNode extraHostNode = node.get("extraHostAddresses");
             if (extraHostNode != null && extraHostNode.isArray()) {
@@ -45,6 +45,8 @@ public class NettyAssociationMapSerializer extends JsonSerializer<Map<String, As
                     xmlGen.writeStringField("ipChannelType", impl.getIpChannelType().toString());
                     xmlGen.writeStringField("type", impl.getAssociationType().toString());
                     xmlGen.writeBooleanField("started", impl.isStarted());
+                    xmlGen.writeNumberField("writeBufferLowWaterMark", impl.getWriteBufferLowWaterMark());
+                    xmlGen.writeNumberField("writeBufferHighWaterMark", impl.getWriteBufferHighWaterMark());
                     
                     String[] extraHosts = impl.getExtraHostAddresses();
                     if (extraHosts != null && extraHosts.length > 0) {
@@ -26,15 +26,25 @@ import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelOutboundBuffer;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.sctp.SctpMessage;
+import io.netty.channel.socket.ChannelOutputShutdownException;
 import io.netty.util.ReferenceCountUtil;
 
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.apache.log4j.Priority;
 import org.mobicents.protocols.api.IpChannelType;
 import org.mobicents.protocols.api.PayloadData;
 import org.mobicents.protocols.api.PayloadDataPool;
+import org.mobicents.protocols.sctp.CongestionControl;
+import org.mobicents.protocols.sctp.EventTrace;
+import org.mobicents.protocols.sctp.TrafficCounters;
 
 import com.sun.nio.sctp.AssociationChangeNotification;
 import com.sun.nio.sctp.PeerAddressChangeNotification;
@@ -58,7 +68,74 @@ public class NettySctpChannelInboundHandlerAdapter extends ChannelInboundHandler
     protected Channel channel = null;
     protected ChannelHandlerContext ctx = null;
 
-    protected long lastCongestionMonitorSecondPart;
+    // Min nanoseconds between two sampled writes
+    private static final long WRITE_SAMPLE_INTERVAL = 100000000L;
+
+    // Weight of a new write latency sample in the moving average
+    private static final double WRITE_LATENCY_EWMA_WEIGHT = 0.25;
+
+    // Outgoing congestion: the level is the highest of the outbound buffer
+    // occupancy level and of the write latency level
+    private volatile int queueCongLevel = 0;
+    private volatile int delayCongLevel = 0;
+    private final Object congLock = new Object();
+
+    // At most one write at a time is sampled to measure the write latency
+    private final AtomicBoolean writeSampleInFlight = new AtomicBoolean(false);
+    private volatile long writeSampleTime;
+    private volatile long nextWriteSampleTime;
+
+    // Exponentially weighted moving average of the sampled write latency in
+    // nanoseconds, -1 until the first sample
+    private volatile double writeLatencyEwma = -1;
+
+    // Last writability passed to the AssociationListener, only accessed by the
+    // event loop
+    private boolean reportedWritable = true;
+
+    // Shared by the writes that get a real promise: a failed write is handled
+    // as the ones done with the void promise, which reach exceptionCaught()
+    private final ChannelFutureListener writeFailureListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (!future.isSuccess()) {
+                onWriteFailure(future.cause());
+            }
+        }
+    };
+
+    private final ChannelFutureListener writeSampleListener = new ChannelFutureListener() {
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            long latency = System.nanoTime() - writeSampleTime;
+            writeSampleInFlight.set(false);
+
+            if (!future.isSuccess()) {
+                return;
+            }
+            onWriteLatency(latency);
+            updateQueueCongestionLevel(future.channel());
+        }
+    };
+
+    /**
+     * Records the latency of a message once written to the socket
+     */
+    private final class TxLatencyListener implements ChannelFutureListener {
+
+        private final long timestamp;
+
+        private TxLatencyListener(long timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) throws Exception {
+            if (future.isSuccess()) {
+                association.getTxLatencyRecorder().recordSince(this.timestamp);
+            }
+        }
+    }
 
     /**
      *
@@ -90,7 +167,7 @@ public class NettySctpChannelInboundHandlerAdapter extends ChannelInboundHandler
             switch (not.event()) {
 
                 case COMM_UP:
-                    logger.warn(String.format("JENNY-COMM-UP: Association=%s received COMM_UP event", association.getName()));
+                    association.trace(EventTrace.Event.COMM_UP, not);
                     if (not.association() != null) {
 
                         this.maxOutboundStreams = not.association().maxOutboundStreams();
@@ -203,6 +280,7 @@ logger.info(String.format("Shutdown for Association=%s", association.getName()))
             SendFailedNotification notification = (SendFailedNotification) evt;
             logger.error(String.format("Association=" + association.getName() + " SendFailedNotification, errorCode="
                     + notification.errorCode()));
+            association.getTrafficCounters().onTxFailure(1);
 
         } else if (evt instanceof ShutdownNotification) {
             ShutdownNotification notification = (ShutdownNotification) evt;
@@ -251,78 +329,262 @@ logger.info(String.format("Shutdown for Association=%s", association.getName()))
         }
     }
 
-    protected void writeAndFlush(Object message) {
-        Channel ch = this.channel;
-        if (ch == null || !ch.isActive()) {
+    /**
+     * @param timestamp
+     *            System.nanoTime() when the message was sent to record its
+     *            latency until written to the socket, 0 not to record it
+     */
+    protected void writeAndFlush(Object message, long timestamp) {
+        Channel ch = this.activeChannel(message);
+        if (ch == null)
+            return;
 
-            // Channel is not available or inactive, release the message to prevent memory leak
-            ReferenceCountUtil.release(message);
+        this.write(ch, message, true, timestamp);
+        this.updateQueueCongestionLevel(ch);
+    }
 
-            if (logger.isEnabledFor(Level.DEBUG)) {
-                logger.debug(String.format("Channel not available or inactive for Association=%s, message dropped",
-                        this.association.getName()));
-            }
+    /**
+     * Adds the message to the channel outbound buffer, it is sent to the peer
+     * at the next flush
+     */
+    protected void write(Object message, long timestamp) {
+        Channel ch = this.activeChannel(message);
+        if (ch == null)
             return;
 
+        this.write(ch, message, false, timestamp);
+        this.updateQueueCongestionLevel(ch);
+    }
+
+    protected void flush() {
+        Channel ch = this.channel;
+        if (ch != null) {
+            ch.flush();
         }
+    }
+
+    /**
+     * Writes the messages with a single flush. Outside of the event loop the
+     * batch is submitted as one task instead of one task per message
+     */
+    protected void writeBatch(final Object[] messages, final long timestamp) {
+        if (messages.length == 0)
+            return;
 
-        ChannelFuture future = ch.writeAndFlush(message);
+        final Channel ch = this.channel;
+        if (ch == null || !ch.isActive()) {
+            this.release(messages);
+            return;
+        }
 
-        // Add listener to handle write failures
-        future.addListener(new ChannelFutureListener() {
+        if (ch.eventLoop().inEventLoop()) {
+            this.writeBatch(ch, messages, timestamp);
+            return;
+        }
 
-            @Override
-            public void operationComplete(ChannelFuture future) throws Exception {
-                if (!future.isSuccess()) {
-                    logger.error(String.format("Failed to write message for Association=%s",
-                            association.getName()), future.cause());
+        try {
+            ch.eventLoop().execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeBatch(ch, messages, timestamp);
                 }
-            }
+            });
+        } catch (RejectedExecutionException e) {
+            // the event loop is shutting down
+            this.release(messages);
+        }
+    }
 
-        });
+    private void writeBatch(Channel ch, Object[] messages, long timestamp) {
+        int last = messages.length - 1;
+        for (int i = 0; i < last; i++) {
+            this.write(ch, messages[i], false, timestamp);
+        }
+        this.write(ch, messages[last], true, timestamp);
+        this.updateQueueCongestionLevel(ch);
+    }
 
-        long curMillisec = System.currentTimeMillis();
-        long secPart = curMillisec / 500;
-        if (lastCongestionMonitorSecondPart < secPart) {
-            lastCongestionMonitorSecondPart = secPart;
-            CongestionMonitor congestionMonitor = new CongestionMonitor();
-            future.addListener(congestionMonitor);
+    private void write(Channel ch, Object message, boolean flush, long timestamp) {
+        this.countWritten(message);
 
+        // netty drops a write with the void promise silently once the channel
+        // is closed or its output shut down
+        if (ch.unsafe().outboundBuffer() == null) {
+            ReferenceCountUtil.release(message);
+            this.onWriteFailure(new ClosedChannelException());
+            return;
         }
-     }
 
+        // the void promise unless the write is sampled or its latency is
+        // recorded: a failed write then reaches exceptionCaught()
+        ChannelPromise promise = null;
+
+        // only flushed writes are sampled, the latency of a message waiting
+        // for a flush depends on the caller
+        long now = System.nanoTime();
+        if (flush && now - this.nextWriteSampleTime >= 0 && this.writeSampleInFlight.compareAndSet(false, true)) {
+            this.writeSampleTime = now;
+            this.nextWriteSampleTime = now + WRITE_SAMPLE_INTERVAL;
+            promise = ch.newPromise();
+            promise.addListener(this.writeSampleListener);
+        }
+        if (timestamp != 0) {
+            if (promise == null) {
+                promise = ch.newPromise();
+            }
+            promise.addListener(new TxLatencyListener(timestamp));
+        }
+        if (promise == null) {
+            promise = ch.voidPromise();
+        } else {
+            promise.addListener(this.writeFailureListener);
+        }
+        if (flush) {
+            ch.writeAndFlush(message, promise);
+        } else {
+            ch.write(message, promise);
+        }
+    }
 
-    private void onCongestionMonitor(double delaySec) {
+    /**
+     * @return true if the cause passed to exceptionCaught() is the failure of
+     *         a write done with the void promise: the channel is closed or its
+     *         output is shut down. Netty closes the channel itself on a fatal
+     *         I/O error
+     */
+    protected boolean isWriteFailure(Throwable cause) {
+        return cause instanceof ClosedChannelException || cause instanceof ChannelOutputShutdownException;
+    }
 
-        int newAlarmLevel = this.association.getCongestionLevel();
-        for (int i1 = this.association.getCongestionLevel() - 1; i1 >= 0; i1--) {
+    /**
+     * Counts and logs a failed write, the channel is left open
+     */
+    protected void onWriteFailure(Throwable cause) {
+        this.association.getTrafficCounters().onTxFailure(1);
+        logger.error(String.format("Failed to write message for Association=%s", this.association.getName()), cause);
+    }
 
-            if (delaySec <= this.association.getManagement().congControl_BackToNormalDelayThreshold[i1]) {
-                newAlarmLevel = i1;
+    /**
+     * Counts the message before it is handed to the channel, which releases
+     * it once written. A message on a stream the peer did not grant is still
+     * written, the failure is handled by onWriteFailure()
+     */
+    private void countWritten(Object message) {
+        TrafficCounters trafficCounters = this.association.getTrafficCounters();
+        if (message instanceof SctpMessage) {
+            SctpMessage sctpMessage = (SctpMessage) message;
+            int streamNumber = sctpMessage.streamIdentifier();
+            if (streamNumber < 0 || streamNumber >= this.maxOutboundStreams) {
+                trafficCounters.onInvalidStreamId();
+            } else {
+                trafficCounters.onTx(streamNumber, sctpMessage.content().readableBytes());
             }
+        } else {
+            trafficCounters.onTx(0, ((ByteBuf) message).readableBytes());
         }
-        for (int i1 = this.association.getCongestionLevel(); i1 < 3; i1++) {
-            if (delaySec >= this.association.getManagement().congControl_DelayThreshold[i1]) {
-                newAlarmLevel = i1 + 1;
+    }
+
+    /**
+     * @return the channel, or null after releasing the message if the channel
+     *         is not available or inactive
+     */
+    private Channel activeChannel(Object message) {
+        Channel ch = this.channel;
+        if (ch == null || !ch.isActive()) {
+
+            // Channel is not available or inactive, release the message to prevent memory leak
+            ReferenceCountUtil.release(message);
+            this.association.getTrafficCounters().onTxFailure(1);
+
+            if (logger.isEnabledFor(Level.DEBUG)) {
+                logger.debug(String.format("Channel not available or inactive for Association=%s, message dropped",
+                        this.association.getName()));
             }
-        }
-        this.association.setCongestionLevel(newAlarmLevel);
+            return null;
 
+        }
+        return ch;
     }
 
+    private void release(Object[] messages) {
+        for (int i = 0; i < messages.length; i++) {
+            ReferenceCountUtil.release(messages[i]);
+        }
+        this.association.getTrafficCounters().onTxFailure(messages.length);
 
-    private class CongestionMonitor implements ChannelFutureListener {
-        long startTime = System.currentTimeMillis();
+        if (logger.isEnabledFor(Level.DEBUG)) {
+            logger.debug(String.format("Channel not available or inactive for Association=%s, %d messages dropped",
+                    this.association.getName(), messages.length));
+        }
+    }
 
-        @Override
-        public void operationComplete(ChannelFuture arg0) throws Exception {
-            long delay = System.currentTimeMillis() - startTime;
-            double delaySec = (double) delay / 1000;
-            onCongestionMonitor(delaySec);
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (this.association != null) {
+            this.updateQueueCongestionLevel(ctx.channel());
+
+            // events fired later by the event loop may repeat the current
+            // writability, the listener only gets the changes
+            boolean writable = ctx.channel().isWritable();
+            if (writable != this.reportedWritable) {
+                this.reportedWritable = writable;
+                this.association.onWritabilityChanged(writable);
+            }
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
 
+    /**
+     * Folds a sampled write latency into the moving average, a single slow
+     * flush does not flip the level on its own
+     */
+    private void onWriteLatency(long latency) {
+        double ewma = this.writeLatencyEwma;
+        if (ewma < 0)
+            ewma = latency;
+        else
+            ewma += (latency - ewma) * WRITE_LATENCY_EWMA_WEIGHT;
+        this.writeLatencyEwma = ewma;
+
+        int level = this.delayCongLevel;
+        NettySctpManagementImpl management = this.association.getManagement();
+        int newLevel = CongestionControl.getCongestionLevel(level, ewma / 1000000000.0, management.congControl_DelayThreshold,
+                management.congControl_BackToNormalDelayThreshold);
+        if (newLevel != level) {
+            synchronized (this.congLock) {
+                this.delayCongLevel = newLevel;
+                this.association.setCongestionLevel(Math.max(newLevel, this.queueCongLevel));
+            }
         }
+    }
 
+    /**
+     * Bytes pending in the channel outbound buffer against its write buffer
+     * high water mark, the channel turns unwritable at an occupancy of 1
+     */
+    private void updateQueueCongestionLevel(Channel ch) {
+        ChannelOutboundBuffer outboundBuffer = ch.unsafe().outboundBuffer();
+        if (outboundBuffer == null) {
+            // channel is closed
+            return;
+        }
 
+        double occupancy;
+        if (ch.isWritable())
+            occupancy = (double) outboundBuffer.totalPendingWriteBytes() / ch.config().getWriteBufferHighWaterMark();
+        else
+            occupancy = 1;
+
+        int level = this.queueCongLevel;
+        NettySctpManagementImpl management = this.association.getManagement();
+        int newLevel = CongestionControl.getCongestionLevel(level, occupancy, management.congControl_QueueThreshold,
+                management.congControl_BackToNormalQueueThreshold);
+        if (newLevel != level) {
+            synchronized (this.congLock) {
+                this.queueCongLevel = newLevel;
+                this.association.setCongestionLevel(Math.max(newLevel, this.delayCongLevel));
+            }
+        }
     }
 
     protected void closeChannel() {
@@ -26,6 +26,7 @@ import java.net.InetSocketAddress;
 
 import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.sctp.EventTrace;
 
 /**
  * Handler implementation for the SCTP echo client. It initiates the ping-pong traffic between the echo client and server by
@@ -85,12 +86,19 @@ public class NettySctpClientHandler extends NettySctpChannelInboundHandlerAdapte
         if (association.getIpChannelType() == IpChannelType.TCP) {
             this.association.markAssociationUp(1, 1);
         } else {
-            logger.warn(String.format("JENNY-CLIENT: channelActive for SCTP Association=%s. Waiting for COMM_UP event.", association.getName()));
+            // waiting for the COMM_UP event
+            this.association.trace(EventTrace.Event.CHANNEL_ACTIVE, sockAdd);
         }
     }
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        // a failed write is counted, it does not close the channel
+        if (this.isWriteFailure(cause)) {
+            this.onWriteFailure(cause);
+            return;
+        }
+
         // Close the connection when an exception is raised.
         logger.error("Exception caught for Association: " + this.association.getName() + "\n", cause);
         ctx.close();
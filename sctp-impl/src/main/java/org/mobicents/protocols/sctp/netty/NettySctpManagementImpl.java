@@ -20,6 +20,9 @@
 package org.mobicents.protocols.sctp.netty;
 
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollIoHandler;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.concurrent.DefaultThreadFactory;
 
@@ -34,10 +37,12 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationStatistics;
 import org.mobicents.protocols.api.AssociationType;
 import org.mobicents.protocols.api.CongestionListener;
 import org.mobicents.protocols.api.IpChannelType;
@@ -46,6 +51,12 @@ import org.mobicents.protocols.api.ManagementEventListener;
 import org.mobicents.protocols.api.Server;
 import org.mobicents.protocols.api.ServerListener;
 import org.mobicents.protocols.api.PayloadDataPool;
+import org.mobicents.protocols.sctp.AssociationIndex;
+import org.mobicents.protocols.sctp.CongestionControl;
+import org.mobicents.protocols.sctp.EventTrace;
+import org.mobicents.protocols.sctp.LoopTimer;
+import org.mobicents.protocols.sctp.TrafficCounters;
+import org.mobicents.protocols.sctp.jmx.SctpMBeanRegistry;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
@@ -101,8 +112,13 @@ public class NettySctpManagementImpl implements Management {
     protected String persistDir = null;
     private int connectDelay = 5000;
 
+    // Outgoing congestion thresholds: write latency in seconds and channel
+    // outbound buffer occupancy as a fraction of its write buffer high water
+    // mark
     protected double[] congControl_DelayThreshold = new double[] { 2.5, 8, 14 };
     protected double[] congControl_BackToNormalDelayThreshold = new double[] { 1.5, 5.5, 10 };
+    protected double[] congControl_QueueThreshold = new double[] { 0.5, 0.75, 0.9 };
+    protected double[] congControl_BackToNormalQueueThreshold = new double[] { 0.4, 0.65, 0.8 };
 
 //    private int workerThreads = DEFAULT_IO_THREADS;
 //    private boolean singleThread = true;
@@ -115,10 +131,24 @@ public class NettySctpManagementImpl implements Management {
     private CopyOnWriteArrayList<CongestionListener> congestionListeners = new CopyOnWriteArrayList<CongestionListener>();
     protected CopyOnWriteArrayList<Server> servers = new CopyOnWriteArrayList<Server>();
     protected NettyAssociationMap<String, Association> associations = new NettyAssociationMap<String, Association>();
+    // (serverName, peer address, peer port) -> SERVER Association for accept matching
+    protected final AssociationIndex associationIndex = new AssociationIndex();
+    // connection and association events, replaces per connection logging
+    private final EventTrace eventTrace = new EventTrace(EventTrace.DEFAULT_CAPACITY, EventTrace.DEFAULT_MAX_EVENTS_PER_SECOND);
+    // stamps the payloads to record their send and receive latencies
+    private volatile boolean latencyRecordingEnabled = false;
+    // lag of the event loops behind their scheduled tasks
+    private final LoopTimer loopTimer = new LoopTimer();
+    // registers the MBeans, notified next to the ManagementEventListeners
+    private final SctpMBeanRegistry mBeanRegistry;
     private volatile boolean started = false;
 
     private EventLoopGroup bossGroup;
     private EventLoopGroup workerGroup;
+    // epoll groups of the TCP channels, the NIO groups if TCP uses NIO
+    private EventLoopGroup tcpBossGroup;
+    private EventLoopGroup tcpWorkerGroup;
+    private volatile boolean tcpEpoll = false;
     private ScheduledExecutorService clientExecutor;
 
     // SctpStandardSocketOptions
@@ -157,6 +187,12 @@ public class NettySctpManagementImpl implements Management {
     // In that case the close method does not wait until unsent data is transmitted;
     // if possible the operating system will transmit any unsent data before the connection is closed. 
     private Integer optionSoLinger = null;
+    // TCP epoll option: Sends ACKs at once instead of delaying them.
+    private Boolean optionTcpQuickAck = null;
+    // TCP epoll option: Microseconds a read busy polls the device queue for data before sleeping.
+    private Integer optionSoBusyPoll = null;
+
+    private TcpTransport tcpTransport = TcpTransport.NIO;
 
     // PayloadDataPool for high-performance object pooling (v2.0.5)
     private PayloadDataPool payloadDataPool;
@@ -165,12 +201,21 @@ public class NettySctpManagementImpl implements Management {
     private int bossGroupThreadCount = 4;
     private int workerGroupThreadCount = 4;
 
+    // Per event loop wakeup budget of an SCTP channel read loop
+    private int readBatchMessages = 16;
+    private int readBatchBytes = 256 * 1024;
+
     /**
 	 * 
 	 */
     public NettySctpManagementImpl(String name) throws IOException {
         this.name = name;
-
+        this.mBeanRegistry = new SctpMBeanRegistry(this, this.loopTimer) {
+            @Override
+            protected TrafficCounters getTrafficCounters(Association association) {
+                return ((NettyAssociationImpl) association).getTrafficCounters();
+            }
+        };
     }
 
     /*
@@ -231,10 +276,53 @@ public class NettySctpManagementImpl implements Management {
         return workerGroup;
     }
 
+    protected EventLoopGroup getTcpBossGroup() {
+        return tcpBossGroup;
+    }
+
+    protected EventLoopGroup getTcpWorkerGroup() {
+        return tcpWorkerGroup;
+    }
+
+    /**
+     * @return true if the TCP channels use the native epoll transport
+     */
+    protected boolean isTcpEpoll() {
+        return tcpEpoll;
+    }
+
     protected ScheduledExecutorService getClientExecutor() {
         return clientExecutor;
     }
 
+    /**
+     * @return the trace of the connection and association events, enable it
+     *         and dump it to diagnose connection setup
+     */
+    public EventTrace getEventTrace() {
+        return eventTrace;
+    }
+
+    @Override
+    public boolean isLatencyRecordingEnabled() {
+        return latencyRecordingEnabled;
+    }
+
+    @Override
+    public void setLatencyRecordingEnabled(boolean latencyRecordingEnabled) {
+        this.latencyRecordingEnabled = latencyRecordingEnabled;
+    }
+
+    @Override
+    public boolean isJmxEnabled() {
+        return this.mBeanRegistry.isEnabled();
+    }
+
+    @Override
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.mBeanRegistry.setEnabled(jmxEnabled);
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -295,6 +383,47 @@ public class NettySctpManagementImpl implements Management {
         this.bossGroupThreadCount = bossGroupThreadCount;
     }
 
+    /**
+     * @return the max number of messages an SCTP channel reads per event loop
+     *         wakeup before channelReadComplete is fired
+     */
+    public int getReadBatchMessages() {
+        return readBatchMessages;
+    }
+
+    /**
+     * @param readBatchMessages
+     *            the max number of messages an SCTP channel reads per event
+     *            loop wakeup, 1 reads one message per wakeup. Applies to
+     *            channels opened afterwards
+     */
+    public void setReadBatchMessages(int readBatchMessages) throws Exception {
+        if (readBatchMessages < 1 || readBatchMessages > 1024)
+            throw new Exception("ReadBatchMessages must be between 1 and 1024");
+
+        this.readBatchMessages = readBatchMessages;
+    }
+
+    /**
+     * @return the max number of bytes an SCTP channel reads per event loop
+     *         wakeup
+     */
+    public int getReadBatchBytes() {
+        return readBatchBytes;
+    }
+
+    /**
+     * @param readBatchBytes
+     *            the max number of bytes an SCTP channel reads per event loop
+     *            wakeup. Applies to channels opened afterwards
+     */
+    public void setReadBatchBytes(int readBatchBytes) throws Exception {
+        if (readBatchBytes < 1000)
+            throw new Exception("ReadBatchBytes must be at least 1000 bytes");
+
+        this.readBatchBytes = readBatchBytes;
+    }
+
     public int getWorkerGroupThreadCount() {
         return workerGroupThreadCount;
     }
@@ -303,6 +432,22 @@ public class NettySctpManagementImpl implements Management {
         this.workerGroupThreadCount = workerGroupThreadCount;
     }
 
+    public TcpTransport getTcpTransport() {
+        return tcpTransport;
+    }
+
+    /**
+     * @param tcpTransport
+     *            the transport of the TCP Associations and Servers. Applies at
+     *            the next start
+     */
+    public void setTcpTransport(TcpTransport tcpTransport) throws Exception {
+        if (tcpTransport == null)
+            throw new Exception("TcpTransport must not be null");
+
+        this.tcpTransport = tcpTransport;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -330,9 +475,24 @@ public class NettySctpManagementImpl implements Management {
 
             this.bossGroup = new NioEventLoopGroup(this.getBossGroupThreadCount(), new DefaultThreadFactory("Sctp-BossGroup-" + this.name));
             this.workerGroup = new NioEventLoopGroup(this.getWorkerGroupThreadCount(), new DefaultThreadFactory("Sctp-WorkerGroup-" + this.name));
+            this.tcpEpoll = this.tcpTransport == TcpTransport.EPOLL && this.isEpollAvailable();
+            if (this.tcpEpoll) {
+                this.tcpBossGroup = new MultiThreadIoEventLoopGroup(this.getBossGroupThreadCount(), new DefaultThreadFactory(
+                        "Sctp-TcpBossGroup-" + this.name), EpollIoHandler.newFactory());
+                this.tcpWorkerGroup = new MultiThreadIoEventLoopGroup(this.getWorkerGroupThreadCount(), new DefaultThreadFactory(
+                        "Sctp-TcpWorkerGroup-" + this.name), EpollIoHandler.newFactory());
+            } else {
+                this.tcpBossGroup = this.bossGroup;
+                this.tcpWorkerGroup = this.workerGroup;
+            }
             this.clientExecutor = new ScheduledThreadPoolExecutor(1, new DefaultThreadFactory("Sctp-ClientExecutorGroup-"
                     + this.name));
 
+            EventLoopProbe.start(this.workerGroup, this.loopTimer);
+            if (this.tcpWorkerGroup != this.workerGroup) {
+                EventLoopProbe.start(this.tcpWorkerGroup, this.loopTimer);
+            }
+
             // this.nettyClientOpsThread = new NettyClientOpsThread(this);
             // (new Thread(this.nettyClientOpsThread )).start();
 
@@ -348,6 +508,7 @@ public class NettySctpManagementImpl implements Management {
                 logger.info(String.format("Started SCTP Management=%s", this.name));
             }
 
+            this.mBeanRegistry.onServiceStarted();
             for (ManagementEventListener lstr : managementEventListeners) {
                 try {
                     lstr.onServiceStarted();
@@ -372,6 +533,7 @@ public class NettySctpManagementImpl implements Management {
 
         // this.nettyClientOpsThread.setStarted(false);
 
+        this.mBeanRegistry.onServiceStopped();
         for (ManagementEventListener lstr : managementEventListeners) {
             try {
                 lstr.onServiceStopped();
@@ -417,6 +579,10 @@ public class NettySctpManagementImpl implements Management {
         // TODO - make a general shutdown and waiting for it instead of "waiting till stopping associations" 
         this.bossGroup.shutdownGracefully();
         this.workerGroup.shutdownGracefully();
+        if (this.tcpEpoll) {
+            this.tcpBossGroup.shutdownGracefully();
+            this.tcpWorkerGroup.shutdownGracefully();
+        }
         this.clientExecutor.shutdown();
        
 
@@ -530,6 +696,7 @@ public class NettySctpManagementImpl implements Management {
 
             this.store();
 
+            this.mBeanRegistry.onServerAdded(server);
             for (ManagementEventListener lstr : managementEventListeners) {
                 try {
                     lstr.onServerAdded(server);
@@ -619,6 +786,7 @@ public class NettySctpManagementImpl implements Management {
 
             this.store();
 
+            this.mBeanRegistry.onServerRemoved(removeServer);
             for (ManagementEventListener lstr : managementEventListeners) {
                 try {
                     lstr.onServerRemoved(removeServer);
@@ -756,7 +924,7 @@ public class NettySctpManagementImpl implements Management {
             }
 
             for (Association associationTemp : this.associations.values()) {
-                if (associationTemp.getServerName().equals(server.getName()) && peerAddress.equals(associationTemp.getPeerAddress()) && associationTemp.getPeerPort() == peerPort) {
+                if (server.getName().equals(associationTemp.getServerName()) && peerAddress.equals(associationTemp.getPeerAddress()) && associationTemp.getPeerPort() == peerPort) {
                     throw new Exception(String.format("Already has association=%s with same peer address=%s and port=%d",
                             associationTemp.getName(), peerAddress, peerPort));
                 }
@@ -770,12 +938,14 @@ public class NettySctpManagementImpl implements Management {
             association.setManagement(this);
 
             this.associations.put(assocName, association);
+            this.associationIndex.add(association, association.getPeerAddressKeys());
 
             ((NettyServerImpl) server).associations.add(assocName);
             // ((ServerImpl) server).associations.add(assocName);
 
             this.store();
 
+            this.mBeanRegistry.onAssociationAdded(association);
             for (ManagementEventListener lstr : managementEventListeners) {
                 try {
                     lstr.onAssociationAdded(association);
@@ -866,6 +1036,7 @@ public class NettySctpManagementImpl implements Management {
 
             this.store();
 
+            this.mBeanRegistry.onAssociationAdded(association);
             for (ManagementEventListener lstr : managementEventListeners) {
                 try {
                     lstr.onAssociationAdded(association);
@@ -910,6 +1081,7 @@ public class NettySctpManagementImpl implements Management {
             }
 
             this.associations.remove(assocName);
+            this.associationIndex.remove(association);
 
             if (((NettyAssociationImpl) association).getAssociationType() == AssociationType.SERVER) {
                 for (Server serverTemp : this.servers) {
@@ -922,6 +1094,7 @@ public class NettySctpManagementImpl implements Management {
 
             this.store();
 
+            this.mBeanRegistry.onAssociationRemoved(association);
             for (ManagementEventListener lstr : managementEventListeners) {
                 try {
                     lstr.onAssociationRemoved(association);
@@ -962,6 +1135,15 @@ public class NettySctpManagementImpl implements Management {
         return this.associations;
     }
 
+    @Override
+    public Map<String, AssociationStatistics> getStatistics() {
+        Map<String, AssociationStatistics> result = new HashMap<String, AssociationStatistics>();
+        for (Association association : this.associations.values()) {
+            result.put(association.getName(), association.getStatistics());
+        }
+        return result;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1136,6 +1318,42 @@ public class NettySctpManagementImpl implements Management {
         this.store();
     }
 
+    /**
+     * @return the outbound buffer occupancy (fraction of the write buffer high
+     *         water mark) at which an Association reaches congestion level 1,
+     *         2, 3
+     */
+    public double[] getCongControl_QueueThreshold() {
+        return congControl_QueueThreshold.clone();
+    }
+
+    /**
+     * @return the outbound buffer occupancy (fraction of the write buffer high
+     *         water mark) at which an Association gets back to congestion
+     *         level 0, 1, 2
+     */
+    public double[] getCongControl_BackToNormalQueueThreshold() {
+        return congControl_BackToNormalQueueThreshold.clone();
+    }
+
+    /**
+     * @param queueThreshold
+     *            outbound buffer occupancy in ]0, 1] reaching congestion level
+     *            1, 2, 3
+     * @param backToNormalQueueThreshold
+     *            outbound buffer occupancy in [0, 1[ getting back to
+     *            congestion level 0, 1, 2
+     * @throws Exception
+     */
+    public void setCongControl_QueueThreshold(double[] queueThreshold, double[] backToNormalQueueThreshold) throws Exception {
+        CongestionControl.validate(queueThreshold, backToNormalQueueThreshold);
+        if (queueThreshold[CongestionControl.MAX_CONGESTION_LEVEL - 1] > 1 || backToNormalQueueThreshold[0] < 0)
+            throw new Exception("CongControl_QueueThreshold values must be between 0 and 1");
+
+        this.congControl_QueueThreshold = queueThreshold.clone();
+        this.congControl_BackToNormalQueueThreshold = backToNormalQueueThreshold.clone();
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1163,6 +1381,31 @@ public class NettySctpManagementImpl implements Management {
 //        this.workerThreads = workerThreads;
     }
 
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.mobicents.protocols.api.Management#getSelectorThreads()
+     */
+    @Override
+    public int getSelectorThreads() {
+        return this.workerGroupThreadCount;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.mobicents.protocols.api.Management#setSelectorThreads(int)
+     */
+    @Override
+    public void setSelectorThreads(int selectorThreads) throws Exception {
+        if (this.started)
+            throw new Exception("SelectorThreads parameter can be updated only when SCTP stack is NOT running");
+        if (selectorThreads < 1 || selectorThreads > 256)
+            throw new Exception("SelectorThreads must be between 1 and 256");
+
+        this.workerGroupThreadCount = selectorThreads;
+    }
+
     /*
      * (non-Javadoc)
      * 
@@ -1276,10 +1519,59 @@ public class NettySctpManagementImpl implements Management {
         this.optionSoLinger = optionSoLinger;
     }
 
+    public Boolean getOptionTcpQuickAck() {
+        return optionTcpQuickAck;
+    }
+
+    /**
+     * @param optionTcpQuickAck
+     *            TCP_QUICKACK of the TCP channels, only applied by the epoll
+     *            transport
+     */
+    public void setOptionTcpQuickAck(Boolean optionTcpQuickAck) {
+        this.optionTcpQuickAck = optionTcpQuickAck;
+    }
+
+    public Integer getOptionSoBusyPoll() {
+        return optionSoBusyPoll;
+    }
+
+    /**
+     * @param optionSoBusyPoll
+     *            SO_BUSY_POLL in microseconds of the TCP channels, only applied
+     *            by the epoll transport
+     */
+    public void setOptionSoBusyPoll(Integer optionSoBusyPoll) {
+        this.optionSoBusyPoll = optionSoBusyPoll;
+    }
+
+    private boolean isEpollAvailable() {
+        try {
+            if (Epoll.isAvailable())
+                return true;
+
+            logger.warn(String.format("Native epoll transport is not available for management=%s, TCP falls back to NIO", this.name),
+                    Epoll.unavailabilityCause());
+        } catch (Throwable e) {
+            // netty-transport-native-epoll is not on the classpath
+            logger.warn(String.format("Native epoll transport is not available for management=%s, TCP falls back to NIO", this.name),
+                    e);
+        }
+        return false;
+    }
+
     protected CopyOnWriteArrayList<ManagementEventListener> getManagementEventListeners() {
         return managementEventListeners;
     }
 
+    /**
+     * @return how late the worker event loops run a task scheduled once per
+     *         second
+     */
+    protected LoopTimer getLoopTimer() {
+        return loopTimer;
+    }
+
     protected CopyOnWriteArrayList<CongestionListener> getCongestionListeners() {
         return congestionListeners;
     }
@@ -1306,6 +1598,10 @@ public class NettySctpManagementImpl implements Management {
             Integer vali = persistData.getConnectDelay();
             if (vali != null)
                 this.connectDelay = vali;
+            // applied to the worker group at the next start
+            vali = persistData.getSelectorThreads();
+            if (vali != null && vali >= 1)
+                this.workerGroupThreadCount = vali;
             // workerThreads and singleThread are deprecated but kept for compatibility
         } catch (java.lang.NullPointerException npe) {
             // ignore.
@@ -1347,20 +1643,19 @@ public class NettySctpManagementImpl implements Management {
         // This ensures associations are available when server checks for provisioned connections
         java.util.List<NettyAssociationImpl> loadedAssociations = persistData.getAssociations();
         if (loadedAssociations != null) {
-            logger.warn(String.format("JENNY-DEBUG-LOAD: Loaded %d associations from XML", loadedAssociations.size()));
+            if (logger.isDebugEnabled()) {
+                logger.debug(String.format("Loaded %d associations", loadedAssociations.size()));
+            }
             for (NettyAssociationImpl assoc : loadedAssociations) {
-                logger.warn(String.format("JENNY-DEBUG-LOAD: assoc=%s started=%s type=%s serverName=%s", 
-                    assoc.getName(), assoc.isStarted(), assoc.getAssociationType(), assoc.getServerName()));
                 if (assoc.getName() != null) {
                     this.associations.put(assoc.getName(), assoc);
                 }
             }
-        } else {
-            logger.warn("JENNY-DEBUG-LOAD: No associations loaded from XML (null)");
         }
         for (Association associationTemp : this.associations.values()) {
             NettyAssociationImpl associationImpl = (NettyAssociationImpl) associationTemp;
             associationImpl.setManagement(this);
+            this.associationIndex.add(associationImpl, associationImpl.getPeerAddressKeys());
             
             // Notify listeners that association was loaded from persistence
             // This allows M3UA layer to set associationListener before server starts
@@ -1411,6 +1706,7 @@ public class NettySctpManagementImpl implements Management {
             SctpPersistData persistData = new SctpPersistData();
             
             persistData.setConnectDelay(this.connectDelay);
+            persistData.setSelectorThreads(this.workerGroupThreadCount);
             
             if (this.congControl_DelayThreshold != null && this.congControl_DelayThreshold.length == 3) {
                 persistData.setCongControlDelayThreshold1(this.congControl_DelayThreshold[0]);
@@ -1438,8 +1734,6 @@ public class NettySctpManagementImpl implements Management {
                 if (entry.getValue() instanceof NettyAssociationImpl) {
                     NettyAssociationImpl assoc = (NettyAssociationImpl) entry.getValue();
                     assocList.add(assoc);
-                    logger.warn(String.format("JENNY-DEBUG-STORE: assoc=%s started=%s listener=%s", 
-                        assoc.getName(), assoc.isStarted(), assoc.getAssociationListener()));
                 }
             }
             persistData.setAssociations(assocList);
@@ -1558,55 +1852,61 @@ public class NettySctpManagementImpl implements Management {
 				}
 			}
 
-			if(peerAddress!=null)
-				association.setPeerAddress(peerAddress);
-			if(peerPort!= null)
-				association.setPeerPort(peerPort);
+			// re-indexed in finally once serverName / peer address / peer port are updated
+			this.associationIndex.remove(association);
+			try {
+				if(peerAddress!=null)
+					association.setPeerAddress(peerAddress);
+				if(peerPort!= null)
+					association.setPeerPort(peerPort);
 
-			if(serverName!=null && !serverName.equals(association.getServerName()))
-			{
-				Server newServer = null;
+				if(serverName!=null && !serverName.equals(association.getServerName()))
+				{
+					Server newServer = null;
 
-				for (Server serverTemp : this.servers) {
-					if (serverTemp.getName().equals(serverName)) {
-						newServer = serverTemp;
+					for (Server serverTemp : this.servers) {
+						if (serverTemp.getName().equals(serverName)) {
+							newServer = serverTemp;
+						}
 					}
-				}
-
-				if (newServer == null) {
-					throw new Exception(String.format("No Server found for name=%s", serverName));
-				}
-
-				if ((ipChannelType!=null && newServer.getIpChannelType() != ipChannelType)||(ipChannelType==null && newServer.getIpChannelType() != association.getIpChannelType()))
-					throw new Exception(String.format("Server and Association have different IP channel types"));
 
-				//remove association from current server
-				for (Server serverTemp : this.servers) {
-					if (serverTemp.getName().equals(association.getServerName())) {
-						((NettyServerImpl) serverTemp).associations.remove(assocName);
-						break;
+					if (newServer == null) {
+						throw new Exception(String.format("No Server found for name=%s", serverName));
 					}
-				}
 
-				//add association name to server
-				((NettyServerImpl) newServer).associations.add(assocName);
+					if ((ipChannelType!=null && newServer.getIpChannelType() != ipChannelType)||(ipChannelType==null && newServer.getIpChannelType() != association.getIpChannelType()))
+						throw new Exception(String.format("Server and Association have different IP channel types"));
 
-				association.setServerName(serverName);
-			}
-			else
-			{
-				if(ipChannelType!=null)
-				{
+					//remove association from current server
 					for (Server serverTemp : this.servers) {
 						if (serverTemp.getName().equals(association.getServerName())) {
-							if (serverTemp.getIpChannelType() != ipChannelType)
-								throw new Exception(String.format("Server and Association have different IP channel types"));
+							((NettyServerImpl) serverTemp).associations.remove(assocName);
+							break;
 						}
 					}
 
-					association.setIpChannelType(ipChannelType);
+					//add association name to server
+					((NettyServerImpl) newServer).associations.add(assocName);
+
+					association.setServerName(serverName);
 				}
+				else
+				{
+					if(ipChannelType!=null)
+					{
+						for (Server serverTemp : this.servers) {
+							if (serverTemp.getName().equals(association.getServerName())) {
+								if (serverTemp.getIpChannelType() != ipChannelType)
+									throw new Exception(String.format("Server and Association have different IP channel types"));
+							}
+						}
 
+						association.setIpChannelType(ipChannelType);
+					}
+
+				}
+			} finally {
+				this.associationIndex.add(association, association.getPeerAddressKeys());
 			}
 
 			this.store();
@@ -1660,6 +1960,8 @@ public class NettySctpManagementImpl implements Management {
 
 			NettyAssociationImpl association = (NettyAssociationImpl) this.associations.get(assocName);
 
+			this.associationIndex.remove(association);
+
 			if(hostAddress!=null)
 			{
 				association.setHostAddress(hostAddress);
@@ -1696,6 +1998,8 @@ public class NettySctpManagementImpl implements Management {
 				isModified = true;
 			}
 
+			this.associationIndex.add(association, association.getPeerAddressKeys());
+
 			if(association.isConnected() && isModified)
 			{
 				association.stop();
@@ -1714,6 +2018,39 @@ public class NettySctpManagementImpl implements Management {
 		}
 	}
 
+	@Override
+	public void modifyAssociationWriteBufferWaterMark(String assocName, int writeBufferLowWaterMark,
+			int writeBufferHighWaterMark) throws Exception {
+		if (!this.started) {
+			throw new Exception(String.format("Management=%s not started", this.name));
+		}
+
+		if (assocName == null) {
+			throw new Exception("Association name cannot be null");
+		}
+
+		CongestionControl.validateWriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark);
+
+		synchronized (this) {
+			NettyAssociationImpl association = (NettyAssociationImpl) this.associations.get(assocName);
+			if (association == null) {
+				throw new Exception(String.format("No Association found for name=%s", assocName));
+			}
+
+			association.setWriteBufferWaterMark(writeBufferLowWaterMark, writeBufferHighWaterMark);
+
+			this.store();
+
+			for (ManagementEventListener lstr : managementEventListeners) {
+				try {
+					lstr.onAssociationModified((Association) association);
+				} catch (Throwable ee) {
+					logger.error("Exception while invoking onAssociationModified", ee);
+				}
+			}
+		}
+	}
+
 	// =============== PayloadDataPool Implementation (v2.0.5) ===============
 	// High-performance object pooling for reduced GC pressure
 
@@ -22,15 +22,15 @@ package org.mobicents.protocols.sctp.netty;
 
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.sctp.SctpChannel;
 
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 
-import java.util.Map;
-
 import org.apache.log4j.Logger;
-import org.mobicents.protocols.api.Association;
-import org.mobicents.protocols.api.AssociationType;
 import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.sctp.AssociationIndex;
+import org.mobicents.protocols.sctp.EventTrace;
 
 /**
  * @author <a href="mailto:amit.bhayani@telestax.com">Amit Bhayani</a>
@@ -49,13 +49,12 @@ public class NettySctpServerHandler extends NettySctpChannelInboundHandlerAdapte
     public NettySctpServerHandler(NettyServerImpl serverImpl, NettySctpManagementImpl managementImpl) {
         this.serverImpl = serverImpl;
         this.managementImpl = managementImpl;
-        logger.warn(String.format("JENNY-DEBUG-HANDLER-CTOR: Server=%s, Management hash=%d", serverImpl.getName(), System.identityHashCode(managementImpl)));
     }
 
     @Override
     public void channelUnregistered(final ChannelHandlerContext ctx) throws Exception {
-        logger.warn(String.format("ChannelUnregistered event: association=%s", association));
         if (association != null) {
+            this.association.trace(EventTrace.Event.CHANNEL_UNREGISTERED, ctx.channel().remoteAddress());
             this.association.setChannelHandler(null);
         }
     }
@@ -68,59 +67,43 @@ public class NettySctpServerHandler extends NettySctpChannelInboundHandlerAdapte
 
         Channel channel = ctx.channel();
         InetSocketAddress sockAdd = ((InetSocketAddress) channel.remoteAddress());
-        String host = sockAdd.getAddress().getHostAddress();
+        InetAddress peerAddress = sockAdd.getAddress();
         int port = sockAdd.getPort();
 
         boolean provisioned = false;
 
         if (logger.isDebugEnabled()) {
-            logger.debug(String.format("Received connect request from peer host=%s port=%d", host, port));
+            logger.debug(String.format("Received connect request from peer host=%s port=%d", peerAddress.getHostAddress(), port));
         }
 
-        // Iterate through all corresponding associate to
         // check if incoming connection request matches with any provisioned
-        // ip:port
-        Map<String, Association> associations = this.managementImpl.getAssociations();
-        logger.warn(String.format("JENNY-DEBUG-SERVER: Server=%s checking connection from %s:%d, management associations count=%d", 
-                serverImpl.getName(), host, port, associations.size()));
-        for (Map.Entry<String, Association> entry : associations.entrySet()) {
-            NettyAssociationImpl association = (NettyAssociationImpl) entry.getValue();
-            logger.warn(String.format("JENNY-DEBUG-SERVER: Checking association=%s, serverName=%s, type=%s, peer=%s:%d", 
-                    association.getName(), association.getServerName(), association.getAssociationType(), 
-                    association.getPeerAddress(), association.getPeerPort()));
-
-            // check if an association binds to the found server
-            if (serverImpl.getName().equals(association.getServerName())
-                    && association.getAssociationType() == AssociationType.SERVER) {
-                // compare port and ip of remote with provisioned
-                if ((port == association.getPeerPort() || association.getPeerPort()==0) && (host.equals(association.getPeerAddress()))) {
-                    provisioned = true;
-
-                    if (!association.isStarted()) {
-                        logger.error(String.format(
-                                "Received connect request for Association=%s but not started yet. Dropping the connection!",
-                                association.getName()));
-                        channel.close();
-                        return;
-                    }
-
-                    this.association = association;
-                    this.channel = channel;
-                    this.ctx = ctx;
-                    this.association.setChannelHandler(this);
-
-                    if (logger.isInfoEnabled()) {
-                        logger.info(String.format("Connected %s", association));
-                    }
-
-                    if (association.getIpChannelType() == IpChannelType.TCP) {
-                        this.association.markAssociationUp(1, 1);
-                    }
+        // ip:port of an association bound to this server
+        this.managementImpl.getEventTrace().record(EventTrace.Event.INCOMING_CONNECTION, serverImpl.getName(), sockAdd);
+        NettyAssociationImpl provisionedAssociation = this.lookupProvisioned(channel, peerAddress, port);
+        if (provisionedAssociation != null) {
+            provisioned = true;
 
-                    break;
-                }
+            if (!provisionedAssociation.isStarted()) {
+                logger.error(String.format(
+                        "Received connect request for Association=%s but not started yet. Dropping the connection!",
+                        provisionedAssociation.getName()));
+                channel.close();
+                return;
+            }
+
+            this.association = provisionedAssociation;
+            this.channel = channel;
+            this.ctx = ctx;
+            this.association.setChannelHandler(this);
+
+            if (logger.isInfoEnabled()) {
+                logger.info(String.format("Connected %s", provisionedAssociation));
             }
-        }// for loop
+
+            if (provisionedAssociation.getIpChannelType() == IpChannelType.TCP) {
+                this.association.markAssociationUp(1, 1);
+            }
+        }
 
         if (!provisioned && serverImpl.isAcceptAnonymousConnections() && this.managementImpl.getServerListener() != null) {
             // the server accepts anonymous connections
@@ -137,7 +120,7 @@ public class NettySctpServerHandler extends NettySctpChannelInboundHandlerAdapte
 
             provisioned = true;
 
-            NettyAssociationImpl anonymAssociation = new NettyAssociationImpl(host, port, serverImpl.getName(),
+            NettyAssociationImpl anonymAssociation = new NettyAssociationImpl(peerAddress.getHostAddress(), port, serverImpl.getName(),
                     serverImpl.getIpChannelType(), serverImpl);
             anonymAssociation.setManagement(this.managementImpl);
 
@@ -174,11 +157,32 @@ public class NettySctpServerHandler extends NettySctpChannelInboundHandlerAdapte
         if (!provisioned) {
             // There is no corresponding Associate provisioned. Lets close the
             // channel here
-            logger.warn(String.format("Received connect request from non provisioned %s:%d address. Closing Channel", host, port));
+            logger.warn(String.format("Received connect request from non provisioned %s:%d address. Closing Channel", peerAddress.getHostAddress(),
+                    port));
             ctx.close();
         }
     }
 
+    /**
+     * Looks up the Association provisioned for the primary remote address and
+     * for a multihomed SCTP peer for each of its other remote addresses
+     */
+    private NettyAssociationImpl lookupProvisioned(Channel channel, InetAddress peerAddress, int port) {
+        AssociationIndex associationIndex = this.managementImpl.associationIndex;
+        NettyAssociationImpl provisionedAssociation = (NettyAssociationImpl) associationIndex.lookup(this.serverImpl.getName(),
+                peerAddress, port);
+        if (provisionedAssociation == null && channel instanceof SctpChannel) {
+            for (InetSocketAddress remoteAddress : ((SctpChannel) channel).allRemoteAddresses()) {
+                provisionedAssociation = (NettyAssociationImpl) associationIndex.lookup(this.serverImpl.getName(),
+                        remoteAddress.getAddress(), remoteAddress.getPort());
+                if (provisionedAssociation != null) {
+                    break;
+                }
+            }
+        }
+        return provisionedAssociation;
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) {
         if (logger.isDebugEnabled()) {
@@ -188,6 +192,12 @@ public class NettySctpServerHandler extends NettySctpChannelInboundHandlerAdapte
 
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        // a failed write is counted, it does not close the channel
+        if (this.isWriteFailure(cause)) {
+            this.onWriteFailure(cause);
+            return;
+        }
+
         // Close the connection when an exception is raised.
         logger.error("ExceptionCaught for Association: " + this.association.getName() + "\n", cause);
         ctx.close();
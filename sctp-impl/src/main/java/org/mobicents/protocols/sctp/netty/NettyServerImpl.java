@@ -24,9 +24,12 @@ import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.sctp.SctpChannelOption;
 import io.netty.channel.sctp.SctpServerChannel;
 import org.mobicents.protocols.sctp.netty.PooledNioSctpServerChannel;
+import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
@@ -96,7 +99,7 @@ public class NettyServerImpl implements Server {
     private SctpServerChannel serverChannelSctp;
     
     @JsonIgnore
-    private NioServerSocketChannel serverChannelTcp;
+    private ServerSocketChannel serverChannelTcp;
 
     /**
      * 
@@ -361,8 +364,8 @@ public class NettyServerImpl implements Server {
 
     private void initSocket() throws Exception {
         ServerBootstrap b = new ServerBootstrap();
-        b.group(this.management.getBossGroup(), this.management.getWorkerGroup());
         if (this.ipChannelType == IpChannelType.SCTP) {
+            b.group(this.management.getBossGroup(), this.management.getWorkerGroup());
             try {
                 b.channel(PooledNioSctpServerChannel.class);
             } catch (NoClassDefFoundError e) {
@@ -377,7 +380,13 @@ public class NettyServerImpl implements Server {
             b.childHandler(new NettySctpServerChannelInitializer(this, this.management));
             this.applySctpOptions(b);
         } else {
-            b.channel(NioServerSocketChannel.class);
+            b.group(this.management.getTcpBossGroup(), this.management.getTcpWorkerGroup());
+            if (this.management.isTcpEpoll()) {
+                b.channel(EpollServerSocketChannel.class);
+                this.applyEpollOptions(b);
+            } else {
+                b.channel(NioServerSocketChannel.class);
+            }
             b.option(ChannelOption.SO_BACKLOG, 100);
             b.childHandler(new NettyTcpServerChannelInitializer(this, this.management));
         }
@@ -408,7 +417,7 @@ public class NettyServerImpl implements Server {
                 logger.info(String.format("SctpServerChannel bound to=%s ", this.serverChannelSctp.allLocalAddresses()));
             }
         } else {
-            this.serverChannelTcp = (NioServerSocketChannel) channelFuture.channel();
+            this.serverChannelTcp = (ServerSocketChannel) channelFuture.channel();
 
             if (logger.isInfoEnabled()) {
                 logger.info(String.format("ServerSocketChannel bound to=%s ", this.serverChannelTcp.localAddress()));
@@ -416,6 +425,13 @@ public class NettyServerImpl implements Server {
         }
     }
 
+    private void applyEpollOptions(ServerBootstrap b) {
+        if (this.management.getOptionTcpQuickAck() != null)
+            b.childOption(EpollChannelOption.TCP_QUICKACK, this.management.getOptionTcpQuickAck());
+        if (this.management.getOptionSoBusyPoll() != null)
+            b.childOption(EpollChannelOption.SO_BUSY_POLL, this.management.getOptionSoBusyPoll());
+    }
+
     private void applySctpOptions(ServerBootstrap b) {
         // SCTP standard options (usually supported)
         b.childOption(SctpChannelOption.SCTP_NODELAY, this.management.getOptionSctpNodelay());
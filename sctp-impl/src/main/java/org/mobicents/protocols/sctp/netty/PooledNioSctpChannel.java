@@ -1,5 +1,6 @@
 package org.mobicents.protocols.sctp.netty;
 
+import com.sun.nio.sctp.Association;
 import com.sun.nio.sctp.MessageInfo;
 import com.sun.nio.sctp.NotificationHandler;
 import com.sun.nio.sctp.SctpChannel;
@@ -14,6 +15,7 @@ import io.netty.channel.sctp.nio.NioSctpChannel;
 import io.netty.util.internal.PlatformDependent;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -25,6 +27,14 @@ import java.util.List;
  * - Optimized fast path for direct single-buffer writes
  * - Pre-calculated buffer positions
  *
+ * Direct single-buffer messages are sent straight from their own memory, only
+ * heap and composite buffers are copied into the ThreadLocal output buffer.
+ * Outgoing MessageInfo objects are cached per stream.
+ *
+ * Reads are batched by the {@link SctpRecvByteBufAllocator}: the read loop
+ * calls doReadMessages() until the socket is drained or the per-wakeup budget
+ * is used up, and fires a single channelReadComplete for the batch.
+ *
  * On Java 11 (our target runtime) we do not need the Java 22-24 MemorySegment
  * work-around, so we can skip the extra copy to inputCopy/outputCopy entirely.
  */
@@ -41,6 +51,9 @@ public class PooledNioSctpChannel extends NioSctpChannel {
         }
     };
 
+    // Outgoing MessageInfo per stream, only used by the event loop thread
+    private final OutgoingMessageInfos txMessageInfos = new OutgoingMessageInfos();
+
     public PooledNioSctpChannel() {
         super();
         this.notificationHandler = new SctpNotificationHandler(this);
@@ -65,6 +78,7 @@ public class PooledNioSctpChannel extends NioSctpChannel {
         try {
             ByteBuffer data = buffer.internalNioBuffer(buffer.writerIndex(), buffer.writableBytes());
             int pos = data.position();
+            allocHandle.attemptedBytesRead(buffer.writableBytes());
 
             MessageInfo messageInfo = ch.receive(data, null, notificationHandler);
             if (messageInfo == null) {
@@ -96,38 +110,84 @@ public class PooledNioSctpChannel extends NioSctpChannel {
             return true;
         }
 
-        ByteBuffer nioData;
-        ByteBuf pooled = null;
-        
-        // Fast path: direct buffer with single NIO buffer - use ThreadLocal pooling (v2.0.13)
+        ByteBuffer nioData = outgoingNioBuffer(data, dataLen);
+
+        final int writtenBytes = javaChannel().send(nioData, this.getOutgoingMessageInfo(packet));
+        return writtenBytes > 0;
+    }
+
+    /**
+     * Returns the NIO buffer the readable bytes of the passed message content
+     * are sent from. The reader index is not moved: if the send buffer is full
+     * send() returns 0 and the same message is written again later
+     */
+    protected static ByteBuffer outgoingNioBuffer(ByteBuf data, int dataLen) {
         if (data.isDirect() && data.nioBufferCount() == 1) {
-            ByteBuf outputBuf = OUTPUT_BUFFER_POOL.get();
-            if (outputBuf.capacity() < dataLen) {
-                // Expand if needed but try to reuse as much as possible
-                outputBuf.capacity(dataLen);
-            }
-            outputBuf.clear();
-            data.readBytes(outputBuf, dataLen);
-            nioData = outputBuf.internalNioBuffer(outputBuf.readerIndex(), outputBuf.readableBytes());
-        } else {
-            // Slow path: need to copy/convert
-            pooled = config().getAllocator().directBuffer(dataLen);
-            data.readBytes(pooled);
-            nioData = pooled.internalNioBuffer(pooled.readerIndex(), pooled.readableBytes());
+            // Zero-copy path: the kernel reads the payload from its own buffer
+            return data.internalNioBuffer(data.readerIndex(), dataLen);
         }
 
-        final MessageInfo mi = MessageInfo.createOutgoing(association(), null, packet.streamIdentifier());
-        mi.payloadProtocolID(packet.protocolIdentifier());
-        mi.streamNumber(packet.streamIdentifier());
-        mi.unordered(packet.isUnordered());
+        // Heap or composite buffer: copy into the ThreadLocal output buffer (v2.0.13)
+        ByteBuf outputBuf = OUTPUT_BUFFER_POOL.get();
+        if (outputBuf.capacity() < dataLen) {
+            // Expand if needed but try to reuse as much as possible
+            outputBuf.capacity(dataLen);
+        }
+        outputBuf.clear();
+        data.getBytes(data.readerIndex(), outputBuf, dataLen);
+        return outputBuf.internalNioBuffer(outputBuf.readerIndex(), outputBuf.readableBytes());
+    }
 
-        try {
-            final int writtenBytes = javaChannel().send(nioData, mi);
-            return writtenBytes > 0;
-        } finally {
-            if (pooled != null) {
-                pooled.release();
+    /**
+     * Returns the MessageInfo cached for the stream of the passed message,
+     * updated with its protocol id and flags. The cache is dropped when the
+     * underlying Association changes.
+     */
+    private MessageInfo getOutgoingMessageInfo(SctpMessage packet) {
+        return this.txMessageInfos.get(association(), packet.streamIdentifier(), packet.protocolIdentifier(),
+                packet.isUnordered());
+    }
+
+    /**
+     * Outgoing MessageInfo objects cached per stream of an Association. Only
+     * stream numbers an SCTP association can carry are cached, any other is
+     * passed to MessageInfo.createOutgoing() which rejects it.
+     */
+    protected static final class OutgoingMessageInfos {
+
+        protected static final int MAX_STREAM_NUMBER = 65535;
+
+        private MessageInfo[] messageInfos = new MessageInfo[0];
+
+        // the Association the cached MessageInfos were created for
+        private Association association;
+
+        protected MessageInfo get(Association association, int streamNumber, int protocolId, boolean unordered) {
+            MessageInfo messageInfo;
+            if (streamNumber < 0 || streamNumber > MAX_STREAM_NUMBER) {
+                messageInfo = MessageInfo.createOutgoing(association, null, streamNumber);
+            } else {
+                if (association != this.association) {
+                    this.messageInfos = new MessageInfo[0];
+                    this.association = association;
+                }
+                if (streamNumber >= this.messageInfos.length) {
+                    this.messageInfos = Arrays.copyOf(this.messageInfos, streamNumber + 1);
+                }
+
+                messageInfo = this.messageInfos[streamNumber];
+                if (messageInfo == null) {
+                    messageInfo = MessageInfo.createOutgoing(association, null, streamNumber);
+                    this.messageInfos[streamNumber] = messageInfo;
+                }
             }
+            messageInfo.payloadProtocolID(protocolId);
+            messageInfo.unordered(unordered);
+            return messageInfo;
+        }
+
+        protected int size() {
+            return this.messageInfos.length;
         }
     }
-}
\ No newline at end of file
+}
@@ -53,6 +53,9 @@ public class SctpPersistData {
     @JsonProperty("workerthreads")
     private Integer workerThreads;
 
+    @JsonProperty("selectorthreads")
+    private Integer selectorThreads;
+
     @JsonProperty("congControl_DelayThreshold_1")
     private Double congControlDelayThreshold1;
 
@@ -110,6 +113,14 @@ public class SctpPersistData {
         this.workerThreads = workerThreads;
     }
 
+    public Integer getSelectorThreads() {
+        return selectorThreads;
+    }
+
+    public void setSelectorThreads(Integer selectorThreads) {
+        this.selectorThreads = selectorThreads;
+    }
+
     public Double getCongControlDelayThreshold1() {
         return congControlDelayThreshold1;
     }
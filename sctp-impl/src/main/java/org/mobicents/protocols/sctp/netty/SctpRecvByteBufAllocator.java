@@ -0,0 +1,128 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.DefaultMaxMessagesRecvByteBufAllocator;
+
+/**
+ * Receive allocator for SCTP message channels.
+ *
+ * The channel read loop keeps calling doReadMessages() until the socket is
+ * drained or the per-wakeup budget of messages or bytes is used up; the whole
+ * batch is followed by a single channelReadComplete. The "maybe more data"
+ * heuristic of the stream allocators is not used, a message smaller than the
+ * buffer says nothing about the next one.
+ *
+ * The buffer size is predicted per message: it grows as soon as a message
+ * fills the buffer and shrinks after two consecutive messages that would have
+ * fitted into half of it.
+ */
+public class SctpRecvByteBufAllocator extends DefaultMaxMessagesRecvByteBufAllocator {
+
+    public static final int DEFAULT_MINIMUM = 64;
+    public static final int DEFAULT_INITIAL = 2048;
+    public static final int DEFAULT_MAXIMUM = 65536;
+
+    private final int minimum;
+    private final int initial;
+    private final int maximum;
+    private final int maxBytesPerRead;
+
+    /**
+     * @param maxMessagesPerRead
+     *            max number of messages read per event loop wakeup
+     * @param maxBytesPerRead
+     *            max number of bytes read per event loop wakeup
+     */
+    public SctpRecvByteBufAllocator(int maxMessagesPerRead, int maxBytesPerRead) {
+        this(maxMessagesPerRead, maxBytesPerRead, DEFAULT_MINIMUM, DEFAULT_INITIAL, DEFAULT_MAXIMUM);
+    }
+
+    public SctpRecvByteBufAllocator(int maxMessagesPerRead, int maxBytesPerRead, int minimum, int initial, int maximum) {
+        super(maxMessagesPerRead);
+        if (minimum <= 0 || initial < minimum || maximum < initial) {
+            throw new IllegalArgumentException(String.format("Invalid receive buffer sizes minimum=%d, initial=%d, maximum=%d",
+                    minimum, initial, maximum));
+        }
+        if (maxBytesPerRead <= 0) {
+            throw new IllegalArgumentException(String.format("maxBytesPerRead must be positive: %d", maxBytesPerRead));
+        }
+        this.minimum = minimum;
+        this.initial = initial;
+        this.maximum = maximum;
+        this.maxBytesPerRead = maxBytesPerRead;
+        respectMaybeMoreData(false);
+    }
+
+    @Override
+    public Handle newHandle() {
+        return new HandleImpl();
+    }
+
+    private final class HandleImpl extends MaxMessageHandle {
+        private int nextSize = initial;
+        private boolean decreaseNow;
+
+        @Override
+        public int guess() {
+            return this.nextSize;
+        }
+
+        @Override
+        public ByteBuf allocate(ByteBufAllocator alloc) {
+            return alloc.directBuffer(this.nextSize);
+        }
+
+        @Override
+        public void lastBytesRead(int bytes) {
+            super.lastBytesRead(bytes);
+            if (bytes <= 0) {
+                return;
+            }
+            if (bytes >= this.nextSize) {
+                // the message may have been truncated, grow right away
+                this.nextSize = Math.min(maximum, this.nextSize << 1);
+                this.decreaseNow = false;
+            } else if (bytes <= this.nextSize >>> 1) {
+                if (this.decreaseNow) {
+                    this.nextSize = Math.max(minimum, this.nextSize >>> 1);
+                    this.decreaseNow = false;
+                } else {
+                    this.decreaseNow = true;
+                }
+            } else {
+                this.decreaseNow = false;
+            }
+        }
+
+        @Override
+        public boolean continueReading() {
+            return super.continueReading() && totalBytesRead() < maxBytesPerRead;
+        }
+
+        @Override
+        public void readComplete() {
+            // sized per message in lastBytesRead()
+        }
+    }
+}
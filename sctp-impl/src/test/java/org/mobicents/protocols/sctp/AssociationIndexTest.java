@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.IpChannelType;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the (serverName, peer address, peer port) {@link AssociationIndex} and
+ * {@link PeerAddressKey} used to match incoming connections, also across a
+ * reconnect storm of 10K provisioned Associations. The lookup cost is measured
+ * by the AssociationIndexBenchmark of sctp-benchmarks
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class AssociationIndexTest {
+
+	private static final String SERVER_NAME = "testserver";
+	private static final String SERVER_NAME_2 = "testserver2";
+
+	private static final int ASSOCIATIONS = 10000;
+	private static final int RECONNECT_ROUNDS = 10;
+
+	@Test(groups = { "functional", "tcp" })
+	public void testLookup() throws Exception {
+		AssociationIndex index = new AssociationIndex();
+		InetAddress peer1 = InetAddress.getByName("10.0.0.1");
+		InetAddress peer2 = InetAddress.getByName("10.0.0.2");
+
+		AssociationImpl exact = new AssociationImpl("10.0.0.1", 2905, SERVER_NAME, "exact", IpChannelType.TCP);
+		AssociationImpl wildcard = new AssociationImpl("10.0.0.1", 0, SERVER_NAME, "wildcard", IpChannelType.TCP);
+		AssociationImpl client = new AssociationImpl("127.0.0.1", 2905, "10.0.0.2", 2905, "client", IpChannelType.TCP, null);
+		index.add(exact, exact.getPeerAddressKeys());
+		index.add(wildcard, wildcard.getPeerAddressKeys());
+		index.add(client, client.getPeerAddressKeys());
+
+		assertTrue(index.size() == 2);
+		assertSame(exact, index.lookup(SERVER_NAME, peer1, 2905));
+		assertSame(wildcard, index.lookup(SERVER_NAME, peer1, 40000));
+		assertNull(index.lookup(SERVER_NAME_2, peer1, 2905));
+		assertNull(index.lookup(SERVER_NAME, peer2, 2905));
+
+		index.remove(wildcard);
+		assertNull(index.lookup(SERVER_NAME, peer1, 40000));
+		assertSame(exact, index.lookup(SERVER_NAME, peer1, 2905));
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testMultihomedPeer() throws Exception {
+		AssociationIndex index = new AssociationIndex();
+
+		AssociationImpl association = new AssociationImpl("10.0.0.1", 2905, SERVER_NAME, "multihome", IpChannelType.SCTP);
+		association.setExtraPeerHostAddresses(new String[] { "10.0.1.1", "fe80::1", "not-a-literal" });
+		assertEquals(3, association.getPeerAddressKeys().length);
+		index.add(association, association.getPeerAddressKeys());
+
+		assertSame(association, index.lookup(SERVER_NAME, InetAddress.getByName("10.0.0.1"), 2905));
+		assertSame(association, index.lookup(SERVER_NAME, InetAddress.getByName("10.0.1.1"), 2905));
+		assertSame(association, index.lookup(SERVER_NAME, InetAddress.getByName("fe80:0:0:0:0:0:0:1"), 2905));
+		assertNull(index.lookup(SERVER_NAME, InetAddress.getByName("10.0.2.1"), 2905));
+
+		// re-indexing drops the addresses the peer no longer has
+		association.setExtraPeerHostAddresses(null);
+		index.add(association, association.getPeerAddressKeys());
+		assertEquals(1, index.size());
+		assertNull(index.lookup(SERVER_NAME, InetAddress.getByName("10.0.1.1"), 2905));
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testPeerAddressKey() throws Exception {
+		assertEquals(PeerAddressKey.valueOf("::ffff:192.168.1.10"), PeerAddressKey.valueOf("192.168.1.10"));
+		assertEquals(PeerAddressKey.valueOf("0:0:0:0:0:0:0:1"), PeerAddressKey.valueOf("::1"));
+		assertFalse(PeerAddressKey.valueOf("::1").equals(PeerAddressKey.valueOf("127.0.0.1")));
+
+		PeerAddressKey key = PeerAddressKey.valueOf("192.168.1.10");
+		InetAddress address = InetAddress.getByName("192.168.1.10");
+		assertEquals(PeerAddressKey.high(address), key.getHigh());
+		assertEquals(PeerAddressKey.low(address), key.getLow());
+
+		assertNull(PeerAddressKey.valueOf("localhost"));
+		assertNull(PeerAddressKey.valueOf("192.168.1"));
+		assertNull(PeerAddressKey.valueOf("192.168.1.256"));
+		assertNull(PeerAddressKey.valueOf("192.168..1"));
+		assertNull(PeerAddressKey.valueOf(null));
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testModifyServerAssociation() throws Exception {
+		ManagementImpl management = new ManagementImpl("index-management");
+		management.setSingleThread(true);
+		management.start();
+		management.removeAllResources();
+
+		try {
+			management.addServer(SERVER_NAME, "127.0.0.1", 2357, IpChannelType.TCP, false, 0, null);
+			management.addServer(SERVER_NAME_2, "127.0.0.1", 2358, IpChannelType.TCP, false, 0, null);
+			AssociationImpl association = management.addServerAssociation("127.0.0.1", 2359, SERVER_NAME, "indexAssociation",
+					IpChannelType.TCP);
+			InetAddress peer1 = InetAddress.getByName("127.0.0.1");
+			InetAddress peer2 = InetAddress.getByName("127.0.0.2");
+			assertSame(association, management.associationIndex.lookup(SERVER_NAME, peer1, 2359));
+
+			management.modifyServerAssociation("indexAssociation", "127.0.0.2", 2360, SERVER_NAME_2, null);
+			assertNull(management.associationIndex.lookup(SERVER_NAME, peer1, 2359));
+			assertSame(association, management.associationIndex.lookup(SERVER_NAME_2, peer2, 2360));
+
+			management.removeAssociation("indexAssociation");
+			assertNull(management.associationIndex.lookup(SERVER_NAME_2, peer2, 2360));
+		} finally {
+			management.removeAllResources();
+			management.stop();
+		}
+	}
+
+	/**
+	 * All 10K provisioned Associations reconnect at once after a network flap,
+	 * each of them re-indexed on the way as a modify or restart does
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testReconnectStorm() throws Exception {
+		AssociationIndex index = new AssociationIndex();
+		List<AssociationImpl> associations = new ArrayList<AssociationImpl>(ASSOCIATIONS);
+		List<InetAddress> peerAddresses = new ArrayList<InetAddress>(ASSOCIATIONS);
+		for (int i = 0; i < ASSOCIATIONS; i++) {
+			String peerAddress = "10.1." + (i >> 8) + "." + (i & 0xff);
+			AssociationImpl association = new AssociationImpl(peerAddress, 2905, SERVER_NAME, "assoc" + i, IpChannelType.TCP);
+			associations.add(association);
+			index.add(association, association.getPeerAddressKeys());
+			peerAddresses.add(InetAddress.getByName(peerAddress));
+		}
+		assertEquals(ASSOCIATIONS, index.size());
+
+		for (int round = 0; round < RECONNECT_ROUNDS; round++) {
+			for (int i = 0; i < ASSOCIATIONS; i++) {
+				AssociationImpl association = associations.get(i);
+				assertSame(association, index.lookup(SERVER_NAME, peerAddresses.get(i), 2905));
+				assertNull(index.lookup(SERVER_NAME, peerAddresses.get(i), 2906));
+				assertNull(index.lookup(SERVER_NAME_2, peerAddresses.get(i), 2905));
+				index.add(association, association.getPeerAddressKeys());
+			}
+			assertEquals(ASSOCIATIONS, index.size());
+		}
+
+		for (AssociationImpl association : associations) {
+			index.remove(association);
+		}
+		assertEquals(0, index.size());
+		assertNull(index.lookup(SERVER_NAME, peerAddresses.get(0), 2905));
+	}
+}
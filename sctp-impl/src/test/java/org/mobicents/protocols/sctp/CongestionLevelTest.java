@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.CongestionListener;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the outgoing congestion level of an NIO {@link AssociationImpl}: a peer
+ * that does not read fills the txQueue and raises the level, once the peer
+ * reads again the level drops back to 0
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class CongestionLevelTest {
+
+	private static final int SERVER_PORT = 12370;
+	private static final int CLIENT_PORT = 12371;
+
+	private static final int MESSAGES = 7500;
+	private static final byte[] MESSAGE = new byte[8192];
+
+	private static final double[] QUEUE_THRESHOLD = { 0.5, 0.75, 0.9 };
+	private static final double[] BACK_TO_NORMAL_QUEUE_THRESHOLD = { 0.4, 0.65, 0.8 };
+
+	@Test(groups = { "functional", "tcp" })
+	public void testCongestionLevel() throws Exception {
+		double[] threshold = { 2.5, 8, 14 };
+		double[] backToNormal = { 1.5, 5.5, 10 };
+
+		assertEquals(0, CongestionControl.getCongestionLevel(0, 2.4, threshold, backToNormal));
+		assertEquals(1, CongestionControl.getCongestionLevel(0, 2.5, threshold, backToNormal));
+		assertEquals(3, CongestionControl.getCongestionLevel(0, 20, threshold, backToNormal));
+
+		// between back to normal and threshold the level is kept
+		assertEquals(1, CongestionControl.getCongestionLevel(1, 2, threshold, backToNormal));
+		assertEquals(2, CongestionControl.getCongestionLevel(2, 6, threshold, backToNormal));
+		assertEquals(1, CongestionControl.getCongestionLevel(2, 5.5, threshold, backToNormal));
+		assertEquals(0, CongestionControl.getCongestionLevel(3, 1, threshold, backToNormal));
+
+		CongestionControl.validate(threshold, backToNormal);
+		try {
+			CongestionControl.validate(new double[] { 0.5, 0.75, 0.9 }, new double[] { 0.4, 0.8, 0.85 });
+			assertTrue("back to normal threshold above its threshold must be rejected", false);
+		} catch (Exception e) {
+		}
+		try {
+			CongestionControl.validate(new double[] { 0.5, 0.9 }, new double[] { 0.4, 0.8 });
+			assertTrue("two thresholds must be rejected", false);
+		} catch (Exception e) {
+		}
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testQueueCongestionTcp() throws Exception {
+		ManagementImpl management = new ManagementImpl("congestion-management");
+		management.setSingleThread(true);
+		TcpLoopback loopback = new TcpLoopback(management, SERVER_PORT, CLIENT_PORT, 4096);
+		AssociationImpl clientAssociation = (AssociationImpl) loopback.clientAssociation;
+		management.setCongControl_QueueThreshold(QUEUE_THRESHOLD, BACK_TO_NORMAL_QUEUE_THRESHOLD);
+
+		CongestionLevelListener congestionListener = new CongestionLevelListener();
+		management.addCongestionListener(congestionListener);
+
+		final Socket socket = loopback.connect();
+		assertEquals(0, clientAssociation.getCongestionLevel());
+
+		// the peer does not read, the kernel buffers fill up first and then
+		// the txQueue
+		for (int i = 0; i < MESSAGES; i++) {
+			clientAssociation.send(new PayloadData(MESSAGE.length, Unpooled.wrappedBuffer(MESSAGE), true, false, 0, 0));
+		}
+		assertTrue(clientAssociation.getCongestionLevel() > 0);
+		assertTrue(congestionListener.levels.size() > 0);
+		assertEquals(0, congestionListener.levels.get(0)[0]);
+
+		// the peer reads again
+		final long expected = (long) MESSAGES * MESSAGE.length;
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				try {
+					InputStream in = socket.getInputStream();
+					byte[] buf = new byte[65536];
+					long received = 0;
+					while (received < expected) {
+						int len = in.read(buf);
+						if (len < 0)
+							break;
+						received += len;
+					}
+				} catch (Exception e) {
+				}
+			}
+		};
+		reader.start();
+		reader.join(30000);
+
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (clientAssociation.getCongestionLevel() == 0)
+				break;
+			Thread.sleep(10);
+		}
+		assertEquals(0, clientAssociation.getCongestionLevel());
+		int[] last = congestionListener.levels.get(congestionListener.levels.size() - 1);
+		assertEquals(0, last[1]);
+
+		management.removeCongestionListener(congestionListener);
+		loopback.close();
+	}
+
+	private static class CongestionLevelListener implements CongestionListener {
+
+		private final List<int[]> levels = new CopyOnWriteArrayList<int[]>();
+
+		@Override
+		public void onCongLevelChanged(Association association, int oldCongLevel, int newCongLevel) {
+			levels.add(new int[] { oldCongLevel, newCongLevel });
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the {@link EventTrace} ring buffer: nothing is recorded while disabled,
+ * the last events are kept oldest first and the rate limit drops the excess
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class EventTraceTest {
+
+	@Test(groups = { "functional", "tcp" })
+	public void testDisabled() throws Exception {
+		EventTrace eventTrace = new EventTrace(16, 1000);
+
+		// a DEBUG level logger enables the trace as well
+		Logger logger = Logger.getLogger(EventTrace.class);
+		Level level = logger.getLevel();
+		logger.setLevel(Level.INFO);
+		try {
+			eventTrace.record(EventTrace.Event.ASSOCIATION_UP, "assoc1", null);
+			assertEquals(0, eventTrace.dump().size());
+
+			logger.setLevel(Level.DEBUG);
+			eventTrace.record(EventTrace.Event.ASSOCIATION_UP, "assoc1", null);
+			assertEquals(1, eventTrace.dump().size());
+		} finally {
+			logger.setLevel(level);
+		}
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testRing() throws Exception {
+		EventTrace eventTrace = new EventTrace(10, 1000);
+		eventTrace.setEnabled(true);
+
+		// the capacity is rounded up to 16
+		for (int i = 0; i < 20; i++) {
+			eventTrace.record(EventTrace.Event.INCOMING_CONNECTION, "server", "peer" + i);
+		}
+		List<String> lines = eventTrace.dump();
+		assertEquals(16, lines.size());
+		for (int i = 0; i < 16; i++) {
+			assertTrue(lines.get(i), lines.get(i).endsWith("INCOMING_CONNECTION name=server peer" + (i + 4)));
+		}
+
+		eventTrace.clear();
+		assertEquals(0, eventTrace.dump().size());
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testDetailSnapshot() throws Exception {
+		EventTrace eventTrace = new EventTrace(16, 1000);
+		eventTrace.setEnabled(true);
+
+		// the detail is formatted when recorded, the object itself is not kept
+		StringBuilder detail = new StringBuilder("state=up");
+		eventTrace.record(EventTrace.Event.ASSOCIATION_UP, "assoc1", detail);
+		detail.setLength(0);
+		detail.append("state=down");
+
+		List<String> lines = eventTrace.dump();
+		assertEquals(1, lines.size());
+		assertTrue(lines.get(0), lines.get(0).endsWith("ASSOCIATION_UP name=assoc1 state=up"));
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testRateLimit() throws Exception {
+		EventTrace eventTrace = new EventTrace(1024, 100);
+		eventTrace.setEnabled(true);
+
+		for (int i = 0; i < 150; i++) {
+			eventTrace.record(EventTrace.Event.COMM_UP, "assoc1", null);
+		}
+		// a new second may start meanwhile
+		assertTrue(eventTrace.dump().size() >= 100);
+		assertEquals(150, eventTrace.dump().size() + eventTrace.getDropped());
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.mobicents.protocols.api.LatencyHistogram;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link LatencyRecorder} and the {@link LatencyHistogram} buckets
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class LatencyRecorderTest {
+
+	@Test(groups = { "functional", "tcp" })
+	public void testBuckets() throws Exception {
+		int last = -1;
+		for (long value = 0; value < 1000000; value += 7) {
+			int index = LatencyHistogram.bucketIndex(value);
+			assertTrue(index >= last);
+			last = index;
+
+			// reported at most 1/16 above the recorded value
+			long highest = LatencyHistogram.bucketHighestValue(index);
+			assertTrue(highest >= value);
+			assertTrue(highest - value <= value / 16);
+		}
+
+		assertEquals(0, LatencyHistogram.bucketIndex(-5));
+		assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE));
+		assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+		assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.bucketHighestValue(LatencyHistogram.BUCKET_COUNT - 1));
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testPercentiles() throws Exception {
+		LatencyRecorder latencyRecorder = new LatencyRecorder();
+		assertEquals(0, latencyRecorder.snapshot().getCount());
+		assertEquals(0, latencyRecorder.snapshot().getValueAtPercentile(99));
+
+		for (int i = 1; i <= 100; i++) {
+			latencyRecorder.record(i * 1000L);
+		}
+
+		LatencyHistogram histogram = latencyRecorder.snapshot();
+		assertEquals(100, histogram.getCount());
+		assertEquals(50500.0, histogram.getMean(), 0.1);
+		this.assertNear(50000, histogram.getValueAtPercentile(50));
+		this.assertNear(99000, histogram.getValueAtPercentile(99));
+		this.assertNear(100000, histogram.getValueAtPercentile(100));
+		this.assertNear(100000, histogram.getMax());
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testInterval() throws Exception {
+		LatencyRecorder latencyRecorder = new LatencyRecorder();
+		for (int i = 0; i < 10; i++) {
+			latencyRecorder.record(1000);
+		}
+		LatencyHistogram previous = latencyRecorder.snapshot();
+
+		for (int i = 0; i < 5; i++) {
+			latencyRecorder.record(1000000);
+		}
+		LatencyHistogram interval = latencyRecorder.snapshot().minus(previous);
+		assertEquals(5, interval.getCount());
+		assertEquals(1000000.0, interval.getMean(), 0.1);
+		this.assertNear(1000000, interval.getValueAtPercentile(50));
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testConcurrent() throws Exception {
+		final LatencyRecorder latencyRecorder = new LatencyRecorder();
+		final int latencies = 100000;
+
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < latencies; j++) {
+						latencyRecorder.record(j);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+
+		assertEquals(threads.length * latencies, latencyRecorder.snapshot().getCount());
+	}
+
+	private void assertNear(long expected, long value) {
+		assertTrue(String.format("%d is not near %d", value, expected), value >= expected && value - expected <= expected / 16);
+	}
+}
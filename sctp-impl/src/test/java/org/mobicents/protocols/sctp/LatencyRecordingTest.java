@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+
+import org.mobicents.protocols.api.LatencyHistogram;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the latency recording of an NIO {@link AssociationImpl}: nothing is
+ * recorded while disabled, once enabled each sent and received message is
+ * recorded
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class LatencyRecordingTest {
+
+	private static final int SERVER_PORT = 12389;
+	private static final int CLIENT_PORT = 12390;
+
+	private static final int MESSAGES = 10;
+
+	@Test(groups = { "functional", "tcp" })
+	public void testLatencyRecordingTcp() throws Exception {
+		ManagementImpl management = new ManagementImpl("latency-management");
+		TcpLoopback loopback = new TcpLoopback(management, SERVER_PORT, CLIENT_PORT);
+		AssociationImpl clientAssociation = (AssociationImpl) loopback.clientAssociation;
+		OutputStream out = loopback.connect().getOutputStream();
+		DataInputStream in = loopback.peerInput();
+
+		// disabled by default
+		assertTrue(!management.isLatencyRecordingEnabled());
+		this.sendAndRead(clientAssociation, in, MESSAGES);
+		assertEquals(0, clientAssociation.getTxLatency().getCount());
+
+		management.setLatencyRecordingEnabled(true);
+		this.sendAndRead(clientAssociation, in, MESSAGES);
+		this.waitForTxLatencies(clientAssociation, MESSAGES);
+		assertEquals(MESSAGES, clientAssociation.getTxLatency().getCount());
+		assertTrue(clientAssociation.getTxLatency().getMax() > 0);
+
+		// the latencies of an interval
+		LatencyHistogram previous = clientAssociation.getTxLatency();
+		this.sendAndRead(clientAssociation, in, MESSAGES / 2);
+		this.waitForTxLatencies(clientAssociation, MESSAGES + MESSAGES / 2);
+		assertEquals(MESSAGES / 2, clientAssociation.getTxLatency().minus(previous).getCount());
+
+		// recorded once the listener returned from a Worker
+		out.write(new byte[] { 1, 2, 3, 4 });
+		out.flush();
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (clientAssociation.getRxLatency().getCount() > 0)
+				break;
+			Thread.sleep(10);
+		}
+		assertTrue(loopback.clientListener.payloads > 0);
+		assertEquals(loopback.clientListener.payloads, clientAssociation.getRxLatency().getCount());
+
+		management.setLatencyRecordingEnabled(false);
+		loopback.close();
+	}
+
+	private void sendAndRead(AssociationImpl association, DataInputStream in, int messages) throws Exception {
+		for (int i = 0; i < messages; i++) {
+			association.send(TcpLoopback.createMessage(i));
+		}
+		for (int i = 0; i < messages; i++) {
+			assertEquals(i, in.readInt());
+		}
+	}
+
+	private void waitForTxLatencies(AssociationImpl association, long count) throws Exception {
+		// the SelectorThread may record after the peer read the messages
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (association.getTxLatency().getCount() >= count)
+				break;
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+
+import java.net.Socket;
+
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.OverflowPolicy;
+import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.api.QueueFullException;
+import org.mobicents.protocols.api.SendStatus;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the bounded txQueue of an NIO {@link AssociationImpl} and its
+ * {@link OverflowPolicy} against a peer that does not read
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class OverflowPolicyTest {
+
+	private static final String CLIENT_HOST = "127.0.0.1";
+	private static final int SERVER_PORT = 12372;
+	private static final int CLIENT_PORT = 12373;
+
+	private static final byte[] MESSAGE = new byte[8192];
+
+	// the kernel buffers of both sides take a few MB before the txQueue fills
+	private static final int MAX_MESSAGES = 100000;
+
+	private TcpLoopback loopback;
+	private Socket socket;
+	private AssociationImpl clientAssociation;
+
+	private void setUp(int clientPort, Integer txQueueCapacity, Long txQueueMaxBytes, OverflowPolicy txOverflowPolicy,
+			Long txBlockTimeout) throws Exception {
+		ManagementImpl management = new ManagementImpl("overflow-management");
+		management.setSingleThread(true);
+		this.loopback = new TcpLoopback(management, SERVER_PORT, clientPort, 4096);
+		this.clientAssociation = (AssociationImpl) this.loopback.clientAssociation;
+		management.modifyAssociationTxQueue(TcpLoopback.CLIENT_ASSOCIATION_NAME, txQueueCapacity, txQueueMaxBytes,
+				txOverflowPolicy, txBlockTimeout);
+		this.socket = this.loopback.connect();
+	}
+
+	private void tearDown() throws Exception {
+		this.loopback.close();
+	}
+
+	private PayloadData createMessage() {
+		return new PayloadData(MESSAGE.length, Unpooled.wrappedBuffer(MESSAGE), true, false, 0, 0);
+	}
+
+	/**
+	 * Calls trySend() until a message is not queued
+	 * 
+	 * @return the status of the first message not queued
+	 */
+	private SendStatus fill() {
+		for (int i = 0; i < MAX_MESSAGES; i++) {
+			SendStatus sendStatus = this.clientAssociation.trySend(this.createMessage());
+			if (sendStatus != SendStatus.QUEUED)
+				return sendStatus;
+		}
+		return SendStatus.QUEUED;
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testRejectTcp() throws Exception {
+		this.setUp(CLIENT_PORT, 64, null, OverflowPolicy.REJECT, null);
+		try {
+			assertEquals(SendStatus.QUEUE_FULL, this.fill());
+			assertEquals(3, this.clientAssociation.getCongestionLevel());
+
+			try {
+				this.clientAssociation.send(this.createMessage());
+				assertTrue("send() to a full txQueue must throw", false);
+			} catch (QueueFullException e) {
+				assertEquals(SendStatus.QUEUE_FULL, e.getSendStatus());
+			}
+			assertEquals(2, this.clientAssociation.getStatistics().getTxDropped());
+		} finally {
+			this.tearDown();
+		}
+
+		assertEquals(SendStatus.NOT_CONNECTED, this.clientAssociation.trySend(this.createMessage()));
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testMaxBytesTcp() throws Exception {
+		this.setUp(CLIENT_PORT + 1, 1024, 8L * MESSAGE.length, OverflowPolicy.REJECT, null);
+		try {
+			assertEquals(SendStatus.QUEUE_FULL, this.fill());
+			// the byte limit is reached long before the message capacity
+			assertEquals(3, this.clientAssociation.getCongestionLevel());
+		} finally {
+			this.tearDown();
+		}
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testDropOldestTcp() throws Exception {
+		this.setUp(CLIENT_PORT + 2, 64, null, OverflowPolicy.DROP_OLDEST, null);
+		try {
+			assertEquals(SendStatus.DROPPED_OLDEST, this.fill());
+			assertEquals(1, this.clientAssociation.getTxDropped());
+
+			this.clientAssociation.send(this.createMessage());
+			assertEquals(2, this.clientAssociation.getTxDropped());
+			assertEquals(2, this.clientAssociation.getStatistics().getTxDropped());
+		} finally {
+			this.tearDown();
+		}
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testBlockTcp() throws Exception {
+		this.setUp(CLIENT_PORT + 3, 64, null, OverflowPolicy.BLOCK, 200L);
+		try {
+			assertEquals(SendStatus.TIMEOUT, this.fill());
+
+			long start = System.currentTimeMillis();
+			assertEquals(SendStatus.TIMEOUT, this.clientAssociation.trySend(this.createMessage()));
+			assertTrue(System.currentTimeMillis() - start >= 200);
+
+			// once the peer reads again a blocked sender gets through
+			Thread reader = new Thread() {
+				@Override
+				public void run() {
+					try {
+						Thread.sleep(100);
+						byte[] buf = new byte[65536];
+						while (socket.getInputStream().read(buf) >= 0)
+							;
+					} catch (Exception e) {
+					}
+				}
+			};
+			reader.start();
+			assertEquals(SendStatus.QUEUED, this.clientAssociation.trySend(this.createMessage()));
+		} finally {
+			this.tearDown();
+		}
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testPersistence() throws Exception {
+		AssociationImpl association = new AssociationImpl(CLIENT_HOST, CLIENT_PORT, CLIENT_HOST, SERVER_PORT,
+				TcpLoopback.CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+		association.setTxQueueCapacity(100);
+		association.setTxQueueMaxBytes(65536L);
+		association.setTxOverflowPolicy(OverflowPolicy.BLOCK);
+		association.setTxBlockTimeout(50L);
+
+		String xml = SctpXMLBinding.getXmlMapper().writeValueAsString(association);
+		association = SctpXMLBinding.getXmlMapper().readValue(xml, AssociationImpl.class);
+		assertEquals(100, association.getTxQueueCapacity());
+		assertEquals(65536L, association.getTxQueueMaxBytes());
+		assertEquals(OverflowPolicy.BLOCK, association.getTxOverflowPolicy());
+		assertEquals(50L, association.getTxBlockTimeout());
+	}
+}
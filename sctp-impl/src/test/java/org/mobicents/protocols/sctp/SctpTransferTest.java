@@ -22,10 +22,15 @@
 
 package org.mobicents.protocols.sctp;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 import org.mobicents.protocols.api.Association;
@@ -54,6 +59,9 @@ public class SctpTransferTest {
 	private final byte[] CLIENT_MESSAGE = "Client says Hi".getBytes();
 	private final byte[] SERVER_MESSAGE = "Server says Hi".getBytes();
 
+	private static final int BURST_MESSAGES = 50000;
+	private static final byte[] BURST_MESSAGE = new byte[100];
+
 	private ManagementImpl management = null;
 
 	// private Management managementClient = null;
@@ -190,6 +198,246 @@ public class SctpTransferTest {
 		this.tearDown();
 	}
 
+	/**
+	 * Sends the same burst of messages over a TCP Association once with one
+	 * socket write per message (txBatchSize=1) and once with gathering writes
+	 * (txBatchSize=64), and reports the throughput and the socket write calls
+	 * per message of both runs.
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testTxBatchingTcp() throws Exception {
+
+		double[] single = this.sendBurstTcp(1, CLIENT_PORT + 2);
+		double[] batched = this.sendBurstTcp(64, CLIENT_PORT + 3);
+
+		System.out.println(String.format(
+				"TCP burst of %d messages: txBatchSize=1 %.0f msg/s %.3f writes/msg, txBatchSize=64 %.0f msg/s %.3f writes/msg",
+				BURST_MESSAGES, single[0], single[1], batched[0], batched[1]));
+
+		assertTrue(single[1] > 0);
+		// gathering writes take several messages per write call, a fall back
+		// to one write per message fails here
+		assertTrue(batched[1] < single[1] / 2);
+	}
+
+	/**
+	 * @return {messages per second, socket write calls per message}
+	 */
+	private double[] sendBurstTcp(int txBatchSize, int clientPort) throws Exception {
+		ManagementImpl management = new ManagementImpl("burst-management");
+		management.setSingleThread(true);
+		management.start();
+		management.setConnectDelay(10000);
+		management.removeAllResources();
+		management.setTxBatchSize(txBatchSize);
+
+		BurstAssociationListener serverListener = new BurstAssociationListener();
+		BurstAssociationListener clientListener = new BurstAssociationListener();
+
+		management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT + 2, IpChannelType.TCP, false, 0, null);
+		AssociationImpl serverAssociation = management.addServerAssociation(CLIENT_HOST, clientPort, SERVER_NAME,
+				SERVER_ASSOCIATION_NAME, IpChannelType.TCP);
+		AssociationImpl clientAssociation = management.addAssociation(CLIENT_HOST, clientPort, SERVER_HOST,
+				SERVER_PORT + 2, CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+
+		management.startServer(SERVER_NAME);
+		serverAssociation.setAssociationListener(serverListener);
+		management.startAssociation(SERVER_ASSOCIATION_NAME);
+		clientAssociation.setAssociationListener(clientListener);
+		management.startAssociation(CLIENT_ASSOCIATION_NAME);
+
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (serverListener.up && clientListener.up)
+				break;
+			Thread.sleep(100);
+		}
+		assertTrue(serverListener.up && clientListener.up);
+
+		long startCalls = clientAssociation.getTxWriteCalls();
+		long start = System.nanoTime();
+		for (int i = 0; i < BURST_MESSAGES;) {
+			try {
+				clientAssociation.send(new PayloadData(BURST_MESSAGE.length, Unpooled.wrappedBuffer(BURST_MESSAGE), true,
+						false, 0, 0));
+				i++;
+			} catch (IllegalStateException e) {
+				// txQueue is full, let the selector drain it
+				Thread.yield();
+			}
+		}
+
+		long expected = (long) BURST_MESSAGES * BURST_MESSAGE.length;
+		for (int i1 = 0; i1 < 3000; i1++) {
+			if (serverListener.rxBytes.get() >= expected)
+				break;
+			Thread.sleep(10);
+		}
+		long duration = System.nanoTime() - start;
+		long calls = clientAssociation.getTxWriteCalls() - startCalls;
+
+		management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+		Thread.sleep(500);
+		management.stopAssociation(SERVER_ASSOCIATION_NAME);
+		management.stopServer(SERVER_NAME);
+		Thread.sleep(500);
+		management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+		management.removeAssociation(SERVER_ASSOCIATION_NAME);
+		management.removeServer(SERVER_NAME);
+		management.stop();
+
+		assertTrue(serverListener.rxBytes.get() == expected);
+
+		return new double[] { BURST_MESSAGES * 1000000000.0 / duration, (double) calls / BURST_MESSAGES };
+	}
+
+	/**
+	 * Spreads the server and the client Association of a TCP link over two
+	 * SelectorThreads, exchanges a burst of messages and checks the per
+	 * SelectorThread load reported by the Management.
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testSelectorThreadsTcp() throws Exception {
+		ManagementImpl management = new ManagementImpl("shard-management");
+		management.setSingleThread(true);
+		management.setSelectorThreads(2);
+		management.start();
+		management.setConnectDelay(10000);
+		management.removeAllResources();
+
+		assertEquals(2, management.getSelectorThreads());
+		// acceptor + 2 SelectorThreads
+		assertEquals(3, management.getSelectorThreadStatistics().size());
+
+		BurstAssociationListener serverListener = new BurstAssociationListener();
+		BurstAssociationListener clientListener = new BurstAssociationListener();
+
+		management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT + 10, IpChannelType.TCP, false, 0, null);
+		AssociationImpl serverAssociation = management.addServerAssociation(CLIENT_HOST, CLIENT_PORT + 10, SERVER_NAME,
+				SERVER_ASSOCIATION_NAME, IpChannelType.TCP);
+		AssociationImpl clientAssociation = management.addAssociation(CLIENT_HOST, CLIENT_PORT + 10, SERVER_HOST,
+				SERVER_PORT + 10, CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+
+		management.startServer(SERVER_NAME);
+		serverAssociation.setAssociationListener(serverListener);
+		management.startAssociation(SERVER_ASSOCIATION_NAME);
+		clientAssociation.setAssociationListener(clientListener);
+		management.startAssociation(CLIENT_ASSOCIATION_NAME);
+
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (serverListener.up && clientListener.up)
+				break;
+			Thread.sleep(100);
+		}
+		assertTrue(serverListener.up && clientListener.up);
+		assertTrue(serverAssociation.getSelectorThread() != clientAssociation.getSelectorThread());
+
+		List<SelectorThreadStatistics> statistics = management.getSelectorThreadStatistics();
+		assertEquals(-1, statistics.get(0).getIndex());
+		assertEquals(0, statistics.get(0).getAssociations());
+		assertEquals(1, statistics.get(1).getAssociations());
+		assertEquals(1, statistics.get(2).getAssociations());
+
+		int messages = 1000;
+		for (int i = 0; i < messages; i++) {
+			clientAssociation.send(new PayloadData(BURST_MESSAGE.length, Unpooled.wrappedBuffer(BURST_MESSAGE), true,
+					false, 0, 0));
+		}
+		long expected = (long) messages * BURST_MESSAGE.length;
+		for (int i1 = 0; i1 < 500; i1++) {
+			if (serverListener.rxBytes.get() >= expected)
+				break;
+			Thread.sleep(10);
+		}
+		assertEquals(expected, serverListener.rxBytes.get());
+
+		management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+		Thread.sleep(500);
+		management.stopAssociation(SERVER_ASSOCIATION_NAME);
+		management.stopServer(SERVER_NAME);
+		Thread.sleep(500);
+
+		statistics = management.getSelectorThreadStatistics();
+		assertEquals(0, statistics.get(1).getAssociations());
+		assertEquals(0, statistics.get(2).getAssociations());
+
+		management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+		management.removeAssociation(SERVER_ASSOCIATION_NAME);
+		management.removeServer(SERVER_NAME);
+		management.stop();
+	}
+
+	/**
+	 * Delivers a burst of TCP messages through 4 worker threads with small
+	 * rings, so that the selector thread has to wait for free slots, and
+	 * checks that the received byte stream keeps the send order.
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testWorkerThreadsTcp() throws Exception {
+		ManagementImpl management = new ManagementImpl("worker-management");
+		management.setSingleThread(false);
+		management.setWorkerThreads(4);
+		management.setWorkerQueueSize(64);
+		management.setWorkerWaitStrategy(WorkerWaitStrategy.PARK);
+		management.start();
+		management.setConnectDelay(10000);
+		management.removeAllResources();
+
+		BurstAssociationListener serverListener = new BurstAssociationListener();
+		serverListener.checkOrder = true;
+		BurstAssociationListener clientListener = new BurstAssociationListener();
+
+		management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT + 12, IpChannelType.TCP, false, 0, null);
+		AssociationImpl serverAssociation = management.addServerAssociation(CLIENT_HOST, CLIENT_PORT + 12, SERVER_NAME,
+				SERVER_ASSOCIATION_NAME, IpChannelType.TCP);
+		AssociationImpl clientAssociation = management.addAssociation(CLIENT_HOST, CLIENT_PORT + 12, SERVER_HOST,
+				SERVER_PORT + 12, CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+
+		management.startServer(SERVER_NAME);
+		serverAssociation.setAssociationListener(serverListener);
+		management.startAssociation(SERVER_ASSOCIATION_NAME);
+		clientAssociation.setAssociationListener(clientListener);
+		management.startAssociation(CLIENT_ASSOCIATION_NAME);
+
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (serverListener.up && clientListener.up)
+				break;
+			Thread.sleep(100);
+		}
+		assertTrue(serverListener.up && clientListener.up);
+
+		int messages = 20000;
+		for (int i = 0; i < messages;) {
+			byte[] message = new byte[BURST_MESSAGE.length];
+			Arrays.fill(message, (byte) (i & 0x7F));
+			try {
+				clientAssociation.send(new PayloadData(message.length, Unpooled.wrappedBuffer(message), true, false, 0, 0));
+				i++;
+			} catch (IllegalStateException e) {
+				// txQueue is full, let the selector drain it
+				Thread.yield();
+			}
+		}
+		long expected = (long) messages * BURST_MESSAGE.length;
+		for (int i1 = 0; i1 < 1000; i1++) {
+			if (serverListener.rxBytes.get() >= expected)
+				break;
+			Thread.sleep(10);
+		}
+
+		management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+		Thread.sleep(500);
+		management.stopAssociation(SERVER_ASSOCIATION_NAME);
+		management.stopServer(SERVER_NAME);
+		Thread.sleep(500);
+		management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+		management.removeAssociation(SERVER_ASSOCIATION_NAME);
+		management.removeServer(SERVER_NAME);
+		management.stop();
+
+		assertEquals(expected, serverListener.rxBytes.get());
+		assertFalse(serverListener.outOfOrder);
+	}
+
 	/**
 	 * @return true if sctp is supported by this OS and false in not
 	 */
@@ -294,6 +542,56 @@ public class SctpTransferTest {
 
 	}
 
+	private static class BurstAssociationListener implements AssociationListener {
+
+		private volatile boolean up = false;
+		private final AtomicLong rxBytes = new AtomicLong();
+
+		// set if the received byte stream is not in the order it was sent,
+		// only checked when checkOrder is set
+		private boolean checkOrder = false;
+		private volatile boolean outOfOrder = false;
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+			up = true;
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+			up = false;
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+			up = false;
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+			if (checkOrder) {
+				// message i is BURST_MESSAGE.length bytes of value i & 0x7F
+				long offset = rxBytes.get();
+				ByteBuf byteBuf = payloadData.getByteBuf();
+				for (int i = 0; i < payloadData.getDataLength(); i++) {
+					if (byteBuf.getByte(byteBuf.readerIndex() + i) != (byte) (((offset + i) / BURST_MESSAGE.length) & 0x7F)) {
+						outOfOrder = true;
+					}
+				}
+			}
+			rxBytes.addAndGet(payloadData.getDataLength());
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+
+	}
+
 	private class ServerAssociationListener implements AssociationListener {
 
 		private final Logger logger = Logger.getLogger(ServerAssociationListener.class);
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.Management;
+import org.mobicents.protocols.api.PayloadData;
+
+/**
+ * A TCP client Association talking to a plain {@link ServerSocket} peer on the
+ * loopback interface, the NIO counterpart of the netty NettyTcpLoopback. The
+ * constructor starts the given Management and adds the Association so that a
+ * test can configure them before {@link #connect()}, {@link #close()} stops
+ * and removes everything
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class TcpLoopback {
+
+	public static final String CLIENT_ASSOCIATION_NAME = "clientAssociation";
+
+	public static final String HOST = "127.0.0.1";
+
+	public final ServerSocket serverSocket;
+	public final Management management;
+	public final Association clientAssociation;
+	public final LoopbackListener clientListener = new LoopbackListener();
+
+	private Socket socket;
+
+	public TcpLoopback(Management management, int serverPort, int clientPort) throws Exception {
+		this(management, serverPort, clientPort, 0);
+	}
+
+	/**
+	 * @param receiveBufferSize
+	 *            the receive buffer size of the peer socket, 0 keeps the
+	 *            default
+	 */
+	public TcpLoopback(Management management, int serverPort, int clientPort, int receiveBufferSize) throws Exception {
+		this.serverSocket = new ServerSocket();
+		this.serverSocket.setReuseAddress(true);
+		if (receiveBufferSize > 0)
+			this.serverSocket.setReceiveBufferSize(receiveBufferSize);
+		this.serverSocket.bind(new InetSocketAddress(HOST, serverPort));
+
+		this.management = management;
+		this.management.start();
+		this.management.setConnectDelay(10000);
+		this.management.removeAllResources();
+		this.clientAssociation = this.management.addAssociation(HOST, clientPort, HOST, serverPort, CLIENT_ASSOCIATION_NAME,
+				IpChannelType.TCP, null);
+		this.clientAssociation.setAssociationListener(this.clientListener);
+	}
+
+	/**
+	 * Starts the client Association and accepts it on the peer side, returns
+	 * once the Association is up
+	 */
+	public Socket connect() throws Exception {
+		this.management.startAssociation(CLIENT_ASSOCIATION_NAME);
+		this.socket = this.serverSocket.accept();
+		this.socket.setSoTimeout(5000);
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (this.clientListener.up)
+				break;
+			Thread.sleep(100);
+		}
+		assertTrue(this.clientListener.up);
+		return this.socket;
+	}
+
+	public DataInputStream peerInput() throws Exception {
+		return new DataInputStream(this.socket.getInputStream());
+	}
+
+	/**
+	 * Stops the client Association and closes the peer, the Association is
+	 * kept
+	 */
+	public void disconnect() throws Exception {
+		this.management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+		if (this.socket != null)
+			this.socket.close();
+		this.serverSocket.close();
+		Thread.sleep(500);
+	}
+
+	public void close() throws Exception {
+		this.disconnect();
+		this.management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+		this.management.stop();
+	}
+
+	/**
+	 * A message carrying the given sequence number as a 4 byte big endian int
+	 */
+	public static PayloadData createMessage(int seq) {
+		byte[] data = new byte[] { (byte) (seq >>> 24), (byte) (seq >>> 16), (byte) (seq >>> 8), (byte) seq };
+		return new PayloadData(data.length, Unpooled.wrappedBuffer(data), true, false, 0, 0);
+	}
+
+	/**
+	 * Records the state changes, the received payloads and the writability
+	 * changes of an Association
+	 */
+	public static class LoopbackListener implements AssociationListener {
+
+		public volatile boolean up = false;
+		public volatile int payloads = 0;
+		public final List<Boolean> writability = new CopyOnWriteArrayList<Boolean>();
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+			up = true;
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+			up = false;
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+			up = false;
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+			payloads++;
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+
+		@Override
+		public void onWritabilityChanged(Association association, boolean writable) {
+			writability.add(writable);
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.mobicents.protocols.api.AssociationStatistics;
+import org.mobicents.protocols.api.StreamStatistics;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link TrafficCounters}: totals and per-stream counters add up, also
+ * when several threads count at the same time
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class TrafficCountersTest {
+
+	@Test(groups = { "functional", "tcp" })
+	public void testCounters() throws Exception {
+		TrafficCounters trafficCounters = new TrafficCounters();
+		trafficCounters.onRx(0, 10);
+		trafficCounters.onRx(0, 20);
+		trafficCounters.onTx(1, 5);
+		trafficCounters.onTx(100, 7);
+		trafficCounters.onTxFailure(3);
+		trafficCounters.onInvalidStreamId();
+		trafficCounters.onTxDropped();
+		trafficCounters.onTxDropped();
+
+		AssociationStatistics statistics = trafficCounters.snapshot("assoc1");
+		assertEquals("assoc1", statistics.getName());
+		assertEquals(2, statistics.getRxMessages());
+		assertEquals(30, statistics.getRxBytes());
+		assertEquals(2, statistics.getTxMessages());
+		assertEquals(12, statistics.getTxBytes());
+		assertEquals(3, statistics.getTxFailures());
+		assertEquals(1, statistics.getInvalidStreamIds());
+		assertEquals(2, statistics.getTxDropped());
+
+		// only the streams with traffic, ordered by stream number
+		List<StreamStatistics> streams = statistics.getStreams();
+		assertEquals(3, streams.size());
+		this.assertStream(streams.get(0), 0, 2, 30, 0, 0);
+		this.assertStream(streams.get(1), 1, 0, 0, 1, 5);
+		this.assertStream(streams.get(2), 100, 0, 0, 1, 7);
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testConcurrent() throws Exception {
+		final TrafficCounters trafficCounters = new TrafficCounters();
+		final int messages = 100000;
+
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final int streamNumber = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < messages; j++) {
+						trafficCounters.onTx(streamNumber, 2);
+						trafficCounters.onRx(0, 1);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (int i = 0; i < threads.length; i++) {
+			threads[i].join();
+		}
+
+		AssociationStatistics statistics = trafficCounters.snapshot("assoc1");
+		assertEquals(threads.length * messages, statistics.getTxMessages());
+		assertEquals(threads.length * messages * 2L, statistics.getTxBytes());
+		assertEquals(threads.length * messages, statistics.getRxMessages());
+
+		List<StreamStatistics> streams = statistics.getStreams();
+		assertEquals(threads.length, streams.size());
+		this.assertStream(streams.get(0), 0, threads.length * messages, threads.length * messages, messages, messages * 2L);
+		for (int i = 1; i < threads.length; i++) {
+			this.assertStream(streams.get(i), i, 0, 0, messages, messages * 2L);
+		}
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testOutOfRangeStream() throws Exception {
+		TrafficCounters trafficCounters = new TrafficCounters();
+		trafficCounters.onTx(-1, 5);
+		trafficCounters.onTx(65536, 5);
+
+		// counted in the totals only
+		AssociationStatistics statistics = trafficCounters.snapshot("assoc1");
+		assertEquals(2, statistics.getTxMessages());
+		assertEquals(10, statistics.getTxBytes());
+		assertEquals(0, statistics.getStreams().size());
+	}
+
+	private void assertStream(StreamStatistics stream, int streamNumber, long rxMessages, long rxBytes, long txMessages,
+			long txBytes) {
+		assertEquals(streamNumber, stream.getStreamNumber());
+		assertEquals(rxMessages, stream.getRxMessages());
+		assertEquals(rxBytes, stream.getRxBytes());
+		assertEquals(txMessages, stream.getTxMessages());
+		assertEquals(txBytes, stream.getTxBytes());
+	}
+}
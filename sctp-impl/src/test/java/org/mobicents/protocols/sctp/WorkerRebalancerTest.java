@@ -0,0 +1,321 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the stream to WorkerThread rebalancing decisions of the
+ * {@link WorkerRebalancer}, the stream migrations and the dispatch to a full
+ * WorkerThread ring
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class WorkerRebalancerTest {
+
+	private static final String SERVER_NAME = "testserver";
+	private static final String SERVER_ASSOCIATION_NAME = "serverAssociation";
+	private static final String CLIENT_ASSOCIATION_NAME = "clientAssociation";
+
+	private static final String HOST = "127.0.0.1";
+	private static final int SERVER_PORT = 12401;
+	private static final int CLIENT_PORT = 12402;
+
+	private static final int MESSAGES = 3;
+
+	// the smallest ring a WorkerThread takes
+	private static final int RING_SIZE = 16;
+
+	@Test(groups = { "functional", "tcp" })
+	public void testRebalance() throws Exception {
+		ManagementImpl management = new ManagementImpl("rebalancer-management");
+		management.setSingleThread(false);
+		management.setWorkerThreads(4);
+		// rebalance() is driven by the test
+		management.setWorkerRebalanceInterval(0);
+		management.start();
+		management.removeAllResources();
+
+		management.addServer(SERVER_NAME, "127.0.0.1", 2355, IpChannelType.TCP, false, 0, null);
+		AssociationImpl association = management.addServerAssociation("127.0.0.1", 2356, SERVER_NAME,
+				SERVER_ASSOCIATION_NAME, IpChannelType.TCP);
+		association.createworkerThreadTable(8);
+		StreamWorkerMap map = association.getStreamWorkerMap();
+
+		// all streams on worker 0: stream 0 is hot, streams 1-7 are cold
+		for (int stream = 0; stream < 8; stream++) {
+			map.workers.set(stream, 0);
+			map.messages.set(stream, stream == 0 ? 1000 : 100);
+		}
+
+		WorkerRebalancer rebalancer = new WorkerRebalancer(management);
+		assertEquals(4, rebalancer.rebalance());
+
+		// the hot stream gets a worker of its own, cold streams follow
+		assertEquals(1, map.migrations.get(0));
+		int moved = 0;
+		for (int stream = 1; stream < 8; stream++) {
+			int target = map.migrations.get(stream);
+			if (target != StreamWorkerMap.NO_MIGRATION) {
+				assertTrue(target == 2 || target == 3);
+				moved++;
+			}
+		}
+		assertEquals(3, moved);
+
+		List<WorkerThreadStatistics> statistics = management.getWorkerThreadStatistics();
+		assertEquals(4, statistics.size());
+		assertEquals(1700, statistics.get(0).getSampledLoad());
+		assertEquals(0, statistics.get(1).getSampledLoad());
+
+		// no new messages: nothing to balance, pending migrations are kept
+		assertEquals(0, rebalancer.rebalance());
+		assertEquals(1, map.migrations.get(0));
+
+		management.removeAssociation(SERVER_ASSOCIATION_NAME);
+		management.removeServer(SERVER_NAME);
+		management.stop();
+	}
+
+	/**
+	 * Moves a stream while its old worker is still busy with a message of the
+	 * stream: the selector thread keeps reading, the later messages wait for
+	 * the old worker and are then delivered in order by the new one
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testStreamMigrationTcp() throws Exception {
+		ManagementImpl management = this.startManagement("migration-management", 4, 1024);
+		BlockingAssociationListener serverListener = new BlockingAssociationListener();
+		AssociationImpl serverAssociation = this.startAssociations(management, SERVER_PORT, CLIENT_PORT, serverListener);
+		AssociationImpl clientAssociation = (AssociationImpl) management.getAssociation(CLIENT_ASSOCIATION_NAME);
+
+		// the old worker blocks in the first message
+		this.send(clientAssociation, 0);
+		assertTrue(serverListener.entered.await(5, TimeUnit.SECONDS));
+
+		StreamWorkerMap map = serverAssociation.getStreamWorkerMap();
+		int oldWorker = map.workers.get(0);
+		int targetWorker = (oldWorker + 1) % 4;
+		assertTrue(map.requestMigration(0, targetWorker));
+
+		// the selector thread still reads the later messages
+		for (int i = 1; i < MESSAGES; i++) {
+			this.send(clientAssociation, i);
+			this.waitForRxBytes(serverAssociation, i + 1);
+			assertEquals(i + 1, serverAssociation.getStatistics().getRxBytes());
+		}
+		assertEquals(1, serverListener.received.size());
+		assertEquals(oldWorker, map.workers.get(0));
+
+		serverListener.release.countDown();
+		this.waitForPayloads(serverListener, MESSAGES);
+		assertEquals(targetWorker, map.workers.get(0));
+		assertEquals(StreamWorkerMap.NO_MIGRATION, map.migrations.get(0));
+		assertTrue(serverListener.threads.get(0).endsWith("-" + oldWorker));
+		assertTrue(serverListener.threads.get(MESSAGES - 1).endsWith("-" + targetWorker));
+
+		this.stop(management);
+	}
+
+	/**
+	 * Fills the ring of a blocked worker: the selector thread holds back the
+	 * next ring worth of messages and then stops reading, once the worker
+	 * runs again all messages are delivered in order
+	 */
+	@Test(groups = { "functional", "tcp" })
+	public void testFullWorkerRingTcp() throws Exception {
+		ManagementImpl management = this.startManagement("full-ring-management", 1, RING_SIZE);
+		BlockingAssociationListener serverListener = new BlockingAssociationListener();
+		AssociationImpl serverAssociation = this.startAssociations(management, SERVER_PORT + 2, CLIENT_PORT + 2,
+				serverListener);
+		AssociationImpl clientAssociation = (AssociationImpl) management.getAssociation(CLIENT_ASSOCIATION_NAME);
+
+		// one message per read: the ring, then the pending list fill up
+		this.send(clientAssociation, 0);
+		assertTrue(serverListener.entered.await(5, TimeUnit.SECONDS));
+		for (int i = 1; i < 2 * RING_SIZE; i++) {
+			this.send(clientAssociation, i);
+			this.waitForRxBytes(serverAssociation, i + 1);
+			assertEquals(i + 1, serverAssociation.getStatistics().getRxBytes());
+		}
+		assertEquals(RING_SIZE, serverAssociation.getStreamWorkerMap().getPendingMessages());
+
+		// reading is suspended
+		int messages = 3 * RING_SIZE;
+		for (int i = 2 * RING_SIZE; i < messages; i++) {
+			this.send(clientAssociation, i);
+		}
+		Thread.sleep(300);
+		assertEquals(2 * RING_SIZE, serverAssociation.getStatistics().getRxBytes());
+
+		serverListener.release.countDown();
+		this.waitForRxBytes(serverAssociation, messages);
+		assertEquals(messages, serverAssociation.getStatistics().getRxBytes());
+		this.waitForPayloads(serverListener, messages);
+
+		this.stop(management);
+	}
+
+	private ManagementImpl startManagement(String name, int workerThreads, int workerQueueSize) throws Exception {
+		ManagementImpl management = new ManagementImpl(name);
+		management.setSingleThread(false);
+		management.setWorkerThreads(workerThreads);
+		management.setWorkerQueueSize(workerQueueSize);
+		management.setWorkerRebalanceInterval(0);
+		management.start();
+		management.setConnectDelay(10000);
+		management.removeAllResources();
+		return management;
+	}
+
+	/**
+	 * @return the server Association once both Associations are up
+	 */
+	private AssociationImpl startAssociations(ManagementImpl management, int serverPort, int clientPort,
+			BlockingAssociationListener serverListener) throws Exception {
+		management.addServer(SERVER_NAME, HOST, serverPort, IpChannelType.TCP, false, 0, null);
+		AssociationImpl serverAssociation = management.addServerAssociation(HOST, clientPort, SERVER_NAME,
+				SERVER_ASSOCIATION_NAME, IpChannelType.TCP);
+		AssociationImpl clientAssociation = management.addAssociation(HOST, clientPort, HOST, serverPort,
+				CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+
+		BlockingAssociationListener clientListener = new BlockingAssociationListener();
+		management.startServer(SERVER_NAME);
+		serverAssociation.setAssociationListener(serverListener);
+		management.startAssociation(SERVER_ASSOCIATION_NAME);
+		clientAssociation.setAssociationListener(clientListener);
+		management.startAssociation(CLIENT_ASSOCIATION_NAME);
+
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (serverListener.up && clientListener.up)
+				break;
+			Thread.sleep(100);
+		}
+		assertTrue(serverListener.up && clientListener.up);
+		return serverAssociation;
+	}
+
+	private void stop(ManagementImpl management) throws Exception {
+		management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+		Thread.sleep(500);
+		management.stopAssociation(SERVER_ASSOCIATION_NAME);
+		management.stopServer(SERVER_NAME);
+		Thread.sleep(500);
+		management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+		management.removeAssociation(SERVER_ASSOCIATION_NAME);
+		management.removeServer(SERVER_NAME);
+		management.stop();
+	}
+
+	private void send(AssociationImpl association, int seq) throws Exception {
+		association.send(new PayloadData(1, Unpooled.wrappedBuffer(new byte[] { (byte) seq }), true, false, 0, 0));
+	}
+
+	private void waitForRxBytes(AssociationImpl association, long rxBytes) throws Exception {
+		for (int i1 = 0; i1 < 200; i1++) {
+			if (association.getStatistics().getRxBytes() >= rxBytes)
+				break;
+			Thread.sleep(10);
+		}
+	}
+
+	/**
+	 * Waits for the given number of messages and checks their order
+	 */
+	private void waitForPayloads(BlockingAssociationListener listener, int messages) throws Exception {
+		for (int i1 = 0; i1 < 200; i1++) {
+			if (listener.received.size() >= messages)
+				break;
+			Thread.sleep(10);
+		}
+		assertEquals(messages, listener.received.size());
+		for (int i = 0; i < messages; i++) {
+			assertEquals(i, listener.received.get(i).intValue());
+		}
+	}
+
+	private static class BlockingAssociationListener implements AssociationListener {
+
+		private volatile boolean up = false;
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+		private final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+		private final List<String> threads = new CopyOnWriteArrayList<String>();
+
+		@Override
+		public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+			up = true;
+		}
+
+		@Override
+		public void onCommunicationShutdown(Association association) {
+			up = false;
+		}
+
+		@Override
+		public void onCommunicationLost(Association association) {
+			up = false;
+		}
+
+		@Override
+		public void onCommunicationRestart(Association association) {
+		}
+
+		@Override
+		public void onPayload(Association association, PayloadData payloadData) {
+			// TCP reads may join messages, each message is one byte
+			ByteBuf byteBuf = payloadData.getByteBuf();
+			for (int i = 0; i < payloadData.getDataLength(); i++) {
+				received.add((int) byteBuf.getByte(byteBuf.readerIndex() + i));
+				threads.add(Thread.currentThread().getName());
+			}
+			if (entered.getCount() > 0) {
+				entered.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+
+		@Override
+		public void inValidStreamId(PayloadData payloadData) {
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+
+import java.io.InputStream;
+import java.net.Socket;
+
+import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.sctp.TcpLoopback.LoopbackListener;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the write buffer water marks of an NIO {@link AssociationImpl}: a peer
+ * that does not read turns the Association unwritable, once the peer reads
+ * again it turns writable
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class WritabilityTest {
+
+	private static final int SERVER_PORT = 12379;
+	private static final int CLIENT_PORT = 12380;
+
+	private static final byte[] MESSAGE = new byte[8192];
+
+	private static final int LOW_WATER_MARK = 64 * 1024;
+	private static final int HIGH_WATER_MARK = 256 * 1024;
+
+	// the kernel buffers of both sides take a few MB before the txQueue fills
+	private static final int MAX_MESSAGES = 8000;
+
+	@Test(groups = { "functional", "tcp" })
+	public void testWritabilityTcp() throws Exception {
+		ManagementImpl management = new ManagementImpl("writability-management");
+		management.setSingleThread(true);
+		TcpLoopback loopback = new TcpLoopback(management, SERVER_PORT, CLIENT_PORT, 4096);
+		AssociationImpl clientAssociation = (AssociationImpl) loopback.clientAssociation;
+		LoopbackListener clientListener = loopback.clientListener;
+		try {
+			management.modifyAssociationWriteBufferWaterMark(TcpLoopback.CLIENT_ASSOCIATION_NAME, HIGH_WATER_MARK, LOW_WATER_MARK);
+			assertTrue("low water mark above the high water mark must be rejected", false);
+		} catch (Exception e) {
+		}
+		management.modifyAssociationWriteBufferWaterMark(TcpLoopback.CLIENT_ASSOCIATION_NAME, LOW_WATER_MARK, HIGH_WATER_MARK);
+		assertEquals(LOW_WATER_MARK, clientAssociation.getWriteBufferLowWaterMark());
+		assertEquals(HIGH_WATER_MARK, clientAssociation.getWriteBufferHighWaterMark());
+
+		final Socket socket = loopback.connect();
+		assertTrue(clientAssociation.isWritable());
+
+		// a sender stops once the Association is not writable
+		int sent = 0;
+		while (clientAssociation.isWritable() && sent < MAX_MESSAGES) {
+			clientAssociation.send(new PayloadData(MESSAGE.length, Unpooled.wrappedBuffer(MESSAGE), true, false, 0, 0));
+			sent++;
+		}
+		assertFalse(clientAssociation.isWritable());
+		assertTrue(clientAssociation.pendingOutboundBytes() >= LOW_WATER_MARK);
+		assertEquals(1, clientListener.writability.size());
+		assertFalse(clientListener.writability.get(0));
+
+		// the peer reads again
+		final long expected = (long) sent * MESSAGE.length;
+		Thread reader = new Thread() {
+			@Override
+			public void run() {
+				try {
+					InputStream in = socket.getInputStream();
+					byte[] buf = new byte[65536];
+					long received = 0;
+					while (received < expected) {
+						int len = in.read(buf);
+						if (len < 0)
+							break;
+						received += len;
+					}
+				} catch (Exception e) {
+				}
+			}
+		};
+		reader.start();
+		reader.join(30000);
+
+		for (int i1 = 0; i1 < 100; i1++) {
+			if (clientAssociation.isWritable())
+				break;
+			Thread.sleep(10);
+		}
+		assertTrue(clientAssociation.isWritable());
+		assertEquals(0, clientAssociation.pendingOutboundBytes());
+		assertEquals(2, clientListener.writability.size());
+		assertTrue(clientListener.writability.get(1));
+
+		loopback.disconnect();
+		assertFalse(clientAssociation.isWritable());
+		loopback.close();
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2011, Red Hat, Inc. and/or its affiliates, and individual
+ * contributors as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a full listing
+ * of individual contributors.
+ * 
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU General Public License, v. 2.0.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ * General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License,
+ * v. 2.0 along with this distribution; if not, write to the Free 
+ * Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301, USA.
+ */
+
+package org.mobicents.protocols.sctp.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInputStream;
+import java.lang.management.ManagementFactory;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.Management;
+import org.mobicents.protocols.sctp.ManagementImpl;
+import org.mobicents.protocols.sctp.TcpLoopback;
+import org.mobicents.protocols.sctp.netty.NettySctpManagementImpl;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the registration of the MBeans by {@link SctpMBeanRegistry} and
+ * their attributes for the NIO and the netty Management
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class SctpMBeanTest {
+
+	private static final String SERVER_NAME = "mbeanServer";
+	private static final String SERVER_ASSOCIATION_NAME = "serverAssociation";
+	private static final String CLIENT_ASSOCIATION_NAME = TcpLoopback.CLIENT_ASSOCIATION_NAME;
+
+	private static final String HOST = TcpLoopback.HOST;
+	private static final int SERVER_PORT = 12393;
+	private static final int SERVER_ASSOCIATION_PEER_PORT = 12394;
+	private static final int NIO_PEER_PORT = 12395;
+	private static final int NIO_CLIENT_PORT = 12396;
+	private static final int NETTY_PEER_PORT = 12397;
+	private static final int NETTY_CLIENT_PORT = 12398;
+
+	private static final int MESSAGES = 8;
+
+	private final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+	@Test(groups = { "functional", "tcp" })
+	public void testMBeansNio() throws Exception {
+		ManagementImpl management = new ManagementImpl("mbean-management");
+		management.setSingleThread(true);
+		this.testMBeans(management, NIO_PEER_PORT, NIO_CLIENT_PORT);
+	}
+
+	@Test(groups = { "functional", "tcp" })
+	public void testMBeansNetty() throws Exception {
+		this.testMBeans(new NettySctpManagementImpl("mbean-netty-management"), NETTY_PEER_PORT, NETTY_CLIENT_PORT);
+	}
+
+	private void testMBeans(Management management, int peerPort, int clientPort) throws Exception {
+		ObjectName managementObjectName = SctpMBeanRegistry.getManagementObjectName(management.getName());
+		ObjectName serverObjectName = SctpMBeanRegistry.getServerObjectName(management.getName(), SERVER_NAME);
+		ObjectName serverAssociationObjectName = SctpMBeanRegistry.getAssociationObjectName(management.getName(),
+				SERVER_ASSOCIATION_NAME);
+		ObjectName clientAssociationObjectName = SctpMBeanRegistry.getAssociationObjectName(management.getName(),
+				CLIENT_ASSOCIATION_NAME);
+
+		TcpLoopback loopback = new TcpLoopback(management, peerPort, clientPort);
+		Association clientAssociation = loopback.clientAssociation;
+
+		assertTrue(management.isJmxEnabled());
+		assertTrue(this.mBeanServer.isRegistered(managementObjectName));
+		assertEquals(management.getName(), this.mBeanServer.getAttribute(managementObjectName, "Name"));
+		assertEquals(Boolean.TRUE, this.mBeanServer.getAttribute(managementObjectName, "Started"));
+
+		management.addServer(SERVER_NAME, HOST, SERVER_PORT, IpChannelType.TCP, null);
+		management.addServerAssociation(HOST, SERVER_ASSOCIATION_PEER_PORT, SERVER_NAME, SERVER_ASSOCIATION_NAME,
+				IpChannelType.TCP);
+		assertTrue(this.mBeanServer.isRegistered(serverObjectName));
+		assertTrue(this.mBeanServer.isRegistered(serverAssociationObjectName));
+		assertEquals(SERVER_PORT, this.mBeanServer.getAttribute(serverObjectName, "HostPort"));
+		assertEquals(1, this.mBeanServer.getAttribute(serverObjectName, "AssociationCount"));
+		assertEquals("SERVER", this.mBeanServer.getAttribute(serverAssociationObjectName, "AssociationType"));
+		assertEquals(SERVER_NAME, this.mBeanServer.getAttribute(serverAssociationObjectName, "ServerName"));
+
+		assertTrue(this.mBeanServer.isRegistered(clientAssociationObjectName));
+		assertEquals(1, this.mBeanServer.getAttribute(managementObjectName, "ServerCount"));
+		assertEquals(2, this.mBeanServer.getAttribute(managementObjectName, "AssociationCount"));
+		assertEquals(Boolean.FALSE, this.mBeanServer.getAttribute(clientAssociationObjectName, "Up"));
+
+		loopback.connect();
+		assertEquals(Boolean.TRUE, this.mBeanServer.getAttribute(clientAssociationObjectName, "Up"));
+
+		for (int i = 0; i < MESSAGES; i++) {
+			clientAssociation.send(TcpLoopback.createMessage(i));
+		}
+		DataInputStream in = loopback.peerInput();
+		for (int i = 0; i < MESSAGES; i++) {
+			assertEquals(i, in.readInt());
+		}
+		// the counters are updated after the write to the socket
+		for (int i1 = 0; i1 < 50; i1++) {
+			if ((Long) this.mBeanServer.getAttribute(clientAssociationObjectName, "TxMessages") == MESSAGES)
+				break;
+			Thread.sleep(100);
+		}
+		assertEquals((long) MESSAGES, this.mBeanServer.getAttribute(clientAssociationObjectName, "TxMessages"));
+		assertEquals((long) MESSAGES * 4, this.mBeanServer.getAttribute(clientAssociationObjectName, "TxBytes"));
+		assertEquals(0L, this.mBeanServer.getAttribute(clientAssociationObjectName, "TxFailures"));
+		// netty removes a message from the outbound buffer after completing
+		// its write
+		for (int i1 = 0; i1 < 50; i1++) {
+			if ((Integer) this.mBeanServer.getAttribute(clientAssociationObjectName, "PendingOutboundMessages") == 0)
+				break;
+			Thread.sleep(100);
+		}
+		assertEquals(0, this.mBeanServer.getAttribute(clientAssociationObjectName, "PendingOutboundMessages"));
+
+		// the netty event loops are probed once per second
+		for (int i1 = 0; i1 < 30; i1++) {
+			if ((Long) this.mBeanServer.getAttribute(managementObjectName, "LoopCount") > 0)
+				break;
+			Thread.sleep(100);
+		}
+		assertTrue((Long) this.mBeanServer.getAttribute(managementObjectName, "LoopCount") > 0);
+		this.mBeanServer.invoke(managementObjectName, "resetLoopTimings", null, null);
+
+		// the per SelectorThread load, NIO only
+		int[] associations = (int[]) this.mBeanServer.getAttribute(managementObjectName, "SelectorThreadAssociations");
+		long[] selects = (long[]) this.mBeanServer.getAttribute(managementObjectName, "SelectorThreadSelects");
+		if (management instanceof ManagementImpl) {
+			int selectorThreads = ((ManagementImpl) management).getSelectorThreadStatistics().size();
+			assertTrue(selectorThreads > 1);
+			assertEquals(selectorThreads, associations.length);
+			assertEquals(selectorThreads, selects.length);
+			assertEquals(selectorThreads,
+					((int[]) this.mBeanServer.getAttribute(managementObjectName, "SelectorThreadPendingChanges")).length);
+			assertEquals(selectorThreads,
+					((long[]) this.mBeanServer.getAttribute(managementObjectName, "SelectorThreadSelectedKeys")).length);
+			int started = 0;
+			long selectCount = 0;
+			for (int i = 0; i < associations.length; i++) {
+				started += associations[i];
+				selectCount += selects[i];
+			}
+			assertTrue(started > 0);
+			assertTrue(selectCount > 0);
+		} else {
+			assertEquals(0, associations.length);
+			assertEquals(0, selects.length);
+		}
+
+		this.mBeanServer.setAttribute(managementObjectName, new Attribute("LatencyRecordingEnabled", true));
+		assertTrue(management.isLatencyRecordingEnabled());
+		management.setLatencyRecordingEnabled(false);
+
+		// disabling JMX unregisters all the MBeans at once, enabling it
+		// registers them again
+		management.setJmxEnabled(false);
+		assertFalse(this.mBeanServer.isRegistered(managementObjectName));
+		assertFalse(this.mBeanServer.isRegistered(serverObjectName));
+		assertFalse(this.mBeanServer.isRegistered(clientAssociationObjectName));
+		management.setJmxEnabled(true);
+		assertTrue(this.mBeanServer.isRegistered(managementObjectName));
+		assertTrue(this.mBeanServer.isRegistered(serverObjectName));
+		assertTrue(this.mBeanServer.isRegistered(clientAssociationObjectName));
+		assertEquals(2, this.mBeanServer.getAttribute(managementObjectName, "AssociationCount"));
+
+		loopback.disconnect();
+		management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+		assertFalse(this.mBeanServer.isRegistered(clientAssociationObjectName));
+		assertEquals(1, this.mBeanServer.getAttribute(managementObjectName, "AssociationCount"));
+
+		management.removeAssociation(SERVER_ASSOCIATION_NAME);
+		management.removeServer(SERVER_NAME);
+		assertFalse(this.mBeanServer.isRegistered(serverAssociationObjectName));
+		assertFalse(this.mBeanServer.isRegistered(serverObjectName));
+
+		management.stop();
+		assertFalse(this.mBeanServer.isRegistered(managementObjectName));
+	}
+}
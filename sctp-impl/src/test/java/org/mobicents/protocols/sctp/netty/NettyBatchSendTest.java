@@ -0,0 +1,91 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.mobicents.protocols.sctp.netty.NettyTcpLoopback.CLIENT_ASSOCIATION_NAME;
+import static org.mobicents.protocols.sctp.netty.NettyTcpLoopback.createMessage;
+
+import java.io.DataInputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mobicents.protocols.api.AssociationStatistics;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link NettyAssociationImpl#write(PayloadData)},
+ * {@link NettyAssociationImpl#flush()} and the batched sends: the peer gets
+ * all the messages in their order
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class NettyBatchSendTest {
+
+    private static final int SERVER_PORT = 12383;
+    private static final int CLIENT_PORT = 12384;
+
+    private static final int BATCH_SIZE = 16;
+
+    @Test(groups = { "functional", "tcp" })
+    public void testBatchSendTcp() throws Exception {
+        NettyTcpLoopback loopback = new NettyTcpLoopback("batch-management", SERVER_PORT, CLIENT_PORT);
+        NettyAssociationImpl clientAssociation = loopback.clientAssociation;
+        Socket socket = loopback.connect();
+
+        // written messages wait for the flush
+        int seq = 0;
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            clientAssociation.write(createMessage(seq++));
+        }
+        Thread.sleep(200);
+        assertEquals(0, socket.getInputStream().available());
+        clientAssociation.flush();
+
+        PayloadData[] batch = new PayloadData[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch[i] = createMessage(seq++);
+        }
+        clientAssociation.sendBatch(batch);
+
+        List<PayloadData> list = new ArrayList<PayloadData>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            list.add(createMessage(seq++));
+        }
+        clientAssociation.sendBatch(list);
+        clientAssociation.sendBatch(new PayloadData[0]);
+
+        DataInputStream in = loopback.peerInput();
+        for (int i = 0; i < seq; i++) {
+            assertEquals(i, in.readInt());
+        }
+
+        AssociationStatistics statistics = loopback.management.getStatistics().get(CLIENT_ASSOCIATION_NAME);
+        assertEquals(seq, statistics.getTxMessages());
+        assertEquals(seq * 4, statistics.getTxBytes());
+        assertEquals(0, statistics.getTxFailures());
+
+        loopback.close();
+    }
+}
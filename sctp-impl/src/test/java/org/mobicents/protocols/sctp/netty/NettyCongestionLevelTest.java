@@ -0,0 +1,134 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.CongestionListener;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the outgoing congestion level of a {@link NettyAssociationImpl}: a peer
+ * that does not read fills the channel outbound buffer and raises the level,
+ * once the peer reads again the level drops back to 0
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class NettyCongestionLevelTest {
+
+    private static final int SERVER_PORT = 12377;
+    private static final int CLIENT_PORT = 12378;
+
+    private static final int MESSAGES = 3000;
+    private static final byte[] MESSAGE = new byte[8192];
+
+    @Test(groups = { "functional", "tcp" })
+    public void testCongestionLevelTcp() throws Exception {
+        NettyTcpLoopback loopback = new NettyTcpLoopback("congestion-management", SERVER_PORT, CLIENT_PORT, 4096);
+        NettySctpManagementImpl management = loopback.management;
+        NettyAssociationImpl clientAssociation = loopback.clientAssociation;
+
+        CongestionLevelListener congestionListener = new CongestionLevelListener();
+        management.addCongestionListener(congestionListener);
+
+        final Socket socket = loopback.connect();
+        assertEquals(0, clientAssociation.getCongestionLevel());
+
+        // the peer does not read, the kernel buffers fill up first and then
+        // the channel outbound buffer
+        for (int i = 0; i < MESSAGES; i++) {
+            clientAssociation.send(new PayloadData(MESSAGE.length, Unpooled.wrappedBuffer(MESSAGE), true, false, 0, 0));
+        }
+        for (int i1 = 0; i1 < 100; i1++) {
+            if (clientAssociation.getCongestionLevel() == 3)
+                break;
+            Thread.sleep(10);
+        }
+        assertEquals(3, clientAssociation.getCongestionLevel());
+        assertEquals(0, congestionListener.levels.get(0)[0]);
+
+        // the peer reads again
+        final long expected = (long) (MESSAGES + 1) * MESSAGE.length;
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    InputStream in = socket.getInputStream();
+                    byte[] buf = new byte[65536];
+                    long received = 0;
+                    while (received < expected) {
+                        int len = in.read(buf);
+                        if (len < 0)
+                            break;
+                        received += len;
+                    }
+                } catch (Exception e) {
+                }
+            }
+        };
+        reader.start();
+        for (int i1 = 0; i1 < 300; i1++) {
+            if (clientAssociation.getCongestionLevel() < 2)
+                break;
+            Thread.sleep(10);
+        }
+
+        // the next write finds an empty outbound buffer
+        clientAssociation.send(new PayloadData(MESSAGE.length, Unpooled.wrappedBuffer(MESSAGE), true, false, 0, 0));
+        reader.join(30000);
+        for (int i1 = 0; i1 < 100; i1++) {
+            if (clientAssociation.getCongestionLevel() == 0)
+                break;
+            Thread.sleep(10);
+        }
+        assertEquals(0, clientAssociation.getCongestionLevel());
+        int[] last = congestionListener.levels.get(congestionListener.levels.size() - 1);
+        assertEquals(0, last[1]);
+
+        // each change is reported once
+        for (int[] level : congestionListener.levels) {
+            assertTrue(level[0] != level[1]);
+        }
+
+        management.removeCongestionListener(congestionListener);
+        loopback.close();
+    }
+
+    private static class CongestionLevelListener implements CongestionListener {
+
+        private final List<int[]> levels = new CopyOnWriteArrayList<int[]>();
+
+        @Override
+        public void onCongLevelChanged(Association association, int oldCongLevel, int newCongLevel) {
+            levels.add(new int[] { oldCongLevel, newCongLevel });
+        }
+    }
+}
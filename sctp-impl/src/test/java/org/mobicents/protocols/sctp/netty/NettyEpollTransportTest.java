@@ -0,0 +1,102 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.epoll.Epoll;
+
+import java.util.Arrays;
+
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.sctp.netty.NettyTcpLoopback.LoopbackListener;
+import org.testng.annotations.Test;
+
+/**
+ * Tests TCP Associations on the native epoll transport, SCTP keeps NIO. Where
+ * epoll is not available the management falls back to NIO
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class NettyEpollTransportTest {
+
+    private static final String SERVER_NAME = "testserver";
+    private static final String SERVER_HOST = "127.0.0.1";
+    private static final int SERVER_PORT = 12387;
+
+    private static final String SERVER_ASSOCIATION_NAME = "serverAssociation";
+    private static final String CLIENT_ASSOCIATION_NAME = "clientAssociation";
+
+    private static final String CLIENT_HOST = "127.0.0.1";
+    private static final int CLIENT_PORT = 12388;
+
+    private static final byte[] CLIENT_MESSAGE = "Client says Hi".getBytes();
+
+    @Test(groups = { "functional", "tcp" })
+    public void testEpollTcp() throws Exception {
+        NettySctpManagementImpl management = new NettySctpManagementImpl("epoll-management");
+        management.setTcpTransport(TcpTransport.EPOLL);
+        management.setOptionTcpQuickAck(true);
+        NettyTcpLoopback.startManagement(management);
+        assertEquals(Epoll.isAvailable(), management.isTcpEpoll());
+
+        management.addServer(SERVER_NAME, SERVER_HOST, SERVER_PORT, IpChannelType.TCP, false, 0, null);
+        NettyAssociationImpl serverAssociation = (NettyAssociationImpl) management.addServerAssociation(CLIENT_HOST, CLIENT_PORT,
+                SERVER_NAME, SERVER_ASSOCIATION_NAME, IpChannelType.TCP);
+        NettyAssociationImpl clientAssociation = (NettyAssociationImpl) management.addAssociation(CLIENT_HOST, CLIENT_PORT,
+                SERVER_HOST, SERVER_PORT, CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+
+        LoopbackListener serverListener = new LoopbackListener();
+        serverAssociation.setAssociationListener(serverListener);
+        LoopbackListener clientListener = new LoopbackListener();
+        clientAssociation.setAssociationListener(clientListener);
+
+        management.startAssociation(SERVER_ASSOCIATION_NAME);
+        management.startServer(SERVER_NAME);
+        management.startAssociation(CLIENT_ASSOCIATION_NAME);
+        // the client connects once the connect delay is over
+        NettyTcpLoopback.awaitUp(clientListener, serverListener);
+
+        // both sides run on the TCP event loop groups
+        assertTrue(clientAssociation.getEventExecutor().parent() == management.getTcpBossGroup());
+        assertTrue(serverAssociation.getEventExecutor().parent() == management.getTcpWorkerGroup());
+
+        clientAssociation.send(new PayloadData(CLIENT_MESSAGE.length, Unpooled.copiedBuffer(CLIENT_MESSAGE), true, false, 0, 0));
+        for (int i1 = 0; i1 < 100; i1++) {
+            if (serverListener.message != null)
+                break;
+            Thread.sleep(10);
+        }
+        assertTrue(Arrays.equals(CLIENT_MESSAGE, serverListener.message));
+
+        management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+        management.stopAssociation(SERVER_ASSOCIATION_NAME);
+        management.stopServer(SERVER_NAME);
+        Thread.sleep(500);
+        management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+        management.removeAssociation(SERVER_ASSOCIATION_NAME);
+        management.removeServer(SERVER_NAME);
+        management.stop();
+    }
+}
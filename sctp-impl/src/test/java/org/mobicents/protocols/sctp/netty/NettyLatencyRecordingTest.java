@@ -0,0 +1,116 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mobicents.protocols.sctp.netty.NettyTcpLoopback.createMessage;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+
+import org.mobicents.protocols.api.LatencyHistogram;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the latency recording of a {@link NettyAssociationImpl}: nothing is
+ * recorded while disabled, once enabled each sent and received message is
+ * recorded
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class NettyLatencyRecordingTest {
+
+    private static final int SERVER_PORT = 12391;
+    private static final int CLIENT_PORT = 12392;
+
+    private static final int MESSAGES = 10;
+
+    @Test(groups = { "functional", "tcp" })
+    public void testLatencyRecordingTcp() throws Exception {
+        NettyTcpLoopback loopback = new NettyTcpLoopback("latency-management", SERVER_PORT, CLIENT_PORT);
+        NettySctpManagementImpl management = loopback.management;
+        NettyAssociationImpl clientAssociation = loopback.clientAssociation;
+        OutputStream out = loopback.connect().getOutputStream();
+        DataInputStream in = loopback.peerInput();
+
+        // disabled by default
+        assertTrue(!management.isLatencyRecordingEnabled());
+        this.sendAndRead(clientAssociation, in, MESSAGES);
+        assertEquals(0, clientAssociation.getTxLatency().getCount());
+
+        management.setLatencyRecordingEnabled(true);
+        this.sendAndRead(clientAssociation, in, MESSAGES);
+        this.waitForTxLatencies(clientAssociation, MESSAGES);
+        assertEquals(MESSAGES, clientAssociation.getTxLatency().getCount());
+        assertTrue(clientAssociation.getTxLatency().getMax() > 0);
+
+        // the latencies of an interval, a batch and the outbound ring are
+        // recorded as well
+        LatencyHistogram previous = clientAssociation.getTxLatency();
+        PayloadData[] batch = new PayloadData[MESSAGES];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = createMessage(i);
+        }
+        clientAssociation.sendBatch(batch);
+        for (int i = 0; i < MESSAGES; i++) {
+            clientAssociation.offerOutbound(createMessage(i));
+        }
+        for (int i = 0; i < 2 * MESSAGES; i++) {
+            assertEquals(i % MESSAGES, in.readInt());
+        }
+        this.waitForTxLatencies(clientAssociation, 3 * MESSAGES);
+        assertEquals(2 * MESSAGES, clientAssociation.getTxLatency().minus(previous).getCount());
+
+        out.write(new byte[] { 1, 2, 3, 4 });
+        out.flush();
+        for (int i1 = 0; i1 < 100; i1++) {
+            if (clientAssociation.getRxLatency().getCount() > 0)
+                break;
+            Thread.sleep(10);
+        }
+        assertTrue(loopback.clientListener.payloads > 0);
+        assertEquals(loopback.clientListener.payloads, clientAssociation.getRxLatency().getCount());
+
+        management.setLatencyRecordingEnabled(false);
+        loopback.close();
+    }
+
+    private void sendAndRead(NettyAssociationImpl association, DataInputStream in, int messages) throws Exception {
+        for (int i = 0; i < messages; i++) {
+            association.send(createMessage(i));
+        }
+        for (int i = 0; i < messages; i++) {
+            assertEquals(i, in.readInt());
+        }
+    }
+
+    private void waitForTxLatencies(NettyAssociationImpl association, long count) throws Exception {
+        // the write futures may complete after the peer read the messages
+        for (int i1 = 0; i1 < 100; i1++) {
+            if (association.getTxLatency().getCount() >= count)
+                break;
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mobicents.protocols.sctp.netty.NettyTcpLoopback.createMessage;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.io.DataInputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.mobicents.protocols.api.PayloadData;
+import org.mobicents.protocols.api.SendStatus;
+import org.testng.annotations.Test;
+
+/**
+ * Tests {@link NettyAssociationImpl#offerOutbound(PayloadData)} from a
+ * producer pinned to the event loop of the Association and from another
+ * thread: the peer gets all the messages in their order
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class NettyPinnedProducerTest {
+
+    private static final int SERVER_PORT = 12385;
+    private static final int CLIENT_PORT = 12386;
+
+    private static final int MESSAGES = 1000;
+
+    @Test(groups = { "functional", "tcp" })
+    public void testPinnedProducerTcp() throws Exception {
+        NettyTcpLoopback loopback = new NettyTcpLoopback("pinned-management", SERVER_PORT, CLIENT_PORT);
+        final NettyAssociationImpl clientAssociation = loopback.clientAssociation;
+        assertNull(clientAssociation.getEventExecutor());
+        assertEquals(SendStatus.NOT_CONNECTED, clientAssociation.offerOutbound(createMessage(0)));
+
+        loopback.connect();
+
+        // a producer running on the event loop
+        EventExecutor eventExecutor = clientAssociation.getEventExecutor();
+        assertFalse(eventExecutor.inEventLoop());
+        final CountDownLatch pinned = new CountDownLatch(1);
+        final SendStatus[] pinnedStatus = new SendStatus[1];
+        eventExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                SendStatus sendStatus = SendStatus.QUEUED;
+                for (int i = 0; i < MESSAGES && sendStatus == SendStatus.QUEUED; i++) {
+                    sendStatus = clientAssociation.offerOutbound(createMessage(i));
+                }
+                pinnedStatus[0] = sendStatus;
+                pinned.countDown();
+            }
+        });
+        assertTrue(pinned.await(5, TimeUnit.SECONDS));
+        assertEquals(SendStatus.QUEUED, pinnedStatus[0]);
+
+        // a producer on another thread
+        for (int i = MESSAGES; i < 2 * MESSAGES; i++) {
+            assertEquals(SendStatus.QUEUED, clientAssociation.offerOutbound(createMessage(i)));
+        }
+
+        DataInputStream in = loopback.peerInput();
+        for (int i = 0; i < 2 * MESSAGES; i++) {
+            assertEquals(i, in.readInt());
+        }
+
+        loopback.close();
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+
+import java.io.DataInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.mobicents.protocols.api.Association;
+import org.mobicents.protocols.api.AssociationListener;
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+
+/**
+ * A TCP client {@link NettyAssociationImpl} talking to a plain
+ * {@link ServerSocket} peer on the loopback interface. The management and the
+ * Association are created by the constructor so that a test can configure them
+ * before {@link #connect()}, {@link #close()} stops and removes everything
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+class NettyTcpLoopback {
+
+    static final String CLIENT_ASSOCIATION_NAME = "clientAssociation";
+
+    static final String HOST = "127.0.0.1";
+
+    final ServerSocket serverSocket;
+    final NettySctpManagementImpl management;
+    final NettyAssociationImpl clientAssociation;
+    final LoopbackListener clientListener = new LoopbackListener();
+
+    private Socket socket;
+
+    NettyTcpLoopback(String managementName, int serverPort, int clientPort) throws Exception {
+        this(managementName, serverPort, clientPort, 0);
+    }
+
+    /**
+     * @param receiveBufferSize the receive buffer size of the peer socket, 0
+     *            keeps the default
+     */
+    NettyTcpLoopback(String managementName, int serverPort, int clientPort, int receiveBufferSize) throws Exception {
+        this.serverSocket = new ServerSocket();
+        this.serverSocket.setReuseAddress(true);
+        if (receiveBufferSize > 0)
+            this.serverSocket.setReceiveBufferSize(receiveBufferSize);
+        this.serverSocket.bind(new InetSocketAddress(HOST, serverPort));
+
+        this.management = startManagement(new NettySctpManagementImpl(managementName));
+        this.clientAssociation = (NettyAssociationImpl) this.management.addAssociation(HOST, clientPort, HOST, serverPort,
+                CLIENT_ASSOCIATION_NAME, IpChannelType.TCP, null);
+        this.clientAssociation.setAssociationListener(this.clientListener);
+    }
+
+    /**
+     * Starts the given management with an empty configuration
+     */
+    static NettySctpManagementImpl startManagement(NettySctpManagementImpl management) throws Exception {
+        management.start();
+        management.setConnectDelay(10000);
+        management.removeAllResources();
+        return management;
+    }
+
+    /**
+     * Starts the client Association and accepts it on the peer side, returns
+     * once the Association is up
+     */
+    Socket connect() throws Exception {
+        this.management.startAssociation(CLIENT_ASSOCIATION_NAME);
+        this.socket = this.serverSocket.accept();
+        this.socket.setSoTimeout(5000);
+        awaitUp(this.clientListener);
+        return this.socket;
+    }
+
+    DataInputStream peerInput() throws Exception {
+        return new DataInputStream(this.socket.getInputStream());
+    }
+
+    void close() throws Exception {
+        this.management.stopAssociation(CLIENT_ASSOCIATION_NAME);
+        if (this.socket != null)
+            this.socket.close();
+        this.serverSocket.close();
+        Thread.sleep(500);
+        this.management.removeAssociation(CLIENT_ASSOCIATION_NAME);
+        this.management.stop();
+    }
+
+    static void awaitUp(LoopbackListener... listeners) throws Exception {
+        for (int i1 = 0; i1 < 300; i1++) {
+            boolean up = true;
+            for (LoopbackListener listener : listeners) {
+                up &= listener.up;
+            }
+            if (up)
+                break;
+            Thread.sleep(100);
+        }
+        for (LoopbackListener listener : listeners) {
+            assertTrue(listener.up);
+        }
+    }
+
+    /**
+     * A message carrying the given sequence number as a 4 byte big endian int
+     */
+    static PayloadData createMessage(int seq) {
+        byte[] data = new byte[] { (byte) (seq >>> 24), (byte) (seq >>> 16), (byte) (seq >>> 8), (byte) seq };
+        return new PayloadData(data.length, Unpooled.wrappedBuffer(data), true, false, 0, 0);
+    }
+
+    /**
+     * Records the state changes, the received payloads and the writability
+     * changes of an Association
+     */
+    static class LoopbackListener implements AssociationListener {
+
+        volatile boolean up = false;
+        volatile int payloads = 0;
+        volatile byte[] message;
+        final List<Boolean> writability = new CopyOnWriteArrayList<Boolean>();
+
+        @Override
+        public void onCommunicationUp(Association association, int maxInboundStreams, int maxOutboundStreams) {
+            up = true;
+        }
+
+        @Override
+        public void onCommunicationShutdown(Association association) {
+            up = false;
+        }
+
+        @Override
+        public void onCommunicationLost(Association association) {
+            up = false;
+        }
+
+        @Override
+        public void onCommunicationRestart(Association association) {
+        }
+
+        @Override
+        public void onPayload(Association association, PayloadData payloadData) {
+            byte[] data = new byte[payloadData.getDataLength()];
+            // the Association releases the buffer once the listener returns
+            payloadData.getByteBuf().getBytes(payloadData.getByteBuf().readerIndex(), data);
+            message = data;
+            payloads++;
+        }
+
+        @Override
+        public void inValidStreamId(PayloadData payloadData) {
+        }
+
+        @Override
+        public void onWritabilityChanged(Association association, boolean writable) {
+            writability.add(writable);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mobicents.protocols.sctp.netty.NettyTcpLoopback.CLIENT_ASSOCIATION_NAME;
+import io.netty.buffer.Unpooled;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.List;
+
+import org.mobicents.protocols.api.IpChannelType;
+import org.mobicents.protocols.api.PayloadData;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the write buffer water marks of a {@link NettyAssociationImpl}: a peer
+ * that does not read turns the Association unwritable, once the peer reads
+ * again it turns writable
+ * 
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ * 
+ */
+public class NettyWritabilityTest {
+
+    private static final int SERVER_PORT = 12381;
+    private static final int CLIENT_PORT = 12382;
+
+    private static final byte[] MESSAGE = new byte[8192];
+
+    private static final int LOW_WATER_MARK = 64 * 1024;
+    private static final int HIGH_WATER_MARK = 256 * 1024;
+
+    private static final int MESSAGES = 2000;
+
+    @Test(groups = { "functional", "tcp" })
+    public void testWritabilityTcp() throws Exception {
+        NettyTcpLoopback loopback = new NettyTcpLoopback("writability-management", SERVER_PORT, CLIENT_PORT, 4096);
+        NettySctpManagementImpl management = loopback.management;
+        NettyAssociationImpl clientAssociation = loopback.clientAssociation;
+        try {
+            management.modifyAssociationWriteBufferWaterMark(CLIENT_ASSOCIATION_NAME, HIGH_WATER_MARK, LOW_WATER_MARK);
+            assertTrue("low water mark above the high water mark must be rejected", false);
+        } catch (Exception e) {
+        }
+        management.modifyAssociationWriteBufferWaterMark(CLIENT_ASSOCIATION_NAME, LOW_WATER_MARK, HIGH_WATER_MARK);
+        assertEquals(LOW_WATER_MARK, clientAssociation.getWriteBufferLowWaterMark());
+        assertEquals(HIGH_WATER_MARK, clientAssociation.getWriteBufferHighWaterMark());
+
+        NettyTcpLoopback.LoopbackListener clientListener = loopback.clientListener;
+        final Socket socket = loopback.connect();
+        assertTrue(clientAssociation.isWritable());
+
+        // more than the kernel buffers of both sides take
+        int sent = MESSAGES;
+        for (int i = 0; i < MESSAGES; i++) {
+            clientAssociation.send(new PayloadData(MESSAGE.length, Unpooled.wrappedBuffer(MESSAGE), true, false, 0, 0));
+        }
+        // the event loop fires the writability changes
+        for (int i1 = 0; i1 < 200; i1++) {
+            if (clientListener.writability.size() % 2 == 1)
+                break;
+            Thread.sleep(10);
+        }
+        assertFalse(clientAssociation.isWritable());
+        assertTrue(clientAssociation.pendingOutboundBytes() >= LOW_WATER_MARK);
+        assertTrue(clientListener.writability.size() % 2 == 1);
+        this.assertAlternating(clientListener.writability);
+
+        // the peer reads again
+        final long expected = (long) sent * MESSAGE.length;
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    InputStream in = socket.getInputStream();
+                    byte[] buf = new byte[65536];
+                    long received = 0;
+                    while (received < expected) {
+                        int len = in.read(buf);
+                        if (len < 0)
+                            break;
+                        received += len;
+                    }
+                } catch (Exception e) {
+                }
+            }
+        };
+        reader.start();
+        reader.join(30000);
+
+        for (int i1 = 0; i1 < 100; i1++) {
+            if (clientAssociation.isWritable())
+                break;
+            Thread.sleep(10);
+        }
+        assertTrue(clientAssociation.isWritable());
+        assertEquals(0, clientAssociation.pendingOutboundBytes());
+        assertTrue(clientListener.writability.size() % 2 == 0);
+        this.assertAlternating(clientListener.writability);
+
+        loopback.close();
+        assertFalse(clientAssociation.isWritable());
+    }
+
+    /**
+     * Writability changes reported to the listener start with unwritable and
+     * alternate
+     */
+    private void assertAlternating(List<Boolean> writability) {
+        for (int i = 0; i < writability.size(); i++) {
+            assertEquals(i % 2 == 1, writability.get(i));
+        }
+    }
+
+    @Test(groups = { "functional", "tcp" })
+    public void testPersistence() throws Exception {
+        NettySctpManagementImpl management = new NettySctpManagementImpl("writability-persistence");
+        management.start();
+        management.removeAllResources();
+
+        management.addAssociation(NettyTcpLoopback.HOST, CLIENT_PORT, NettyTcpLoopback.HOST, SERVER_PORT, CLIENT_ASSOCIATION_NAME,
+                IpChannelType.TCP, null);
+        management.modifyAssociationWriteBufferWaterMark(CLIENT_ASSOCIATION_NAME, LOW_WATER_MARK, HIGH_WATER_MARK);
+        management.stop();
+
+        management = new NettySctpManagementImpl("writability-persistence");
+        management.start();
+        NettyAssociationImpl association = (NettyAssociationImpl) management.getAssociation(CLIENT_ASSOCIATION_NAME);
+        assertEquals(LOW_WATER_MARK, association.getWriteBufferLowWaterMark());
+        assertEquals(HIGH_WATER_MARK, association.getWriteBufferHighWaterMark());
+
+        management.removeAllResources();
+        management.stop();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mobicents.protocols.sctp.netty.NettyTcpLoopback.CLIENT_ASSOCIATION_NAME;
+import static org.mobicents.protocols.sctp.netty.NettyTcpLoopback.createMessage;
+import io.netty.channel.socket.ChannelOutputShutdownException;
+import io.netty.channel.socket.DuplexChannel;
+
+import java.io.DataInputStream;
+
+import org.mobicents.protocols.api.AssociationStatistics;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that a failed write of a {@link NettyAssociationImpl} is only logged
+ * and counted: the channel is not closed and the Association stays up
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class NettyWriteFailureTest {
+
+    private static final int SERVER_PORT = 12399;
+    private static final int CLIENT_PORT = 12400;
+
+    private static final int MESSAGES = 10;
+
+    @Test(groups = { "functional", "tcp" })
+    public void testWriteFailureTcp() throws Exception {
+        NettyTcpLoopback loopback = new NettyTcpLoopback("write-failure-management", SERVER_PORT, CLIENT_PORT);
+        NettyAssociationImpl clientAssociation = loopback.clientAssociation;
+        loopback.connect();
+
+        clientAssociation.send(createMessage(0));
+        DataInputStream in = loopback.peerInput();
+        assertEquals(0, in.readInt());
+
+        // the channel stays active but any further write fails
+        DuplexChannel channel = (DuplexChannel) clientAssociation.getChannelHandler().channel;
+        assertTrue(channel.shutdownOutput().await(5000));
+        assertTrue(channel.isActive());
+
+        for (int i = 1; i <= MESSAGES; i++) {
+            clientAssociation.send(createMessage(i));
+        }
+        AssociationStatistics statistics = null;
+        for (int i1 = 0; i1 < 100; i1++) {
+            statistics = loopback.management.getStatistics().get(CLIENT_ASSOCIATION_NAME);
+            if (statistics.getTxFailures() == MESSAGES)
+                break;
+            Thread.sleep(10);
+        }
+        assertEquals(MESSAGES, statistics.getTxFailures());
+
+        // the failure of a write done with the void promise reaches
+        // exceptionCaught()
+        channel.pipeline().fireExceptionCaught(new ChannelOutputShutdownException("output shut down"));
+        for (int i1 = 0; i1 < 100; i1++) {
+            statistics = loopback.management.getStatistics().get(CLIENT_ASSOCIATION_NAME);
+            if (statistics.getTxFailures() == MESSAGES + 1)
+                break;
+            Thread.sleep(10);
+        }
+        assertEquals(MESSAGES + 1, statistics.getTxFailures());
+
+        // nothing closed the channel
+        Thread.sleep(200);
+        assertTrue(channel.isActive());
+        assertTrue(loopback.clientListener.up);
+        assertTrue(clientAssociation.isConnected());
+
+        loopback.close();
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+
+import org.mobicents.protocols.sctp.netty.PooledNioSctpChannel.OutgoingMessageInfos;
+import org.testng.annotations.Test;
+
+import com.sun.nio.sctp.Association;
+import com.sun.nio.sctp.MessageInfo;
+
+/**
+ * Tests the outgoing buffer handling and the outgoing MessageInfo cache of
+ * {@link PooledNioSctpChannel}
+ *
+ * @author <a href="mailto:nhanth87@gmail.com">nhanth87</a>
+ *
+ */
+public class PooledNioSctpChannelTest {
+
+    @Test(groups = { "functional", "sctp" })
+    public void testOutgoingNioBuffer() throws Exception {
+        ByteBuf direct = Unpooled.directBuffer(64).writeBytes(this.createData(64));
+        direct.readerIndex(4);
+        ByteBuffer nioData = PooledNioSctpChannel.outgoingNioBuffer(direct, 60);
+        this.assertData(nioData, 4, 60);
+        // the message may have to be written again
+        assertEquals(4, direct.readerIndex());
+        direct.release();
+
+        // heap and composite buffers are copied, also when larger than the
+        // initial output buffer
+        for (int dataLen : new int[] { 64, 20000 }) {
+            ByteBuf heap = Unpooled.wrappedBuffer(this.createData(dataLen));
+            this.assertData(PooledNioSctpChannel.outgoingNioBuffer(heap, dataLen), 0, dataLen);
+            assertEquals(0, heap.readerIndex());
+
+            byte[] data = this.createData(dataLen);
+            CompositeByteBuf composite = Unpooled.compositeBuffer();
+            composite.addComponent(true, Unpooled.directBuffer(16).writeBytes(data, 0, 16));
+            composite.addComponent(true, Unpooled.directBuffer(dataLen - 16).writeBytes(data, 16, dataLen - 16));
+            this.assertData(PooledNioSctpChannel.outgoingNioBuffer(composite, dataLen), 0, dataLen);
+            composite.release();
+        }
+    }
+
+    @Test(groups = { "functional", "sctp" })
+    public void testOutgoingMessageInfos() throws Exception {
+        OutgoingMessageInfos messageInfos = new OutgoingMessageInfos();
+        Association association = new TestAssociation(1);
+
+        MessageInfo messageInfo = messageInfos.get(association, 3, 3, false);
+        assertEquals(3, messageInfo.streamNumber());
+        assertEquals(3, messageInfo.payloadProtocolID());
+        assertSame(messageInfo, messageInfos.get(association, 3, 4, true));
+        assertEquals(4, messageInfo.payloadProtocolID());
+        assertTrue(messageInfo.isUnordered());
+        assertEquals(65535, messageInfos.get(association, 65535, 3, false).streamNumber());
+
+        // the cache is dropped with the Association
+        Association otherAssociation = new TestAssociation(2);
+        MessageInfo otherMessageInfo = messageInfos.get(otherAssociation, 3, 3, false);
+        assertNotSame(messageInfo, otherMessageInfo);
+        assertSame(otherAssociation, otherMessageInfo.association());
+        assertEquals(4, messageInfos.size());
+
+        // invalid stream numbers are rejected without growing the cache
+        for (int streamNumber : new int[] { -1, 65537, 100000000 }) {
+            try {
+                messageInfos.get(otherAssociation, streamNumber, 3, false);
+                fail(String.format("Stream number %d accepted", streamNumber));
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        assertEquals(4, messageInfos.size());
+    }
+
+    private byte[] createData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private void assertData(ByteBuffer nioData, int offset, int length) {
+        assertEquals(length, nioData.remaining());
+        for (int i = 0; i < length; i++) {
+            assertEquals((byte) (offset + i), nioData.get(nioData.position() + i));
+        }
+    }
+
+    private static class TestAssociation extends Association {
+
+        private TestAssociation(int associationID) {
+            super(associationID, 16, 16);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * TeleStax, Open Source Cloud Communications
+ * Copyright 2011-2014, Telestax Inc and individual contributors
+ * by the @authors tag.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation; either version 3 of
+ * the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>
+ *
+ */
+
+package org.mobicents.protocols.sctp.netty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.netty.channel.RecvByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests the receive size prediction and the per wakeup read budget of
+ * {@link SctpRecvByteBufAllocator}
+ */
+public class SctpRecvByteBufAllocatorTest {
+
+    @Test(groups = { "functional", "sctp" })
+    public void testSizePrediction() throws Exception {
+        RecvByteBufAllocator.Handle handle = new SctpRecvByteBufAllocator(16, 65536).newHandle();
+        handle.reset(new EmbeddedChannel().config());
+        assertEquals(SctpRecvByteBufAllocator.DEFAULT_INITIAL, handle.guess());
+
+        // a full buffer grows at once
+        handle.lastBytesRead(2048);
+        assertEquals(4096, handle.guess());
+
+        // shrinks only after two small messages in a row
+        handle.lastBytesRead(100);
+        assertEquals(4096, handle.guess());
+        handle.lastBytesRead(100);
+        assertEquals(2048, handle.guess());
+
+        for (int i = 0; i < 40; i++) {
+            handle.lastBytesRead(10);
+        }
+        assertEquals(SctpRecvByteBufAllocator.DEFAULT_MINIMUM, handle.guess());
+    }
+
+    @Test(groups = { "functional", "sctp" })
+    public void testReadBudget() throws Exception {
+        RecvByteBufAllocator.Handle handle = new SctpRecvByteBufAllocator(4, 1000).newHandle();
+        handle.reset(new EmbeddedChannel().config());
+
+        // small messages do not stop the batch
+        handle.lastBytesRead(10);
+        handle.incMessagesRead(1);
+        assertTrue(handle.continueReading());
+
+        // message budget
+        for (int i = 0; i < 3; i++) {
+            handle.lastBytesRead(10);
+            handle.incMessagesRead(1);
+        }
+        assertFalse(handle.continueReading());
+
+        // byte budget
+        handle.reset(new EmbeddedChannel().config());
+        handle.lastBytesRead(1000);
+        handle.incMessagesRead(1);
+        assertFalse(handle.continueReading());
+    }
+}